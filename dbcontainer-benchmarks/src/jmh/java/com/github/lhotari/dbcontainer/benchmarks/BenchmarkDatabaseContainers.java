@@ -0,0 +1,71 @@
+package com.github.lhotari.dbcontainer.benchmarks;
+
+import com.github.lhotari.dbcontainer.DatabaseContainer;
+import com.github.lhotari.dbcontainer.postgres.PostgresDatabaseContainer;
+import com.github.lhotari.dbcontainer.yugabyte.YugaByteDatabaseContainer;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import reactor.core.publisher.Mono;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Creates the benchmarked {@link DatabaseContainer} implementations and runs the queries used by the benchmarks
+ */
+final class BenchmarkDatabaseContainers {
+    static final String POSTGRES = "postgres";
+    static final String YUGABYTE = "yugabyte";
+
+    private BenchmarkDatabaseContainers() {
+
+    }
+
+    /**
+     * Creates a container that hasn't been started. The image versions are selected with the "postgresVersion" and
+     * "yugabyteVersion" system properties.
+     *
+     * @param containerType "postgres" or "yugabyte"
+     * @return the container
+     */
+    static DatabaseContainer create(String containerType) {
+        switch (containerType) {
+            case POSTGRES:
+                return new PostgresDatabaseContainer();
+            case YUGABYTE:
+                return new YugaByteDatabaseContainer();
+            default:
+                throw new IllegalArgumentException("Unknown container type " + containerType);
+        }
+    }
+
+    static int selectOneWithJdbc(java.sql.Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT 1")) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+    static ConnectionFactory createConnectionFactory(DatabaseContainer databaseContainer) {
+        ConnectionFactoryOptions.Builder options = ConnectionFactoryOptions.parse(databaseContainer.getR2dbcUrl()).mutate()
+                .option(ConnectionFactoryOptions.USER, databaseContainer.getDatabaseUser());
+        if (!databaseContainer.getDatabasePassword().isEmpty()) {
+            options.option(ConnectionFactoryOptions.PASSWORD, databaseContainer.getDatabasePassword());
+        }
+        return ConnectionFactories.get(options.build());
+    }
+
+    static int selectOneWithNewR2dbcConnection(ConnectionFactory connectionFactory) {
+        return Mono.usingWhen(connectionFactory.create(), BenchmarkDatabaseContainers::selectOneWithR2dbc, Connection::close)
+                .block();
+    }
+
+    static Mono<Integer> selectOneWithR2dbc(Connection connection) {
+        return Mono.from(connection.createStatement("SELECT 1").execute())
+                .flatMap(result -> Mono.from(result.map((row, rowMetadata) -> row.get(0, Integer.class))));
+    }
+}
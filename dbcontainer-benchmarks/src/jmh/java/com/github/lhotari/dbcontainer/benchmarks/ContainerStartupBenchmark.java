@@ -0,0 +1,68 @@
+package com.github.lhotari.dbcontainer.benchmarks;
+
+import com.github.lhotari.dbcontainer.DatabaseAdministration;
+import com.github.lhotari.dbcontainer.DatabaseContainer;
+import io.r2dbc.spi.ConnectionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time from starting a container until it has started and until the first JDBC and R2DBC queries
+ * have completed. Each invocation starts a new container, the first warmup invocation also pulls the image
+ * when it isn't available locally.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@State(Scope.Thread)
+public class ContainerStartupBenchmark {
+    @Param({BenchmarkDatabaseContainers.POSTGRES, BenchmarkDatabaseContainers.YUGABYTE})
+    private String containerType;
+    private DatabaseContainer databaseContainer;
+
+    @Setup(Level.Invocation)
+    public void createContainer() {
+        databaseContainer = BenchmarkDatabaseContainers.create(containerType);
+    }
+
+    @TearDown(Level.Invocation)
+    public void stopContainer() {
+        databaseContainer.stop();
+    }
+
+    @Benchmark
+    public DatabaseContainer coldStart() {
+        databaseContainer.start();
+        return databaseContainer;
+    }
+
+    @Benchmark
+    public int firstJdbcQuery() throws SQLException {
+        databaseContainer.start();
+        try (Connection connection = DatabaseAdministration.createConnection(databaseContainer, databaseContainer.getDatabaseName())) {
+            return BenchmarkDatabaseContainers.selectOneWithJdbc(connection);
+        }
+    }
+
+    @Benchmark
+    public int firstR2dbcQuery() {
+        databaseContainer.start();
+        ConnectionFactory connectionFactory = BenchmarkDatabaseContainers.createConnectionFactory(databaseContainer);
+        return BenchmarkDatabaseContainers.selectOneWithNewR2dbcConnection(connectionFactory);
+    }
+}
@@ -0,0 +1,108 @@
+package com.github.lhotari.dbcontainer.benchmarks;
+
+import com.github.lhotari.dbcontainer.DatabaseAdministration;
+import com.github.lhotari.dbcontainer.DatabaseContainer;
+import io.r2dbc.spi.ConnectionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Mono;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the steady-state throughput of simple queries and single-row inserts against a started container.
+ * The container is started once per trial and each benchmark thread uses its own connection.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+public class QueryThroughputBenchmark {
+    @State(Scope.Benchmark)
+    public static class ContainerState {
+        @Param({BenchmarkDatabaseContainers.POSTGRES, BenchmarkDatabaseContainers.YUGABYTE})
+        private String containerType;
+        private DatabaseContainer databaseContainer;
+        private final AtomicLong idSequence = new AtomicLong();
+
+        @Setup(Level.Trial)
+        public void startContainer() {
+            databaseContainer = BenchmarkDatabaseContainers.create(containerType);
+            databaseContainer.start();
+            DatabaseAdministration.executeSql(databaseContainer, databaseContainer.getDatabaseName(),
+                    "CREATE TABLE benchmark_insert (id BIGINT PRIMARY KEY, payload VARCHAR(100))");
+        }
+
+        @TearDown(Level.Trial)
+        public void stopContainer() {
+            databaseContainer.stop();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class JdbcConnectionState {
+        private Connection connection;
+        private PreparedStatement insertStatement;
+
+        @Setup(Level.Trial)
+        public void openConnection(ContainerState containerState) throws SQLException {
+            DatabaseContainer databaseContainer = containerState.databaseContainer;
+            connection = DatabaseAdministration.createConnection(databaseContainer, databaseContainer.getDatabaseName());
+            insertStatement = connection.prepareStatement("INSERT INTO benchmark_insert (id, payload) VALUES (?, ?)");
+        }
+
+        @TearDown(Level.Trial)
+        public void closeConnection() throws SQLException {
+            insertStatement.close();
+            connection.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class R2dbcConnectionState {
+        private io.r2dbc.spi.Connection connection;
+
+        @Setup(Level.Trial)
+        public void openConnection(ContainerState containerState) {
+            ConnectionFactory connectionFactory = BenchmarkDatabaseContainers.createConnectionFactory(containerState.databaseContainer);
+            connection = Mono.from(connectionFactory.create()).block();
+        }
+
+        @TearDown(Level.Trial)
+        public void closeConnection() {
+            Mono.from(connection.close()).block();
+        }
+    }
+
+    @Benchmark
+    public int jdbcSelect(JdbcConnectionState connectionState) throws SQLException {
+        return BenchmarkDatabaseContainers.selectOneWithJdbc(connectionState.connection);
+    }
+
+    @Benchmark
+    public int jdbcInsert(ContainerState containerState, JdbcConnectionState connectionState) throws SQLException {
+        PreparedStatement insertStatement = connectionState.insertStatement;
+        insertStatement.setLong(1, containerState.idSequence.incrementAndGet());
+        insertStatement.setString(2, "payload");
+        return insertStatement.executeUpdate();
+    }
+
+    @Benchmark
+    public int r2dbcSelect(R2dbcConnectionState connectionState) {
+        return BenchmarkDatabaseContainers.selectOneWithR2dbc(connectionState.connection).block();
+    }
+}
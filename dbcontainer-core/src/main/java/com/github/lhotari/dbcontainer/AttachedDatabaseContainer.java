@@ -0,0 +1,164 @@
+package com.github.lhotari.dbcontainer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * {@link DatabaseContainer} for a database server that has been started by another JVM. The connection details
+ * are read from the state file written by {@link CrossJvmContainerRegistry}. Starting has no effect.
+ * <p>
+ * The state file contains the direct endpoints of the server. When the server's container has been configured with
+ * network shaping, this JVM routes its connections through its own {@link ShapingProxies} with the same settings.
+ * Stopping closes the proxies.
+ */
+class AttachedDatabaseContainer implements DatabaseContainer {
+    static final String DATABASE_NAME_PLACEHOLDER = "${databaseName}";
+    static final String JDBC_URL_KEY = "jdbcUrl";
+    static final String R2DBC_URL_KEY = "r2dbcUrl";
+    static final String DATABASE_NAME_KEY = "databaseName";
+    static final String MAINTENANCE_DATABASE_NAME_KEY = "maintenanceDatabaseName";
+    static final String DATABASE_USER_KEY = "databaseUser";
+    static final String DATABASE_PASSWORD_KEY = "databasePassword";
+    static final String CONFIGURATION_KEY_KEY = "configurationKey";
+    static final String NETWORK_LATENCY_KEY = "networkShaping.latency";
+    static final String NETWORK_JITTER_KEY = "networkShaping.jitter";
+    static final String NETWORK_BANDWIDTH_KEY = "networkShaping.bandwidthBytesPerSecond";
+    private final String jdbcUrlTemplate;
+    private final String r2dbcUrlTemplate;
+    private final String databaseName;
+    private final String maintenanceDatabaseName;
+    private final String databaseUser;
+    private final String databasePassword;
+    private final String configurationKey;
+    private final ShapingProxies shapingProxies;
+
+    AttachedDatabaseContainer(Properties state) {
+        this.jdbcUrlTemplate = state.getProperty(JDBC_URL_KEY);
+        this.r2dbcUrlTemplate = state.getProperty(R2DBC_URL_KEY);
+        this.databaseName = state.getProperty(DATABASE_NAME_KEY);
+        this.maintenanceDatabaseName = state.getProperty(MAINTENANCE_DATABASE_NAME_KEY);
+        this.databaseUser = state.getProperty(DATABASE_USER_KEY);
+        this.databasePassword = state.getProperty(DATABASE_PASSWORD_KEY, "");
+        this.configurationKey = state.getProperty(CONFIGURATION_KEY_KEY);
+        this.shapingProxies = state.containsKey(NETWORK_LATENCY_KEY) ? new ShapingProxies(NetworkShaping.create()
+                .withLatency(Duration.parse(state.getProperty(NETWORK_LATENCY_KEY)))
+                .withJitter(Duration.parse(state.getProperty(NETWORK_JITTER_KEY)))
+                .withBandwidth(Long.parseLong(state.getProperty(NETWORK_BANDWIDTH_KEY)))) : null;
+    }
+
+    /**
+     * Writes the connection details of a started container to the properties of a state file. The urls point
+     * to the server directly since the proxies of the starting JVM stop when that JVM exits.
+     *
+     * @param databaseContainer the started container
+     * @param state             the properties to write to
+     */
+    static void writeState(CrossJvmShareableContainer databaseContainer, Properties state) {
+        state.setProperty(JDBC_URL_KEY, databaseContainer.getDirectJdbcUrl(DATABASE_NAME_PLACEHOLDER));
+        state.setProperty(R2DBC_URL_KEY, databaseContainer.getDirectR2dbcUrl(DATABASE_NAME_PLACEHOLDER));
+        state.setProperty(DATABASE_NAME_KEY, databaseContainer.getDatabaseName());
+        state.setProperty(MAINTENANCE_DATABASE_NAME_KEY, databaseContainer.getMaintenanceDatabaseName());
+        state.setProperty(DATABASE_USER_KEY, databaseContainer.getDatabaseUser());
+        state.setProperty(DATABASE_PASSWORD_KEY, databaseContainer.getDatabasePassword());
+        state.setProperty(CONFIGURATION_KEY_KEY, databaseContainer.getConfigurationKey());
+        NetworkShaping networkShaping = databaseContainer.getNetworkShaping();
+        if (networkShaping != null) {
+            state.setProperty(NETWORK_LATENCY_KEY, networkShaping.getLatency().toString());
+            state.setProperty(NETWORK_JITTER_KEY, networkShaping.getJitter().toString());
+            state.setProperty(NETWORK_BANDWIDTH_KEY, String.valueOf(networkShaping.getBandwidthBytesPerSecond()));
+        }
+    }
+
+    @Override
+    public String getJdbcUrl() {
+        return getJdbcUrl(databaseName);
+    }
+
+    @Override
+    public String getR2dbcUrl() {
+        return getR2dbcUrl(databaseName);
+    }
+
+    @Override
+    public String getJdbcUrl(String databaseName) {
+        return routeThroughProxies(getDirectJdbcUrl(databaseName));
+    }
+
+    @Override
+    public String getR2dbcUrl(String databaseName) {
+        return routeThroughProxies(r2dbcUrlTemplate.replace(DATABASE_NAME_PLACEHOLDER, databaseName));
+    }
+
+    @Override
+    public String getDirectJdbcUrl(String databaseName) {
+        return jdbcUrlTemplate.replace(DATABASE_NAME_PLACEHOLDER, databaseName);
+    }
+
+    // replaces each host:port of the url's authority, a JDBC url can list several hosts
+    private String routeThroughProxies(String url) {
+        if (shapingProxies == null) {
+            return url;
+        }
+        int authorityStart = url.indexOf("://") + 3;
+        int authorityEnd = url.indexOf('/', authorityStart);
+        List<String> proxiedEndpoints = new ArrayList<>();
+        for (String endpoint : url.substring(authorityStart, authorityEnd).split(",")) {
+            int portSeparator = endpoint.lastIndexOf(':');
+            ShapingProxy proxy = shapingProxies.forEndpoint(endpoint.substring(0, portSeparator),
+                    Integer.parseInt(endpoint.substring(portSeparator + 1)));
+            proxiedEndpoints.add(proxy.getHost() + ":" + proxy.getPort());
+        }
+        return url.substring(0, authorityStart) + String.join(",", proxiedEndpoints) + url.substring(authorityEnd);
+    }
+
+    @Override
+    public ShapingProxy.Statistics getNetworkStatistics() {
+        return shapingProxies != null ? shapingProxies.getStatistics() : null;
+    }
+
+    @Override
+    public void resetNetworkStatistics() {
+        if (shapingProxies != null) {
+            shapingProxies.resetStatistics();
+        }
+    }
+
+    @Override
+    public String getDatabaseName() {
+        return databaseName;
+    }
+
+    @Override
+    public String getMaintenanceDatabaseName() {
+        return maintenanceDatabaseName;
+    }
+
+    @Override
+    public String getDatabaseUser() {
+        return databaseUser;
+    }
+
+    @Override
+    public String getDatabasePassword() {
+        return databasePassword;
+    }
+
+    @Override
+    public void start() {
+
+    }
+
+    @Override
+    public void stop() {
+        if (shapingProxies != null) {
+            shapingProxies.close();
+        }
+    }
+
+    @Override
+    public String getConfigurationKey() {
+        return configurationKey;
+    }
+}
@@ -0,0 +1,63 @@
+package com.github.lhotari.dbcontainer;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+
+/**
+ * Creates pooled R2DBC ConnectionFactories for {@link DatabaseContainer} instances.
+ * Requires r2dbc-pool and the r2dbc-postgresql driver on the classpath.
+ */
+public final class ConnectionFactoryPools {
+    private static final Logger LOG = LoggerFactory.getLogger(ConnectionFactoryPools.class);
+    private static final String VALIDATION_QUERY = "SELECT 1";
+
+    private ConnectionFactoryPools() {
+
+    }
+
+    /**
+     * Creates an r2dbc-pool for the database of a started container. The pool returns immediately and opens and
+     * validates the minimum number of idle connections in the background so that the first users of the pool
+     * don't have to wait for connections to be set up.
+     *
+     * @param databaseContainer the started container
+     * @param settings          the pool settings
+     * @return the pool, which has to be disposed by the caller
+     */
+    public static ConnectionPool createPooledConnectionFactory(DatabaseContainer databaseContainer, ConnectionPoolSettings settings) {
+        ConnectionFactoryOptions.Builder options = ConnectionFactoryOptions.parse(databaseContainer.getR2dbcUrl()).mutate()
+                .option(ConnectionFactoryOptions.USER, databaseContainer.getDatabaseUser());
+        if (!databaseContainer.getDatabasePassword().isEmpty()) {
+            options.option(ConnectionFactoryOptions.PASSWORD, databaseContainer.getDatabasePassword());
+        }
+        int connectionCount = settings.getEffectiveMinimumIdle();
+        ConnectionPool connectionPool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options.build()))
+                .name(settings.getPoolName())
+                .initialSize(connectionCount)
+                .maxSize(settings.getMaximumSize())
+                .validationQuery(VALIDATION_QUERY)
+                .build());
+        long startTime = System.nanoTime();
+        // holding the warmed up connections at the same time runs the validation query on each of them
+        connectionPool.warmup()
+                .thenMany(Flux.range(0, connectionCount).flatMap(i -> connectionPool.create()))
+                .collectList()
+                .flatMap(connections -> Flux.fromIterable(connections).flatMap(Connection::close).then())
+                .subscribe(ignored -> {
+                        },
+                        throwable -> {
+                            if (!connectionPool.isDisposed()) {
+                                LOG.warn("Warming up pool {} failed", settings.getPoolName(), throwable);
+                            }
+                        },
+                        () -> LOG.info("Opened {} R2DBC connections for pool {} in {} ms", connectionCount, settings.getPoolName(),
+                                (System.nanoTime() - startTime) / 1000000L));
+        return connectionPool;
+    }
+}
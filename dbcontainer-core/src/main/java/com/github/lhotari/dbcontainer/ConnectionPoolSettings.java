@@ -0,0 +1,65 @@
+package com.github.lhotari.dbcontainer;
+
+/**
+ * Settings for the connection pools that are created with {@link DataSourcePools} and {@link ConnectionFactoryPools}
+ */
+public class ConnectionPoolSettings {
+    public static final int DEFAULT_MINIMUM_IDLE = 2;
+    public static final int DEFAULT_MAXIMUM_SIZE = 10;
+    private int minimumIdle = DEFAULT_MINIMUM_IDLE;
+    private int maximumSize = DEFAULT_MAXIMUM_SIZE;
+    private String poolName = "dbcontainer";
+
+    public static ConnectionPoolSettings create() {
+        return new ConnectionPoolSettings();
+    }
+
+    /**
+     * Sets the number of connections that are opened and validated in the background when the pool is created
+     * and that the pool keeps open
+     *
+     * @param minimumIdle the minimum number of idle connections
+     * @return this instance
+     */
+    public ConnectionPoolSettings withMinimumIdle(int minimumIdle) {
+        if (minimumIdle < 0) {
+            throw new IllegalArgumentException("minimumIdle must not be negative");
+        }
+        this.minimumIdle = minimumIdle;
+        return this;
+    }
+
+    /**
+     * @param maximumSize the maximum number of connections in the pool
+     * @return this instance
+     */
+    public ConnectionPoolSettings withMaximumSize(int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("maximumSize must be at least 1");
+        }
+        this.maximumSize = maximumSize;
+        return this;
+    }
+
+    public ConnectionPoolSettings withPoolName(String poolName) {
+        this.poolName = poolName;
+        return this;
+    }
+
+    public int getMinimumIdle() {
+        return minimumIdle;
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public String getPoolName() {
+        return poolName;
+    }
+
+    // the minimum can't exceed the maximum size of the pool
+    int getEffectiveMinimumIdle() {
+        return Math.min(minimumIdle, maximumSize);
+    }
+}
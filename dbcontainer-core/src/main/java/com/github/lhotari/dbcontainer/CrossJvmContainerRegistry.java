@@ -0,0 +1,391 @@
+package com.github.lhotari.dbcontainer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shares started {@link DatabaseContainer} instances between JVMs, for example between the test worker JVMs that
+ * Gradle forks when maxParallelForks is greater than 1.
+ * <p>
+ * The JVMs coordinate through files in a shared directory, usually in the build directory. For each configuration
+ * key there is a lock file, a state file with the connection details of the running database server and a directory
+ * with a lease file for each JVM that uses the server. The first JVM that acquires a configuration starts the
+ * container and writes the state file while holding the lock. Later JVMs attach to the running server by reading
+ * the state file. Each JVM gets its own database on the server, created with
+ * {@link CrossJvmShareableContainer#createJvmDatabase}.
+ * <p>
+ * A JVM keeps its lease alive by touching its lease file periodically. A lease that hasn't been touched within the
+ * lease timeout belongs to a JVM that has exited without cleaning up and gets removed. At JVM shutdown, the JVM's
+ * database is dropped and its lease is removed. Testcontainers removes the containers of a JVM after the JVM has
+ * exited, so the JVM that started the container waits in its shutdown hook until the leases of the other JVMs have
+ * ended and then stops the container.
+ */
+public final class CrossJvmContainerRegistry {
+    private static final Logger LOG = LoggerFactory.getLogger(CrossJvmContainerRegistry.class);
+    public static final Duration DEFAULT_LEASE_TIMEOUT = Duration.ofSeconds(60);
+    private static final Map<Path, CrossJvmContainerRegistry> INSTANCES = new HashMap<>();
+    private static final String JVM_ID = createJvmId();
+    private static final String OWNER_KEY = "owner";
+    private static final long RELEASE_POLL_INTERVAL_MILLIS = 1000L;
+    private final Path directory;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private Duration leaseTimeout = DEFAULT_LEASE_TIMEOUT;
+    private ScheduledExecutorService heartbeatExecutor;
+    private boolean shutdownHookRegistered;
+
+    CrossJvmContainerRegistry(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the registry that coordinates through the given directory
+     *
+     * @param directory the directory shared by the JVMs, created when it doesn't exist
+     * @return the registry
+     */
+    public static synchronized CrossJvmContainerRegistry getInstance(Path directory) {
+        return INSTANCES.computeIfAbsent(directory.toAbsolutePath().normalize(), CrossJvmContainerRegistry::new);
+    }
+
+    /**
+     * Sets the time after which the lease of a JVM that has stopped touching its lease file expires.
+     * The lease file is touched 4 times within the timeout.
+     *
+     * @param leaseTimeout the lease timeout
+     * @return this instance
+     */
+    public synchronized CrossJvmContainerRegistry withLeaseTimeout(Duration leaseTimeout) {
+        this.leaseTimeout = leaseTimeout;
+        return this;
+    }
+
+    /**
+     * @return the id of this JVM, which is used for the lease file and the name of the JVM's database
+     */
+    public static String getJvmId() {
+        return JVM_ID;
+    }
+
+    /**
+     * Acquires a database on a started container that is equivalent to the given candidate container.
+     *
+     * @param candidate a container that hasn't been started
+     * @return a container that points to this JVM's database
+     * @see #acquireAsync(DatabaseContainer)
+     */
+    public DatabaseContainer acquire(DatabaseContainer candidate) {
+        return new DeferredDatabaseContainer(acquireAsync(candidate)).get();
+    }
+
+    /**
+     * Acquires a database on a started container that is equivalent to the given candidate container without
+     * waiting. The candidate is started when no other JVM has started an equivalent container, otherwise it's
+     * discarded without starting it. The database is released when the JVM shuts down.
+     *
+     * @param candidate a container that hasn't been started, has to implement {@link CrossJvmShareableContainer}
+     * @return a future that completes with a container that points to this JVM's database
+     */
+    public CompletableFuture<DatabaseContainer> acquireAsync(DatabaseContainer candidate) {
+        if (!(candidate instanceof CrossJvmShareableContainer)) {
+            throw new IllegalArgumentException(candidate.getClass().getName() + " can't be shared across JVMs");
+        }
+        String configurationKey = candidate.getConfigurationKey();
+        synchronized (this) {
+            registerShutdownHook();
+            Entry entry = entries.get(configurationKey);
+            if (entry == null) {
+                Entry newEntry = new Entry(configurationKey);
+                newEntry.acquired = CompletableFuture.supplyAsync(() -> newEntry.acquire((CrossJvmShareableContainer) candidate),
+                        DatabaseContainerExecutors.startupExecutor());
+                newEntry.acquired.whenComplete((result, throwable) -> {
+                    if (throwable != null) {
+                        removeFailedEntry(newEntry);
+                    }
+                });
+                entries.put(configurationKey, newEntry);
+                entry = newEntry;
+            }
+            return entry.acquired;
+        }
+    }
+
+    private synchronized void removeFailedEntry(Entry entry) {
+        entries.remove(entry.configurationKey, entry);
+    }
+
+    private void registerShutdownHook() {
+        if (!shutdownHookRegistered) {
+            Runtime.getRuntime().addShutdownHook(new Thread(this::releaseAll, "dbcontainer-cross-jvm-shutdown"));
+            shutdownHookRegistered = true;
+        }
+    }
+
+    private synchronized void startHeartbeat() {
+        if (heartbeatExecutor == null) {
+            heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "dbcontainer-cross-jvm-heartbeat");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long intervalMillis = Math.max(leaseTimeout.toMillis() / 4, 1L);
+            heartbeatExecutor.scheduleAtFixedRate(this::touchLeases, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void touchLeases() {
+        List<Entry> entriesToTouch;
+        synchronized (this) {
+            entriesToTouch = new ArrayList<>(entries.values());
+        }
+        for (Entry entry : entriesToTouch) {
+            try {
+                Files.setLastModifiedTime(entry.leaseFile, FileTime.fromMillis(System.currentTimeMillis()));
+            } catch (NoSuchFileException e) {
+                // the lease hasn't been taken yet or it has been released
+            } catch (IOException e) {
+                LOG.warn("Touching lease file {} failed", entry.leaseFile, e);
+            }
+        }
+    }
+
+    void releaseAll() {
+        List<Entry> entriesToRelease;
+        synchronized (this) {
+            entriesToRelease = new ArrayList<>(entries.values());
+        }
+        for (Entry entry : entriesToRelease) {
+            // a container that is still starting gets released after the start has completed
+            entry.acquired.handle((result, throwable) -> {
+                if (throwable == null) {
+                    try {
+                        entry.release();
+                    } catch (RuntimeException e) {
+                        LOG.warn("Releasing the database container shared across JVMs failed", e);
+                    }
+                }
+                return null;
+            }).join();
+        }
+        synchronized (this) {
+            entries.clear();
+            if (heartbeatExecutor != null) {
+                heartbeatExecutor.shutdownNow();
+                heartbeatExecutor = null;
+            }
+        }
+    }
+
+    private static String createJvmId() {
+        String runtimeName = ManagementFactory.getRuntimeMXBean().getName();
+        int atIndex = runtimeName.indexOf('@');
+        String pid = (atIndex > 0 ? runtimeName.substring(0, atIndex) : runtimeName).replaceAll("[^A-Za-z0-9]", "");
+        return "jvm_" + pid + "_" + Integer.toHexString(ThreadLocalRandom.current().nextInt() & 0x7fffffff);
+    }
+
+    private static String hash(String configurationKey) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            StringBuilder hash = new StringBuilder();
+            for (byte b : digest.digest(configurationKey.getBytes(StandardCharsets.UTF_8))) {
+                hash.append(String.format("%02x", b));
+            }
+            return hash.substring(0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private class Entry {
+        private final String configurationKey;
+        private final Path lockFile;
+        private final Path stateFile;
+        private final Path leaseDirectory;
+        private final Path leaseFile;
+        private CompletableFuture<DatabaseContainer> acquired;
+        private DatabaseContainer databaseServer;
+        private CrossJvmShareableContainer startedContainer;
+        private String databaseName;
+
+        Entry(String configurationKey) {
+            this.configurationKey = configurationKey;
+            String hash = hash(configurationKey);
+            this.lockFile = directory.resolve(hash + ".lock");
+            this.stateFile = directory.resolve(hash + ".properties");
+            this.leaseDirectory = directory.resolve(hash + ".leases");
+            this.leaseFile = leaseDirectory.resolve(JVM_ID);
+        }
+
+        DatabaseContainer acquire(CrossJvmShareableContainer candidate) {
+            try {
+                Files.createDirectories(leaseDirectory);
+                try (FileChannel lockChannel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                    // closing the channel releases the lock
+                    lockChannel.lock();
+                    removeExpiredLeases();
+                    DatabaseContainer server = attach();
+                    if (server == null) {
+                        server = start(candidate);
+                    }
+                    Files.write(leaseFile, new byte[0]);
+                    // the candidate creates the database also when the server was started by another JVM
+                    candidate.createJvmDatabase(server, JVM_ID);
+                    databaseServer = server;
+                    databaseName = JVM_ID;
+                }
+            } catch (IOException e) {
+                throw new DatabaseContainerException("Acquiring the database container shared across JVMs failed", e);
+            }
+            startHeartbeat();
+            return databaseServer.forDatabase(databaseName);
+        }
+
+        private DatabaseContainer attach() throws IOException {
+            if (!Files.exists(stateFile)) {
+                return null;
+            }
+            Properties state = new Properties();
+            try (InputStream in = Files.newInputStream(stateFile)) {
+                state.load(in);
+            }
+            String owner = state.getProperty(OWNER_KEY);
+            if (owner == null || !Files.exists(leaseDirectory.resolve(owner))) {
+                LOG.info("The JVM {} that started the shared database container has exited", owner);
+                Files.delete(stateFile);
+                return null;
+            }
+            AttachedDatabaseContainer attachedContainer = new AttachedDatabaseContainer(state);
+            try {
+                DatabaseAdministration.createAdminConnection(attachedContainer, attachedContainer.getMaintenanceDatabaseName()).close();
+                LOG.info("Attaching to the database container started by JVM {}", owner);
+                return attachedContainer;
+            } catch (SQLException e) {
+                LOG.warn("Connecting to the database container started by JVM {} failed", owner, e);
+                Files.delete(stateFile);
+                return null;
+            }
+        }
+
+        private DatabaseContainer start(CrossJvmShareableContainer candidate) throws IOException {
+            LOG.info("Starting a database container shared across JVMs in {}", directory);
+            try {
+                candidate.start();
+                candidate.retainOnJvmShutdown();
+            } catch (RuntimeException e) {
+                candidate.stop();
+                throw e;
+            }
+            startedContainer = candidate;
+            Properties state = new Properties();
+            AttachedDatabaseContainer.writeState(candidate, state);
+            state.setProperty(OWNER_KEY, JVM_ID);
+            try (OutputStream out = Files.newOutputStream(stateFile)) {
+                state.store(out, configurationKey);
+            }
+            return candidate;
+        }
+
+        void release() {
+            try {
+                DatabaseAdministration.dropDatabase(databaseServer, databaseName);
+            } catch (RuntimeException e) {
+                LOG.warn("Dropping database {} failed", databaseName, e);
+            }
+            try {
+                if (startedContainer == null) {
+                    // closes this JVM's network shaping proxies
+                    databaseServer.stop();
+                    try (FileChannel lockChannel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                        // closing the channel releases the lock
+                        lockChannel.lock();
+                        Files.deleteIfExists(leaseFile);
+                    }
+                    return;
+                }
+                awaitOtherLeases();
+            } catch (IOException e) {
+                LOG.warn("Releasing lease file {} failed", leaseFile, e);
+            }
+            if (startedContainer != null) {
+                startedContainer.stop();
+            }
+        }
+
+        // keeps the container running until the other JVMs have released it
+        private void awaitOtherLeases() throws IOException {
+            int loggedLeaseCount = -1;
+            while (true) {
+                int otherLeaseCount;
+                try (FileChannel lockChannel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                    // closing the channel releases the lock
+                    lockChannel.lock();
+                    removeExpiredLeases();
+                    otherLeaseCount = listLeases().size() - 1;
+                    if (otherLeaseCount <= 0) {
+                        Files.deleteIfExists(stateFile);
+                        Files.deleteIfExists(leaseFile);
+                        return;
+                    }
+                }
+                if (otherLeaseCount != loggedLeaseCount) {
+                    LOG.info("Waiting for {} other JVMs to release the shared database container", otherLeaseCount);
+                    loggedLeaseCount = otherLeaseCount;
+                }
+                try {
+                    Thread.sleep(RELEASE_POLL_INTERVAL_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        private void removeExpiredLeases() throws IOException {
+            long expiryTime = System.currentTimeMillis() - leaseTimeout.toMillis();
+            for (Path lease : listLeases()) {
+                try {
+                    if (Files.getLastModifiedTime(lease).toMillis() < expiryTime) {
+                        LOG.info("Removing expired lease {}", lease.getFileName());
+                        Files.deleteIfExists(lease);
+                    }
+                } catch (NoSuchFileException e) {
+                    // removed concurrently
+                }
+            }
+        }
+
+        private List<Path> listLeases() throws IOException {
+            List<Path> leases = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(leaseDirectory)) {
+                stream.forEach(leases::add);
+            }
+            return leases;
+        }
+    }
+}
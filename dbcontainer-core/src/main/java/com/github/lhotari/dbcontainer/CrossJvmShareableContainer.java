@@ -0,0 +1,43 @@
+package com.github.lhotari.dbcontainer;
+
+/**
+ * {@link DatabaseContainer} whose database server can keep running after the JVM that started it begins shutting
+ * down so that {@link CrossJvmContainerRegistry} can share the server with other JVMs.
+ */
+public interface CrossJvmShareableContainer extends DatabaseContainer {
+    /**
+     * Excludes the started docker containers from the cleanup that Testcontainers runs in a JVM shutdown hook.
+     * The containers are still removed when {@link #stop()} is called or when the JVM has exited.
+     */
+    void retainOnJvmShutdown();
+
+    /**
+     * Returns the R2DBC url that connects to the database server directly, without the network shaping proxy.
+     * The other JVMs read the direct urls from the state file and start their own proxies.
+     *
+     * @param databaseName the name of the database
+     * @return the R2DBC url
+     * @see #getDirectJdbcUrl(String)
+     */
+    default String getDirectR2dbcUrl(String databaseName) {
+        return getR2dbcUrl(databaseName);
+    }
+
+    /**
+     * Creates the database of a JVM on the shared database server. The default implementation clones the
+     * container's default database, which the JVMs don't connect to.
+     *
+     * @param databaseServer the started database server, possibly attached from the state file of another JVM
+     * @param databaseName   the name of the database to create
+     */
+    default void createJvmDatabase(DatabaseContainer databaseServer, String databaseName) {
+        DatabaseAdministration.createDatabase(databaseServer, databaseName, databaseServer.getDatabaseName());
+    }
+
+    /**
+     * @return the network shaping settings that the other JVMs apply to their connections, null for none
+     */
+    default NetworkShaping getNetworkShaping() {
+        return null;
+    }
+}
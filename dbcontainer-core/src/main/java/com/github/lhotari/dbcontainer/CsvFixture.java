@@ -0,0 +1,110 @@
+package com.github.lhotari.dbcontainer;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * CSV data to load into a table with {@link FixtureLoader}. Files with a ".gz" suffix are decompressed while loading.
+ * <p>
+ * The table name and the column names are used in the COPY statement as given, so they can be schema-qualified
+ * and quoted when needed.
+ */
+public class CsvFixture {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private final String tableName;
+    private final InputStreamSupplier inputStreamSupplier;
+    private final boolean gzipped;
+    private boolean header = true;
+    private char delimiter = ',';
+    private List<String> columns = Collections.emptyList();
+
+    /**
+     * Opens the input stream of the CSV data
+     */
+    @FunctionalInterface
+    public interface InputStreamSupplier {
+        InputStream open() throws IOException;
+    }
+
+    public CsvFixture(String tableName, InputStreamSupplier inputStreamSupplier, boolean gzipped) {
+        this.tableName = tableName;
+        this.inputStreamSupplier = inputStreamSupplier;
+        this.gzipped = gzipped;
+    }
+
+    /**
+     * Creates a fixture for a CSV file or a gzip compressed CSV file with the ".gz" suffix
+     *
+     * @param tableName the table to load the data into
+     * @param file      the file
+     * @return the fixture
+     */
+    public static CsvFixture fromFile(String tableName, Path file) {
+        return new CsvFixture(tableName, () -> Files.newInputStream(file), isGzipped(file.getFileName().toString()));
+    }
+
+    /**
+     * @param fileName the file name
+     * @return true if the file name has the ".gz" suffix
+     */
+    public static boolean isGzipped(String fileName) {
+        return fileName.endsWith(".gz");
+    }
+
+    /**
+     * @param header true if the first line contains column names and should be skipped, true by default
+     * @return this instance
+     */
+    public CsvFixture withHeader(boolean header) {
+        this.header = header;
+        return this;
+    }
+
+    public CsvFixture withDelimiter(char delimiter) {
+        this.delimiter = delimiter;
+        return this;
+    }
+
+    /**
+     * @param columns the columns in the order of the CSV fields, all columns of the table by default
+     * @return this instance
+     */
+    public CsvFixture withColumns(String... columns) {
+        this.columns = Collections.unmodifiableList(new ArrayList<>(Arrays.asList(columns)));
+        return this;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public boolean isHeader() {
+        return header;
+    }
+
+    public char getDelimiter() {
+        return delimiter;
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    String createCopyStatement() {
+        return "COPY " + tableName + (columns.isEmpty() ? "" : " (" + String.join(", ", columns) + ")")
+                + " FROM STDIN WITH (FORMAT csv, HEADER " + header + ", DELIMITER " + SqlIdentifiers.quoteLiteral(String.valueOf(delimiter)) + ")";
+    }
+
+    InputStream openInputStream() throws IOException {
+        InputStream inputStream = inputStreamSupplier.open();
+        return gzipped ? new GZIPInputStream(inputStream, BUFFER_SIZE) : new BufferedInputStream(inputStream, BUFFER_SIZE);
+    }
+}
@@ -0,0 +1,53 @@
+package com.github.lhotari.dbcontainer;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Optional interface of containers whose database server needs other implementations than the PostgreSQL
+ * defaults of {@link DatabaseAdministration#createDatabase}, {@link DatabaseSnapshots} and {@link QueryStatistics}. The helpers call these methods on the container
+ * that a {@link DatabaseContainerView} or a {@link DeferredDatabaseContainer} points to.
+ */
+public interface CustomDatabaseOperations extends DatabaseContainer {
+    /**
+     * Creates a new database in the database server from a template database
+     *
+     * @param databaseName         the name of the database to create
+     * @param templateDatabaseName the name of the template database
+     */
+    void createDatabase(String databaseName, String templateDatabaseName);
+
+    /**
+     * @return true if any database can be used as a template, false if only template0 and template1 can
+     */
+    boolean supportsTemplateDatabases();
+
+    /**
+     * Takes a named snapshot of a database in the database server. An existing snapshot with the same name is replaced.
+     *
+     * @param databaseName the name of the database
+     * @param snapshotName the name of the snapshot
+     * @return the time it took to take the snapshot
+     */
+    Duration snapshotDatabase(String databaseName, String snapshotName);
+
+    /**
+     * Restores a database in the database server to the state of a named snapshot
+     *
+     * @param databaseName the name of the database
+     * @param snapshotName the name of the snapshot
+     * @return the time it took to restore the snapshot
+     */
+    Duration restoreDatabase(String databaseName, String snapshotName);
+
+    /**
+     * Resets the query statistics of all databases of the server
+     */
+    void resetQueryStatistics();
+
+    /**
+     * @param databaseName the name of the database
+     * @return the statistics for each normalized statement, the statements with the most calls first
+     */
+    List<StatementStatistics> getQueryStatistics(String databaseName);
+}
@@ -0,0 +1,92 @@
+package com.github.lhotari.dbcontainer;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Creates pooled JDBC DataSources for {@link DatabaseContainer} instances. Requires HikariCP on the classpath.
+ */
+public final class DataSourcePools {
+    private static final Logger LOG = LoggerFactory.getLogger(DataSourcePools.class);
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
+    private DataSourcePools() {
+
+    }
+
+    /**
+     * Creates a pooled DataSource for the database of a started container. Containers that implement
+     * {@link PooledDataSourceProvider} create the DataSource themselves, other containers get a HikariCP pool.
+     *
+     * @param databaseContainer the started container
+     * @param settings          the pool settings
+     * @return the pooled DataSource, which has to be closed by the caller
+     */
+    public static DataSource createDataSource(DatabaseContainer databaseContainer, ConnectionPoolSettings settings) {
+        if (databaseContainer instanceof PooledDataSourceProvider) {
+            return ((PooledDataSourceProvider) databaseContainer).createPooledDataSource(settings);
+        }
+        return createPooledDataSource(databaseContainer, settings);
+    }
+
+    /**
+     * Creates a HikariCP pool for the database of a started container. The pool returns immediately and opens and
+     * validates the minimum number of idle connections in the background so that the first users of the pool
+     * don't have to wait for connections to be set up.
+     *
+     * @param databaseContainer the started container
+     * @param settings          the pool settings
+     * @return the pool, which has to be closed by the caller
+     */
+    public static HikariDataSource createPooledDataSource(DatabaseContainer databaseContainer, ConnectionPoolSettings settings) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(settings.getPoolName());
+        config.setJdbcUrl(databaseContainer.getJdbcUrl());
+        config.setUsername(databaseContainer.getDatabaseUser());
+        config.setPassword(databaseContainer.getDatabasePassword());
+        config.setMinimumIdle(settings.getEffectiveMinimumIdle());
+        config.setMaximumPoolSize(settings.getMaximumSize());
+        // connections are opened by the warmup instead of the constructor
+        config.setInitializationFailTimeout(-1);
+        HikariDataSource dataSource = new HikariDataSource(config);
+        CompletableFuture.runAsync(() -> warmUp(dataSource, settings.getEffectiveMinimumIdle()), DatabaseContainerExecutors.startupExecutor());
+        return dataSource;
+    }
+
+    private static void warmUp(HikariDataSource dataSource, int connectionCount) {
+        long startTime = System.nanoTime();
+        List<Connection> connections = new ArrayList<>();
+        try {
+            // hold the connections at the same time so that the pool has to open each of them
+            for (int i = 0; i < connectionCount; i++) {
+                Connection connection = dataSource.getConnection();
+                connections.add(connection);
+                if (!connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                    LOG.warn("Connection {} of pool {} isn't valid", i, dataSource.getPoolName());
+                }
+            }
+            LOG.info("Opened {} connections for pool {} in {} ms", connectionCount, dataSource.getPoolName(), (System.nanoTime() - startTime) / 1000000L);
+        } catch (SQLException | RuntimeException e) {
+            if (!dataSource.isClosed()) {
+                LOG.warn("Warming up pool {} failed", dataSource.getPoolName(), e);
+            }
+        } finally {
+            for (Connection connection : connections) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    // ignore, the pool evicts broken connections
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.github.lhotari.dbcontainer;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Opens connections to a {@link DatabaseContainer} and creates and drops databases in its database server.
+ * The PostgreSQL JDBC driver is used for connecting.
+ */
+public final class DatabaseAdministration {
+    private DatabaseAdministration() {
+
+    }
+
+    /**
+     * Opens a JDBC connection to a database of the container
+     *
+     * @param databaseContainer the started container
+     * @param databaseName      the name of the database
+     * @return a new connection
+     * @throws SQLException if connecting fails
+     */
+    public static Connection createConnection(DatabaseContainer databaseContainer, String databaseName) throws SQLException {
+        return DriverManager.getConnection(databaseContainer.getJdbcUrl(databaseName),
+                databaseContainer.getDatabaseUser(), databaseContainer.getDatabasePassword());
+    }
+
+    /**
+     * Opens a JDBC connection that bypasses network shaping. Administrative operations such as creating and
+     * dropping databases, snapshots and query statistics use these connections.
+     *
+     * @param databaseContainer the started container
+     * @param databaseName      the name of the database
+     * @return a new connection
+     * @throws SQLException if connecting fails
+     * @see DatabaseContainer#getDirectJdbcUrl(String)
+     */
+    public static Connection createAdminConnection(DatabaseContainer databaseContainer, String databaseName) throws SQLException {
+        return DriverManager.getConnection(databaseContainer.getDirectJdbcUrl(databaseName),
+                databaseContainer.getDatabaseUser(), databaseContainer.getDatabasePassword());
+    }
+
+    /**
+     * Executes SQL in a database of the container. The SQL can contain multiple statements separated with semicolons.
+     *
+     * @param databaseContainer the started container
+     * @param databaseName      the name of the database
+     * @param sql               the SQL to execute
+     */
+    public static void executeSql(DatabaseContainer databaseContainer, String databaseName, String sql) {
+        try (Connection connection = createConnection(databaseContainer, databaseName);
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        } catch (SQLException e) {
+            throw new DatabaseContainerException("Executing SQL in database '" + databaseName + "' failed", e);
+        }
+    }
+
+    /**
+     * Checks whether a database exists in the database server
+     *
+     * @param databaseContainer the started container
+     * @param databaseName      the name of the database
+     * @return true if the database exists
+     */
+    public static boolean databaseExists(DatabaseContainer databaseContainer, String databaseName) {
+        try (Connection connection = createAdminConnection(databaseContainer, databaseContainer.getMaintenanceDatabaseName());
+             PreparedStatement statement = connection.prepareStatement("SELECT 1 FROM pg_database WHERE datname = ?")) {
+            statement.setString(1, databaseName);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next();
+            }
+        } catch (SQLException e) {
+            throw new DatabaseContainerException("Checking existence of database '" + databaseName + "' failed", e);
+        }
+    }
+
+    /**
+     * Creates a new database by cloning a template database with "CREATE DATABASE ... TEMPLATE ...".
+     * There must not be any open connections to the template database while the database gets created.
+     * Containers that implement {@link CustomDatabaseOperations} create the database with their own mechanism.
+     *
+     * @param databaseContainer    the started container
+     * @param databaseName         the name of the database to create
+     * @param templateDatabaseName the name of the template database
+     */
+    public static void createDatabase(DatabaseContainer databaseContainer, String databaseName, String templateDatabaseName) {
+        CustomDatabaseOperations customOperations = findCustomOperations(databaseContainer);
+        if (customOperations != null) {
+            customOperations.createDatabase(databaseName, templateDatabaseName);
+        } else {
+            cloneDatabase(databaseContainer, databaseName, templateDatabaseName);
+        }
+    }
+
+    /**
+     * Creates a new database with "CREATE DATABASE ... TEMPLATE ..." without delegating to
+     * {@link CustomDatabaseOperations}. Used by the implementations of {@link CustomDatabaseOperations#createDatabase}.
+     *
+     * @param databaseContainer    the started container
+     * @param databaseName         the name of the database to create
+     * @param templateDatabaseName the name of the template database
+     */
+    public static void cloneDatabase(DatabaseContainer databaseContainer, String databaseName, String templateDatabaseName) {
+        try (Connection connection = createAdminConnection(databaseContainer, databaseContainer.getMaintenanceDatabaseName());
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE DATABASE " + SqlIdentifiers.quote(databaseName)
+                    + " TEMPLATE " + SqlIdentifiers.quote(templateDatabaseName));
+        } catch (SQLException e) {
+            throw new DatabaseContainerException("Creating database '" + databaseName + "' from template '"
+                    + templateDatabaseName + "' failed", e);
+        }
+    }
+
+    /**
+     * Checks whether the database server can use any database as a template. YugaByte YSQL only accepts
+     * template0 and template1.
+     *
+     * @param databaseContainer the container, doesn't have to be started
+     * @return true if any database can be used as a template
+     */
+    public static boolean supportsTemplateDatabases(DatabaseContainer databaseContainer) {
+        CustomDatabaseOperations customOperations = findCustomOperations(databaseContainer);
+        return customOperations == null || customOperations.supportsTemplateDatabases();
+    }
+
+    /**
+     * Drops a database after terminating the open connections to it
+     *
+     * @param databaseContainer the started container
+     * @param databaseName      the name of the database to drop
+     */
+    public static void dropDatabase(DatabaseContainer databaseContainer, String databaseName) {
+        try (Connection connection = createAdminConnection(databaseContainer, databaseContainer.getMaintenanceDatabaseName())) {
+            try (PreparedStatement statement = connection.prepareStatement("SELECT pg_terminate_backend(pid) FROM pg_stat_activity WHERE datname = ? AND pid <> pg_backend_pid()")) {
+                statement.setString(1, databaseName);
+                statement.execute();
+            }
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("DROP DATABASE IF EXISTS " + SqlIdentifiers.quote(databaseName));
+            }
+        } catch (SQLException e) {
+            throw new DatabaseContainerException("Dropping database '" + databaseName + "' failed", e);
+        }
+    }
+
+    /**
+     * Resolves views and deferred containers to the container that implements {@link CustomDatabaseOperations}
+     *
+     * @return the custom operations, null when the database server uses the PostgreSQL defaults
+     */
+    static CustomDatabaseOperations findCustomOperations(DatabaseContainer databaseContainer) {
+        while (true) {
+            if (databaseContainer instanceof CustomDatabaseOperations) {
+                return (CustomDatabaseOperations) databaseContainer;
+            } else if (databaseContainer instanceof DatabaseContainerView) {
+                databaseContainer = ((DatabaseContainerView) databaseContainer).getDatabaseContainer();
+            } else if (databaseContainer instanceof DeferredDatabaseContainer) {
+                databaseContainer = ((DeferredDatabaseContainer) databaseContainer).get();
+            } else {
+                return null;
+            }
+        }
+    }
+}
@@ -1,10 +1,61 @@
 package com.github.lhotari.dbcontainer;
 
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A database server that is started and stopped by the test infrastructure. The container describes how to connect
+ * to the server: the URLs, the credentials and the lifecycle. Operations that run SQL against the server are in
+ * {@link DatabaseAdministration}, {@link DatabaseSnapshots}, {@link QueryStatistics}, {@link FixtureLoader} and
+ * {@link DataSourcePools}.
+ */
 public interface DatabaseContainer extends AutoCloseable {
     String getJdbcUrl();
 
     String getR2dbcUrl();
 
+    /**
+     * Returns the JDBC url for connecting to another database in the same database server.
+     * The default implementation replaces the database name in {@link #getJdbcUrl()}.
+     *
+     * @param databaseName the name of the database
+     * @return the JDBC url
+     * @throws IllegalStateException when the JDBC url doesn't contain a database name
+     */
+    default String getJdbcUrl(String databaseName) {
+        return DatabaseUrls.withDatabaseName(getJdbcUrl(), databaseName);
+    }
+
+    /**
+     * Returns the R2DBC url for connecting to another database in the same database server.
+     * The default implementation replaces the database name in {@link #getR2dbcUrl()}.
+     *
+     * @param databaseName the name of the database
+     * @return the R2DBC url
+     * @throws IllegalStateException when the R2DBC url doesn't contain a database name
+     */
+    default String getR2dbcUrl(String databaseName) {
+        return DatabaseUrls.withDatabaseName(getR2dbcUrl(), databaseName);
+    }
+
+    /**
+     * Returns the name of the container's database. The default implementation reads it from {@link #getJdbcUrl()}.
+     *
+     * @return the database name
+     * @throws IllegalStateException when the JDBC url doesn't contain a database name
+     */
+    default String getDatabaseName() {
+        return DatabaseUrls.getDatabaseName(getJdbcUrl());
+    }
+
+    /**
+     * Returns the name of the database that is used for connecting when creating or dropping other databases
+     *
+     * @return the name of the maintenance database
+     */
+    default String getMaintenanceDatabaseName() {
+        return "postgres";
+    }
+
     String getDatabaseUser();
 
     String getDatabasePassword();
@@ -13,6 +64,69 @@ public interface DatabaseContainer extends AutoCloseable {
 
     void stop();
 
+    /**
+     * Starts the container in the background
+     *
+     * @return a future that completes with this container when it has started
+     */
+    default CompletableFuture<DatabaseContainer> startAsync() {
+        return CompletableFuture.supplyAsync(() -> {
+            start();
+            return this;
+        }, DatabaseContainerExecutors.startupExecutor());
+    }
+
+    /**
+     * Returns a key that describes the configuration of this container. Containers that return equal keys
+     * are interchangeable and can be shared by using {@link DatabaseContainerRegistry}.
+     * The default implementation returns a key that is unique to this instance so that the container never gets shared.
+     *
+     * @return the configuration key
+     */
+    default String getConfigurationKey() {
+        return getClass().getName() + "@" + Integer.toHexString(System.identityHashCode(this));
+    }
+
+    /**
+     * Returns the JDBC url that connects to the database server directly, without the proxy that shapes the
+     * connections when the container has been configured with network shaping
+     *
+     * @param databaseName the name of the database
+     * @return the JDBC url
+     */
+    default String getDirectJdbcUrl(String databaseName) {
+        return getJdbcUrl(databaseName);
+    }
+
+    /**
+     * Returns the traffic statistics of the proxy that shapes the connections to the database server.
+     * The statistics are available when the container has been configured with network shaping.
+     *
+     * @return the statistics of the connections, null when the connections aren't proxied
+     * @see ShapingProxy
+     */
+    default ShapingProxy.Statistics getNetworkStatistics() {
+        return null;
+    }
+
+    /**
+     * Resets the traffic statistics of the proxy that shapes the connections to the database server
+     */
+    default void resetNetworkStatistics() {
+
+    }
+
+    /**
+     * Returns a view of this container that points to another database in the same database server.
+     * The lifecycle of the view is controlled by this container; starting or stopping the view has no effect.
+     *
+     * @param databaseName the name of the database
+     * @return a container view for the database
+     */
+    default DatabaseContainer forDatabase(String databaseName) {
+        return new DatabaseContainerView(this, databaseName);
+    }
+
     @Override
     default void close() {
         stop();
@@ -0,0 +1,16 @@
+package com.github.lhotari.dbcontainer;
+
+/**
+ * Thrown when an operation on a {@link DatabaseContainer} fails
+ */
+public class DatabaseContainerException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public DatabaseContainerException(String message) {
+        super(message);
+    }
+
+    public DatabaseContainerException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
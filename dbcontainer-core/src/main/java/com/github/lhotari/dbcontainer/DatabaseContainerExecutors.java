@@ -0,0 +1,55 @@
+package com.github.lhotari.dbcontainer;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared executors for running database container operations in the background
+ */
+public final class DatabaseContainerExecutors {
+    private static final ExecutorService STARTUP_EXECUTOR = Executors.newCachedThreadPool(new DaemonThreadFactory("dbcontainer-startup"));
+    private static final int IMAGE_PULL_THREADS = 4;
+    private static final ExecutorService IMAGE_PULL_EXECUTOR = Executors.newFixedThreadPool(IMAGE_PULL_THREADS, new DaemonThreadFactory("dbcontainer-image-pull"));
+
+    private DatabaseContainerExecutors() {
+
+    }
+
+    /**
+     * Returns the executor for starting containers. The executor uses daemon threads so that it doesn't
+     * prevent the JVM from exiting.
+     *
+     * @return the executor
+     */
+    public static ExecutorService startupExecutor() {
+        return STARTUP_EXECUTOR;
+    }
+
+    /**
+     * Returns the executor for pulling images in the background. The number of parallel pulls is limited so that
+     * pre-pulled images don't saturate the network. The executor uses daemon threads.
+     *
+     * @return the executor
+     */
+    public static ExecutorService imagePullExecutor() {
+        return IMAGE_PULL_EXECUTOR;
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private final String namePrefix;
+        private final AtomicInteger threadCounter = new AtomicInteger();
+
+        DaemonThreadFactory(String namePrefix) {
+            this.namePrefix = namePrefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, namePrefix + "-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
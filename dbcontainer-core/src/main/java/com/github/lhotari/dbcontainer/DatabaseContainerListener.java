@@ -0,0 +1,21 @@
+package com.github.lhotari.dbcontainer;
+
+/**
+ * Listener that gets notified about the timed phases of starting and stopping database containers.
+ * <p>
+ * Listeners are registered with {@link DatabaseContainerListeners#addListener(DatabaseContainerListener)} or
+ * by listing the implementation class in a
+ * "META-INF/services/com.github.lhotari.dbcontainer.DatabaseContainerListener" file so that
+ * {@link java.util.ServiceLoader} finds it. Service implementations need a public no-argument constructor.
+ * <p>
+ * Listeners are called on the thread that completed the phase and must be thread-safe.
+ */
+@FunctionalInterface
+public interface DatabaseContainerListener {
+    /**
+     * Called when a phase has completed successfully or has failed
+     *
+     * @param event the event that describes the phase
+     */
+    void onPhaseCompleted(DatabaseContainerPhaseEvent event);
+}
@@ -0,0 +1,53 @@
+package com.github.lhotari.dbcontainer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ServiceLoader;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * JVM-wide registry of {@link DatabaseContainerListener} instances.
+ * <p>
+ * Listeners found with {@link ServiceLoader} are registered when the registry is first used.
+ */
+public final class DatabaseContainerListeners {
+    private static final Logger LOG = LoggerFactory.getLogger(DatabaseContainerListeners.class);
+    private static final DatabaseContainerListeners INSTANCE = new DatabaseContainerListeners();
+    private final CopyOnWriteArrayList<DatabaseContainerListener> listeners = new CopyOnWriteArrayList<>();
+
+    DatabaseContainerListeners() {
+        for (DatabaseContainerListener listener : ServiceLoader.load(DatabaseContainerListener.class, DatabaseContainerListeners.class.getClassLoader())) {
+            listeners.add(listener);
+        }
+    }
+
+    public static DatabaseContainerListeners getInstance() {
+        return INSTANCE;
+    }
+
+    public void addListener(DatabaseContainerListener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    public void removeListener(DatabaseContainerListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Notifies the registered listeners. An exception thrown by a listener is logged and doesn't prevent
+     * notifying the other listeners.
+     *
+     * @param event the event
+     */
+    public void phaseCompleted(DatabaseContainerPhaseEvent event) {
+        LOG.debug("{}", event);
+        for (DatabaseContainerListener listener : listeners) {
+            try {
+                listener.onPhaseCompleted(event);
+            } catch (RuntimeException e) {
+                LOG.warn("Database container listener {} failed", listener, e);
+            }
+        }
+    }
+}
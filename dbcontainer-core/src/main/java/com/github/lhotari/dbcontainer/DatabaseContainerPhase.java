@@ -0,0 +1,50 @@
+package com.github.lhotari.dbcontainer;
+
+/**
+ * Phases of starting and stopping a database container
+ */
+public enum DatabaseContainerPhase {
+    /**
+     * Creating the docker network that the containers of a multi-container database use
+     */
+    NETWORK_CREATION,
+    /**
+     * Resolving the docker image, which includes pulling it when it isn't available locally
+     */
+    IMAGE_RESOLUTION,
+    /**
+     * Starting a single container, which includes waiting for it to become ready
+     */
+    CONTAINER_START,
+    /**
+     * Copying the pre-initialized cluster template to the data directory of an embedded database
+     */
+    DATA_DIRECTORY_COPY,
+    /**
+     * Waiting for the database in a started container to accept connections
+     */
+    READINESS_WAIT,
+    /**
+     * Running the init scripts when the schema image cache doesn't contain an initialized image
+     */
+    SCHEMA_INITIALIZATION,
+    /**
+     * Committing an initialized container as an image to the schema image cache
+     */
+    IMAGE_COMMIT,
+    /**
+     * The complete start of the database container
+     */
+    START,
+    /**
+     * The complete stop of the database container
+     */
+    STOP;
+
+    /**
+     * @return the phase name in lower case with words separated by dashes, for example "image-resolution"
+     */
+    public String getDisplayName() {
+        return name().toLowerCase().replace('_', '-');
+    }
+}
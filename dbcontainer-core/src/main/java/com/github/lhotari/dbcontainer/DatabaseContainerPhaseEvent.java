@@ -0,0 +1,68 @@
+package com.github.lhotari.dbcontainer;
+
+import java.time.Duration;
+
+/**
+ * Describes a completed phase of starting or stopping a database container
+ */
+public final class DatabaseContainerPhaseEvent {
+    private final DatabaseContainer databaseContainer;
+    private final String imageName;
+    private final DatabaseContainerPhase phase;
+    private final String nodeName;
+    private final Duration duration;
+    private final Throwable failure;
+
+    public DatabaseContainerPhaseEvent(DatabaseContainer databaseContainer, String imageName, DatabaseContainerPhase phase,
+                                       String nodeName, Duration duration, Throwable failure) {
+        this.databaseContainer = databaseContainer;
+        this.imageName = imageName;
+        this.phase = phase;
+        this.nodeName = nodeName;
+        this.duration = duration;
+        this.failure = failure;
+    }
+
+    public DatabaseContainer getDatabaseContainer() {
+        return databaseContainer;
+    }
+
+    /**
+     * @return the docker image name of the database container
+     */
+    public String getImageName() {
+        return imageName;
+    }
+
+    public DatabaseContainerPhase getPhase() {
+        return phase;
+    }
+
+    /**
+     * @return the name of the node in a multi-container database, null when the phase concerns the whole database
+     */
+    public String getNodeName() {
+        return nodeName;
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+
+    /**
+     * @return the exception that made the phase fail, null when the phase completed successfully
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    public boolean isSuccessful() {
+        return failure == null;
+    }
+
+    @Override
+    public String toString() {
+        return phase.getDisplayName() + (nodeName != null ? " of " + nodeName : "") + " for " + imageName
+                + (isSuccessful() ? " completed" : " failed") + " in " + duration.toMillis() + " ms";
+    }
+}
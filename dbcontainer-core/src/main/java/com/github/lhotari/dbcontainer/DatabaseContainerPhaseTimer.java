@@ -0,0 +1,45 @@
+package com.github.lhotari.dbcontainer;
+
+import java.time.Duration;
+
+/**
+ * Times the phases of starting and stopping a database container and notifies the
+ * {@link DatabaseContainerListeners} about the completed phases.
+ */
+public final class DatabaseContainerPhaseTimer {
+    private final DatabaseContainer databaseContainer;
+    private final String imageName;
+
+    public DatabaseContainerPhaseTimer(DatabaseContainer databaseContainer, String imageName) {
+        this.databaseContainer = databaseContainer;
+        this.imageName = imageName;
+    }
+
+    /**
+     * Runs the action and notifies the listeners about the outcome and the duration of the phase.
+     * Exceptions thrown by the action are re-thrown after notifying the listeners.
+     *
+     * @param phase    the phase
+     * @param nodeName the name of the node in a multi-container database, null for the whole database
+     * @param action   the action that the phase consists of
+     */
+    public void time(DatabaseContainerPhase phase, String nodeName, Runnable action) {
+        long startTime = System.nanoTime();
+        Throwable failure = null;
+        try {
+            action.run();
+        } catch (Throwable t) {
+            failure = t;
+            sneakyThrow(t);
+        } finally {
+            DatabaseContainerListeners.getInstance().phaseCompleted(new DatabaseContainerPhaseEvent(databaseContainer,
+                    imageName, phase, nodeName, Duration.ofNanos(System.nanoTime() - startTime), failure));
+        }
+    }
+
+    // used to re-throw original exception instead of needing to wrap it with RuntimeException
+    @SuppressWarnings("unchecked")
+    private static <E extends Throwable> void sneakyThrow(Throwable e) throws E {
+        throw (E) e;
+    }
+}
@@ -0,0 +1,281 @@
+package com.github.lhotari.dbcontainer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Pool of started {@link DatabaseContainer} instances for exclusive use.
+ * <p>
+ * The pool starts containers in the background until the target number of idle containers is reached.
+ * {@link #acquire()} hands out an idle started container immediately when one is available and waits for a starting
+ * container otherwise. Acquired containers are returned with {@link #release(DatabaseContainer)} or thrown away with
+ * {@link #discard(DatabaseContainer)}. The pool starts replacement containers in the background to keep the target
+ * number of idle containers available.
+ */
+public class DatabaseContainerPool implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(DatabaseContainerPool.class);
+    private final Supplier<? extends DatabaseContainer> containerFactory;
+    private final int targetSize;
+    private final Deque<CompletableFuture<DatabaseContainer>> idleContainers = new ArrayDeque<>();
+    private final Set<DatabaseContainer> acquiredContainers = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final Thread shutdownHook = new Thread(this::close, "dbcontainer-pool-shutdown");
+    private boolean closed;
+
+    /**
+     * Creates the pool and starts filling it in the background
+     *
+     * @param containerFactory creates new containers that haven't been started
+     * @param targetSize       the number of idle started containers to keep available
+     */
+    public DatabaseContainerPool(Supplier<? extends DatabaseContainer> containerFactory, int targetSize) {
+        if (targetSize < 1) {
+            throw new IllegalArgumentException("targetSize must be at least 1");
+        }
+        this.containerFactory = containerFactory;
+        this.targetSize = targetSize;
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+        synchronized (this) {
+            replenish();
+        }
+    }
+
+    /**
+     * Acquires a started container, waiting for a container to start when there isn't an idle started container
+     *
+     * @return the started container
+     */
+    public DatabaseContainer acquire() {
+        return new DeferredDatabaseContainer(acquireAsync()).get();
+    }
+
+    /**
+     * Acquires a container without waiting for it to start
+     *
+     * @return a future that completes with the container when it has started
+     */
+    public CompletableFuture<DatabaseContainer> acquireAsync() {
+        long startTime = System.nanoTime();
+        CompletableFuture<DatabaseContainer> containerFuture;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("The pool has been closed");
+            }
+            containerFuture = takeIdleContainer();
+            replenish();
+        }
+        boolean hit = containerFuture.isDone() && !containerFuture.isCompletedExceptionally();
+        (hit ? hits : misses).incrementAndGet();
+        return containerFuture.thenApply(container -> {
+            recordWaitTime(System.nanoTime() - startTime);
+            synchronized (this) {
+                acquiredContainers.add(container);
+            }
+            return container;
+        });
+    }
+
+    /**
+     * Returns an acquired container to the pool so that it can be acquired again. The state of the database
+     * isn't reset. A container that isn't needed for reaching the target number of idle containers gets stopped.
+     *
+     * @param container the acquired container
+     */
+    public void release(DatabaseContainer container) {
+        boolean stop;
+        synchronized (this) {
+            if (!acquiredContainers.remove(container)) {
+                return;
+            }
+            stop = closed || idleContainers.size() >= targetSize;
+            if (!stop) {
+                idleContainers.addFirst(CompletableFuture.completedFuture(container));
+            }
+        }
+        if (stop) {
+            stopQuietly(container);
+        }
+    }
+
+    /**
+     * Stops an acquired container. The pool starts a replacement container in the background.
+     *
+     * @param container the acquired container
+     */
+    public void discard(DatabaseContainer container) {
+        synchronized (this) {
+            if (!acquiredContainers.remove(container)) {
+                return;
+            }
+            replenish();
+        }
+        stopQuietly(container);
+    }
+
+    /**
+     * @return statistics about the use of the pool
+     */
+    public Statistics getStatistics() {
+        int idleCount;
+        int acquiredCount;
+        synchronized (this) {
+            idleCount = idleContainers.size();
+            acquiredCount = acquiredContainers.size();
+        }
+        return new Statistics(hits.get(), misses.get(), totalWaitNanos.get() / 1000000L, maxWaitNanos.get() / 1000000L, idleCount, acquiredCount);
+    }
+
+    /**
+     * Stops all idle and acquired containers
+     */
+    @Override
+    public void close() {
+        List<CompletableFuture<DatabaseContainer>> containersToStop;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            containersToStop = new ArrayList<>(idleContainers);
+            idleContainers.clear();
+            for (DatabaseContainer container : acquiredContainers) {
+                containersToStop.add(CompletableFuture.completedFuture(container));
+            }
+            acquiredContainers.clear();
+        }
+        if (Thread.currentThread() != shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // the JVM is shutting down
+            }
+        }
+        LOG.info("Closing database container pool. {}", getStatistics());
+        for (CompletableFuture<DatabaseContainer> containerFuture : containersToStop) {
+            containerFuture.handle((container, throwable) -> {
+                if (container != null) {
+                    stopQuietly(container);
+                }
+                return null;
+            }).join();
+        }
+    }
+
+    private CompletableFuture<DatabaseContainer> takeIdleContainer() {
+        // prefer a container that has already started, otherwise the one that has been starting for the longest time
+        for (Iterator<CompletableFuture<DatabaseContainer>> iterator = idleContainers.iterator(); iterator.hasNext(); ) {
+            CompletableFuture<DatabaseContainer> containerFuture = iterator.next();
+            if (containerFuture.isCompletedExceptionally()) {
+                iterator.remove();
+            } else if (containerFuture.isDone()) {
+                iterator.remove();
+                return containerFuture;
+            }
+        }
+        CompletableFuture<DatabaseContainer> containerFuture = idleContainers.pollFirst();
+        return containerFuture != null ? containerFuture : startContainer();
+    }
+
+    private void replenish() {
+        while (!closed && idleContainers.size() < targetSize) {
+            idleContainers.addLast(startContainer());
+        }
+    }
+
+    private CompletableFuture<DatabaseContainer> startContainer() {
+        DatabaseContainer container = containerFactory.get();
+        CompletableFuture<DatabaseContainer> containerFuture = container.startAsync();
+        containerFuture.whenComplete((result, throwable) -> {
+            if (throwable != null) {
+                LOG.warn("Starting a pooled database container failed", throwable);
+                stopQuietly(container);
+            }
+        });
+        return containerFuture;
+    }
+
+    private void recordWaitTime(long waitNanos) {
+        totalWaitNanos.addAndGet(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    private static void stopQuietly(DatabaseContainer container) {
+        try {
+            container.stop();
+        } catch (RuntimeException e) {
+            LOG.warn("Stopping a pooled database container failed", e);
+        }
+    }
+
+    /**
+     * Statistics about the use of a {@link DatabaseContainerPool}
+     */
+    public static class Statistics {
+        private final long hits;
+        private final long misses;
+        private final long totalWaitMillis;
+        private final long maxWaitMillis;
+        private final int idleCount;
+        private final int acquiredCount;
+
+        Statistics(long hits, long misses, long totalWaitMillis, long maxWaitMillis, int idleCount, int acquiredCount) {
+            this.hits = hits;
+            this.misses = misses;
+            this.totalWaitMillis = totalWaitMillis;
+            this.maxWaitMillis = maxWaitMillis;
+            this.idleCount = idleCount;
+            this.acquiredCount = acquiredCount;
+        }
+
+        /**
+         * @return the number of acquisitions that got a started container without waiting
+         */
+        public long getHits() {
+            return hits;
+        }
+
+        /**
+         * @return the number of acquisitions that had to wait for a container to start
+         */
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getTotalWaitMillis() {
+            return totalWaitMillis;
+        }
+
+        public long getMaxWaitMillis() {
+            return maxWaitMillis;
+        }
+
+        public int getIdleCount() {
+            return idleCount;
+        }
+
+        public int getAcquiredCount() {
+            return acquiredCount;
+        }
+
+        @Override
+        public String toString() {
+            return "hits=" + hits + ", misses=" + misses + ", totalWaitMillis=" + totalWaitMillis
+                    + ", maxWaitMillis=" + maxWaitMillis + ", idle=" + idleCount + ", acquired=" + acquiredCount;
+        }
+    }
+}
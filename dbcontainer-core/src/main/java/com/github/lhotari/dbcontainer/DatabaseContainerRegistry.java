@@ -0,0 +1,155 @@
+package com.github.lhotari.dbcontainer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * JVM-wide registry that shares started {@link DatabaseContainer} instances.
+ * <p>
+ * Containers with equal {@link DatabaseContainer#getConfigurationKey()} values are considered equivalent.
+ * The first user that acquires a container for a configuration starts it and later users get the same running
+ * instance. The registry counts references and stops a container when the last user releases it or when the JVM
+ * shuts down.
+ */
+public final class DatabaseContainerRegistry {
+    private static final DatabaseContainerRegistry INSTANCE = new DatabaseContainerRegistry();
+    private final Map<String, Entry> entries = new HashMap<>();
+    private boolean shutdownHookRegistered;
+
+    DatabaseContainerRegistry() {
+
+    }
+
+    public static DatabaseContainerRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Acquires a started container that is equivalent to the given candidate container.
+     * The candidate is started and registered when there isn't an equivalent container in the registry.
+     * Otherwise the candidate is discarded without starting it.
+     *
+     * @param candidate a container that hasn't been started
+     * @return the shared started container
+     */
+    public DatabaseContainer acquire(DatabaseContainer candidate) {
+        return new DeferredDatabaseContainer(acquireAsync(candidate)).get();
+    }
+
+    /**
+     * Acquires a container that is equivalent to the given candidate container without waiting for it to start.
+     * The candidate is started in the background and registered when there isn't an equivalent container in the
+     * registry. Otherwise the candidate is discarded without starting it.
+     * A container that fails to start is removed from the registry and doesn't have to be released.
+     *
+     * @param candidate a container that hasn't been started
+     * @return a future that completes with the shared container when it has started
+     */
+    public CompletableFuture<DatabaseContainer> acquireAsync(DatabaseContainer candidate) {
+        String configurationKey = candidate.getConfigurationKey();
+        Entry entry;
+        synchronized (this) {
+            registerShutdownHook();
+            entry = entries.get(configurationKey);
+            if (entry == null) {
+                Entry newEntry = new Entry(configurationKey, candidate, candidate.startAsync());
+                entries.put(configurationKey, newEntry);
+                newEntry.started.whenComplete((result, throwable) -> {
+                    if (throwable != null) {
+                        removeFailedEntry(newEntry);
+                    }
+                });
+                entry = newEntry;
+            }
+            entry.referenceCount++;
+        }
+        return entry.started;
+    }
+
+    /**
+     * Releases a container that has been acquired with {@link #acquire(DatabaseContainer)} or
+     * {@link #acquireAsync(DatabaseContainer)}.
+     * The container is stopped when there are no remaining references to it.
+     *
+     * @param container the container to release
+     */
+    public void release(DatabaseContainer container) {
+        Entry entryToStop = null;
+        synchronized (this) {
+            for (Entry entry : entries.values()) {
+                if (entry.container == container) {
+                    if (--entry.referenceCount == 0) {
+                        entries.remove(entry.configurationKey);
+                        entryToStop = entry;
+                    }
+                    break;
+                }
+            }
+        }
+        if (entryToStop != null) {
+            Entry stoppedEntry = entryToStop;
+            // a container that is still starting gets stopped after the start has completed
+            stoppedEntry.started.handle((result, throwable) -> {
+                stoppedEntry.container.stop();
+                return null;
+            }).join();
+        }
+    }
+
+    private synchronized void removeFailedEntry(Entry entry) {
+        entries.remove(entry.configurationKey, entry);
+    }
+
+    /**
+     * Returns the number of references to a container that has been acquired from this registry
+     *
+     * @param container the container
+     * @return the number of references, 0 if the container isn't registered
+     */
+    public synchronized int getReferenceCount(DatabaseContainer container) {
+        for (Entry entry : entries.values()) {
+            if (entry.container == container) {
+                return entry.referenceCount;
+            }
+        }
+        return 0;
+    }
+
+    private void registerShutdownHook() {
+        if (!shutdownHookRegistered) {
+            Runtime.getRuntime().addShutdownHook(new Thread(this::stopAll, "dbcontainer-registry-shutdown"));
+            shutdownHookRegistered = true;
+        }
+    }
+
+    void stopAll() {
+        List<Entry> entriesToStop;
+        synchronized (this) {
+            entriesToStop = new ArrayList<>(entries.values());
+            entries.clear();
+        }
+        for (Entry entry : entriesToStop) {
+            try {
+                entry.container.stop();
+            } catch (RuntimeException e) {
+                // ignore, the JVM is shutting down
+            }
+        }
+    }
+
+    private static class Entry {
+        private final String configurationKey;
+        private final DatabaseContainer container;
+        private final CompletableFuture<DatabaseContainer> started;
+        private int referenceCount;
+
+        Entry(String configurationKey, DatabaseContainer container, CompletableFuture<DatabaseContainer> started) {
+            this.configurationKey = configurationKey;
+            this.container = container;
+            this.started = started;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.github.lhotari.dbcontainer;
+
+/**
+ * {@link DatabaseContainer} that points to a different database in the database server of another container.
+ * Starting and stopping the view has no effect on the underlying container.
+ */
+public class DatabaseContainerView implements DatabaseContainer {
+    private final DatabaseContainer databaseContainer;
+    private final String databaseName;
+
+    public DatabaseContainerView(DatabaseContainer databaseContainer, String databaseName) {
+        this.databaseContainer = databaseContainer;
+        this.databaseName = databaseName;
+    }
+
+    /**
+     * @return the container that this view points to
+     */
+    public DatabaseContainer getDatabaseContainer() {
+        return databaseContainer;
+    }
+
+    @Override
+    public String getJdbcUrl() {
+        return getJdbcUrl(databaseName);
+    }
+
+    @Override
+    public String getR2dbcUrl() {
+        return getR2dbcUrl(databaseName);
+    }
+
+    @Override
+    public String getJdbcUrl(String databaseName) {
+        return databaseContainer.getJdbcUrl(databaseName);
+    }
+
+    @Override
+    public String getR2dbcUrl(String databaseName) {
+        return databaseContainer.getR2dbcUrl(databaseName);
+    }
+
+    @Override
+    public String getDirectJdbcUrl(String databaseName) {
+        return databaseContainer.getDirectJdbcUrl(databaseName);
+    }
+
+    @Override
+    public String getDatabaseName() {
+        return databaseName;
+    }
+
+    @Override
+    public String getDatabaseUser() {
+        return databaseContainer.getDatabaseUser();
+    }
+
+    @Override
+    public String getDatabasePassword() {
+        return databaseContainer.getDatabasePassword();
+    }
+
+    @Override
+    public String getMaintenanceDatabaseName() {
+        return databaseContainer.getMaintenanceDatabaseName();
+    }
+
+    @Override
+    public ShapingProxy.Statistics getNetworkStatistics() {
+        return databaseContainer.getNetworkStatistics();
+    }
+
+    @Override
+    public void resetNetworkStatistics() {
+        databaseContainer.resetNetworkStatistics();
+    }
+
+    @Override
+    public void start() {
+
+    }
+
+    @Override
+    public void stop() {
+
+    }
+
+    @Override
+    public String getConfigurationKey() {
+        return databaseContainer.getConfigurationKey() + "/" + databaseName;
+    }
+}
@@ -0,0 +1,69 @@
+package com.github.lhotari.dbcontainer;
+
+import java.time.Duration;
+
+/**
+ * Takes and restores named snapshots of the databases of a {@link DatabaseContainer}.
+ * <p>
+ * By default the snapshots are template databases, see {@link TemplateDatabaseSnapshots}. Containers that
+ * implement {@link CustomDatabaseOperations} take the snapshots with their own mechanism.
+ */
+public final class DatabaseSnapshots {
+    private DatabaseSnapshots() {
+
+    }
+
+    /**
+     * Takes a named snapshot of the container's database. An existing snapshot with the same name is replaced.
+     *
+     * @param databaseContainer the started container
+     * @param snapshotName      the name of the snapshot
+     * @return the time it took to take the snapshot
+     */
+    public static Duration snapshot(DatabaseContainer databaseContainer, String snapshotName) {
+        return snapshotDatabase(databaseContainer, databaseContainer.getDatabaseName(), snapshotName);
+    }
+
+    /**
+     * Restores the container's database to the state of a named snapshot
+     *
+     * @param databaseContainer the started container
+     * @param snapshotName      the name of the snapshot
+     * @return the time it took to restore the snapshot
+     */
+    public static Duration restore(DatabaseContainer databaseContainer, String snapshotName) {
+        return restoreDatabase(databaseContainer, databaseContainer.getDatabaseName(), snapshotName);
+    }
+
+    /**
+     * Takes a named snapshot of a database in the container's database server. Open connections to the database
+     * get terminated.
+     *
+     * @param databaseContainer the started container
+     * @param databaseName      the name of the database
+     * @param snapshotName      the name of the snapshot
+     * @return the time it took to take the snapshot
+     */
+    public static Duration snapshotDatabase(DatabaseContainer databaseContainer, String databaseName, String snapshotName) {
+        CustomDatabaseOperations customOperations = DatabaseAdministration.findCustomOperations(databaseContainer);
+        return customOperations != null
+                ? customOperations.snapshotDatabase(databaseName, snapshotName)
+                : TemplateDatabaseSnapshots.snapshot(databaseContainer, databaseName, snapshotName);
+    }
+
+    /**
+     * Restores a database in the container's database server to the state of a named snapshot. Open connections
+     * to the database get terminated.
+     *
+     * @param databaseContainer the started container
+     * @param databaseName      the name of the database
+     * @param snapshotName      the name of the snapshot
+     * @return the time it took to restore the snapshot
+     */
+    public static Duration restoreDatabase(DatabaseContainer databaseContainer, String databaseName, String snapshotName) {
+        CustomDatabaseOperations customOperations = DatabaseAdministration.findCustomOperations(databaseContainer);
+        return customOperations != null
+                ? customOperations.restoreDatabase(databaseName, snapshotName)
+                : TemplateDatabaseSnapshots.restore(databaseContainer, databaseName, snapshotName);
+    }
+}
@@ -0,0 +1,41 @@
+package com.github.lhotari.dbcontainer;
+
+/**
+ * Helper for the database name in JDBC and R2DBC urls of the form "scheme://host:port/databaseName?parameters"
+ */
+final class DatabaseUrls {
+    private DatabaseUrls() {
+
+    }
+
+    /**
+     * @param url the JDBC or R2DBC url
+     * @return the database name of the url
+     * @throws IllegalStateException when the url doesn't contain a database name
+     */
+    static String getDatabaseName(String url) {
+        int[] range = findDatabaseName(url);
+        return url.substring(range[0], range[1]);
+    }
+
+    /**
+     * @param url          the JDBC or R2DBC url
+     * @param databaseName the database name to use
+     * @return the url with the database name replaced
+     * @throws IllegalStateException when the url doesn't contain a database name
+     */
+    static String withDatabaseName(String url, String databaseName) {
+        int[] range = findDatabaseName(url);
+        return url.substring(0, range[0]) + databaseName + url.substring(range[1]);
+    }
+
+    private static int[] findDatabaseName(String url) {
+        int authorityStart = url.indexOf("://");
+        int start = authorityStart != -1 ? url.indexOf('/', authorityStart + 3) + 1 : 0;
+        if (start == 0) {
+            throw new IllegalStateException("The url " + url + " doesn't contain a database name");
+        }
+        int end = url.indexOf('?', start);
+        return new int[]{start, end != -1 ? end : url.length()};
+    }
+}
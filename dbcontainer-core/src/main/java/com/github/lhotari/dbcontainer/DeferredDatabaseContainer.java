@@ -0,0 +1,142 @@
+package com.github.lhotari.dbcontainer;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * {@link DatabaseContainer} that delegates to a container that becomes available when a future completes.
+ * Calling any method blocks until the future has completed. This makes it possible to hand out a container
+ * while it is still starting in the background.
+ * <p>
+ * The lifecycle is controlled by the owner of the future: {@link #start()} waits for the container to become
+ * available and {@link #stop()} has no effect.
+ */
+public class DeferredDatabaseContainer implements DatabaseContainer {
+    private final CompletableFuture<DatabaseContainer> databaseContainerFuture;
+    private final Runnable demand;
+
+    public DeferredDatabaseContainer(CompletableFuture<DatabaseContainer> databaseContainerFuture) {
+        this(databaseContainerFuture, () -> { });
+    }
+
+    /**
+     * @param databaseContainerFuture completes with the container
+     * @param demand                  called before waiting for the container, for example for starting the container
+     *                                on first use, has to be idempotent
+     */
+    public DeferredDatabaseContainer(CompletableFuture<DatabaseContainer> databaseContainerFuture, Runnable demand) {
+        this.databaseContainerFuture = databaseContainerFuture;
+        this.demand = demand;
+    }
+
+    /**
+     * Returns the container, waiting for it to become available
+     *
+     * @return the container
+     */
+    public DatabaseContainer get() {
+        demand.run();
+        try {
+            return databaseContainerFuture.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new DatabaseContainerException("Starting the database container failed", cause);
+        }
+    }
+
+    /**
+     * @return true if the container is available without waiting
+     */
+    public boolean isAvailable() {
+        return databaseContainerFuture.isDone() && !databaseContainerFuture.isCompletedExceptionally();
+    }
+
+    public CompletableFuture<DatabaseContainer> getFuture() {
+        return databaseContainerFuture;
+    }
+
+    @Override
+    public String getJdbcUrl() {
+        return get().getJdbcUrl();
+    }
+
+    @Override
+    public String getR2dbcUrl() {
+        return get().getR2dbcUrl();
+    }
+
+    @Override
+    public String getJdbcUrl(String databaseName) {
+        return get().getJdbcUrl(databaseName);
+    }
+
+    @Override
+    public String getR2dbcUrl(String databaseName) {
+        return get().getR2dbcUrl(databaseName);
+    }
+
+    @Override
+    public String getDatabaseName() {
+        return get().getDatabaseName();
+    }
+
+    @Override
+    public String getMaintenanceDatabaseName() {
+        return get().getMaintenanceDatabaseName();
+    }
+
+    @Override
+    public String getDatabaseUser() {
+        return get().getDatabaseUser();
+    }
+
+    @Override
+    public String getDatabasePassword() {
+        return get().getDatabasePassword();
+    }
+
+    @Override
+    public void start() {
+        get();
+    }
+
+    @Override
+    public void stop() {
+
+    }
+
+    @Override
+    public CompletableFuture<DatabaseContainer> startAsync() {
+        return databaseContainerFuture;
+    }
+
+    @Override
+    public String getConfigurationKey() {
+        return get().getConfigurationKey();
+    }
+
+    @Override
+    public String getDirectJdbcUrl(String databaseName) {
+        return get().getDirectJdbcUrl(databaseName);
+    }
+
+    @Override
+    public ShapingProxy.Statistics getNetworkStatistics() {
+        return get().getNetworkStatistics();
+    }
+
+    @Override
+    public void resetNetworkStatistics() {
+        get().resetNetworkStatistics();
+    }
+
+    @Override
+    public DatabaseContainer forDatabase(String databaseName) {
+        return get().forDatabase(databaseName);
+    }
+}
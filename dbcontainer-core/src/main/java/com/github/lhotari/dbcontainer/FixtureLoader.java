@@ -0,0 +1,191 @@
+package com.github.lhotari.dbcontainer;
+
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Loads CSV fixtures into the tables of a database with the PostgreSQL COPY protocol. Works with Postgres and
+ * with YugaByte's YSQL API.
+ * <p>
+ * The tables are loaded in the order of the foreign keys between them: a table is loaded after the tables that
+ * it references. Tables that don't depend on each other are loaded in parallel, each with its own connection.
+ * Each COPY runs in its own transaction.
+ */
+public class FixtureLoader {
+    private static final Logger LOG = LoggerFactory.getLogger(FixtureLoader.class);
+    public static final int DEFAULT_PARALLELISM = 4;
+    private static final String FOREIGN_KEYS_QUERY = "SELECT child.relname, parent.relname FROM pg_constraint con "
+            + "JOIN pg_class child ON child.oid = con.conrelid "
+            + "JOIN pg_class parent ON parent.oid = con.confrelid "
+            + "WHERE con.contype = 'f' AND con.conrelid <> con.confrelid";
+    private final DatabaseContainer databaseContainer;
+    private int parallelism = DEFAULT_PARALLELISM;
+
+    public FixtureLoader(DatabaseContainer databaseContainer) {
+        this.databaseContainer = databaseContainer;
+    }
+
+    /**
+     * @param parallelism the maximum number of tables loaded at the same time
+     * @return this instance
+     */
+    public FixtureLoader withParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Loads the fixtures into the tables of a database
+     *
+     * @param databaseName the database
+     * @param fixtures     the fixtures to load
+     * @return the number of loaded rows for each table
+     */
+    public Map<String, Long> load(String databaseName, List<CsvFixture> fixtures) {
+        long startTime = System.nanoTime();
+        Map<String, Long> loadedRows = new LinkedHashMap<>();
+        for (List<CsvFixture> level : orderByForeignKeys(fixtures, readForeignKeys(databaseName))) {
+            loadInParallel(databaseName, level, loadedRows);
+        }
+        LOG.info("Loaded {} rows into {} tables in {} ms", loadedRows.values().stream().mapToLong(Long::longValue).sum(),
+                loadedRows.size(), (System.nanoTime() - startTime) / 1000000L);
+        return loadedRows;
+    }
+
+    private void loadInParallel(String databaseName, List<CsvFixture> fixtures, Map<String, Long> loadedRows) {
+        Queue<CsvFixture> pendingFixtures = new ConcurrentLinkedQueue<>(fixtures);
+        List<CompletableFuture<Void>> workers = new ArrayList<>();
+        for (int i = 0; i < Math.min(parallelism, fixtures.size()); i++) {
+            workers.add(CompletableFuture.runAsync(() -> loadPendingFixtures(databaseName, pendingFixtures, loadedRows),
+                    DatabaseContainerExecutors.startupExecutor()));
+        }
+        try {
+            CompletableFuture.allOf(workers.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            // the other workers stop after their current fixture since the failed worker cleared the queue
+            workers.forEach(worker -> worker.handle((result, throwable) -> null).join());
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private void loadPendingFixtures(String databaseName, Queue<CsvFixture> pendingFixtures, Map<String, Long> loadedRows) {
+        try (Connection connection = DatabaseAdministration.createConnection(databaseContainer, databaseName)) {
+            CsvFixture fixture;
+            while ((fixture = pendingFixtures.poll()) != null) {
+                long rows = copy(connection, fixture);
+                synchronized (loadedRows) {
+                    loadedRows.merge(fixture.getTableName(), rows, Long::sum);
+                }
+            }
+        } catch (SQLException e) {
+            pendingFixtures.clear();
+            throw new DatabaseContainerException("Connecting to database '" + databaseName + "' failed", e);
+        } catch (RuntimeException e) {
+            pendingFixtures.clear();
+            throw e;
+        }
+    }
+
+    private long copy(Connection connection, CsvFixture fixture) {
+        long startTime = System.nanoTime();
+        try (InputStream inputStream = fixture.openInputStream()) {
+            long rows = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(fixture.createCopyStatement(), inputStream);
+            LOG.debug("Loaded {} rows into {} in {} ms", rows, fixture.getTableName(), (System.nanoTime() - startTime) / 1000000L);
+            return rows;
+        } catch (SQLException | IOException e) {
+            throw new DatabaseContainerException("Loading fixture into table " + fixture.getTableName() + " failed", e);
+        }
+    }
+
+    /**
+     * Groups the fixtures into levels that are loaded one after another. A fixture is in a later level than the
+     * fixtures of the tables that its table references.
+     *
+     * @param fixtures         the fixtures in the order they were given
+     * @param referencedTables maps each table to the tables that it references with foreign keys
+     * @return the levels, the fixtures of a level can be loaded in parallel
+     */
+    static List<List<CsvFixture>> orderByForeignKeys(List<CsvFixture> fixtures, Map<String, Set<String>> referencedTables) {
+        Set<String> fixtureTables = new HashSet<>();
+        for (CsvFixture fixture : fixtures) {
+            fixtureTables.add(normalizeTableName(fixture.getTableName()));
+        }
+        List<List<CsvFixture>> levels = new ArrayList<>();
+        List<CsvFixture> remaining = new ArrayList<>(fixtures);
+        Set<String> loadedTables = new HashSet<>();
+        while (!remaining.isEmpty()) {
+            List<CsvFixture> level = new ArrayList<>();
+            for (CsvFixture fixture : remaining) {
+                boolean referencedTablesLoaded = true;
+                for (String referencedTable : referencedTables.getOrDefault(normalizeTableName(fixture.getTableName()), new HashSet<>())) {
+                    // tables without fixtures don't affect the order
+                    if (fixtureTables.contains(referencedTable) && !loadedTables.contains(referencedTable)) {
+                        referencedTablesLoaded = false;
+                        break;
+                    }
+                }
+                if (referencedTablesLoaded) {
+                    level.add(fixture);
+                }
+            }
+            if (level.isEmpty()) {
+                throw new DatabaseContainerException("Foreign keys between the fixture tables form a cycle: " + fixtureTables);
+            }
+            remaining.removeAll(level);
+            for (CsvFixture fixture : level) {
+                loadedTables.add(normalizeTableName(fixture.getTableName()));
+            }
+            levels.add(level);
+        }
+        return levels;
+    }
+
+    // maps each table to the tables that it references with foreign keys
+    private Map<String, Set<String>> readForeignKeys(String databaseName) {
+        Map<String, Set<String>> referencedTables = new HashMap<>();
+        try (Connection connection = DatabaseAdministration.createConnection(databaseContainer, databaseName);
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(FOREIGN_KEYS_QUERY)) {
+            while (resultSet.next()) {
+                referencedTables.computeIfAbsent(resultSet.getString(1), key -> new HashSet<>()).add(resultSet.getString(2));
+            }
+        } catch (SQLException e) {
+            throw new DatabaseContainerException("Reading foreign keys of database '" + databaseName + "' failed", e);
+        }
+        return referencedTables;
+    }
+
+    // converts a possibly schema-qualified and quoted table name to the name in pg_class
+    private static String normalizeTableName(String tableName) {
+        String name = tableName.substring(tableName.lastIndexOf('.') + 1).trim();
+        if (name.startsWith("\"") && name.endsWith("\"") && name.length() > 1) {
+            return name.substring(1, name.length() - 1).replace("\"\"", "\"");
+        }
+        return name.toLowerCase();
+    }
+}
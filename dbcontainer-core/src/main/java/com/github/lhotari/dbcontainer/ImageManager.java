@@ -0,0 +1,353 @@
+package com.github.lhotari.dbcontainer;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.exception.DockerException;
+import com.github.dockerjava.api.exception.NotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.images.RemoteDockerImage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resolves docker image tags to pinned digests and pulls images in the background.
+ * <p>
+ * A tag is resolved to a digest once: the image is pulled when it isn't available locally and the digest of the
+ * pulled image is stored in a properties file that is shared by all builds of the user. Later resolutions of the same
+ * tag use the stored digest and the local image without contacting the registry, also for moving tags such as
+ * "latest". Delete the digest cache file or call {@link #forget(String)} to pick up a new version of a moving tag.
+ * Concurrent JVMs update the file under a file lock so that their updates don't overwrite each other.
+ * <p>
+ * The database container classes start pre-pulling their default images when the classes are loaded, and
+ * {@link #resolve(String)} in the containers' start only waits when a pull is still in progress.
+ * <p>
+ * Images from Docker Hub can be pulled from a registry mirror instead, for example a local registry that stands in
+ * for Docker Hub in offline builds. The mirror is set with {@link #withRegistryMirror(String)} or the "registryMirror"
+ * system property or the DBCONTAINERS_REGISTRY_MIRROR environment variable. Requires Testcontainers on the classpath.
+ */
+public class ImageManager {
+    private static final Logger LOG = LoggerFactory.getLogger(ImageManager.class);
+    public static final Path DEFAULT_DIGEST_CACHE_FILE = Paths.get(System.getProperty("user.home"), ".dbcontainers", "image-digests.properties");
+    private static final ImageManager DEFAULT_INSTANCE = new ImageManager()
+            .withRegistryMirror(System.getProperty("registryMirror", System.getenv("DBCONTAINERS_REGISTRY_MIRROR")));
+    private static final String DOCKER_HUB_LIBRARY_PREFIX = "library/";
+    private final Map<String, CompletableFuture<String>> resolutions = new ConcurrentHashMap<>();
+    private volatile String registryMirror;
+    private volatile Path digestCacheFile = DEFAULT_DIGEST_CACHE_FILE;
+    private final AtomicLong digestCacheHits = new AtomicLong();
+    private final AtomicLong pulls = new AtomicLong();
+    private final AtomicLong waits = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+
+    /**
+     * @return the JVM-wide instance that the database containers use by default
+     */
+    public static ImageManager getDefault() {
+        return DEFAULT_INSTANCE;
+    }
+
+    /**
+     * @return true unless pre-pulling has been disabled with the "imagePrePull" system property
+     */
+    public static boolean isPrePullEnabled() {
+        return Boolean.parseBoolean(System.getProperty("imagePrePull", "true"));
+    }
+
+    /**
+     * Sets the registry that Docker Hub images are pulled from. Images that have an explicit registry in their name
+     * aren't affected.
+     *
+     * @param registryMirror the registry host and port, for example "localhost:5000", null for pulling from Docker Hub
+     * @return this instance
+     */
+    public ImageManager withRegistryMirror(String registryMirror) {
+        this.registryMirror = registryMirror != null && !registryMirror.trim().isEmpty() ? registryMirror.trim() : null;
+        return this;
+    }
+
+    /**
+     * @param digestCacheFile the properties file that maps image tags to pinned digests
+     * @return this instance
+     */
+    public ImageManager withDigestCacheFile(Path digestCacheFile) {
+        this.digestCacheFile = digestCacheFile;
+        return this;
+    }
+
+    /**
+     * @param imageName the image name with a tag, for example "postgres:11-alpine"
+     * @return the image name with the registry mirror applied
+     */
+    public String getImageName(String imageName) {
+        String mirror = registryMirror;
+        if (mirror == null || hasRegistry(imageName)) {
+            return imageName;
+        }
+        return mirror + "/" + (imageName.indexOf('/') == -1 ? DOCKER_HUB_LIBRARY_PREFIX : "") + imageName;
+    }
+
+    private static boolean hasRegistry(String imageName) {
+        int slash = imageName.indexOf('/');
+        if (slash == -1) {
+            return false;
+        }
+        String firstComponent = imageName.substring(0, slash);
+        return firstComponent.contains(".") || firstComponent.contains(":") || firstComponent.equals("localhost");
+    }
+
+    /**
+     * Starts resolving and pulling images in the background. Failures are logged and resolved again by
+     * {@link #resolve(String)}.
+     *
+     * @param imageNames the image names with tags
+     */
+    public void prePull(String... imageNames) {
+        for (String imageName : imageNames) {
+            resolveAsync(imageName).whenComplete((pinnedImageName, throwable) -> {
+                if (throwable != null) {
+                    LOG.warn("Pre-pulling {} failed", imageName, throwable);
+                }
+            });
+        }
+    }
+
+    /**
+     * Resolves the image in the background. Concurrent resolutions of the same image share the same pull.
+     *
+     * @param imageName the image name with a tag
+     * @return a future that completes with the pinned image name, or the image name when the image has no digest
+     */
+    public CompletableFuture<String> resolveAsync(String imageName) {
+        String mirroredImageName = getImageName(imageName);
+        CompletableFuture<String> resolution = resolutions.computeIfAbsent(mirroredImageName, name ->
+                CompletableFuture.supplyAsync(() -> resolveImage(name), DatabaseContainerExecutors.imagePullExecutor()));
+        // failed resolutions are retried on the next call, for example when docker wasn't available yet
+        resolution.whenComplete((pinnedImageName, throwable) -> {
+            if (throwable != null) {
+                resolutions.remove(mirroredImageName, resolution);
+            }
+        });
+        return resolution;
+    }
+
+    /**
+     * Resolves the image, waiting for a pull in progress
+     *
+     * @param imageName the image name with a tag
+     * @return the pinned image name, or the image name when the image has no digest
+     */
+    public String resolve(String imageName) {
+        CompletableFuture<String> resolution = resolveAsync(imageName);
+        boolean waiting = !resolution.isDone();
+        if (waiting) {
+            LOG.info("Waiting for the pull of {} to complete", imageName);
+        }
+        long startTime = System.nanoTime();
+        try {
+            return resolution.join();
+        } catch (CompletionException e) {
+            throw new DatabaseContainerException("Resolving image " + imageName + " failed", e.getCause());
+        } finally {
+            if (waiting) {
+                waits.incrementAndGet();
+                totalWaitNanos.addAndGet(System.nanoTime() - startTime);
+            }
+        }
+    }
+
+    /**
+     * Removes the pinned digest of an image so that the next resolution in a new JVM checks the registry again
+     *
+     * @param imageName the image name with a tag
+     */
+    public void forget(String imageName) {
+        updateDigestCache(getImageName(imageName), null);
+    }
+
+    private String resolveImage(String imageName) {
+        if (imageName.contains("@")) {
+            pullIfMissing(imageName);
+            return imageName;
+        }
+        String pinnedImageName = readDigestCache().getProperty(imageName);
+        if (pinnedImageName != null) {
+            try {
+                pullIfMissing(pinnedImageName);
+                digestCacheHits.incrementAndGet();
+                LOG.debug("Resolved {} to {} from the digest cache", imageName, pinnedImageName);
+                return pinnedImageName;
+            } catch (RuntimeException e) {
+                LOG.warn("Pulling the pinned image {} failed, resolving {} again", pinnedImageName, imageName, e);
+            }
+        }
+        pullIfMissing(imageName);
+        String repository = getRepository(imageName);
+        List<String> repoDigests = DockerClientFactory.instance().client().inspectImageCmd(imageName).exec().getRepoDigests();
+        pinnedImageName = repoDigests == null ? null : repoDigests.stream()
+                .filter(repoDigest -> repoDigest.startsWith(repository + "@"))
+                .findFirst()
+                .orElse(null);
+        if (pinnedImageName == null) {
+            // a locally built or loaded image that hasn't been pulled from a registry
+            LOG.info("{} has no digest, using the image without pinning", imageName);
+            return imageName;
+        }
+        updateDigestCache(imageName, pinnedImageName);
+        LOG.info("Pinned {} to {}", imageName, pinnedImageName);
+        return pinnedImageName;
+    }
+
+    private static String getRepository(String imageName) {
+        int tagSeparator = imageName.lastIndexOf(':');
+        return tagSeparator > imageName.lastIndexOf('/') ? imageName.substring(0, tagSeparator) : imageName;
+    }
+
+    private void pullIfMissing(String imageName) {
+        if (!imageExists(imageName)) {
+            long startTime = System.nanoTime();
+            try {
+                new RemoteDockerImage(imageName).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DatabaseContainerException("Interrupted while pulling " + imageName, e);
+            } catch (ExecutionException e) {
+                throw new DatabaseContainerException("Pulling " + imageName + " failed", e.getCause());
+            }
+            pulls.incrementAndGet();
+            LOG.info("Pulled {} in {} ms", imageName, (System.nanoTime() - startTime) / 1000000L);
+        }
+    }
+
+    private static boolean imageExists(String imageName) {
+        DockerClient dockerClient = DockerClientFactory.instance().client();
+        try {
+            dockerClient.inspectImageCmd(imageName).exec();
+            return true;
+        } catch (NotFoundException e) {
+            return false;
+        } catch (DockerException e) {
+            LOG.debug("Inspecting {} failed", imageName, e);
+            return false;
+        }
+    }
+
+    private Properties readDigestCache() {
+        Properties digests = new Properties();
+        Path file = digestCacheFile;
+        if (Files.exists(file)) {
+            try (InputStream inputStream = Files.newInputStream(file)) {
+                digests.load(inputStream);
+            } catch (IOException e) {
+                LOG.warn("Reading the image digest cache {} failed", file, e);
+            }
+        }
+        return digests;
+    }
+
+    private synchronized void updateDigestCache(String imageName, String pinnedImageName) {
+        Path file = digestCacheFile;
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            // the file gets replaced, so the JVMs lock a separate file while they read, modify and write it
+            Path lockFile = file.resolveSibling(file.getFileName() + ".lock");
+            try (FileChannel lockChannel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                // closing the channel releases the lock
+                lockChannel.lock();
+                Properties digests = readDigestCache();
+                if (pinnedImageName != null) {
+                    digests.setProperty(imageName, pinnedImageName);
+                } else if (digests.remove(imageName) == null) {
+                    return;
+                }
+                // other JVMs read the file without the lock, replace it atomically
+                Path tempFile = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+                try (OutputStream outputStream = Files.newOutputStream(tempFile)) {
+                    digests.store(outputStream, "docker image tags pinned to digests by dbcontainers");
+                }
+                try {
+                    Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        } catch (IOException e) {
+            // the image is usable without the stored digest, the next JVM resolves the tag again
+            LOG.warn("Writing the image digest cache {} failed", file, e);
+        }
+    }
+
+    /**
+     * @return statistics about the image resolutions in this JVM
+     */
+    public Statistics getStatistics() {
+        return new Statistics(digestCacheHits.get(), pulls.get(), waits.get(), totalWaitNanos.get() / 1000000L);
+    }
+
+    /**
+     * Statistics about the use of an {@link ImageManager}
+     */
+    public static class Statistics {
+        private final long digestCacheHits;
+        private final long pulls;
+        private final long waits;
+        private final long totalWaitMillis;
+
+        Statistics(long digestCacheHits, long pulls, long waits, long totalWaitMillis) {
+            this.digestCacheHits = digestCacheHits;
+            this.pulls = pulls;
+            this.waits = waits;
+            this.totalWaitMillis = totalWaitMillis;
+        }
+
+        /**
+         * @return the number of resolutions that used a pinned digest without contacting the registry
+         */
+        public long getDigestCacheHits() {
+            return digestCacheHits;
+        }
+
+        /**
+         * @return the number of images that were pulled
+         */
+        public long getPulls() {
+            return pulls;
+        }
+
+        /**
+         * @return the number of container starts that had to wait for a pull in progress
+         */
+        public long getWaits() {
+            return waits;
+        }
+
+        public long getTotalWaitMillis() {
+            return totalWaitMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "digestCacheHits=" + digestCacheHits + ", pulls=" + pulls + ", waits=" + waits
+                    + ", totalWaitMillis=" + totalWaitMillis;
+        }
+    }
+}
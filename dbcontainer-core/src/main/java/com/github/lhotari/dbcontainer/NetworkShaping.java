@@ -0,0 +1,83 @@
+package com.github.lhotari.dbcontainer;
+
+import java.time.Duration;
+
+/**
+ * Settings for the {@link ShapingProxy} that makes a local database behave like a database that is further away
+ * on the network. The latency and the bandwidth limit apply to each connection separately.
+ */
+public class NetworkShaping {
+    private Duration latency = Duration.ZERO;
+    private Duration jitter = Duration.ZERO;
+    private long bandwidthBytesPerSecond;
+
+    public static NetworkShaping create() {
+        return new NetworkShaping();
+    }
+
+    /**
+     * Sets the latency that is added to each round trip. Half of it is added to the data that is sent to the
+     * server and half of it to the data that is received from the server.
+     *
+     * @param latency the added round trip time
+     * @return this instance
+     */
+    public NetworkShaping withLatency(Duration latency) {
+        if (latency.isNegative()) {
+            throw new IllegalArgumentException("latency must not be negative");
+        }
+        this.latency = latency;
+        return this;
+    }
+
+    /**
+     * Sets the maximum random variation that is added to the latency of the data sent in each direction.
+     * The order of the data is preserved.
+     *
+     * @param jitter the maximum added variation
+     * @return this instance
+     */
+    public NetworkShaping withJitter(Duration jitter) {
+        if (jitter.isNegative()) {
+            throw new IllegalArgumentException("jitter must not be negative");
+        }
+        this.jitter = jitter;
+        return this;
+    }
+
+    /**
+     * @param bandwidthBytesPerSecond the maximum throughput of each connection in each direction, 0 for unlimited
+     * @return this instance
+     */
+    public NetworkShaping withBandwidth(long bandwidthBytesPerSecond) {
+        if (bandwidthBytesPerSecond < 0) {
+            throw new IllegalArgumentException("bandwidthBytesPerSecond must not be negative");
+        }
+        this.bandwidthBytesPerSecond = bandwidthBytesPerSecond;
+        return this;
+    }
+
+    public Duration getLatency() {
+        return latency;
+    }
+
+    public Duration getJitter() {
+        return jitter;
+    }
+
+    public long getBandwidthBytesPerSecond() {
+        return bandwidthBytesPerSecond;
+    }
+
+    /**
+     * @return true if the settings delay or throttle the traffic, false if the proxy only counts it
+     */
+    public boolean isShaping() {
+        return !latency.isZero() || !jitter.isZero() || bandwidthBytesPerSecond > 0;
+    }
+
+    @Override
+    public String toString() {
+        return "latency=" + latency.toMillis() + "ms, jitter=" + jitter.toMillis() + "ms, bandwidth=" + bandwidthBytesPerSecond + "B/s";
+    }
+}
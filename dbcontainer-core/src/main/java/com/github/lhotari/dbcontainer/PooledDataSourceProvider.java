@@ -0,0 +1,15 @@
+package com.github.lhotari.dbcontainer;
+
+import javax.sql.DataSource;
+
+/**
+ * Optional interface of containers that create their pooled DataSources themselves, for example to route
+ * read-only transactions to replicas. See {@link DataSourcePools#createDataSource(DatabaseContainer, ConnectionPoolSettings)}.
+ */
+public interface PooledDataSourceProvider extends DatabaseContainer {
+    /**
+     * @param settings the pool settings
+     * @return the pooled DataSource, which has to be closed by the caller
+     */
+    DataSource createPooledDataSource(ConnectionPoolSettings settings);
+}
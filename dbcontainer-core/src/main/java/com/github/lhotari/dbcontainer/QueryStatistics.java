@@ -0,0 +1,141 @@
+package com.github.lhotari.dbcontainer;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and resets the statistics of the pg_stat_statements extension. The extension is created in the database
+ * when it doesn't exist. The server has to load the pg_stat_statements library at startup.
+ */
+public final class QueryStatistics {
+    private QueryStatistics() {
+
+    }
+
+    /**
+     * Resets the statistics of all databases of the container's database server.
+     * The container has to be started with query statistics enabled.
+     *
+     * @param databaseContainer the started container
+     */
+    public static void reset(DatabaseContainer databaseContainer) {
+        CustomDatabaseOperations customOperations = DatabaseAdministration.findCustomOperations(databaseContainer);
+        if (customOperations != null) {
+            customOperations.resetQueryStatistics();
+            return;
+        }
+        try (Connection connection = DatabaseAdministration.createAdminConnection(databaseContainer, databaseContainer.getDatabaseName())) {
+            reset(connection);
+        } catch (SQLException e) {
+            throw new DatabaseContainerException("Resetting query statistics failed", e);
+        }
+    }
+
+    /**
+     * Returns the statistics of the statements that have been executed in the container's database since the
+     * statistics were reset. The container has to be started with query statistics enabled.
+     *
+     * @param databaseContainer the started container
+     * @return the statistics for each normalized statement, the statements with the most calls first
+     */
+    public static List<StatementStatistics> fetch(DatabaseContainer databaseContainer) {
+        return fetch(databaseContainer, databaseContainer.getDatabaseName());
+    }
+
+    /**
+     * Returns the statistics of the statements that have been executed in a database of the container since the
+     * statistics were reset. The container has to be started with query statistics enabled.
+     *
+     * @param databaseContainer the started container
+     * @param databaseName      the name of the database
+     * @return the statistics for each normalized statement, the statements with the most calls first
+     */
+    public static List<StatementStatistics> fetch(DatabaseContainer databaseContainer, String databaseName) {
+        CustomDatabaseOperations customOperations = DatabaseAdministration.findCustomOperations(databaseContainer);
+        if (customOperations != null) {
+            return customOperations.getQueryStatistics(databaseName);
+        }
+        try (Connection connection = DatabaseAdministration.createAdminConnection(databaseContainer, databaseName)) {
+            return fetch(connection);
+        } catch (SQLException e) {
+            throw new DatabaseContainerException("Reading query statistics of database '" + databaseName + "' failed", e);
+        }
+    }
+
+    /**
+     * Resets the statistics of all databases of the server
+     *
+     * @param connection a connection to the server
+     * @throws SQLException if resetting fails
+     */
+    public static void reset(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE EXTENSION IF NOT EXISTS pg_stat_statements");
+            statement.execute("SELECT pg_stat_statements_reset()");
+        }
+    }
+
+    /**
+     * Reads the statistics of the database of the connection. The statements that read pg_stat_statements are left out.
+     *
+     * @param connection a connection to the database
+     * @return the statistics for each normalized statement, the statements with the most calls first
+     * @throws SQLException if reading fails
+     */
+    public static List<StatementStatistics> fetch(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE EXTENSION IF NOT EXISTS pg_stat_statements");
+            List<StatementStatistics> statistics = new ArrayList<>();
+            try (ResultSet resultSet = statement.executeQuery("SELECT * FROM pg_stat_statements "
+                    + "WHERE dbid = (SELECT oid FROM pg_database WHERE datname = current_database()) ORDER BY calls DESC")) {
+                // the total_time column was renamed to total_exec_time in PostgreSQL 13
+                String totalTimeColumn = hasColumn(resultSet.getMetaData(), "total_exec_time") ? "total_exec_time" : "total_time";
+                while (resultSet.next()) {
+                    String query = resultSet.getString("query");
+                    if (query == null || query.contains("pg_stat_statements")) {
+                        continue;
+                    }
+                    statistics.add(new StatementStatistics(query, resultSet.getLong("calls"),
+                            resultSet.getDouble(totalTimeColumn), resultSet.getLong("rows")));
+                }
+            }
+            return statistics;
+        }
+    }
+
+    /**
+     * Combines the statistics of several servers by summing up the statistics of equal statements
+     *
+     * @param statisticsOfServers the statistics of each server
+     * @return the combined statistics, the statements with the most calls first
+     */
+    public static List<StatementStatistics> merge(List<List<StatementStatistics>> statisticsOfServers) {
+        Map<String, StatementStatistics> merged = new LinkedHashMap<>();
+        for (List<StatementStatistics> statistics : statisticsOfServers) {
+            for (StatementStatistics statementStatistics : statistics) {
+                merged.merge(statementStatistics.getQuery(), statementStatistics, (a, b) -> new StatementStatistics(a.getQuery(),
+                        a.getCalls() + b.getCalls(), a.getTotalTimeMillis() + b.getTotalTimeMillis(), a.getRows() + b.getRows()));
+            }
+        }
+        List<StatementStatistics> result = new ArrayList<>(merged.values());
+        result.sort(Comparator.comparingLong(StatementStatistics::getCalls).reversed());
+        return result;
+    }
+
+    private static boolean hasColumn(ResultSetMetaData metaData, String columnName) throws SQLException {
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            if (columnName.equals(metaData.getColumnName(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,224 @@
+package com.github.lhotari.dbcontainer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * DataSource that sends read-only transactions to replicas and all other transactions to the primary.
+ * <p>
+ * The returned connections are proxies that don't get a physical connection until the first statement is created.
+ * Calling {@link Connection#setReadOnly(boolean)} with true before that, as Spring's transaction managers do for
+ * {@code @Transactional(readOnly = true)}, makes the proxy take the physical connection from one of the replica
+ * DataSources in round robin order. The auto-commit mode and the transaction isolation that are set before the
+ * first statement are applied to the physical connection.
+ * <p>
+ * Closing the routing DataSource closes the target DataSources that are AutoCloseable, for example pools.
+ */
+public class ReadWriteRoutingDataSource implements DataSource, AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(ReadWriteRoutingDataSource.class);
+    private final DataSource primaryDataSource;
+    private final List<DataSource> replicaDataSources;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final AtomicLong primaryConnections = new AtomicLong();
+    private final AtomicLong replicaConnections = new AtomicLong();
+
+    /**
+     * @param primaryDataSource  the DataSource for read-write transactions
+     * @param replicaDataSources the DataSources for read-only transactions, the primary is used when empty
+     */
+    public ReadWriteRoutingDataSource(DataSource primaryDataSource, List<? extends DataSource> replicaDataSources) {
+        this.primaryDataSource = primaryDataSource;
+        this.replicaDataSources = new ArrayList<>(replicaDataSources);
+    }
+
+    @Override
+    public Connection getConnection() {
+        return (Connection) Proxy.newProxyInstance(ReadWriteRoutingDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new RoutingConnectionHandler());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("The routing DataSource uses the credentials of the target DataSources");
+    }
+
+    /**
+     * @return the number of physical connections taken from the primary DataSource
+     */
+    public long getPrimaryConnectionCount() {
+        return primaryConnections.get();
+    }
+
+    /**
+     * @return the number of physical connections taken from the replica DataSources
+     */
+    public long getReplicaConnectionCount() {
+        return replicaConnections.get();
+    }
+
+    private Connection getTargetConnection(boolean readOnly) throws SQLException {
+        if (readOnly && !replicaDataSources.isEmpty()) {
+            replicaConnections.incrementAndGet();
+            int index = Math.floorMod(nextReplica.getAndIncrement(), replicaDataSources.size());
+            return replicaDataSources.get(index).getConnection();
+        }
+        primaryConnections.incrementAndGet();
+        return primaryDataSource.getConnection();
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return primaryDataSource.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        primaryDataSource.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        primaryDataSource.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return primaryDataSource.getLoginTimeout();
+    }
+
+    @Override
+    public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return primaryDataSource.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Cannot unwrap to " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    @Override
+    public void close() {
+        List<DataSource> dataSources = new ArrayList<>(replicaDataSources);
+        dataSources.add(primaryDataSource);
+        for (DataSource dataSource : dataSources) {
+            if (dataSource instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) dataSource).close();
+                } catch (Exception e) {
+                    LOG.warn("Closing {} failed", dataSource, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Records the connection settings until the first statement decides the target of the connection
+     */
+    private class RoutingConnectionHandler implements InvocationHandler {
+        private Connection target;
+        private boolean readOnly;
+        private Boolean autoCommit;
+        private Integer transactionIsolation;
+        private boolean closed;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "ReadWriteRoutingDataSource connection" + (target != null ? " to " + target : "");
+                case "isClosed":
+                    return closed;
+                case "close":
+                    closed = true;
+                    if (target != null) {
+                        target.close();
+                    }
+                    return null;
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("The connection is closed");
+            }
+            if (target == null) {
+                switch (method.getName()) {
+                    case "setReadOnly":
+                        readOnly = (Boolean) args[0];
+                        return null;
+                    case "isReadOnly":
+                        return readOnly;
+                    case "setAutoCommit":
+                        autoCommit = (Boolean) args[0];
+                        return null;
+                    case "getAutoCommit":
+                        if (autoCommit != null) {
+                            return autoCommit;
+                        }
+                        break;
+                    case "setTransactionIsolation":
+                        transactionIsolation = (Integer) args[0];
+                        return null;
+                    case "getTransactionIsolation":
+                        if (transactionIsolation != null) {
+                            return transactionIsolation;
+                        }
+                        break;
+                    case "commit":
+                    case "rollback":
+                        if (args == null) {
+                            // nothing has been executed
+                            return null;
+                        }
+                        break;
+                    case "getWarnings":
+                        return null;
+                    case "clearWarnings":
+                        return null;
+                    default:
+                        break;
+                }
+                target = getTargetConnection(readOnly);
+                if (readOnly) {
+                    target.setReadOnly(true);
+                }
+                if (autoCommit != null && target.getAutoCommit() != autoCommit) {
+                    target.setAutoCommit(autoCommit);
+                }
+                if (transactionIsolation != null) {
+                    target.setTransactionIsolation(transactionIsolation);
+                }
+            }
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.github.lhotari.dbcontainer;
+
+import com.github.dockerjava.api.model.HostConfig;
+
+/**
+ * CPU, memory and shared memory limits of a database container. The database containers apply the limits to their
+ * docker containers and derive matching engine settings from them, so that the database uses its budget instead
+ * of sizing itself from the resources of the whole host.
+ * <p>
+ * Data on tmpfs, which is used in fast test mode, counts towards the memory limit.
+ */
+public class ResourceProfile {
+    public static final long MEGABYTE = 1024L * 1024L;
+    private double cpus;
+    private long memoryBytes;
+    private long sharedMemoryBytes;
+
+    public static ResourceProfile create() {
+        return new ResourceProfile();
+    }
+
+    /**
+     * @param cpus the number of CPUs the container can use, fractions are allowed, 0 for unlimited
+     * @return this instance
+     */
+    public ResourceProfile withCpus(double cpus) {
+        if (cpus < 0) {
+            throw new IllegalArgumentException("cpus must not be negative");
+        }
+        this.cpus = cpus;
+        return this;
+    }
+
+    /**
+     * Sets the memory limit of the container. Swap isn't allowed so the limit is a hard limit.
+     *
+     * @param memoryBytes the memory limit in bytes, 0 for unlimited
+     * @return this instance
+     */
+    public ResourceProfile withMemory(long memoryBytes) {
+        if (memoryBytes != 0 && memoryBytes < 64 * MEGABYTE) {
+            throw new IllegalArgumentException("memoryBytes must be at least 64 MB");
+        }
+        this.memoryBytes = memoryBytes;
+        return this;
+    }
+
+    /**
+     * Sets the size of /dev/shm in the container. By default, a quarter of the memory limit is used when
+     * the memory is limited and docker's default of 64 MB otherwise.
+     *
+     * @param sharedMemoryBytes the size of /dev/shm in bytes, 0 for the default
+     * @return this instance
+     */
+    public ResourceProfile withSharedMemory(long sharedMemoryBytes) {
+        if (sharedMemoryBytes < 0) {
+            throw new IllegalArgumentException("sharedMemoryBytes must not be negative");
+        }
+        this.sharedMemoryBytes = sharedMemoryBytes;
+        return this;
+    }
+
+    public double getCpus() {
+        return cpus;
+    }
+
+    public long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    /**
+     * @return the size of /dev/shm, 0 when docker's default is used
+     */
+    public long getSharedMemoryBytes() {
+        if (sharedMemoryBytes == 0 && memoryBytes > 0) {
+            return memoryBytes / 4;
+        }
+        return sharedMemoryBytes;
+    }
+
+    /**
+     * @return the CPU limit rounded up to whole CPUs, 0 when CPUs aren't limited
+     */
+    public int getWholeCpus() {
+        return (int) Math.ceil(cpus);
+    }
+
+    /**
+     * Applies the limits to the host configuration of a container that is being created
+     *
+     * @param hostConfig the host configuration
+     */
+    public void applyTo(HostConfig hostConfig) {
+        if (cpus > 0) {
+            hostConfig.withNanoCPUs(Math.round(cpus * 1_000_000_000L));
+        }
+        if (memoryBytes > 0) {
+            hostConfig.withMemory(memoryBytes);
+            hostConfig.withMemorySwap(memoryBytes);
+        }
+        if (getSharedMemoryBytes() > 0) {
+            hostConfig.withShmSize(getSharedMemoryBytes());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "cpus=" + cpus + ", memory=" + memoryBytes / MEGABYTE + "MB, shm=" + getSharedMemoryBytes() / MEGABYTE + "MB";
+    }
+}
@@ -0,0 +1,240 @@
+package com.github.lhotari.dbcontainer;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.exception.DockerException;
+import com.github.dockerjava.api.exception.NotFoundException;
+import com.github.dockerjava.api.model.Image;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.DockerClientFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of docker images that contain a database initialized with init scripts.
+ * <p>
+ * After a container has been initialized, its file system is committed as an image. The image name contains a hash
+ * of the container configuration and the contents of the init scripts, so a later start with the same configuration
+ * and scripts can boot the initialized image directly. Changing the scripts or the base image version results in a
+ * new hash.
+ * <p>
+ * Stale images are evicted after each commit: images that are older than the maximum age are removed, and the
+ * oldest images are removed when there are more images than the maximum number of images. Images used by running
+ * containers are kept.
+ * <p>
+ * Data in docker volumes isn't included in committed images, so the containers have to keep the database files
+ * outside of the volumes declared by the base image. Requires Testcontainers on the classpath.
+ */
+public class SchemaImageCache {
+    private static final Logger LOG = LoggerFactory.getLogger(SchemaImageCache.class);
+    public static final String CACHE_LABEL = "com.github.lhotari.dbcontainers.schema-cache";
+    public static final String REPOSITORY = "dbcontainers-schema-cache";
+    public static final int DEFAULT_MAX_IMAGES = 20;
+    public static final Duration DEFAULT_MAX_AGE = Duration.ofDays(14);
+    private static final SchemaImageCache DEFAULT_INSTANCE = new SchemaImageCache();
+    private volatile int maxImages = DEFAULT_MAX_IMAGES;
+    private volatile Duration maxAge = DEFAULT_MAX_AGE;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @return the JVM-wide cache instance that the database containers use by default
+     */
+    public static SchemaImageCache getDefault() {
+        return DEFAULT_INSTANCE;
+    }
+
+    /**
+     * @param maxImages the maximum number of cached images to keep
+     * @return this instance
+     */
+    public SchemaImageCache withMaxImages(int maxImages) {
+        if (maxImages < 1) {
+            throw new IllegalArgumentException("maxImages must be at least 1");
+        }
+        this.maxImages = maxImages;
+        return this;
+    }
+
+    /**
+     * @param maxAge the maximum age of a cached image
+     * @return this instance
+     */
+    public SchemaImageCache withMaxAge(Duration maxAge) {
+        this.maxAge = maxAge;
+        return this;
+    }
+
+    /**
+     * Computes the hash that identifies an initialized image
+     *
+     * @param configuration the configuration of the container, including the base image name
+     * @param initScripts   the contents of the init scripts
+     * @return the hash
+     */
+    public static String hash(String configuration, List<String> initScripts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(configuration.getBytes(StandardCharsets.UTF_8));
+            for (String initScript : initScripts) {
+                digest.update((byte) 0);
+                digest.update(initScript.getBytes(StandardCharsets.UTF_8));
+            }
+            StringBuilder hash = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hash.append(String.format("%02x", b));
+            }
+            return hash.substring(0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param nodeName the name of the node, for example "postgres" or "yb-tserver-test"
+     * @param hash     the hash computed with {@link #hash(String, List)}
+     * @return the name of the cached image
+     */
+    public String getImageName(String nodeName, String hash) {
+        return REPOSITORY + ":" + nodeName + "-" + hash;
+    }
+
+    /**
+     * Checks whether all of the images are in the cache and records a hit or a miss
+     *
+     * @param imageNames the names of the images of the nodes of a database container
+     * @return true if all images are in the cache
+     */
+    public boolean lookup(List<String> imageNames) {
+        for (String imageName : imageNames) {
+            if (!imageExists(imageName)) {
+                misses.incrementAndGet();
+                LOG.info("Schema image cache miss for {}. {}", imageName, getStatistics());
+                return false;
+            }
+        }
+        hits.incrementAndGet();
+        LOG.info("Schema image cache hit for {}. {}", imageNames, getStatistics());
+        return true;
+    }
+
+    private boolean imageExists(String imageName) {
+        try {
+            DockerClientFactory.instance().client().inspectImageCmd(imageName).exec();
+            return true;
+        } catch (NotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Commits the file system of an initialized container as a cached image and evicts stale images.
+     * A failing commit is logged and ignored.
+     *
+     * @param containerId the id of the initialized container
+     * @param imageName   the image name from {@link #getImageName(String, String)}
+     */
+    public void commit(String containerId, String imageName) {
+        DockerClient dockerClient = DockerClientFactory.instance().client();
+        Map<String, String> labels = new HashMap<>();
+        labels.put(CACHE_LABEL, "true");
+        // the committed image inherits the labels of the container, the resource reaper of the
+        // Testcontainers session would remove the image at exit if the session label was kept
+        labels.put(DockerClientFactory.TESTCONTAINERS_SESSION_ID_LABEL, REPOSITORY);
+        int tagSeparator = imageName.lastIndexOf(':');
+        try {
+            dockerClient.commitCmd(containerId)
+                    .withRepository(imageName.substring(0, tagSeparator))
+                    .withTag(imageName.substring(tagSeparator + 1))
+                    .withLabels(labels)
+                    .exec();
+        } catch (DockerException e) {
+            // the container is usable without the cached image, later starts run the init scripts again
+            LOG.warn("Committing {} to the schema image cache failed", imageName, e);
+            return;
+        }
+        commits.incrementAndGet();
+        LOG.info("Committed {} to the schema image cache", imageName);
+        evict();
+    }
+
+    /**
+     * Removes cached images that are older than the maximum age and the oldest images that exceed
+     * the maximum number of images
+     */
+    public void evict() {
+        DockerClient dockerClient = DockerClientFactory.instance().client();
+        List<Image> images = new ArrayList<>(dockerClient.listImagesCmd().withLabelFilter(CACHE_LABEL).exec());
+        images.sort(Comparator.comparing(Image::getCreated).reversed());
+        long oldestAllowedCreated = System.currentTimeMillis() / 1000L - maxAge.getSeconds();
+        for (int i = 0; i < images.size(); i++) {
+            Image image = images.get(i);
+            if (i >= maxImages || image.getCreated() < oldestAllowedCreated) {
+                try {
+                    dockerClient.removeImageCmd(image.getId()).withForce(true).exec();
+                    evictions.incrementAndGet();
+                    LOG.info("Evicted schema image {}", image.getRepoTags() != null ? String.join(", ", image.getRepoTags()) : image.getId());
+                } catch (DockerException e) {
+                    // the image is in use by a container
+                    LOG.debug("Cannot evict schema image {}", image.getId(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return statistics about the use of the cache in this JVM
+     */
+    public Statistics getStatistics() {
+        return new Statistics(hits.get(), misses.get(), commits.get(), evictions.get());
+    }
+
+    /**
+     * Statistics about the use of a {@link SchemaImageCache}
+     */
+    public static class Statistics {
+        private final long hits;
+        private final long misses;
+        private final long commits;
+        private final long evictions;
+
+        Statistics(long hits, long misses, long commits, long evictions) {
+            this.hits = hits;
+            this.misses = misses;
+            this.commits = commits;
+            this.evictions = evictions;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getCommits() {
+            return commits;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        @Override
+        public String toString() {
+            return "hits=" + hits + ", misses=" + misses + ", commits=" + commits + ", evictions=" + evictions;
+        }
+    }
+}
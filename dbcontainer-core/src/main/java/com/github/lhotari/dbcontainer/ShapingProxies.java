@@ -0,0 +1,55 @@
+package com.github.lhotari.dbcontainer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@link ShapingProxy} instances of a database container, one for each endpoint of the container.
+ * Proxies are started when an endpoint is first requested and closed together when the container stops.
+ */
+public class ShapingProxies implements AutoCloseable {
+    private final NetworkShaping shaping;
+    private final Map<String, ShapingProxy> proxies = new LinkedHashMap<>();
+
+    public ShapingProxies(NetworkShaping shaping) {
+        this.shaping = shaping;
+    }
+
+    /**
+     * Returns the proxy for an endpoint, starting it when it hasn't been started
+     *
+     * @param host the host of the endpoint
+     * @param port the port of the endpoint
+     * @return the proxy
+     */
+    public synchronized ShapingProxy forEndpoint(String host, int port) {
+        return proxies.computeIfAbsent(host + ":" + port, key -> new ShapingProxy(host, port, shaping));
+    }
+
+    /**
+     * @return the combined statistics of all proxies
+     */
+    public synchronized ShapingProxy.Statistics getStatistics() {
+        ShapingProxy.Statistics statistics = new ShapingProxy.Statistics(0, 0, 0, 0);
+        for (ShapingProxy proxy : proxies.values()) {
+            statistics = statistics.plus(proxy.getStatistics());
+        }
+        return statistics;
+    }
+
+    public synchronized void resetStatistics() {
+        proxies.values().forEach(ShapingProxy::resetStatistics);
+    }
+
+    @Override
+    public void close() {
+        List<ShapingProxy> proxiesToClose;
+        synchronized (this) {
+            proxiesToClose = new ArrayList<>(proxies.values());
+            proxies.clear();
+        }
+        proxiesToClose.forEach(ShapingProxy::close);
+    }
+}
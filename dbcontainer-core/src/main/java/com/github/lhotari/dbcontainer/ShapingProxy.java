@@ -0,0 +1,483 @@
+package com.github.lhotari.dbcontainer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TCP proxy that forwards the connections it accepts on a local port to a database endpoint, adding the latency,
+ * jitter and bandwidth limits of {@link NetworkShaping} to each connection. The proxy counts the connections,
+ * the bytes sent in each direction and the round trips, which are responses from the server that follow data
+ * sent by the client.
+ * <p>
+ * All connections are handled by a single thread with a NIO selector. Without shaping, the data is written to the
+ * other side as soon as it has been read, so the proxy only adds a copy between the sockets.
+ */
+public class ShapingProxy implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(ShapingProxy.class);
+    static final String LOOPBACK_ADDRESS = "127.0.0.1";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // reading from a connection pauses while this much data is waiting to be sent
+    private static final int MAX_QUEUED_BYTES = 1024 * 1024;
+    private final InetSocketAddress target;
+    private final boolean shaping;
+    private final long oneWayLatencyNanos;
+    private final long jitterNanos;
+    private final long bandwidthBytesPerSecond;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final Set<Direction> delayedDirections = new HashSet<>();
+    private final Thread thread;
+    private final AtomicLong connections = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong roundTrips = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * Starts a proxy that listens on a random free port of the loopback interface
+     *
+     * @param targetHost the host of the database endpoint
+     * @param targetPort the port of the database endpoint
+     * @param shaping    the shaping settings
+     */
+    public ShapingProxy(String targetHost, int targetPort, NetworkShaping shaping) {
+        this.target = new InetSocketAddress(targetHost, targetPort);
+        this.shaping = shaping.isShaping();
+        this.oneWayLatencyNanos = shaping.getLatency().toNanos() / 2;
+        this.jitterNanos = shaping.getJitter().toNanos();
+        this.bandwidthBytesPerSecond = shaping.getBandwidthBytesPerSecond();
+        try {
+            selector = Selector.open();
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(InetAddress.getByName(LOOPBACK_ADDRESS), 0));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            throw new DatabaseContainerException("Starting a proxy for " + targetHost + ":" + targetPort + " failed", e);
+        }
+        thread = new Thread(this::run, "dbcontainer-shaping-proxy-" + getPort());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public String getHost() {
+        return LOOPBACK_ADDRESS;
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * @return the traffic that has passed through the proxy since it was started or the statistics were reset
+     */
+    public Statistics getStatistics() {
+        return new Statistics(connections.get(), bytesSent.get(), bytesReceived.get(), roundTrips.get());
+    }
+
+    public void resetStatistics() {
+        connections.set(0);
+        bytesSent.set(0);
+        bytesReceived.set(0);
+        roundTrips.set(0);
+    }
+
+    /**
+     * Stops accepting connections and closes the open connections
+     */
+    @Override
+    public void close() {
+        closed = true;
+        selector.wakeup();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        try {
+            while (!closed) {
+                long timeoutMillis = processDelayedDirections();
+                if (timeoutMillis < 0) {
+                    selector.select();
+                } else if (timeoutMillis == 0) {
+                    selector.selectNow();
+                } else {
+                    selector.select(timeoutMillis);
+                }
+                for (Iterator<SelectionKey> iterator = selector.selectedKeys().iterator(); iterator.hasNext(); ) {
+                    SelectionKey key = iterator.next();
+                    iterator.remove();
+                    if (key.isValid()) {
+                        handle(key);
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (!closed) {
+                LOG.warn("Proxy for {} failed", target, e);
+            }
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                closeQuietly(key);
+            }
+            try {
+                selector.close();
+                serverChannel.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    // sends the delayed data that is due and returns the time until the next data is due, -1 for no data
+    private long processDelayedDirections() {
+        long now = System.nanoTime();
+        long nextReleaseNanos = Long.MAX_VALUE;
+        for (Direction direction : new HashSet<>(delayedDirections)) {
+            direction.flush(now);
+            Chunk head = direction.queue.peekFirst();
+            if (head == null) {
+                delayedDirections.remove(direction);
+            } else if (!direction.waitingForWritable) {
+                nextReleaseNanos = Math.min(nextReleaseNanos, head.releaseNanos);
+            }
+        }
+        if (nextReleaseNanos == Long.MAX_VALUE) {
+            return -1;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(nextReleaseNanos - now + 999_999L));
+    }
+
+    private void handle(SelectionKey key) {
+        if (key.isAcceptable()) {
+            accept();
+            return;
+        }
+        Connection connection = (Connection) key.attachment();
+        try {
+            if (key.isConnectable()) {
+                connection.finishConnect();
+                return;
+            }
+            if (key.isWritable()) {
+                (key == connection.clientKey ? connection.toClient : connection.toServer).flush(System.nanoTime());
+            }
+            if (key.isValid() && key.isReadable()) {
+                (key == connection.clientKey ? connection.toServer : connection.toClient).read();
+            }
+        } catch (IOException e) {
+            connection.close();
+        }
+    }
+
+    private void accept() {
+        SocketChannel client = null;
+        try {
+            client = serverChannel.accept();
+            if (client == null) {
+                return;
+            }
+            client.configureBlocking(false);
+            client.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            SocketChannel server = SocketChannel.open();
+            server.configureBlocking(false);
+            server.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Connection connection = new Connection(client, server);
+            // the client isn't read until the connection to the server has been established
+            connection.clientKey = client.register(selector, 0, connection);
+            connection.serverKey = server.register(selector, 0, connection);
+            if (server.connect(target)) {
+                connection.connected();
+            } else {
+                connection.serverKey.interestOps(SelectionKey.OP_CONNECT);
+            }
+            connections.incrementAndGet();
+        } catch (IOException e) {
+            LOG.warn("Accepting a connection to {} failed", target, e);
+            if (client != null) {
+                try {
+                    client.close();
+                } catch (IOException closeException) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    private static void closeQuietly(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    private static void setInterest(SelectionKey key, int operation, boolean enabled) {
+        if (key.isValid()) {
+            key.interestOps(enabled ? key.interestOps() | operation : key.interestOps() & ~operation);
+        }
+    }
+
+    private class Connection {
+        private final SocketChannel client;
+        private final SocketChannel server;
+        private final Direction toServer;
+        private final Direction toClient;
+        private SelectionKey clientKey;
+        private SelectionKey serverKey;
+        private boolean awaitingResponse;
+
+        Connection(SocketChannel client, SocketChannel server) {
+            this.client = client;
+            this.server = server;
+            this.toServer = new Direction(this, true);
+            this.toClient = new Direction(this, false);
+        }
+
+        void finishConnect() throws IOException {
+            if (server.finishConnect()) {
+                connected();
+            }
+        }
+
+        void connected() {
+            serverKey.interestOps(SelectionKey.OP_READ);
+            clientKey.interestOps(SelectionKey.OP_READ);
+        }
+
+        void countTraffic(boolean sentToServer, int byteCount) {
+            if (sentToServer) {
+                bytesSent.addAndGet(byteCount);
+                awaitingResponse = true;
+            } else {
+                bytesReceived.addAndGet(byteCount);
+                if (awaitingResponse) {
+                    roundTrips.incrementAndGet();
+                    awaitingResponse = false;
+                }
+            }
+        }
+
+        void closeIfDone() {
+            if (toServer.outputShutdown && toClient.outputShutdown) {
+                close();
+            }
+        }
+
+        void close() {
+            closeQuietly(clientKey);
+            closeQuietly(serverKey);
+            delayedDirections.remove(toServer);
+            delayedDirections.remove(toClient);
+        }
+    }
+
+    private class Direction {
+        private final Connection connection;
+        private final boolean toServer;
+        private final Deque<Chunk> queue = new ArrayDeque<>();
+        private ByteBuffer readBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private int queuedBytes;
+        private long lastReleaseNanos;
+        private long bandwidthAvailableNanos;
+        private boolean endOfStream;
+        private boolean outputShutdown;
+        private boolean waitingForWritable;
+
+        Direction(Connection connection, boolean toServer) {
+            this.connection = connection;
+            this.toServer = toServer;
+        }
+
+        SocketChannel source() {
+            return toServer ? connection.client : connection.server;
+        }
+
+        SocketChannel sink() {
+            return toServer ? connection.server : connection.client;
+        }
+
+        SelectionKey sourceKey() {
+            return toServer ? connection.clientKey : connection.serverKey;
+        }
+
+        SelectionKey sinkKey() {
+            return toServer ? connection.serverKey : connection.clientKey;
+        }
+
+        void read() throws IOException {
+            int byteCount = source().read(readBuffer);
+            if (byteCount < 0) {
+                endOfStream = true;
+                setInterest(sourceKey(), SelectionKey.OP_READ, false);
+                flush(System.nanoTime());
+                return;
+            }
+            if (byteCount == 0) {
+                return;
+            }
+            connection.countTraffic(toServer, byteCount);
+            readBuffer.flip();
+            if (!shaping && queue.isEmpty()) {
+                sink().write(readBuffer);
+                if (!readBuffer.hasRemaining()) {
+                    // the buffer is reused when the data could be written right away
+                    readBuffer.clear();
+                    return;
+                }
+            }
+            long releaseNanos = shaping ? computeReleaseTime(byteCount) : 0L;
+            queue.addLast(new Chunk(readBuffer, releaseNanos));
+            queuedBytes += readBuffer.remaining();
+            readBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+            if (queuedBytes >= MAX_QUEUED_BYTES) {
+                setInterest(sourceKey(), SelectionKey.OP_READ, false);
+            }
+            if (shaping) {
+                delayedDirections.add(this);
+            } else {
+                flush(System.nanoTime());
+            }
+        }
+
+        private long computeReleaseTime(int byteCount) {
+            long now = System.nanoTime();
+            long transmittedNanos = now;
+            if (bandwidthBytesPerSecond > 0) {
+                transmittedNanos = Math.max(now, bandwidthAvailableNanos) + byteCount * TimeUnit.SECONDS.toNanos(1) / bandwidthBytesPerSecond;
+                bandwidthAvailableNanos = transmittedNanos;
+            }
+            long jitter = jitterNanos > 0 ? ThreadLocalRandom.current().nextLong(jitterNanos + 1) : 0L;
+            // data sent later never overtakes data sent earlier
+            lastReleaseNanos = Math.max(lastReleaseNanos, transmittedNanos + oneWayLatencyNanos + jitter);
+            return lastReleaseNanos;
+        }
+
+        void flush(long now) {
+            try {
+                while (!queue.isEmpty()) {
+                    Chunk chunk = queue.peekFirst();
+                    if (chunk.releaseNanos > now) {
+                        break;
+                    }
+                    int remaining = chunk.data.remaining();
+                    sink().write(chunk.data);
+                    queuedBytes -= remaining - chunk.data.remaining();
+                    if (chunk.data.hasRemaining()) {
+                        waitingForWritable = true;
+                        setInterest(sinkKey(), SelectionKey.OP_WRITE, true);
+                        return;
+                    }
+                    queue.pollFirst();
+                }
+                waitingForWritable = false;
+                setInterest(sinkKey(), SelectionKey.OP_WRITE, false);
+                if (!endOfStream && queuedBytes < MAX_QUEUED_BYTES) {
+                    setInterest(sourceKey(), SelectionKey.OP_READ, true);
+                }
+                if (endOfStream && queue.isEmpty() && !outputShutdown) {
+                    sink().shutdownOutput();
+                    outputShutdown = true;
+                    connection.closeIfDone();
+                }
+            } catch (IOException e) {
+                connection.close();
+            }
+        }
+    }
+
+    private static class Chunk {
+        private final ByteBuffer data;
+        private final long releaseNanos;
+
+        Chunk(ByteBuffer data, long releaseNanos) {
+            this.data = data;
+            this.releaseNanos = releaseNanos;
+        }
+    }
+
+    /**
+     * Traffic statistics of a {@link ShapingProxy}
+     */
+    public static class Statistics {
+        private final long connections;
+        private final long bytesSent;
+        private final long bytesReceived;
+        private final long roundTrips;
+
+        Statistics(long connections, long bytesSent, long bytesReceived, long roundTrips) {
+            this.connections = connections;
+            this.bytesSent = bytesSent;
+            this.bytesReceived = bytesReceived;
+            this.roundTrips = roundTrips;
+        }
+
+        /**
+         * @return the number of accepted connections
+         */
+        public long getConnections() {
+            return connections;
+        }
+
+        /**
+         * @return the number of bytes sent from the clients to the server
+         */
+        public long getBytesSent() {
+            return bytesSent;
+        }
+
+        /**
+         * @return the number of bytes sent from the server to the clients
+         */
+        public long getBytesReceived() {
+            return bytesReceived;
+        }
+
+        /**
+         * @return the number of times the server responded to data sent by a client
+         */
+        public long getRoundTrips() {
+            return roundTrips;
+        }
+
+        /**
+         * Adds up the statistics of two proxies
+         *
+         * @param other the statistics of the other proxy
+         * @return the combined statistics
+         */
+        public Statistics plus(Statistics other) {
+            return new Statistics(connections + other.connections, bytesSent + other.bytesSent,
+                    bytesReceived + other.bytesReceived, roundTrips + other.roundTrips);
+        }
+
+        @Override
+        public String toString() {
+            return "connections=" + connections + ", bytesSent=" + bytesSent + ", bytesReceived=" + bytesReceived
+                    + ", roundTrips=" + roundTrips;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.github.lhotari.dbcontainer;
+
+/**
+ * Helper for using identifiers in SQL statements
+ */
+public final class SqlIdentifiers {
+    private SqlIdentifiers() {
+
+    }
+
+    /**
+     * Quotes an identifier so that it can be used as a part of a SQL statement
+     *
+     * @param identifier the identifier, for example a database name
+     * @return the quoted identifier
+     */
+    public static String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * Quotes a string literal so that it can be used as a part of a SQL statement
+     *
+     * @param literal the literal value
+     * @return the quoted literal
+     */
+    public static String quoteLiteral(String literal) {
+        return "'" + literal.replace("'", "''") + "'";
+    }
+}
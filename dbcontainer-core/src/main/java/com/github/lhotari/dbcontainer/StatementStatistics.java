@@ -0,0 +1,57 @@
+package com.github.lhotari.dbcontainer;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Execution statistics of a normalized SQL statement from the pg_stat_statements view
+ */
+public final class StatementStatistics {
+    private static final Set<String> UTILITY_STATEMENT_KEYWORDS = new HashSet<>(Arrays.asList(
+            "BEGIN", "START", "COMMIT", "END", "ROLLBACK", "SAVEPOINT", "RELEASE", "SET", "SHOW", "RESET", "DISCARD"));
+    private final String query;
+    private final long calls;
+    private final double totalTimeMillis;
+    private final long rows;
+
+    public StatementStatistics(String query, long calls, double totalTimeMillis, long rows) {
+        this.query = query;
+        this.calls = calls;
+        this.totalTimeMillis = totalTimeMillis;
+        this.rows = rows;
+    }
+
+    /**
+     * @return the normalized query text where constants have been replaced with parameters
+     */
+    public String getQuery() {
+        return query;
+    }
+
+    public long getCalls() {
+        return calls;
+    }
+
+    public double getTotalTimeMillis() {
+        return totalTimeMillis;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * @return true if the statement is a transaction control or session statement instead of a query or DML
+     */
+    public boolean isUtilityStatement() {
+        String firstKeyword = query.trim().split("[\\s;]+", 2)[0].toUpperCase(Locale.ROOT);
+        return UTILITY_STATEMENT_KEYWORDS.contains(firstKeyword);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "calls=%d, totalTime=%.1f ms, rows=%d: %s", calls, totalTimeMillis, rows, query);
+    }
+}
@@ -0,0 +1,139 @@
+package com.github.lhotari.dbcontainer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+
+/**
+ * Snapshots databases by cloning them with "CREATE DATABASE ... TEMPLATE ...".
+ * <p>
+ * PostgreSQL creates the clone by copying the files of the template database, which makes taking and restoring
+ * a snapshot fast for the small databases that are typical in tests. Cloning requires that there aren't other
+ * connections to the template database, so connections to the database are disabled and terminated
+ * while the database is being cloned.
+ * <p>
+ * A restore clones the snapshot into a temporary database first and then swaps it with the restored database by
+ * renaming the databases. The restored database is left unchanged when cloning fails.
+ */
+public final class TemplateDatabaseSnapshots {
+    private static final Logger LOG = LoggerFactory.getLogger(TemplateDatabaseSnapshots.class);
+    private static final int MAX_DATABASE_NAME_LENGTH = 63;
+    private static final String RESTORING_SUFFIX = "__restoring";
+    private static final String REPLACED_SUFFIX = "__replaced";
+
+    private TemplateDatabaseSnapshots() {
+
+    }
+
+    /**
+     * Returns the name of the database that contains the snapshot of a database
+     *
+     * @param databaseName the name of the snapshotted database
+     * @param snapshotName the name of the snapshot
+     * @return the name of the snapshot database
+     */
+    public static String snapshotDatabaseName(String databaseName, String snapshotName) {
+        return checkLength(databaseName + "__" + snapshotName);
+    }
+
+    private static String checkLength(String databaseName) {
+        if (databaseName.length() > MAX_DATABASE_NAME_LENGTH) {
+            throw new IllegalArgumentException("Snapshot database name '" + databaseName + "' exceeds " + MAX_DATABASE_NAME_LENGTH + " characters");
+        }
+        return databaseName;
+    }
+
+    public static Duration snapshot(DatabaseContainer databaseContainer, String databaseName, String snapshotName) {
+        long startTime = System.nanoTime();
+        String snapshotDatabaseName = snapshotDatabaseName(databaseName, snapshotName);
+        try (Connection connection = DatabaseAdministration.createAdminConnection(databaseContainer, databaseContainer.getMaintenanceDatabaseName())) {
+            setAllowConnections(connection, databaseName, false);
+            try {
+                terminateConnections(connection, databaseName);
+                execute(connection, "DROP DATABASE IF EXISTS " + SqlIdentifiers.quote(snapshotDatabaseName));
+                execute(connection, "CREATE DATABASE " + SqlIdentifiers.quote(snapshotDatabaseName)
+                        + " TEMPLATE " + SqlIdentifiers.quote(databaseName));
+                // prevents accidental connections which would block restoring the snapshot
+                setAllowConnections(connection, snapshotDatabaseName, false);
+            } finally {
+                setAllowConnections(connection, databaseName, true);
+            }
+        } catch (SQLException e) {
+            throw new DatabaseContainerException("Taking snapshot '" + snapshotName + "' of database '" + databaseName + "' failed", e);
+        }
+        Duration duration = Duration.ofNanos(System.nanoTime() - startTime);
+        LOG.info("Took snapshot '{}' of database '{}' in {} ms", snapshotName, databaseName, duration.toMillis());
+        return duration;
+    }
+
+    public static Duration restore(DatabaseContainer databaseContainer, String databaseName, String snapshotName) {
+        long startTime = System.nanoTime();
+        String snapshotDatabaseName = snapshotDatabaseName(databaseName, snapshotName);
+        try (Connection connection = DatabaseAdministration.createAdminConnection(databaseContainer, databaseContainer.getMaintenanceDatabaseName())) {
+            if (!snapshotDatabaseExists(connection, snapshotDatabaseName)) {
+                throw new DatabaseContainerException("Snapshot '" + snapshotName + "' of database '" + databaseName + "' doesn't exist");
+            }
+            String restoringDatabaseName = checkLength(databaseName + RESTORING_SUFFIX);
+            String replacedDatabaseName = checkLength(databaseName + REPLACED_SUFFIX);
+            // leftovers of an interrupted restore
+            execute(connection, "DROP DATABASE IF EXISTS " + SqlIdentifiers.quote(restoringDatabaseName));
+            execute(connection, "DROP DATABASE IF EXISTS " + SqlIdentifiers.quote(replacedDatabaseName));
+            execute(connection, "CREATE DATABASE " + SqlIdentifiers.quote(restoringDatabaseName)
+                    + " TEMPLATE " + SqlIdentifiers.quote(snapshotDatabaseName));
+            setAllowConnections(connection, databaseName, false);
+            try {
+                terminateConnections(connection, databaseName);
+                rename(connection, databaseName, replacedDatabaseName);
+            } catch (SQLException e) {
+                setAllowConnections(connection, databaseName, true);
+                throw e;
+            }
+            try {
+                rename(connection, restoringDatabaseName, databaseName);
+            } catch (SQLException e) {
+                rename(connection, replacedDatabaseName, databaseName);
+                setAllowConnections(connection, databaseName, true);
+                throw e;
+            }
+            execute(connection, "DROP DATABASE " + SqlIdentifiers.quote(replacedDatabaseName));
+        } catch (SQLException e) {
+            throw new DatabaseContainerException("Restoring snapshot '" + snapshotName + "' of database '" + databaseName + "' failed", e);
+        }
+        Duration duration = Duration.ofNanos(System.nanoTime() - startTime);
+        LOG.info("Restored snapshot '{}' of database '{}' in {} ms", snapshotName, databaseName, duration.toMillis());
+        return duration;
+    }
+
+    private static boolean snapshotDatabaseExists(Connection connection, String snapshotDatabaseName) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT 1 FROM pg_database WHERE datname = ?")) {
+            statement.setString(1, snapshotDatabaseName);
+            return statement.executeQuery().next();
+        }
+    }
+
+    private static void rename(Connection connection, String databaseName, String newDatabaseName) throws SQLException {
+        execute(connection, "ALTER DATABASE " + SqlIdentifiers.quote(databaseName) + " RENAME TO " + SqlIdentifiers.quote(newDatabaseName));
+    }
+
+    private static void setAllowConnections(Connection connection, String databaseName, boolean allowConnections) throws SQLException {
+        execute(connection, "ALTER DATABASE " + SqlIdentifiers.quote(databaseName) + " ALLOW_CONNECTIONS " + allowConnections);
+    }
+
+    private static void terminateConnections(Connection connection, String databaseName) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT pg_terminate_backend(pid) FROM pg_stat_activity WHERE datname = ? AND pid <> pg_backend_pid()")) {
+            statement.setString(1, databaseName);
+            statement.execute();
+        }
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.github.lhotari.dbcontainer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FixtureLoaderTest {
+    @Test
+    void shouldLoadReferencedTablesFirst() {
+        Map<String, Set<String>> referencedTables = new HashMap<>();
+        referencedTables.put("address", tables("city"));
+        referencedTables.put("person", tables("address", "city"));
+        List<List<CsvFixture>> levels = FixtureLoader.orderByForeignKeys(
+                fixtures("person", "address", "city", "country"), referencedTables);
+        assertEquals(Arrays.asList(Arrays.asList("city", "country"), Collections.singletonList("address"),
+                Collections.singletonList("person")), tableNames(levels));
+    }
+
+    @Test
+    void shouldIgnoreReferencedTablesWithoutFixtures() {
+        Map<String, Set<String>> referencedTables = new HashMap<>();
+        referencedTables.put("address", tables("city"));
+        List<List<CsvFixture>> levels = FixtureLoader.orderByForeignKeys(fixtures("address", "country"), referencedTables);
+        assertEquals(Collections.singletonList(Arrays.asList("address", "country")), tableNames(levels));
+    }
+
+    @Test
+    void shouldMatchQualifiedAndQuotedTableNames() {
+        Map<String, Set<String>> referencedTables = new HashMap<>();
+        referencedTables.put("address", tables("City"));
+        List<List<CsvFixture>> levels = FixtureLoader.orderByForeignKeys(
+                fixtures("public.ADDRESS", "\"City\""), referencedTables);
+        assertEquals(Arrays.asList(Collections.singletonList("\"City\""), Collections.singletonList("public.ADDRESS")),
+                tableNames(levels));
+    }
+
+    @Test
+    void shouldRejectCycles() {
+        Map<String, Set<String>> referencedTables = new HashMap<>();
+        referencedTables.put("a", tables("b"));
+        referencedTables.put("b", tables("a"));
+        assertThrows(DatabaseContainerException.class,
+                () -> FixtureLoader.orderByForeignKeys(fixtures("a", "b", "c"), referencedTables));
+    }
+
+    private static Set<String> tables(String... tableNames) {
+        return new HashSet<>(Arrays.asList(tableNames));
+    }
+
+    private static List<CsvFixture> fixtures(String... tableNames) {
+        List<CsvFixture> fixtures = new ArrayList<>();
+        for (String tableName : tableNames) {
+            fixtures.add(new CsvFixture(tableName, () -> new ByteArrayInputStream(new byte[0]), false));
+        }
+        return fixtures;
+    }
+
+    private static List<List<String>> tableNames(List<List<CsvFixture>> levels) {
+        List<List<String>> tableNames = new ArrayList<>();
+        for (List<CsvFixture> level : levels) {
+            List<String> levelTableNames = new ArrayList<>();
+            for (CsvFixture fixture : level) {
+                levelTableNames.add(fixture.getTableName());
+            }
+            tableNames.add(levelTableNames);
+        }
+        return tableNames;
+    }
+}
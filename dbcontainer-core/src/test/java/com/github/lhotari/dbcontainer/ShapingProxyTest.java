@@ -0,0 +1,163 @@
+package com.github.lhotari.dbcontainer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShapingProxyTest {
+    private static final byte[] MESSAGE = "ping".getBytes(StandardCharsets.US_ASCII);
+
+    @Test
+    void shouldForwardAndCountTraffic() throws IOException {
+        try (EchoServer echoServer = new EchoServer();
+             ShapingProxy proxy = new ShapingProxy(ShapingProxy.LOOPBACK_ADDRESS, echoServer.getPort(), NetworkShaping.create());
+             Socket socket = connect(proxy)) {
+            for (int i = 0; i < 3; i++) {
+                assertArrayEquals(MESSAGE, exchange(socket));
+            }
+            ShapingProxy.Statistics statistics = proxy.getStatistics();
+            assertEquals(1, statistics.getConnections());
+            assertEquals(3 * MESSAGE.length, statistics.getBytesSent());
+            assertEquals(3 * MESSAGE.length, statistics.getBytesReceived());
+            assertEquals(3, statistics.getRoundTrips());
+        }
+    }
+
+    @Test
+    void shouldAddLatencyToEachRoundTrip() throws IOException {
+        Duration latency = Duration.ofMillis(200);
+        try (EchoServer echoServer = new EchoServer();
+             ShapingProxy proxy = new ShapingProxy(ShapingProxy.LOOPBACK_ADDRESS, echoServer.getPort(),
+                     NetworkShaping.create().withLatency(latency));
+             Socket socket = connect(proxy)) {
+            for (int i = 0; i < 2; i++) {
+                long startTime = System.nanoTime();
+                assertArrayEquals(MESSAGE, exchange(socket));
+                long elapsedNanos = System.nanoTime() - startTime;
+                assertTrue(elapsedNanos >= latency.toNanos(), "round trip took " + elapsedNanos / 1000000L + " ms");
+            }
+            assertEquals(2, proxy.getStatistics().getRoundTrips());
+        }
+    }
+
+    @Test
+    void shouldCloseConnectionWhenClientShutsDownOutput() throws IOException {
+        try (EchoServer echoServer = new EchoServer();
+             ShapingProxy proxy = new ShapingProxy(ShapingProxy.LOOPBACK_ADDRESS, echoServer.getPort(),
+                     NetworkShaping.create().withLatency(Duration.ofMillis(20)));
+             Socket socket = connect(proxy)) {
+            assertArrayEquals(MESSAGE, exchange(socket));
+            socket.shutdownOutput();
+            // the echo server closes its side after the end of stream, which the proxy forwards to the client
+            assertEquals(-1, socket.getInputStream().read());
+        }
+    }
+
+    @Test
+    void shouldCloseOpenConnectionsWhenClosed() throws IOException {
+        try (EchoServer echoServer = new EchoServer()) {
+            ShapingProxy proxy = new ShapingProxy(ShapingProxy.LOOPBACK_ADDRESS, echoServer.getPort(), NetworkShaping.create());
+            try (Socket socket = connect(proxy)) {
+                assertArrayEquals(MESSAGE, exchange(socket));
+                proxy.close();
+                assertTrue(isClosedByPeer(socket));
+            }
+        }
+    }
+
+    private static Socket connect(ShapingProxy proxy) throws IOException {
+        Socket socket = new Socket(proxy.getHost(), proxy.getPort());
+        socket.setSoTimeout(5000);
+        return socket;
+    }
+
+    private static byte[] exchange(Socket socket) throws IOException {
+        OutputStream outputStream = socket.getOutputStream();
+        outputStream.write(MESSAGE);
+        outputStream.flush();
+        return readFully(socket.getInputStream(), MESSAGE.length);
+    }
+
+    private static byte[] readFully(InputStream inputStream, int length) throws IOException {
+        byte[] data = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            int count = inputStream.read(data, offset, length - offset);
+            if (count < 0) {
+                throw new IOException("Connection closed after " + offset + " bytes");
+            }
+            offset += count;
+        }
+        return data;
+    }
+
+    // a closed connection is either at the end of stream or reset
+    private static boolean isClosedByPeer(Socket socket) throws IOException {
+        try {
+            return socket.getInputStream().read() == -1;
+        } catch (SocketException e) {
+            return true;
+        }
+    }
+
+    // echoes the data of each connection and closes the connection at the end of stream
+    private static class EchoServer implements AutoCloseable {
+        private final ServerSocket serverSocket;
+
+        EchoServer() throws IOException {
+            serverSocket = new ServerSocket(0, 50, InetAddress.getByName(ShapingProxy.LOOPBACK_ADDRESS));
+            Thread thread = new Thread(this::acceptConnections, "echo-server-" + getPort());
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        private void acceptConnections() {
+            try {
+                while (true) {
+                    Socket socket = serverSocket.accept();
+                    Thread thread = new Thread(() -> echo(socket), "echo-connection");
+                    thread.setDaemon(true);
+                    thread.start();
+                }
+            } catch (IOException e) {
+                // the server socket was closed
+            }
+        }
+
+        private static void echo(Socket socket) {
+            try (Socket closedSocket = socket) {
+                InputStream inputStream = closedSocket.getInputStream();
+                OutputStream outputStream = closedSocket.getOutputStream();
+                byte[] buffer = new byte[8192];
+                int count;
+                while ((count = inputStream.read(buffer)) >= 0) {
+                    outputStream.write(buffer, 0, count);
+                    outputStream.flush();
+                }
+            } catch (IOException e) {
+                // the proxy closed the connection
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+        }
+    }
+}
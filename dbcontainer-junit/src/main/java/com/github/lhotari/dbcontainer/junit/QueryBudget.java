@@ -0,0 +1,42 @@
+package com.github.lhotari.dbcontainer.junit;
+
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares a budget for the database queries of a test. The test fails when it executes more queries or spends more
+ * time in the database than the budget allows. On a test class, the budget applies to each test method that doesn't
+ * declare a budget of its own.
+ * <p>
+ * The queries are counted with pg_stat_statements, so the database container has to be started with query
+ * statistics enabled. The container is looked up from the fields of the test instance.
+ *
+ * @see QueryBudgetExtension
+ */
+@Target({ElementType.TYPE, ElementType.METHOD, ElementType.ANNOTATION_TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Inherited
+@ExtendWith(QueryBudgetExtension.class)
+public @interface QueryBudget {
+    /**
+     * @return the maximum number of executed statements, negative for no limit
+     */
+    long maxQueries() default -1;
+
+    /**
+     * @return the maximum total execution time of the statements in milliseconds, negative for no limit
+     */
+    long maxTotalTimeMillis() default -1;
+
+    /**
+     * @return true to count transaction control and session statements such as BEGIN, COMMIT and SET
+     */
+    boolean includeUtilityStatements() default false;
+}
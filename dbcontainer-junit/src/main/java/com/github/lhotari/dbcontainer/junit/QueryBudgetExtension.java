@@ -0,0 +1,110 @@
+package com.github.lhotari.dbcontainer.junit;
+
+import com.github.lhotari.dbcontainer.DatabaseContainer;
+import com.github.lhotari.dbcontainer.QueryStatistics;
+import com.github.lhotari.dbcontainer.StatementStatistics;
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.platform.commons.support.AnnotationSupport;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * JUnit 5 extension that enforces the {@link QueryBudget} of a test. The query statistics are reset before each test
+ * and checked after it. The extension uses the first non-null {@link DatabaseContainer} field of the test instance
+ * or its superclasses, for example a container injected by Spring.
+ * <p>
+ * Resetting the statistics affects the whole database server, so tests with a budget shouldn't run in parallel with
+ * other tests that use the same container.
+ */
+public class QueryBudgetExtension implements BeforeEachCallback, AfterEachCallback {
+    private static final int REPORTED_STATEMENT_COUNT = 10;
+
+    @Override
+    public void beforeEach(ExtensionContext context) {
+        if (findQueryBudget(context).isPresent()) {
+            QueryStatistics.reset(findDatabaseContainer(context));
+        }
+    }
+
+    @Override
+    public void afterEach(ExtensionContext context) {
+        Optional<QueryBudget> queryBudget = findQueryBudget(context);
+        // a failed test is reported as it is
+        if (!queryBudget.isPresent() || context.getExecutionException().isPresent()) {
+            return;
+        }
+        List<StatementStatistics> statistics = new ArrayList<>();
+        for (StatementStatistics statementStatistics : QueryStatistics.fetch(findDatabaseContainer(context))) {
+            if (queryBudget.get().includeUtilityStatements() || !statementStatistics.isUtilityStatement()) {
+                statistics.add(statementStatistics);
+            }
+        }
+        checkBudget(queryBudget.get(), statistics);
+    }
+
+    private static void checkBudget(QueryBudget queryBudget, List<StatementStatistics> statistics) {
+        long queries = 0;
+        double totalTimeMillis = 0;
+        for (StatementStatistics statementStatistics : statistics) {
+            queries += statementStatistics.getCalls();
+            totalTimeMillis += statementStatistics.getTotalTimeMillis();
+        }
+        List<String> violations = new ArrayList<>();
+        if (queryBudget.maxQueries() >= 0 && queries > queryBudget.maxQueries()) {
+            violations.add(queries + " queries exceed the budget of " + queryBudget.maxQueries() + " queries");
+        }
+        if (queryBudget.maxTotalTimeMillis() >= 0 && totalTimeMillis > queryBudget.maxTotalTimeMillis()) {
+            violations.add(String.format(Locale.ROOT, "%.1f ms total database time exceeds the budget of %d ms",
+                    totalTimeMillis, queryBudget.maxTotalTimeMillis()));
+        }
+        if (!violations.isEmpty()) {
+            throw new AssertionError(String.join(", ", violations) + createReport(statistics));
+        }
+    }
+
+    private static String createReport(List<StatementStatistics> statistics) {
+        List<StatementStatistics> sorted = new ArrayList<>(statistics);
+        sorted.sort(Comparator.comparingDouble(StatementStatistics::getTotalTimeMillis).reversed());
+        StringBuilder report = new StringBuilder("\nStatements with the most database time:");
+        for (StatementStatistics statementStatistics : sorted.subList(0, Math.min(REPORTED_STATEMENT_COUNT, sorted.size()))) {
+            report.append("\n  ").append(statementStatistics);
+        }
+        return report.toString();
+    }
+
+    private static Optional<QueryBudget> findQueryBudget(ExtensionContext context) {
+        Optional<QueryBudget> methodBudget = context.getTestMethod()
+                .flatMap(method -> AnnotationSupport.findAnnotation(method, QueryBudget.class));
+        return methodBudget.isPresent()
+                ? methodBudget
+                : AnnotationSupport.findAnnotation(context.getRequiredTestClass(), QueryBudget.class);
+    }
+
+    private static DatabaseContainer findDatabaseContainer(ExtensionContext context) {
+        Object testInstance = context.getRequiredTestInstance();
+        for (Class<?> type = testInstance.getClass(); type != null && type != Object.class; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                if (DatabaseContainer.class.isAssignableFrom(field.getType())) {
+                    field.setAccessible(true);
+                    try {
+                        Object value = field.get(Modifier.isStatic(field.getModifiers()) ? null : testInstance);
+                        if (value != null) {
+                            return (DatabaseContainer) value;
+                        }
+                    } catch (IllegalAccessException e) {
+                        throw new IllegalStateException("Cannot read field " + field, e);
+                    }
+                }
+            }
+        }
+        throw new IllegalStateException("@QueryBudget requires a DatabaseContainer field in " + testInstance.getClass().getName());
+    }
+}
@@ -0,0 +1,44 @@
+package com.github.lhotari.dbcontainer.loaddriver;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Creates the load driver table and the parameters of the operations
+ */
+class CityData {
+    static final String[] CREATE_TABLE = {
+            "DROP TABLE IF EXISTS load_driver_city",
+            "CREATE TABLE load_driver_city (id BIGINT PRIMARY KEY, name VARCHAR NOT NULL, state VARCHAR NOT NULL, "
+                    + "country VARCHAR NOT NULL, map VARCHAR NOT NULL)"
+    };
+    private static final Object[] NO_PARAMETERS = new Object[0];
+    private final int seedRows;
+    private final AtomicLong nextInsertId;
+
+    CityData(int seedRows) {
+        this.seedRows = seedRows;
+        this.nextInsertId = new AtomicLong(seedRows + 1);
+    }
+
+    static Object[] row(long id) {
+        return new Object[]{id, "City " + id, "State " + (id % 50), "Country " + (id % 10), (id % 90) + ", " + (id % 180)};
+    }
+
+    Object[] parameters(OperationType operationType, Random random) {
+        switch (operationType) {
+            case FIND_BY_ID:
+                return new Object[]{randomSeedId(random)};
+            case INSERT:
+                return row(nextInsertId.getAndIncrement());
+            case UPDATE:
+                return new Object[]{"City " + random.nextInt(), randomSeedId(random)};
+            default:
+                return NO_PARAMETERS;
+        }
+    }
+
+    private long randomSeedId(Random random) {
+        return 1L + random.nextInt(seedRows);
+    }
+}
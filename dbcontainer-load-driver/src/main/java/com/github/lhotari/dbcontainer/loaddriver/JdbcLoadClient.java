@@ -0,0 +1,118 @@
+package com.github.lhotari.dbcontainer.loaddriver;
+
+import com.github.lhotari.dbcontainer.DatabaseAdministration;
+import com.github.lhotari.dbcontainer.DatabaseContainer;
+import com.github.lhotari.dbcontainer.DatabaseContainerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Executes the operations with worker threads that each use a JDBC connection of their own
+ */
+class JdbcLoadClient implements LoadClient {
+    private static final Logger LOG = LoggerFactory.getLogger(JdbcLoadClient.class);
+    private final DatabaseContainer databaseContainer;
+    private final LoadSettings settings;
+    private final CityData cityData;
+
+    JdbcLoadClient(DatabaseContainer databaseContainer, LoadSettings settings, CityData cityData) {
+        this.databaseContainer = databaseContainer;
+        this.settings = settings;
+        this.cityData = cityData;
+    }
+
+    @Override
+    public void run(LoadSchedule schedule, OperationRecorder recorder) {
+        AtomicReference<SQLException> failure = new AtomicReference<>();
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < settings.getConcurrency(); i++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    runWorker(schedule, recorder);
+                } catch (SQLException e) {
+                    failure.compareAndSet(null, e);
+                }
+            }, "load-driver-jdbc-" + i);
+            worker.start();
+            workers.add(worker);
+        }
+        try {
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            workers.forEach(Thread::interrupt);
+            throw new DatabaseContainerException("Interrupted while running load", e);
+        }
+        if (failure.get() != null) {
+            throw new DatabaseContainerException("Running load over JDBC failed", failure.get());
+        }
+    }
+
+    private void runWorker(LoadSchedule schedule, OperationRecorder recorder) throws SQLException {
+        try (Connection connection = DatabaseAdministration.createConnection(databaseContainer, databaseContainer.getDatabaseName())) {
+            Map<OperationType, PreparedStatement> statements = new EnumMap<>(OperationType.class);
+            for (OperationType operationType : OperationType.values()) {
+                statements.put(operationType, connection.prepareStatement(operationType.getJdbcSql()));
+            }
+            Random random = ThreadLocalRandom.current();
+            long intendedStart;
+            while ((intendedStart = schedule.nextIntendedStart()) != LoadSchedule.END && !Thread.currentThread().isInterrupted()) {
+                LoadSchedule.waitUntil(intendedStart);
+                OperationType operationType = settings.getOperationMix().next(random);
+                Object[] parameters = cityData.parameters(operationType, random);
+                long start = System.nanoTime();
+                boolean success = execute(connection, statements.get(operationType), operationType, parameters);
+                recorder.record(operationType, intendedStart, start, System.nanoTime(), success);
+            }
+        }
+    }
+
+    private static boolean execute(Connection connection, PreparedStatement statement, OperationType operationType,
+                                   Object[] parameters) throws SQLException {
+        for (int i = 0; i < parameters.length; i++) {
+            statement.setObject(i + 1, parameters[i]);
+        }
+        if (operationType.isTransactional()) {
+            connection.setAutoCommit(false);
+        }
+        try {
+            if (operationType.isQuery()) {
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        // consume all rows
+                    }
+                }
+            } else {
+                statement.executeUpdate();
+            }
+            if (operationType.isTransactional()) {
+                connection.commit();
+            }
+            return true;
+        } catch (SQLException e) {
+            LOG.debug("Operation {} failed", operationType, e);
+            if (operationType.isTransactional()) {
+                connection.rollback();
+            }
+            return false;
+        } finally {
+            if (operationType.isTransactional()) {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.github.lhotari.dbcontainer.loaddriver;
+
+/**
+ * Executes the operations of a load driver run with a specific database client
+ */
+interface LoadClient {
+    /**
+     * Executes operations until the schedule ends and waits for the operations in flight to complete
+     *
+     * @param schedule the intended start times of the operations
+     * @param recorder records the results of the operations
+     */
+    void run(LoadSchedule schedule, OperationRecorder recorder);
+}
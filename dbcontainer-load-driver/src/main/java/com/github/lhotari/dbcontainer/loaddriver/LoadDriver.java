@@ -0,0 +1,106 @@
+package com.github.lhotari.dbcontainer.loaddriver;
+
+import com.github.lhotari.dbcontainer.DatabaseAdministration;
+import com.github.lhotari.dbcontainer.DatabaseContainer;
+import com.github.lhotari.dbcontainer.DatabaseContainerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs a read/write load against the database of a started {@link DatabaseContainer} and reports the throughput
+ * and the latency distribution of each operation type.
+ * <p>
+ * The operations follow the access patterns of the sample application on a table of their own, which is created
+ * and filled with seed rows before each run. The load runs over JDBC or R2DBC, either as a closed loop with a fixed
+ * concurrency or on a fixed schedule at a target rate. See {@link LoadSettings} for how the latencies are measured.
+ * <pre>
+ * LoadReport report = new LoadDriver(databaseContainer, LoadSettings.create().withTargetRate(2000)).run();
+ * report.appendCsv(Paths.get("build/load-reports.csv"));
+ * </pre>
+ */
+public class LoadDriver {
+    private static final Logger LOG = LoggerFactory.getLogger(LoadDriver.class);
+    private static final int SEED_BATCH_SIZE = 500;
+    private final DatabaseContainer databaseContainer;
+    private final LoadSettings settings;
+
+    public LoadDriver(DatabaseContainer databaseContainer, LoadSettings settings) {
+        this.databaseContainer = databaseContainer;
+        this.settings = settings;
+    }
+
+    /**
+     * Creates the table, runs the warmup and the measurement and returns the results
+     *
+     * @return the results of the measurement
+     */
+    public LoadReport run() {
+        String databaseVersion;
+        try (Connection connection = DatabaseAdministration.createConnection(databaseContainer, databaseContainer.getDatabaseName())) {
+            createTable(connection);
+            databaseVersion = queryVersion(connection);
+        } catch (SQLException e) {
+            throw new DatabaseContainerException("Preparing the load driver table failed", e);
+        }
+        CityData cityData = new CityData(settings.getSeedRows());
+        LoadClient loadClient = settings.getClient() == LoadSettings.Client.R2DBC
+                ? new R2dbcLoadClient(databaseContainer, settings, cityData)
+                : new JdbcLoadClient(databaseContainer, settings, cityData);
+        LOG.info("Running load against {} with {}", databaseContainer.getConfigurationKey(), settings);
+        LoadSchedule schedule = new LoadSchedule(settings, System.nanoTime());
+        OperationRecorder recorder = new OperationRecorder(schedule.getMeasurementStartNanos());
+        loadClient.run(schedule, recorder);
+        double measuredSeconds = settings.getDuration().toNanos() / 1e9d;
+        List<OperationReport> operationReports = new ArrayList<>();
+        for (OperationType operationType : OperationType.values()) {
+            if (settings.getOperationMix().getWeight(operationType) > 0) {
+                operationReports.add(recorder.createOperationReport(operationType, measuredSeconds));
+            }
+        }
+        LoadReport report = new LoadReport(databaseContainer.getClass().getSimpleName(),
+                databaseContainer.getConfigurationKey(), databaseVersion, settings, operationReports);
+        LOG.info("Load driver results\n{}", report);
+        return report;
+    }
+
+    private void createTable(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : CityData.CREATE_TABLE) {
+                statement.execute(sql);
+            }
+        }
+        connection.setAutoCommit(false);
+        try (PreparedStatement statement = connection.prepareStatement(OperationType.INSERT.getJdbcSql())) {
+            for (long id = 1; id <= settings.getSeedRows(); id++) {
+                Object[] row = CityData.row(id);
+                for (int i = 0; i < row.length; i++) {
+                    statement.setObject(i + 1, row[i]);
+                }
+                statement.addBatch();
+                if (id % SEED_BATCH_SIZE == 0) {
+                    statement.executeBatch();
+                }
+            }
+            statement.executeBatch();
+            connection.commit();
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private static String queryVersion(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT version()")) {
+            resultSet.next();
+            return resultSet.getString(1);
+        }
+    }
+}
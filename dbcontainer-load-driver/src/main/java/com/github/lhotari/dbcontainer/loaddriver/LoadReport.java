@@ -0,0 +1,137 @@
+package com.github.lhotari.dbcontainer.loaddriver;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The results of a {@link LoadDriver} run. Latencies are in microseconds.
+ * <p>
+ * {@link #appendCsv(Path)} appends the results to a CSV file with a row per operation so that runs against
+ * different container implementations, image versions and settings can be compared.
+ */
+public class LoadReport {
+    static final String CSV_HEADER = "timestamp,container,configuration,databaseVersion,client,concurrency,targetRate,"
+            + "operation,count,errors,throughput,meanMicros,p50Micros,p90Micros,p99Micros,p999Micros,maxMicros";
+    private final long timestamp;
+    private final String containerName;
+    private final String configurationKey;
+    private final String databaseVersion;
+    private final LoadSettings settings;
+    private final Map<OperationType, OperationReport> operations = new EnumMap<>(OperationType.class);
+
+    LoadReport(String containerName, String configurationKey, String databaseVersion, LoadSettings settings,
+               Collection<OperationReport> operationReports) {
+        this.timestamp = System.currentTimeMillis();
+        this.containerName = containerName;
+        this.configurationKey = configurationKey;
+        this.databaseVersion = databaseVersion;
+        this.settings = settings;
+        for (OperationReport operationReport : operationReports) {
+            operations.put(operationReport.getOperationType(), operationReport);
+        }
+    }
+
+    /**
+     * @return the simple class name of the container
+     */
+    public String getContainerName() {
+        return containerName;
+    }
+
+    public String getConfigurationKey() {
+        return configurationKey;
+    }
+
+    /**
+     * @return the result of "SELECT version()" in the database
+     */
+    public String getDatabaseVersion() {
+        return databaseVersion;
+    }
+
+    public LoadSettings getSettings() {
+        return settings;
+    }
+
+    /**
+     * @param operationType the operation
+     * @return the results of the operation, null if the operation wasn't part of the mix
+     */
+    public OperationReport getOperation(OperationType operationType) {
+        return operations.get(operationType);
+    }
+
+    public Collection<OperationReport> getOperations() {
+        return Collections.unmodifiableCollection(operations.values());
+    }
+
+    /**
+     * @return the total number of successful operations per second
+     */
+    public double getThroughput() {
+        return operations.values().stream().mapToDouble(OperationReport::getThroughput).sum();
+    }
+
+    /**
+     * Appends a row per operation to a CSV file. The header row is written when the file doesn't exist.
+     *
+     * @param file the CSV file
+     */
+    public void appendCsv(Path file) {
+        List<String> lines = new ArrayList<>();
+        if (!Files.exists(file)) {
+            lines.add(CSV_HEADER);
+        }
+        for (OperationReport operation : operations.values()) {
+            lines.add(String.join(",", String.valueOf(timestamp), csvValue(containerName), csvValue(configurationKey),
+                    csvValue(databaseVersion), settings.getClient().name(), String.valueOf(settings.getConcurrency()),
+                    String.valueOf(settings.getTargetRate()), operation.getOperationType().name(),
+                    String.valueOf(operation.getCount()), String.valueOf(operation.getErrors()),
+                    String.format("%.1f", operation.getThroughput()),
+                    String.format("%.1f", operation.getLatencyHistogram().getMean()),
+                    String.valueOf(operation.getLatencyMicros(50)), String.valueOf(operation.getLatencyMicros(90)),
+                    String.valueOf(operation.getLatencyMicros(99)), String.valueOf(operation.getLatencyMicros(99.9)),
+                    String.valueOf(operation.getLatencyHistogram().getMaxValue())));
+        }
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            Files.write(file, lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Writing load report to " + file + " failed", e);
+        }
+    }
+
+    private static String csvValue(String value) {
+        return "\"" + Objects.toString(value, "").replace("\"", "\"\"") + "\"";
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        report.append(containerName).append(" (").append(databaseVersion).append(")\n");
+        report.append(settings).append('\n');
+        report.append(String.format("%-12s %10s %8s %12s %10s %10s %10s %10s %10s%n", "operation", "count", "errors",
+                "ops/s", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us"));
+        for (OperationReport operation : operations.values()) {
+            report.append(String.format("%-12s %10d %8d %12.1f %10d %10d %10d %10d %10d%n",
+                    operation.getOperationType(), operation.getCount(), operation.getErrors(), operation.getThroughput(),
+                    operation.getLatencyMicros(50), operation.getLatencyMicros(90), operation.getLatencyMicros(99),
+                    operation.getLatencyMicros(99.9), operation.getLatencyHistogram().getMaxValue()));
+        }
+        report.append(String.format("total throughput %.1f ops/s", getThroughput()));
+        return report.toString();
+    }
+}
@@ -0,0 +1,48 @@
+package com.github.lhotari.dbcontainer.loaddriver;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands out the intended start times of operations. With a target rate the start times follow a fixed schedule that
+ * doesn't depend on how long earlier operations took. Without a target rate an operation is intended to start when
+ * it is requested.
+ */
+class LoadSchedule {
+    static final long END = -1L;
+    private final long startNanos;
+    private final long measurementStartNanos;
+    private final long endNanos;
+    private final long intervalNanos;
+    private final AtomicLong sequence = new AtomicLong();
+
+    LoadSchedule(LoadSettings settings, long startNanos) {
+        this.startNanos = startNanos;
+        this.measurementStartNanos = startNanos + settings.getWarmup().toNanos();
+        this.endNanos = measurementStartNanos + settings.getDuration().toNanos();
+        this.intervalNanos = settings.isTargetRate() ? 1000000000L / settings.getTargetRate() : 0L;
+    }
+
+    /**
+     * @return the intended start time of the next operation or {@link #END} when the run is over
+     */
+    long nextIntendedStart() {
+        long intendedStart = intervalNanos > 0 ? startNanos + sequence.getAndIncrement() * intervalNanos : System.nanoTime();
+        return intendedStart - endNanos < 0 ? intendedStart : END;
+    }
+
+    static void waitUntil(long nanoTime) {
+        long remaining;
+        while ((remaining = nanoTime - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    long getMeasurementStartNanos() {
+        return measurementStartNanos;
+    }
+
+    long getEndNanos() {
+        return endNanos;
+    }
+}
@@ -0,0 +1,149 @@
+package com.github.lhotari.dbcontainer.loaddriver;
+
+import java.time.Duration;
+
+/**
+ * Settings for a {@link LoadDriver} run.
+ * <p>
+ * By default the driver runs a closed loop where each of the concurrent workers starts the next operation as soon as
+ * the previous one completes. With a target rate the operations are started on a fixed schedule instead and the
+ * latency of each operation is measured from its scheduled start time. This avoids coordinated omission: when the
+ * database stalls, the operations that should have been started during the stall are recorded with the time that
+ * they waited.
+ */
+public class LoadSettings {
+    public static final int DEFAULT_CONCURRENCY = 8;
+    public static final Duration DEFAULT_DURATION = Duration.ofSeconds(30);
+    public static final Duration DEFAULT_WARMUP = Duration.ofSeconds(5);
+    public static final int DEFAULT_SEED_ROWS = 1000;
+
+    /**
+     * The client that executes the operations
+     */
+    public enum Client {
+        JDBC,
+        R2DBC
+    }
+
+    private Client client = Client.JDBC;
+    private int concurrency = DEFAULT_CONCURRENCY;
+    private int targetRate;
+    private Duration duration = DEFAULT_DURATION;
+    private Duration warmup = DEFAULT_WARMUP;
+    private int seedRows = DEFAULT_SEED_ROWS;
+    private OperationMix operationMix = OperationMix.readHeavy();
+
+    public static LoadSettings create() {
+        return new LoadSettings();
+    }
+
+    public LoadSettings withClient(Client client) {
+        this.client = client;
+        return this;
+    }
+
+    /**
+     * @param concurrency the number of JDBC worker threads or the maximum number of R2DBC operations in flight
+     * @return this instance
+     */
+    public LoadSettings withConcurrency(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be at least 1");
+        }
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    /**
+     * @param targetRate the number of operations to start per second, 0 for running a closed loop
+     * @return this instance
+     */
+    public LoadSettings withTargetRate(int targetRate) {
+        if (targetRate < 0) {
+            throw new IllegalArgumentException("targetRate must not be negative");
+        }
+        this.targetRate = targetRate;
+        return this;
+    }
+
+    /**
+     * @param duration the duration of the measurement after the warmup
+     * @return this instance
+     */
+    public LoadSettings withDuration(Duration duration) {
+        if (duration.isNegative() || duration.isZero()) {
+            throw new IllegalArgumentException("duration must be positive");
+        }
+        this.duration = duration;
+        return this;
+    }
+
+    /**
+     * @param warmup the duration of the load that isn't recorded before the measurement starts
+     * @return this instance
+     */
+    public LoadSettings withWarmup(Duration warmup) {
+        if (warmup.isNegative()) {
+            throw new IllegalArgumentException("warmup must not be negative");
+        }
+        this.warmup = warmup;
+        return this;
+    }
+
+    /**
+     * @param seedRows the number of rows inserted before the run, the reads and updates target these rows
+     * @return this instance
+     */
+    public LoadSettings withSeedRows(int seedRows) {
+        if (seedRows < 1) {
+            throw new IllegalArgumentException("seedRows must be at least 1");
+        }
+        this.seedRows = seedRows;
+        return this;
+    }
+
+    public LoadSettings withOperationMix(OperationMix operationMix) {
+        this.operationMix = operationMix;
+        return this;
+    }
+
+    public Client getClient() {
+        return client;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public int getTargetRate() {
+        return targetRate;
+    }
+
+    public boolean isTargetRate() {
+        return targetRate > 0;
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+
+    public Duration getWarmup() {
+        return warmup;
+    }
+
+    public int getSeedRows() {
+        return seedRows;
+    }
+
+    public OperationMix getOperationMix() {
+        return operationMix;
+    }
+
+    @Override
+    public String toString() {
+        return "client=" + client + ", concurrency=" + concurrency
+                + ", targetRate=" + (isTargetRate() ? String.valueOf(targetRate) : "unlimited")
+                + ", duration=" + duration + ", warmup=" + warmup + ", seedRows=" + seedRows
+                + ", operationMix=" + operationMix;
+    }
+}
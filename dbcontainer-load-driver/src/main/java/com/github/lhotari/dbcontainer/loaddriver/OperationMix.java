@@ -0,0 +1,84 @@
+package com.github.lhotari.dbcontainer.loaddriver;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The relative weights of the operations that the load driver executes
+ */
+public class OperationMix {
+    private final Map<OperationType, Integer> weights = new EnumMap<>(OperationType.class);
+
+    public static OperationMix create() {
+        return new OperationMix();
+    }
+
+    /**
+     * @return a mix of mostly primary key reads with some writes and occasional full reads
+     */
+    public static OperationMix readHeavy() {
+        return create()
+                .withWeight(OperationType.FIND_BY_ID, 90)
+                .withWeight(OperationType.FIND_ALL, 2)
+                .withWeight(OperationType.INSERT, 4)
+                .withWeight(OperationType.UPDATE, 4);
+    }
+
+    /**
+     * @return a mix that is dominated by inserts and updates
+     */
+    public static OperationMix writeHeavy() {
+        return create()
+                .withWeight(OperationType.FIND_BY_ID, 30)
+                .withWeight(OperationType.INSERT, 35)
+                .withWeight(OperationType.UPDATE, 35);
+    }
+
+    /**
+     * @param operationType the operation
+     * @param weight        the relative weight of the operation, 0 excludes the operation
+     * @return this instance
+     */
+    public OperationMix withWeight(OperationType operationType, int weight) {
+        if (weight < 0) {
+            throw new IllegalArgumentException("weight must not be negative");
+        }
+        if (weight == 0) {
+            weights.remove(operationType);
+        } else {
+            weights.put(operationType, weight);
+        }
+        return this;
+    }
+
+    public int getWeight(OperationType operationType) {
+        return weights.getOrDefault(operationType, 0);
+    }
+
+    /**
+     * Picks an operation randomly according to the weights
+     *
+     * @param random the random number generator
+     * @return the operation
+     */
+    OperationType next(Random random) {
+        int total = weights.values().stream().mapToInt(Integer::intValue).sum();
+        if (total == 0) {
+            throw new IllegalStateException("The operation mix is empty");
+        }
+        int value = random.nextInt(total);
+        for (Map.Entry<OperationType, Integer> entry : weights.entrySet()) {
+            value -= entry.getValue();
+            if (value < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    @Override
+    public String toString() {
+        return weights.toString();
+    }
+}
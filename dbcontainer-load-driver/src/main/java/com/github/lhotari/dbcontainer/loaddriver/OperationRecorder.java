@@ -0,0 +1,58 @@
+package com.github.lhotari.dbcontainer.loaddriver;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the latencies of the operations in microseconds. Operations that were intended to start before the
+ * measurement started aren't recorded.
+ */
+class OperationRecorder {
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private final long measurementStartNanos;
+    private final Map<OperationType, Histogram> latencies = new EnumMap<>(OperationType.class);
+    private final Map<OperationType, Histogram> serviceTimes = new EnumMap<>(OperationType.class);
+    private final Map<OperationType, AtomicLong> errors = new EnumMap<>(OperationType.class);
+
+    OperationRecorder(long measurementStartNanos) {
+        this.measurementStartNanos = measurementStartNanos;
+        for (OperationType operationType : OperationType.values()) {
+            latencies.put(operationType, new ConcurrentHistogram(SIGNIFICANT_DIGITS));
+            serviceTimes.put(operationType, new ConcurrentHistogram(SIGNIFICANT_DIGITS));
+            errors.put(operationType, new AtomicLong());
+        }
+    }
+
+    /**
+     * @param operationType      the operation
+     * @param intendedStartNanos the time when the operation should have started
+     * @param startNanos         the time when the operation started executing
+     * @param endNanos           the time when the operation completed
+     * @param success            false if the operation failed
+     */
+    void record(OperationType operationType, long intendedStartNanos, long startNanos, long endNanos, boolean success) {
+        if (intendedStartNanos - measurementStartNanos < 0) {
+            return;
+        }
+        if (success) {
+            latencies.get(operationType).recordValue(toMicros(endNanos - intendedStartNanos));
+            serviceTimes.get(operationType).recordValue(toMicros(endNanos - startNanos));
+        } else {
+            errors.get(operationType).incrementAndGet();
+        }
+    }
+
+    private static long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(Math.max(nanos, 0L));
+    }
+
+    OperationReport createOperationReport(OperationType operationType, double measuredSeconds) {
+        return new OperationReport(operationType, latencies.get(operationType).copy(),
+                serviceTimes.get(operationType).copy(), errors.get(operationType).get(), measuredSeconds);
+    }
+}
@@ -0,0 +1,76 @@
+package com.github.lhotari.dbcontainer.loaddriver;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * Results of a single operation type in a {@link LoadReport}. Latencies are in microseconds.
+ */
+public class OperationReport {
+    private final OperationType operationType;
+    private final Histogram latencyHistogram;
+    private final Histogram serviceTimeHistogram;
+    private final long errors;
+    private final double measuredSeconds;
+
+    OperationReport(OperationType operationType, Histogram latencyHistogram, Histogram serviceTimeHistogram, long errors,
+                    double measuredSeconds) {
+        this.operationType = operationType;
+        this.latencyHistogram = latencyHistogram;
+        this.serviceTimeHistogram = serviceTimeHistogram;
+        this.errors = errors;
+        this.measuredSeconds = measuredSeconds;
+    }
+
+    public OperationType getOperationType() {
+        return operationType;
+    }
+
+    /**
+     * @return the number of operations that completed successfully
+     */
+    public long getCount() {
+        return latencyHistogram.getTotalCount();
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * @return the number of successful operations per second
+     */
+    public double getThroughput() {
+        return getCount() / measuredSeconds;
+    }
+
+    /**
+     * @param percentile the percentile, for example 99.9
+     * @return the latency in microseconds measured from the intended start of the operation
+     */
+    public long getLatencyMicros(double percentile) {
+        return latencyHistogram.getValueAtPercentile(percentile);
+    }
+
+    /**
+     * @return the histogram of latencies in microseconds measured from the intended start of each operation.
+     * With a target rate this includes the time that the operation waited behind slower operations.
+     */
+    public Histogram getLatencyHistogram() {
+        return latencyHistogram;
+    }
+
+    /**
+     * @return the histogram of latencies in microseconds measured from the actual start of each operation
+     */
+    public Histogram getServiceTimeHistogram() {
+        return serviceTimeHistogram;
+    }
+
+    @Override
+    public String toString() {
+        return operationType + ": count=" + getCount() + ", errors=" + errors
+                + ", throughput=" + String.format("%.1f", getThroughput())
+                + ", p50=" + getLatencyMicros(50) + ", p99=" + getLatencyMicros(99)
+                + ", p99.9=" + getLatencyMicros(99.9) + ", max=" + latencyHistogram.getMaxValue();
+    }
+}
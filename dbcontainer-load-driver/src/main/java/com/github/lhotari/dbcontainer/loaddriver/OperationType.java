@@ -0,0 +1,60 @@
+package com.github.lhotari.dbcontainer.loaddriver;
+
+/**
+ * The operations of the load driver. They follow the access patterns of the sample application's CityRepository
+ * and CityController on a table with the same columns as the sample's CITY table.
+ */
+public enum OperationType {
+    /**
+     * Reads a city by its primary key, like CityController.findCityById
+     */
+    FIND_BY_ID("SELECT id, name, state, country, map FROM load_driver_city WHERE id = $1", true),
+    /**
+     * Reads all cities in a transaction, like CityController.findCities
+     */
+    FIND_ALL("SELECT id, name, state, country, map FROM load_driver_city", true),
+    /**
+     * Inserts a new city, like CityRepository.save with a new entity
+     */
+    INSERT("INSERT INTO load_driver_city (id, name, state, country, map) VALUES ($1, $2, $3, $4, $5)", false),
+    /**
+     * Updates an existing city, like CityRepository.save with an existing entity
+     */
+    UPDATE("UPDATE load_driver_city SET name = $1 WHERE id = $2", false);
+
+    private final String sql;
+    private final boolean query;
+
+    OperationType(String sql, boolean query) {
+        this.sql = sql;
+        this.query = query;
+    }
+
+    /**
+     * @return the SQL with R2DBC style $1, $2 parameter markers
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * @return the SQL with JDBC style ? parameter markers
+     */
+    public String getJdbcSql() {
+        return sql.replaceAll("\\$\\d+", "?");
+    }
+
+    /**
+     * @return true if the operation returns rows
+     */
+    public boolean isQuery() {
+        return query;
+    }
+
+    /**
+     * @return true if the operation runs in an explicit transaction
+     */
+    public boolean isTransactional() {
+        return this == FIND_ALL;
+    }
+}
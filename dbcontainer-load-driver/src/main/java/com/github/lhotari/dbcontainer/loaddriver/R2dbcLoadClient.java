@@ -0,0 +1,121 @@
+package com.github.lhotari.dbcontainer.loaddriver;
+
+import com.github.lhotari.dbcontainer.ConnectionFactoryPools;
+import com.github.lhotari.dbcontainer.ConnectionPoolSettings;
+import com.github.lhotari.dbcontainer.DatabaseContainer;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.Statement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SynchronousSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Executes the operations over a pool of R2DBC connections. With a target rate a pacer thread emits the operations
+ * on schedule and the operations that don't get a connection immediately wait in the pool. Without a target rate
+ * the concurrency limits the number of operations in flight.
+ */
+class R2dbcLoadClient implements LoadClient {
+    private static final Logger LOG = LoggerFactory.getLogger(R2dbcLoadClient.class);
+    private final DatabaseContainer databaseContainer;
+    private final LoadSettings settings;
+    private final CityData cityData;
+
+    R2dbcLoadClient(DatabaseContainer databaseContainer, LoadSettings settings, CityData cityData) {
+        this.databaseContainer = databaseContainer;
+        this.settings = settings;
+        this.cityData = cityData;
+    }
+
+    @Override
+    public void run(LoadSchedule schedule, OperationRecorder recorder) {
+        ConnectionPool connectionPool = ConnectionFactoryPools.createPooledConnectionFactory(databaseContainer,
+                ConnectionPoolSettings.create()
+                        .withMinimumIdle(settings.getConcurrency())
+                        .withMaximumSize(settings.getConcurrency())
+                        .withPoolName("load-driver"));
+        try {
+            if (settings.isTargetRate()) {
+                runOnSchedule(connectionPool, schedule, recorder);
+            } else {
+                runClosedLoop(connectionPool, schedule, recorder);
+            }
+        } finally {
+            connectionPool.dispose();
+        }
+    }
+
+    private void runOnSchedule(ConnectionPool connectionPool, LoadSchedule schedule, OperationRecorder recorder) {
+        Scheduler pacer = Schedulers.newSingle("load-driver-pacer");
+        try {
+            Flux.generate((SynchronousSink<Long> sink) -> {
+                long intendedStart = schedule.nextIntendedStart();
+                if (intendedStart == LoadSchedule.END) {
+                    sink.complete();
+                } else {
+                    LoadSchedule.waitUntil(intendedStart);
+                    sink.next(intendedStart);
+                }
+            })
+                    .subscribeOn(pacer)
+                    .flatMap(intendedStart -> execute(connectionPool, recorder, intendedStart), Integer.MAX_VALUE)
+                    .blockLast();
+        } finally {
+            pacer.dispose();
+        }
+    }
+
+    private void runClosedLoop(ConnectionPool connectionPool, LoadSchedule schedule, OperationRecorder recorder) {
+        Mono<Void> worker = Mono.defer(() -> {
+            long intendedStart = schedule.nextIntendedStart();
+            return intendedStart == LoadSchedule.END
+                    ? Mono.just(false)
+                    : execute(connectionPool, recorder, intendedStart).thenReturn(true);
+        }).repeat().takeWhile(Boolean::booleanValue).then();
+        Flux.range(0, settings.getConcurrency())
+                .flatMap(i -> worker, settings.getConcurrency())
+                .blockLast();
+    }
+
+    private Mono<Void> execute(ConnectionPool connectionPool, OperationRecorder recorder, long intendedStart) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        OperationType operationType = settings.getOperationMix().next(random);
+        Object[] parameters = cityData.parameters(operationType, random);
+        long[] start = {intendedStart};
+        return Mono.usingWhen(connectionPool.create(), connection -> {
+            start[0] = System.nanoTime();
+            return execute(connection, operationType, parameters);
+        }, Connection::close)
+                .then(Mono.<Void>fromRunnable(() -> recorder.record(operationType, intendedStart, start[0], System.nanoTime(), true)))
+                .onErrorResume(throwable -> {
+                    LOG.debug("Operation {} failed", operationType, throwable);
+                    recorder.record(operationType, intendedStart, start[0], System.nanoTime(), false);
+                    return Mono.empty();
+                });
+    }
+
+    private static Mono<Void> execute(Connection connection, OperationType operationType, Object[] parameters) {
+        Mono<Void> execution = Mono.defer(() -> {
+            Statement statement = connection.createStatement(operationType.getSql());
+            for (int i = 0; i < parameters.length; i++) {
+                statement.bind(i, parameters[i]);
+            }
+            return Flux.from(statement.execute())
+                    .flatMap(result -> operationType.isQuery() ? result.map((row, metadata) -> 1) : result.getRowsUpdated())
+                    .then();
+        });
+        if (!operationType.isTransactional()) {
+            return execution;
+        }
+        return Mono.from(connection.beginTransaction())
+                .then(execution)
+                .then(Mono.from(connection.commitTransaction()))
+                .onErrorResume(throwable -> Mono.from(connection.rollbackTransaction()).then(Mono.error(throwable)));
+    }
+}
@@ -0,0 +1,161 @@
+package com.github.lhotari.dbcontainer.postgres.embedded;
+
+import com.github.lhotari.dbcontainer.DatabaseContainerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Pre-initialized Postgres clusters that are copied to the data directory of an embedded database instead of
+ * running initdb for every start. A template is created once per name and shared by all JVMs on the machine.
+ * A lock file prevents concurrent JVMs from creating the same template twice. File locks are held by the whole JVM,
+ * so threads of the same JVM are serialized with a lock object per template before they lock the file.
+ */
+class ClusterTemplates {
+    private static final Logger LOG = LoggerFactory.getLogger(ClusterTemplates.class);
+    private static final String INITIALIZED_MARKER_FILE_NAME = ".dbcontainers-initialized";
+    private static final ConcurrentMap<Path, Object> TEMPLATE_LOCKS = new ConcurrentHashMap<>();
+
+    private ClusterTemplates() {
+
+    }
+
+    /**
+     * Returns the directory of an initialized cluster template, creating the template when it doesn't exist
+     *
+     * @param templatesDirectory the directory that contains the templates
+     * @param templateName       the name of the template, which changes when the cluster's contents change
+     * @param binDirectory       the directory of the Postgres binaries
+     * @param databaseUser       the name of the superuser
+     * @param initializer        initializes the cluster in the given directory after initdb has been run
+     * @return the template directory
+     */
+    static Path resolve(Path templatesDirectory, String templateName, Path binDirectory, String databaseUser,
+                        Consumer<Path> initializer) {
+        Path templateDirectory = templatesDirectory.resolve(templateName);
+        if (Files.exists(templateDirectory.resolve(INITIALIZED_MARKER_FILE_NAME))) {
+            return templateDirectory;
+        }
+        // a second FileChannel.lock() for the same file in this JVM would throw OverlappingFileLockException
+        synchronized (TEMPLATE_LOCKS.computeIfAbsent(templateDirectory.toAbsolutePath().normalize(), key -> new Object())) {
+            try {
+                Files.createDirectories(templatesDirectory);
+                try (FileChannel lockChannel = FileChannel.open(templatesDirectory.resolve(templateName + ".lock"),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                    // closing the channel releases the lock
+                    lockChannel.lock();
+                    if (!Files.exists(templateDirectory.resolve(INITIALIZED_MARKER_FILE_NAME))) {
+                        LOG.info("Creating Postgres cluster template {}", templateDirectory);
+                        // a partially created template is left behind when a JVM exits while creating it
+                        deleteRecursively(templateDirectory);
+                        initdb(binDirectory, templateDirectory, databaseUser);
+                        initializer.accept(templateDirectory);
+                        Files.createFile(templateDirectory.resolve(INITIALIZED_MARKER_FILE_NAME));
+                    }
+                }
+            } catch (IOException e) {
+                throw new DatabaseContainerException("Creating Postgres cluster template " + templateDirectory + " failed", e);
+            }
+        }
+        return templateDirectory;
+    }
+
+    private static void initdb(Path binDirectory, Path dataDirectory, String databaseUser) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(binDirectory.resolve("initdb").toString());
+        command.add("-D");
+        command.add(dataDirectory.toString());
+        command.add("-U");
+        command.add(databaseUser);
+        command.add("-A");
+        command.add("trust");
+        command.add("-E");
+        command.add("UTF8");
+        command.add("--locale=C");
+        // the template is copied to new data directories so it doesn't have to be durable
+        command.add("-N");
+        Path logFile = Files.createTempFile("initdb", ".log");
+        try {
+            Process process = new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .redirectOutput(logFile.toFile())
+                    .start();
+            if (!process.waitFor(2, TimeUnit.MINUTES)) {
+                process.destroyForcibly();
+                throw new DatabaseContainerException("initdb didn't complete in 2 minutes");
+            }
+            if (process.exitValue() != 0) {
+                throw new DatabaseContainerException("initdb failed with exit code " + process.exitValue() + ":\n"
+                        + new String(Files.readAllBytes(logFile)));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseContainerException("Interrupted while running initdb", e);
+        } finally {
+            Files.deleteIfExists(logFile);
+        }
+    }
+
+    /**
+     * Copies a template to a data directory, preserving the file permissions that Postgres requires
+     *
+     * @param templateDirectory the template directory
+     * @param dataDirectory     the data directory, which has to be empty or not exist
+     */
+    static void copy(Path templateDirectory, Path dataDirectory) {
+        try {
+            Files.walkFileTree(templateDirectory, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    Path target = dataDirectory.resolve(templateDirectory.relativize(dir).toString());
+                    Files.copy(dir, target, StandardCopyOption.COPY_ATTRIBUTES, StandardCopyOption.REPLACE_EXISTING);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if (!file.getFileName().toString().equals(INITIALIZED_MARKER_FILE_NAME)) {
+                        Files.copy(file, dataDirectory.resolve(templateDirectory.relativize(file).toString()), StandardCopyOption.COPY_ATTRIBUTES);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            throw new DatabaseContainerException("Copying Postgres cluster template " + templateDirectory + " to " + dataDirectory + " failed", e);
+        }
+    }
+
+    static void deleteRecursively(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,367 @@
+package com.github.lhotari.dbcontainer.postgres.embedded;
+
+import com.github.lhotari.dbcontainer.DatabaseContainer;
+import com.github.lhotari.dbcontainer.DatabaseContainerException;
+import com.github.lhotari.dbcontainer.DatabaseContainerPhase;
+import com.github.lhotari.dbcontainer.DatabaseContainerPhaseTimer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link DatabaseContainer} that runs Postgres binaries from a local installation as a child process of the JVM
+ * instead of running a docker container. This avoids the overhead of creating a docker container and mapping its
+ * ports, which dominates the startup time of short database tests.
+ * <p>
+ * The data directory is created on tmpfs (/dev/shm) when it's available. Instead of running initdb for every start,
+ * a pre-initialized cluster template that already contains the default database and the results of the init scripts
+ * is copied to the data directory. The template is created once per installation, configuration and init scripts
+ * and is shared by all JVMs on the machine. The server listens on a random free port of the loopback interface.
+ * When the JVM exits without stopping the container, a shutdown hook stops the server and deletes the data directory.
+ * <p>
+ * The installation is found from the "postgresHome" system property or the POSTGRES_HOME environment variable
+ * unless it's set with {@link #withPostgresHome(Path)}. Postgres refuses to run as the root user.
+ */
+public class EmbeddedPostgresDatabaseContainer implements DatabaseContainer {
+    private static final String DATABASE_NAME = "test";
+    private static final String DATABASE_USER = "test";
+    // connections are authenticated with the trust method so the password isn't checked
+    private static final String DATABASE_PASSWORD = "test";
+    private static final Path TMPFS_DIRECTORY = Paths.get("/dev/shm");
+    private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(1);
+    private Path postgresHome = findPostgresHome();
+    private Path templatesDirectory = Paths.get(System.getProperty("java.io.tmpdir"), "dbcontainers-embedded-postgres");
+    private Path dataDirectoryParent = Files.isDirectory(TMPFS_DIRECTORY) && Files.isWritable(TMPFS_DIRECTORY)
+            ? TMPFS_DIRECTORY : Paths.get(System.getProperty("java.io.tmpdir"));
+    private final Map<String, String> serverSettings = new LinkedHashMap<>();
+    private final List<String> initScripts = new ArrayList<>();
+    private boolean queryStatistics;
+    private Duration autoExplainMinDuration;
+    private Path dataDirectory;
+    private PostgresProcess postgresProcess;
+
+    public EmbeddedPostgresDatabaseContainer() {
+        // the data is thrown away when the server stops so durability isn't needed
+        serverSettings.put("fsync", "off");
+        serverSettings.put("synchronous_commit", "off");
+        serverSettings.put("full_page_writes", "off");
+    }
+
+    private static Path findPostgresHome() {
+        String postgresHome = System.getProperty("postgresHome", System.getenv("POSTGRES_HOME"));
+        return postgresHome != null ? Paths.get(postgresHome) : null;
+    }
+
+    /**
+     * Sets the directory of the local Postgres installation that contains the bin directory
+     *
+     * @param postgresHome the installation directory, for example /usr/lib/postgresql/11
+     * @return this instance
+     */
+    public EmbeddedPostgresDatabaseContainer withPostgresHome(Path postgresHome) {
+        this.postgresHome = postgresHome;
+        return this;
+    }
+
+    /**
+     * Sets the directory where the pre-initialized cluster templates are kept. The default is
+     * "dbcontainers-embedded-postgres" in the temporary directory.
+     *
+     * @param templatesDirectory the directory
+     * @return this instance
+     */
+    public EmbeddedPostgresDatabaseContainer withTemplatesDirectory(Path templatesDirectory) {
+        this.templatesDirectory = templatesDirectory;
+        return this;
+    }
+
+    /**
+     * Sets the directory in which the data directory is created. The default is /dev/shm when it's writable and
+     * the temporary directory otherwise.
+     *
+     * @param dataDirectoryParent the directory, preferably on tmpfs
+     * @return this instance
+     */
+    public EmbeddedPostgresDatabaseContainer withDataDirectoryParent(Path dataDirectoryParent) {
+        this.dataDirectoryParent = dataDirectoryParent;
+        return this;
+    }
+
+    /**
+     * Sets a Postgres server configuration parameter that is passed with "-c name=value" on the command line
+     *
+     * @param name  the name of the configuration parameter
+     * @param value the value
+     * @return this instance
+     */
+    public EmbeddedPostgresDatabaseContainer withServerSetting(String name, String value) {
+        serverSettings.put(name, value);
+        return this;
+    }
+
+    /**
+     * Enables or disables loading the pg_stat_statements library, which has to be installed with the
+     * Postgres contrib modules
+     *
+     * @param queryStatistics true to enable pg_stat_statements
+     * @return this instance
+     */
+    public EmbeddedPostgresDatabaseContainer withQueryStatistics(boolean queryStatistics) {
+        this.queryStatistics = queryStatistics;
+        return this;
+    }
+
+    /**
+     * Enables the auto_explain library which logs the execution plans of statements that take longer than
+     * the given duration to the server log
+     *
+     * @param minDuration the minimum duration of logged statements, null disables auto_explain
+     * @return this instance
+     */
+    public EmbeddedPostgresDatabaseContainer withAutoExplain(Duration minDuration) {
+        this.autoExplainMinDuration = minDuration;
+        return this;
+    }
+
+    /**
+     * Adds SQL scripts that are run in the default database of the cluster template. Later starts with the same
+     * scripts copy the initialized template without running the scripts.
+     *
+     * @param initScripts the contents of the SQL scripts
+     * @return this instance
+     */
+    public EmbeddedPostgresDatabaseContainer withInitScripts(String... initScripts) {
+        return withInitScripts(Arrays.asList(initScripts));
+    }
+
+    /**
+     * Adds SQL scripts that are run in the default database of the cluster template.
+     *
+     * @param initScripts the contents of the SQL scripts
+     * @return this instance
+     * @see #withInitScripts(String...)
+     */
+    public EmbeddedPostgresDatabaseContainer withInitScripts(List<String> initScripts) {
+        this.initScripts.addAll(initScripts);
+        return this;
+    }
+
+    /**
+     * Adds SQL script files that are run in the default database of the cluster template.
+     *
+     * @param initScriptFiles the SQL script files
+     * @return this instance
+     * @see #withInitScripts(String...)
+     */
+    public EmbeddedPostgresDatabaseContainer withInitScriptFiles(Path... initScriptFiles) {
+        for (Path initScriptFile : initScriptFiles) {
+            try {
+                initScripts.add(new String(Files.readAllBytes(initScriptFile), StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (postgresProcess != null) {
+            return;
+        }
+        if (postgresHome == null) {
+            throw new DatabaseContainerException("The Postgres installation directory isn't set. Set the postgresHome system property "
+                    + "or the POSTGRES_HOME environment variable.");
+        }
+        DatabaseContainerPhaseTimer phaseTimer = createPhaseTimer();
+        phaseTimer.time(DatabaseContainerPhase.START, null, () -> {
+            Path binDirectory = postgresHome.resolve("bin");
+            Path[] templateDirectory = new Path[1];
+            phaseTimer.time(DatabaseContainerPhase.SCHEMA_INITIALIZATION, null, () ->
+                    templateDirectory[0] = ClusterTemplates.resolve(templatesDirectory, createTemplateName(binDirectory),
+                            binDirectory, DATABASE_USER, this::initializeTemplate));
+            try {
+                dataDirectory = Files.createTempDirectory(dataDirectoryParent, "dbcontainers-postgres-");
+            } catch (IOException e) {
+                throw new DatabaseContainerException("Creating a data directory in " + dataDirectoryParent + " failed", e);
+            }
+            phaseTimer.time(DatabaseContainerPhase.DATA_DIRECTORY_COPY, null, () -> ClusterTemplates.copy(templateDirectory[0], dataDirectory));
+            PostgresProcess process = new PostgresProcess(binDirectory, dataDirectory, DATABASE_USER, true);
+            try {
+                phaseTimer.time(DatabaseContainerPhase.CONTAINER_START, null, () -> process.start(createServerSettings(), STARTUP_TIMEOUT));
+            } catch (RuntimeException e) {
+                deleteDataDirectory();
+                throw e;
+            }
+            postgresProcess = process;
+        });
+    }
+
+    // runs in the template directory while holding the template's lock
+    private void initializeTemplate(Path templateDirectory) {
+        PostgresProcess process = new PostgresProcess(postgresHome.resolve("bin"), templateDirectory, DATABASE_USER, false);
+        process.start(createServerSettings(), STARTUP_TIMEOUT);
+        try {
+            try (Connection connection = DriverManager.getConnection(process.getJdbcUrl(getMaintenanceDatabaseName()), DATABASE_USER, DATABASE_PASSWORD);
+                 Statement statement = connection.createStatement()) {
+                statement.execute("CREATE DATABASE " + DATABASE_NAME);
+            }
+            try (Connection connection = DriverManager.getConnection(process.getJdbcUrl(DATABASE_NAME), DATABASE_USER, DATABASE_PASSWORD);
+                 Statement statement = connection.createStatement()) {
+                for (String initScript : initScripts) {
+                    statement.execute(initScript);
+                }
+            }
+        } catch (SQLException e) {
+            throw new DatabaseContainerException("Initializing Postgres cluster template " + templateDirectory + " failed", e);
+        } finally {
+            // a clean shutdown so that copies of the template don't need crash recovery
+            process.stop(true);
+        }
+        try {
+            process.deleteLog();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String createTemplateName(Path binDirectory) {
+        Path postgresBinary = binDirectory.resolve("postgres");
+        String installation;
+        try {
+            // a new template is created when the installation gets upgraded
+            installation = postgresBinary.toRealPath() + "|" + Files.size(postgresBinary) + "|" + Files.getLastModifiedTime(postgresBinary).toMillis();
+        } catch (IOException e) {
+            throw new DatabaseContainerException("Postgres binary " + postgresBinary + " isn't available", e);
+        }
+        return "cluster-" + hash(installation + "|" + DATABASE_NAME + "|" + DATABASE_USER);
+    }
+
+    private String hash(String configuration) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(configuration.getBytes(StandardCharsets.UTF_8));
+            for (String initScript : initScripts) {
+                digest.update((byte) 0);
+                digest.update(initScript.getBytes(StandardCharsets.UTF_8));
+            }
+            StringBuilder hash = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hash.append(String.format("%02x", b));
+            }
+            return hash.substring(0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Map<String, String> createServerSettings() {
+        Map<String, String> settings = new LinkedHashMap<>(serverSettings);
+        List<String> preloadLibraries = new ArrayList<>();
+        if (queryStatistics) {
+            preloadLibraries.add("pg_stat_statements");
+            settings.put("pg_stat_statements.track_utility", "off");
+        }
+        if (autoExplainMinDuration != null) {
+            preloadLibraries.add("auto_explain");
+            settings.put("auto_explain.log_min_duration", autoExplainMinDuration.toMillis() + "ms");
+        }
+        if (!preloadLibraries.isEmpty()) {
+            settings.put("shared_preload_libraries", String.join(",", preloadLibraries));
+        }
+        return settings;
+    }
+
+    private DatabaseContainerPhaseTimer createPhaseTimer() {
+        return new DatabaseContainerPhaseTimer(this, "embedded-postgres:" + postgresHome);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (postgresProcess == null) {
+            return;
+        }
+        createPhaseTimer().time(DatabaseContainerPhase.STOP, null, () -> {
+            postgresProcess.stop(false);
+            postgresProcess = null;
+            deleteDataDirectory();
+        });
+    }
+
+    private void deleteDataDirectory() {
+        try {
+            ClusterTemplates.deleteRecursively(dataDirectory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        dataDirectory = null;
+    }
+
+    /**
+     * The configuration key consists of the class, the Postgres installation, the server settings and a hash of
+     * the init scripts.
+     */
+    @Override
+    public String getConfigurationKey() {
+        return getClass().getName() + "|" + postgresHome + "|" + createServerSettings() + "|initScripts="
+                + (initScripts.isEmpty() ? "none" : hash(""));
+    }
+
+    @Override
+    public String getJdbcUrl() {
+        return getJdbcUrl(getDatabaseName());
+    }
+
+    @Override
+    public String getR2dbcUrl() {
+        return getR2dbcUrl(getDatabaseName());
+    }
+
+    @Override
+    public String getJdbcUrl(String databaseName) {
+        return "jdbc:postgresql://" + PostgresProcess.LOOPBACK_ADDRESS + ":" + getPort() + "/" + databaseName;
+    }
+
+    @Override
+    public String getR2dbcUrl(String databaseName) {
+        return "r2dbc:postgresql://" + PostgresProcess.LOOPBACK_ADDRESS + ":" + getPort() + "/" + databaseName;
+    }
+
+    private synchronized int getPort() {
+        if (postgresProcess == null) {
+            throw new IllegalStateException("The embedded Postgres server hasn't been started");
+        }
+        return postgresProcess.getPort();
+    }
+
+    @Override
+    public String getDatabaseName() {
+        return DATABASE_NAME;
+    }
+
+    @Override
+    public String getDatabaseUser() {
+        return DATABASE_USER;
+    }
+
+    @Override
+    public String getDatabasePassword() {
+        return DATABASE_PASSWORD;
+    }
+}
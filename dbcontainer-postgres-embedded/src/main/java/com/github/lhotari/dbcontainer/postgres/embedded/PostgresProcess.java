@@ -0,0 +1,218 @@
+package com.github.lhotari.dbcontainer.postgres.embedded;
+
+import com.github.lhotari.dbcontainer.DatabaseContainerException;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A Postgres server that runs as a child process of the JVM on a random free port.
+ * Unix domain sockets are disabled and the server only listens on the loopback interface.
+ * <p>
+ * A shutdown hook stops the server when the JVM exits without stopping it. The hook also deletes a temporary
+ * data directory, so that data directories on tmpfs don't use memory after the JVM has exited.
+ */
+class PostgresProcess {
+    static final String LOOPBACK_ADDRESS = "127.0.0.1";
+    private static final String LOG_FILE_NAME = "postgres.log";
+    private static final int MAX_START_ATTEMPTS = 3;
+    private static final long READINESS_POLL_INTERVAL_MILLIS = 10L;
+    private static final int LOG_LINES_IN_ERROR = 20;
+    private final Path binDirectory;
+    private final Path dataDirectory;
+    private final String databaseUser;
+    private final boolean temporaryDataDirectory;
+    private Process process;
+    private int port;
+    private Thread shutdownHook;
+
+    /**
+     * @param binDirectory           the directory of the Postgres binaries
+     * @param dataDirectory          the data directory
+     * @param databaseUser           the name of the superuser
+     * @param temporaryDataDirectory true when the shutdown hook should delete the data directory
+     */
+    PostgresProcess(Path binDirectory, Path dataDirectory, String databaseUser, boolean temporaryDataDirectory) {
+        this.binDirectory = binDirectory;
+        this.dataDirectory = dataDirectory;
+        this.databaseUser = databaseUser;
+        this.temporaryDataDirectory = temporaryDataDirectory;
+    }
+
+    /**
+     * Starts the server and waits until it accepts connections. Starting is retried on another port when
+     * the chosen port was taken by another process before the server could bind to it.
+     *
+     * @param settings       the server configuration parameters
+     * @param startupTimeout the time to wait for the server to accept connections
+     */
+    synchronized void start(Map<String, String> settings, Duration startupTimeout) {
+        registerShutdownHook();
+        for (int attempt = 1; ; attempt++) {
+            port = findFreePort();
+            launch(settings);
+            if (awaitReadiness(startupTimeout)) {
+                return;
+            }
+            String log = readLogTail();
+            if (attempt < MAX_START_ATTEMPTS && log.contains("could not bind")) {
+                continue;
+            }
+            stop(false);
+            throw new DatabaseContainerException("Starting Postgres in " + dataDirectory + " failed. Server log:\n" + log);
+        }
+    }
+
+    private void launch(Map<String, String> settings) {
+        List<String> command = new ArrayList<>();
+        command.add(binDirectory.resolve("postgres").toString());
+        command.add("-D");
+        command.add(dataDirectory.toString());
+        command.add("-p");
+        command.add(String.valueOf(port));
+        command.add("-c");
+        command.add("listen_addresses=" + LOOPBACK_ADDRESS);
+        command.add("-c");
+        command.add("unix_socket_directories=");
+        for (Map.Entry<String, String> setting : settings.entrySet()) {
+            command.add("-c");
+            command.add(setting.getKey() + "=" + setting.getValue());
+        }
+        try {
+            process = new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .redirectOutput(dataDirectory.resolve(LOG_FILE_NAME).toFile())
+                    .start();
+        } catch (IOException e) {
+            throw new DatabaseContainerException("Launching " + command.get(0) + " failed", e);
+        }
+    }
+
+    private boolean awaitReadiness(Duration startupTimeout) {
+        long deadline = System.nanoTime() + startupTimeout.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                return false;
+            }
+            try {
+                DriverManager.getConnection(getJdbcUrl("postgres"), databaseUser, "").close();
+                return true;
+            } catch (SQLException e) {
+                // the server isn't accepting connections yet
+            }
+            try {
+                Thread.sleep(READINESS_POLL_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stops the server with pg_ctl and waits for the process to exit
+     *
+     * @param clean true for a clean shutdown that leaves a consistent data directory, false for an immediate
+     *              shutdown that is used when the data directory is thrown away
+     */
+    synchronized void stop(boolean clean) {
+        unregisterShutdownHook();
+        if (process == null) {
+            return;
+        }
+        try {
+            if (process.isAlive()) {
+                Process pgCtl = new ProcessBuilder(binDirectory.resolve("pg_ctl").toString(), "stop", "-D", dataDirectory.toString(),
+                        "-m", clean ? "fast" : "immediate", "-w", "-s")
+                        .redirectErrorStream(true)
+                        .redirectOutput(ProcessBuilder.Redirect.appendTo(dataDirectory.resolve(LOG_FILE_NAME).toFile()))
+                        .start();
+                pgCtl.waitFor(30, TimeUnit.SECONDS);
+            }
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        } catch (IOException e) {
+            process.destroyForcibly();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            process.destroyForcibly();
+        }
+        process = null;
+    }
+
+    private void registerShutdownHook() {
+        if (shutdownHook != null) {
+            return;
+        }
+        shutdownHook = new Thread(() -> {
+            stop(false);
+            if (temporaryDataDirectory) {
+                try {
+                    ClusterTemplates.deleteRecursively(dataDirectory);
+                } catch (IOException e) {
+                    // the JVM is exiting
+                }
+            }
+        }, "embedded-postgres-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    private void unregisterShutdownHook() {
+        if (shutdownHook == null) {
+            return;
+        }
+        if (Thread.currentThread() != shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // the JVM is already shutting down and runs the hook
+            }
+        }
+        shutdownHook = null;
+    }
+
+    int getPort() {
+        return port;
+    }
+
+    String getJdbcUrl(String databaseName) {
+        return "jdbc:postgresql://" + LOOPBACK_ADDRESS + ":" + port + "/" + databaseName;
+    }
+
+    /**
+     * Deletes the server log so that it doesn't get copied along with a cluster template
+     */
+    void deleteLog() throws IOException {
+        Files.deleteIfExists(dataDirectory.resolve(LOG_FILE_NAME));
+    }
+
+    private String readLogTail() {
+        try {
+            List<String> lines = Files.readAllLines(dataDirectory.resolve(LOG_FILE_NAME), StandardCharsets.UTF_8);
+            return String.join("\n", lines.subList(Math.max(0, lines.size() - LOG_LINES_IN_ERROR), lines.size()));
+        } catch (IOException e) {
+            return "<not available: " + e + ">";
+        }
+    }
+
+    private static int findFreePort() {
+        try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getByName(LOOPBACK_ADDRESS))) {
+            return serverSocket.getLocalPort();
+        } catch (IOException e) {
+            throw new DatabaseContainerException("Finding a free port failed", e);
+        }
+    }
+}
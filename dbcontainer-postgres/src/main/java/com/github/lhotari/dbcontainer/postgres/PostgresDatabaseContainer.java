@@ -1,35 +1,421 @@
 package com.github.lhotari.dbcontainer.postgres;
 
-import com.github.lhotari.dbcontainer.DatabaseContainer;
+import com.github.lhotari.dbcontainer.CrossJvmShareableContainer;
+import com.github.lhotari.dbcontainer.DatabaseAdministration;
+import com.github.lhotari.dbcontainer.DatabaseContainerPhase;
+import com.github.lhotari.dbcontainer.DatabaseContainerPhaseTimer;
+import com.github.lhotari.dbcontainer.ImageManager;
+import com.github.lhotari.dbcontainer.NetworkShaping;
+import com.github.lhotari.dbcontainer.QueryStatistics;
+import com.github.lhotari.dbcontainer.ResourceProfile;
+import com.github.lhotari.dbcontainer.SchemaImageCache;
+import com.github.lhotari.dbcontainer.ShapingProxies;
+import com.github.lhotari.dbcontainer.ShapingProxy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.ResourceReaper;
 
-public class PostgresDatabaseContainer implements DatabaseContainer {
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PostgresDatabaseContainer implements CrossJvmShareableContainer {
+    private static final Logger LOG = LoggerFactory.getLogger(PostgresDatabaseContainer.class);
     public static final String DEFAULT_POSTGRES_VERSION = "11-alpine";
+    private static final String DATA_DIRECTORY_IN_CONTAINER = "/var/lib/postgresql/data";
+    // the default data directory is a docker volume which wouldn't be included in a committed image
+    private static final String CACHEABLE_DATA_DIRECTORY_IN_CONTAINER = "/var/lib/postgresql/pgdata";
     private String postgresVersion = System.getProperty("postgresVersion", DEFAULT_POSTGRES_VERSION);
     private final PostgreSQLContainer<?> postgresContainer;
+    private final Map<String, String> serverSettings = new LinkedHashMap<>();
+    private final List<String> initScripts = new ArrayList<>();
+    private SchemaImageCache schemaImageCache;
+    private boolean fastTestMode;
+    private boolean queryStatistics;
+    private Duration autoExplainMinDuration;
+    private NetworkShaping networkShaping;
+    private ResourceProfile resourceProfile;
+    private volatile ShapingProxies shapingProxies;
+    private ImageManager imageManager = ImageManager.getDefault();
+
+    static {
+        if (ImageManager.isPrePullEnabled()) {
+            ImageManager.getDefault().prePull("postgres:" + System.getProperty("postgresVersion", DEFAULT_POSTGRES_VERSION));
+        }
+    }
 
     public PostgresDatabaseContainer() {
-        this.postgresContainer = new PostgreSQLContainer<>("postgres:" + postgresVersion);
+        this.postgresContainer = new InstrumentedPostgreSQLContainer("postgres:" + postgresVersion);
+        // same default as in Testcontainers' PostgreSQLContainer
+        serverSettings.put("fsync", "off");
+    }
+
+    /**
+     * Sets a Postgres server configuration parameter that is passed with "-c name=value" on the command line
+     *
+     * @param name  the name of the configuration parameter
+     * @param value the value
+     * @return this instance
+     */
+    public PostgresDatabaseContainer withServerSetting(String name, String value) {
+        serverSettings.put(name, value);
+        return this;
+    }
+
+    /**
+     * Enables or disables the fast test mode. In fast test mode, the data directory is on a tmpfs mount and
+     * Postgres is configured with settings that trade durability for speed: fsync, synchronous_commit and
+     * full_page_writes are turned off. Data is lost when the container stops, which doesn't matter in tests.
+     * <p>
+     * When the initialized database is committed to the schema image cache, the data directory isn't on tmpfs
+     * since tmpfs mounts aren't included in committed images. The settings are used also in that case.
+     *
+     * @param fastTestMode true to enable the fast test mode
+     * @return this instance
+     */
+    public PostgresDatabaseContainer withFastTestMode(boolean fastTestMode) {
+        this.fastTestMode = fastTestMode;
+        return this;
+    }
+
+    /**
+     * Enables or disables loading the pg_stat_statements library so that {@link QueryStatistics} can be used.
+     * Utility statements such as transaction control aren't tracked.
+     *
+     * @param queryStatistics true to enable pg_stat_statements
+     * @return this instance
+     */
+    public PostgresDatabaseContainer withQueryStatistics(boolean queryStatistics) {
+        this.queryStatistics = queryStatistics;
+        return this;
+    }
+
+    /**
+     * Enables the auto_explain library which logs the execution plans of statements that take longer than
+     * the given duration to the server log
+     *
+     * @param minDuration the minimum duration of logged statements, null disables auto_explain
+     * @return this instance
+     */
+    public PostgresDatabaseContainer withAutoExplain(Duration minDuration) {
+        this.autoExplainMinDuration = minDuration;
+        return this;
+    }
+
+    /**
+     * Adds SQL scripts that are run in the default database after the container has started.
+     * When the schema image cache is enabled, the initialized database is committed as an image and later starts
+     * with the same configuration and scripts boot that image without running the scripts.
+     *
+     * @param initScripts the contents of the SQL scripts
+     * @return this instance
+     */
+    public PostgresDatabaseContainer withInitScripts(String... initScripts) {
+        return withInitScripts(Arrays.asList(initScripts));
+    }
+
+    /**
+     * Adds SQL scripts that are run in the default database after the container has started.
+     *
+     * @param initScripts the contents of the SQL scripts
+     * @return this instance
+     * @see #withInitScripts(String...)
+     */
+    public PostgresDatabaseContainer withInitScripts(List<String> initScripts) {
+        this.initScripts.addAll(initScripts);
+        return this;
+    }
+
+    /**
+     * Adds SQL script files that are run in the default database after the container has started.
+     *
+     * @param initScriptFiles the SQL script files
+     * @return this instance
+     * @see #withInitScripts(String...)
+     */
+    public PostgresDatabaseContainer withInitScriptFiles(Path... initScriptFiles) {
+        for (Path initScriptFile : initScriptFiles) {
+            try {
+                initScripts.add(new String(Files.readAllBytes(initScriptFile), StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Sets the cache for images that contain a database initialized with the init scripts, for example
+     * {@link SchemaImageCache#getDefault()}. Caching is disabled by default.
+     *
+     * @param schemaImageCache the cache, null disables caching
+     * @return this instance
+     */
+    public PostgresDatabaseContainer withSchemaImageCache(SchemaImageCache schemaImageCache) {
+        this.schemaImageCache = schemaImageCache;
+        return this;
+    }
+
+    /**
+     * Routes the connections of clients through a {@link ShapingProxy} that adds latency, jitter and bandwidth
+     * limits. The URLs point to the proxy after the container has started. The init scripts and administrative
+     * operations such as creating databases and reading query statistics connect without the proxy.
+     *
+     * @param networkShaping the shaping settings, null connects directly to the container
+     * @return this instance
+     */
+    public PostgresDatabaseContainer withNetworkShaping(NetworkShaping networkShaping) {
+        this.networkShaping = networkShaping;
+        return this;
+    }
+
+    /**
+     * Limits the CPUs, memory and shared memory of the container and derives matching settings for
+     * shared_buffers, effective_cache_size, work_mem, maintenance_work_mem, max_connections and parallel query.
+     * Settings set with {@link #withServerSetting(String, String)} take precedence over the derived settings.
+     *
+     * @param resourceProfile the limits, null for no limits
+     * @return this instance
+     */
+    public PostgresDatabaseContainer withResourceProfile(ResourceProfile resourceProfile) {
+        this.resourceProfile = resourceProfile;
+        return this;
+    }
+
+    /**
+     * Sets the image manager that resolves the image tag to a pinned digest and pulls the image.
+     * The default image manager starts pulling the default image when the class is loaded.
+     *
+     * @param imageManager the image manager, null for letting Testcontainers pull the image by its tag
+     * @return this instance
+     */
+    public PostgresDatabaseContainer withImageManager(ImageManager imageManager) {
+        this.imageManager = imageManager;
+        return this;
     }
 
     @Override
     public void start() {
-        postgresContainer.start();
+        createPhaseTimer().time(DatabaseContainerPhase.START, null, () -> {
+            boolean cacheable = isSchemaImageCacheable();
+            if (cacheable) {
+                postgresContainer.withEnv("PGDATA", CACHEABLE_DATA_DIRECTORY_IN_CONTAINER);
+                if (fastTestMode) {
+                    LOG.warn("The data directory isn't on tmpfs in fast test mode since the database is committed to the schema image cache");
+                }
+            } else if (fastTestMode) {
+                postgresContainer.withTmpFs(Collections.singletonMap(DATA_DIRECTORY_IN_CONTAINER, "rw"));
+            }
+            String cachedImageName = cacheable ? schemaImageCache.getImageName("postgres", createSchemaHash()) : null;
+            boolean cacheHit = cacheable && schemaImageCache.lookup(Collections.singletonList(cachedImageName));
+            if (cacheHit) {
+                postgresContainer.setDockerImageName(cachedImageName);
+            }
+            if (resourceProfile != null) {
+                postgresContainer.withCreateContainerCmdModifier(cmd -> resourceProfile.applyTo(cmd.getHostConfig()));
+            }
+            postgresContainer.setCommand(createCommand().toArray(new String[0]));
+            DatabaseContainerPhaseTimer phaseTimer = createPhaseTimer();
+            phaseTimer.time(DatabaseContainerPhase.IMAGE_RESOLUTION, null, () -> {
+                if (!cacheHit && imageManager != null) {
+                    postgresContainer.setDockerImageName(imageManager.resolve("postgres:" + postgresVersion));
+                }
+                postgresContainer.getDockerImageName();
+            });
+            phaseTimer.time(DatabaseContainerPhase.CONTAINER_START, null, postgresContainer::start);
+            if (!initScripts.isEmpty() && !cacheHit) {
+                phaseTimer.time(DatabaseContainerPhase.SCHEMA_INITIALIZATION, null, () -> {
+                    for (String initScript : initScripts) {
+                        DatabaseAdministration.executeSql(this, getDatabaseName(), initScript);
+                    }
+                });
+                if (cacheable) {
+                    phaseTimer.time(DatabaseContainerPhase.IMAGE_COMMIT, null, () -> {
+                        // flush the data files so that the committed file system contains the initialized database
+                        DatabaseAdministration.executeSql(this, getDatabaseName(), "CHECKPOINT");
+                        schemaImageCache.commit(postgresContainer.getContainerId(), cachedImageName);
+                    });
+                }
+            }
+            if (networkShaping != null) {
+                shapingProxies = new ShapingProxies(networkShaping);
+            }
+        });
+    }
+
+    private boolean isSchemaImageCacheable() {
+        return !initScripts.isEmpty() && schemaImageCache != null;
+    }
+
+    private String createSchemaHash() {
+        return SchemaImageCache.hash("postgres:" + postgresVersion + "|" + postgresContainer.getDatabaseName() + "|"
+                + postgresContainer.getUsername() + "|" + postgresContainer.getPassword(), initScripts);
+    }
+
+    private DatabaseContainerPhaseTimer createPhaseTimer() {
+        return new DatabaseContainerPhaseTimer(this, "postgres:" + postgresVersion);
+    }
+
+    private List<String> createCommand() {
+        Map<String, String> settings = createResourceSettings();
+        settings.putAll(serverSettings);
+        if (fastTestMode) {
+            settings.put("fsync", "off");
+            settings.put("synchronous_commit", "off");
+            settings.put("full_page_writes", "off");
+        }
+        List<String> preloadLibraries = new ArrayList<>();
+        if (queryStatistics) {
+            preloadLibraries.add("pg_stat_statements");
+            settings.put("pg_stat_statements.track_utility", "off");
+        }
+        if (autoExplainMinDuration != null) {
+            preloadLibraries.add("auto_explain");
+            settings.put("auto_explain.log_min_duration", autoExplainMinDuration.toMillis() + "ms");
+        }
+        if (!preloadLibraries.isEmpty()) {
+            settings.put("shared_preload_libraries", String.join(",", preloadLibraries));
+        }
+        List<String> command = new ArrayList<>();
+        command.add("postgres");
+        for (Map.Entry<String, String> setting : settings.entrySet()) {
+            command.add("-c");
+            command.add(setting.getKey() + "=" + setting.getValue());
+        }
+        return command;
+    }
+
+    private Map<String, String> createResourceSettings() {
+        Map<String, String> settings = new LinkedHashMap<>();
+        if (resourceProfile == null) {
+            return settings;
+        }
+        int cpus = resourceProfile.getWholeCpus();
+        int maxConnections = 100;
+        if (cpus > 0) {
+            maxConnections = Math.max(20, Math.min(200, cpus * 25));
+            settings.put("max_connections", String.valueOf(maxConnections));
+            settings.put("max_parallel_workers_per_gather", String.valueOf(cpus / 2));
+        }
+        long memory = resourceProfile.getMemoryBytes();
+        if (memory > 0) {
+            // data on tmpfs takes memory from the same budget in fast test mode
+            long sharedBuffers = fastTestMode && !isSchemaImageCacheable() ? memory / 8 : memory / 4;
+            long workMem = Math.max(ResourceProfile.MEGABYTE, Math.min(64 * ResourceProfile.MEGABYTE,
+                    (memory - sharedBuffers) / (maxConnections * 4L)));
+            long maintenanceWorkMem = Math.max(16 * ResourceProfile.MEGABYTE, Math.min(1024 * ResourceProfile.MEGABYTE, memory / 16));
+            settings.put("shared_buffers", sharedBuffers / ResourceProfile.MEGABYTE + "MB");
+            settings.put("effective_cache_size", memory * 3 / 4 / ResourceProfile.MEGABYTE + "MB");
+            settings.put("work_mem", workMem / 1024 + "kB");
+            settings.put("maintenance_work_mem", maintenanceWorkMem / ResourceProfile.MEGABYTE + "MB");
+        }
+        return settings;
     }
 
     @Override
     public void stop() {
-        postgresContainer.stop();
+        createPhaseTimer().time(DatabaseContainerPhase.STOP, null, () -> {
+            if (shapingProxies != null) {
+                shapingProxies.close();
+                shapingProxies = null;
+            }
+            postgresContainer.stop();
+        });
+    }
+
+    @Override
+    public void retainOnJvmShutdown() {
+        ResourceReaper.instance().unregisterContainer(postgresContainer.getContainerId());
+    }
+
+    /**
+     * The configuration key consists of the class, the docker image, the container's command, the fast test mode
+     * and a hash of the init scripts.
+     */
+    @Override
+    public String getConfigurationKey() {
+        return getClass().getName() + "|postgres:" + postgresVersion + "|" + String.join(" ", createCommand()) + "|fastTestMode=" + fastTestMode
+                + "|initScripts=" + (initScripts.isEmpty() ? "none" : SchemaImageCache.hash("", initScripts))
+                + (networkShaping != null ? "|networkShaping=" + networkShaping : "")
+                + (resourceProfile != null ? "|resourceProfile=" + resourceProfile : "");
     }
 
     @Override
     public String getJdbcUrl() {
-        return postgresContainer.getJdbcUrl();
+        return getJdbcUrl(getDatabaseName());
     }
 
     @Override
     public String getR2dbcUrl() {
-        return "r2dbc:postgresql://" + postgresContainer.getContainerIpAddress() + ":" + postgresContainer.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT) + "/" + postgresContainer.getDatabaseName();
+        return getR2dbcUrl(getDatabaseName());
+    }
+
+    @Override
+    public String getJdbcUrl(String databaseName) {
+        return "jdbc:postgresql://" + getEndpoint() + "/" + databaseName;
+    }
+
+    @Override
+    public String getR2dbcUrl(String databaseName) {
+        return "r2dbc:postgresql://" + getEndpoint() + "/" + databaseName;
+    }
+
+    @Override
+    public String getDirectJdbcUrl(String databaseName) {
+        return "jdbc:postgresql://" + getDirectEndpoint() + "/" + databaseName;
+    }
+
+    @Override
+    public String getDirectR2dbcUrl(String databaseName) {
+        return "r2dbc:postgresql://" + getDirectEndpoint() + "/" + databaseName;
+    }
+
+    @Override
+    public NetworkShaping getNetworkShaping() {
+        return networkShaping;
+    }
+
+    private String getEndpoint() {
+        ShapingProxies proxies = shapingProxies;
+        if (proxies != null) {
+            ShapingProxy proxy = proxies.forEndpoint(postgresContainer.getContainerIpAddress(),
+                    postgresContainer.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT));
+            return proxy.getHost() + ":" + proxy.getPort();
+        }
+        return getDirectEndpoint();
+    }
+
+    private String getDirectEndpoint() {
+        return postgresContainer.getContainerIpAddress() + ":" + postgresContainer.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT);
+    }
+
+    @Override
+    public ShapingProxy.Statistics getNetworkStatistics() {
+        ShapingProxies proxies = shapingProxies;
+        return proxies != null ? proxies.getStatistics() : null;
+    }
+
+    @Override
+    public void resetNetworkStatistics() {
+        ShapingProxies proxies = shapingProxies;
+        if (proxies != null) {
+            proxies.resetStatistics();
+        }
+    }
+
+    @Override
+    public String getDatabaseName() {
+        return postgresContainer.getDatabaseName();
     }
 
     @Override
@@ -41,4 +427,15 @@ public class PostgresDatabaseContainer implements DatabaseContainer {
     public String getDatabasePassword() {
         return postgresContainer.getPassword();
     }
+
+    private class InstrumentedPostgreSQLContainer extends PostgreSQLContainer<InstrumentedPostgreSQLContainer> {
+        InstrumentedPostgreSQLContainer(String dockerImageName) {
+            super(dockerImageName);
+        }
+
+        @Override
+        protected void waitUntilContainerStarted() {
+            createPhaseTimer().time(DatabaseContainerPhase.READINESS_WAIT, null, super::waitUntilContainerStarted);
+        }
+    }
 }
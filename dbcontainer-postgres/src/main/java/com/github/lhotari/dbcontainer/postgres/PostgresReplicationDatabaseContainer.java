@@ -0,0 +1,606 @@
+package com.github.lhotari.dbcontainer.postgres;
+
+import com.github.lhotari.dbcontainer.ConnectionPoolSettings;
+import com.github.lhotari.dbcontainer.DataSourcePools;
+import com.github.lhotari.dbcontainer.DatabaseAdministration;
+import com.github.lhotari.dbcontainer.DatabaseContainer;
+import com.github.lhotari.dbcontainer.DatabaseContainerException;
+import com.github.lhotari.dbcontainer.DatabaseContainerExecutors;
+import com.github.lhotari.dbcontainer.DatabaseContainerPhase;
+import com.github.lhotari.dbcontainer.DatabaseContainerPhaseTimer;
+import com.github.lhotari.dbcontainer.DatabaseContainerView;
+import com.github.lhotari.dbcontainer.ImageManager;
+import com.github.lhotari.dbcontainer.PooledDataSourceProvider;
+import com.github.lhotari.dbcontainer.ReadWriteRoutingDataSource;
+import com.github.lhotari.dbcontainer.SchemaImageCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.containers.Container;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.Network;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Postgres topology of a primary and streaming replicas on a shared docker network.
+ * <p>
+ * The replicas are cloned from the primary with pg_basebackup after the init scripts have run, stream the WAL
+ * through a physical replication slot each and accept read-only connections. {@link #start()} returns when all
+ * replicas have replayed the primary's WAL. {@link #getJdbcUrl()} and {@link #getR2dbcUrl()} point to the primary,
+ * {@link #getReadJdbcUrl(String)} to the replicas with load balancing, and {@link #getReplicaJdbcUrl(int, String)}
+ * and {@link #getReplicaR2dbcUrl(int, String)} to a single replica.
+ * <p>
+ * {@link #createPooledDataSource(ConnectionPoolSettings)} returns a {@link ReadWriteRoutingDataSource} that sends
+ * read-only transactions to the replicas. {@link #getReplicationLag()} reports how far each replica is behind.
+ * Requires Postgres 10 or later.
+ */
+public class PostgresReplicationDatabaseContainer implements PooledDataSourceProvider {
+    private static final Logger LOG = LoggerFactory.getLogger(PostgresReplicationDatabaseContainer.class);
+    private static final String PRIMARY_NW_ALIAS = "postgres-primary";
+    private static final String REPLICA_NW_ALIAS = "postgres-replica";
+    private static final String DATA_DIRECTORY_IN_CONTAINER = "/var/lib/postgresql/data";
+    // the parent directory is a tmpfs mount in fast test mode
+    private static final String REPLICA_DATA_DIRECTORY_IN_CONTAINER = "/var/lib/postgresql/replica/data";
+    private static final String REPLICA_READY_LOG_MESSAGE = ".*database system is ready to accept read.only connections.*\\s";
+    private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(2);
+    private static final Duration CATCH_UP_TIMEOUT = Duration.ofMinutes(1);
+    private static final long CATCH_UP_POLL_MILLIS = 20L;
+    private String postgresVersion = System.getProperty("postgresVersion", PostgresDatabaseContainer.DEFAULT_POSTGRES_VERSION);
+    private final PostgreSQLContainer<?> primaryContainer;
+    private List<GenericContainer<?>> replicaContainers = Collections.emptyList();
+    private Network network;
+    private int replicaCount = 1;
+    private final Map<String, String> serverSettings = new LinkedHashMap<>();
+    private final List<String> initScripts = new ArrayList<>();
+    private boolean fastTestMode;
+    private ImageManager imageManager = ImageManager.getDefault();
+
+    public PostgresReplicationDatabaseContainer() {
+        this.primaryContainer = new PostgreSQLContainer<>("postgres:" + postgresVersion);
+        serverSettings.put("fsync", "off");
+    }
+
+    /**
+     * @param replicaCount the number of streaming replicas, 1 by default
+     * @return this instance
+     */
+    public PostgresReplicationDatabaseContainer withReplicaCount(int replicaCount) {
+        if (replicaCount < 1) {
+            throw new IllegalArgumentException("replicaCount must be at least 1");
+        }
+        this.replicaCount = replicaCount;
+        return this;
+    }
+
+    /**
+     * Sets a Postgres server configuration parameter of the primary and the replicas
+     *
+     * @param name  the name of the configuration parameter
+     * @param value the value
+     * @return this instance
+     */
+    public PostgresReplicationDatabaseContainer withServerSetting(String name, String value) {
+        serverSettings.put(name, value);
+        return this;
+    }
+
+    /**
+     * Enables or disables the fast test mode. In fast test mode, the data directories are on tmpfs mounts and
+     * fsync, synchronous_commit and full_page_writes are turned off.
+     *
+     * @param fastTestMode true to enable the fast test mode
+     * @return this instance
+     */
+    public PostgresReplicationDatabaseContainer withFastTestMode(boolean fastTestMode) {
+        this.fastTestMode = fastTestMode;
+        return this;
+    }
+
+    /**
+     * Adds SQL scripts that are run in the default database of the primary before the replicas are cloned
+     *
+     * @param initScripts the contents of the SQL scripts
+     * @return this instance
+     */
+    public PostgresReplicationDatabaseContainer withInitScripts(String... initScripts) {
+        return withInitScripts(Arrays.asList(initScripts));
+    }
+
+    /**
+     * Adds SQL scripts that are run in the default database of the primary before the replicas are cloned
+     *
+     * @param initScripts the contents of the SQL scripts
+     * @return this instance
+     */
+    public PostgresReplicationDatabaseContainer withInitScripts(List<String> initScripts) {
+        this.initScripts.addAll(initScripts);
+        return this;
+    }
+
+    /**
+     * @param imageManager the image manager, null for letting Testcontainers pull the image by its tag
+     * @return this instance
+     * @see PostgresDatabaseContainer#withImageManager(ImageManager)
+     */
+    public PostgresReplicationDatabaseContainer withImageManager(ImageManager imageManager) {
+        this.imageManager = imageManager;
+        return this;
+    }
+
+    @Override
+    public synchronized void start() {
+        createPhaseTimer().time(DatabaseContainerPhase.START, null, this::startNodes);
+    }
+
+    private void startNodes() {
+        long startTime = System.nanoTime();
+        DatabaseContainerPhaseTimer phaseTimer = createPhaseTimer();
+        network = Network.newNetwork();
+        List<CompletableFuture<Void>> replicasStarted = new ArrayList<>();
+        try {
+            phaseTimer.time(DatabaseContainerPhase.NETWORK_CREATION, null, network::getId);
+            String[] imageName = {"postgres:" + postgresVersion};
+            phaseTimer.time(DatabaseContainerPhase.IMAGE_RESOLUTION, null, () -> {
+                if (imageManager != null) {
+                    imageName[0] = imageManager.resolve(imageName[0]);
+                }
+            });
+            primaryContainer.setDockerImageName(imageName[0]);
+            primaryContainer.withNetwork(network)
+                    .withNetworkAliases(PRIMARY_NW_ALIAS)
+                    .setCommand(createPrimaryCommand().toArray(new String[0]));
+            if (fastTestMode) {
+                primaryContainer.withTmpFs(Collections.singletonMap(DATA_DIRECTORY_IN_CONTAINER, "rw"));
+            }
+            phaseTimer.time(DatabaseContainerPhase.CONTAINER_START, PRIMARY_NW_ALIAS, primaryContainer::start);
+            enableReplicationConnections();
+            if (!initScripts.isEmpty()) {
+                phaseTimer.time(DatabaseContainerPhase.SCHEMA_INITIALIZATION, null, () -> {
+                    for (String initScript : initScripts) {
+                        DatabaseAdministration.executeSql(this, getDatabaseName(), initScript);
+                    }
+                });
+            }
+            List<GenericContainer<?>> replicas = new ArrayList<>();
+            for (int i = 0; i < replicaCount; i++) {
+                DatabaseAdministration.executeSql(this, getDatabaseName(), "SELECT pg_create_physical_replication_slot('" + getReplicaName(i) + "')");
+                replicas.add(createReplicaContainer(imageName[0], i));
+            }
+            replicaContainers = Collections.unmodifiableList(replicas);
+            // the replicas clone the primary concurrently
+            for (int i = 0; i < replicaContainers.size(); i++) {
+                GenericContainer<?> replica = replicaContainers.get(i);
+                String nodeName = getReplicaAlias(i);
+                replicasStarted.add(CompletableFuture.runAsync(() ->
+                                phaseTimer.time(DatabaseContainerPhase.CONTAINER_START, nodeName, replica::start),
+                        DatabaseContainerExecutors.startupExecutor()));
+            }
+            CompletableFuture.allOf(replicasStarted.toArray(new CompletableFuture<?>[0])).join();
+            phaseTimer.time(DatabaseContainerPhase.READINESS_WAIT, null, () -> waitForReplicas(CATCH_UP_TIMEOUT));
+        } catch (Throwable t) {
+            for (CompletableFuture<Void> replicaStarted : replicasStarted) {
+                replicaStarted.handle((result, throwable) -> null).join();
+            }
+            stopContainers();
+            Throwable failure = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+            sneakyThrow(failure);
+        }
+        LOG.info("Postgres primary with {} replicas started in {} ms", replicaCount, (System.nanoTime() - startTime) / 1000000L);
+    }
+
+    private void enableReplicationConnections() {
+        try {
+            // "all" in pg_hba.conf doesn't match replication connections
+            Container.ExecResult result = primaryContainer.execInContainer("sh", "-c",
+                    "echo 'host replication all all md5' >> \"$PGDATA/pg_hba.conf\"");
+            if (result.getExitCode() != 0) {
+                throw new DatabaseContainerException("Allowing replication connections failed: " + result.getStderr());
+            }
+        } catch (IOException e) {
+            throw new DatabaseContainerException("Allowing replication connections failed", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseContainerException("Interrupted while allowing replication connections", e);
+        }
+        DatabaseAdministration.executeSql(this, getDatabaseName(), "SELECT pg_reload_conf()");
+    }
+
+    private GenericContainer<?> createReplicaContainer(String imageName, int index) {
+        String script = "until pg_basebackup -h " + PRIMARY_NW_ALIAS + " -p " + PostgreSQLContainer.POSTGRESQL_PORT
+                + " -U " + shellQuote(getDatabaseUser()) + " -D " + REPLICA_DATA_DIRECTORY_IN_CONTAINER
+                + " -X stream -R -S " + getReplicaName(index) + "; do rm -rf " + REPLICA_DATA_DIRECTORY_IN_CONTAINER
+                + "; sleep 1; done; exec postgres -D " + REPLICA_DATA_DIRECTORY_IN_CONTAINER + " "
+                + String.join(" ", shellQuote(createSettingsArguments()));
+        GenericContainer<?> replica = new GenericContainer<>(imageName)
+                .withNetwork(network)
+                .withNetworkAliases(getReplicaAlias(index))
+                .withEnv("PGPASSWORD", getDatabasePassword())
+                .withExposedPorts(PostgreSQLContainer.POSTGRESQL_PORT)
+                // postgres refuses to run as root and the data directory has to be owned by the server's user
+                .withCreateContainerCmdModifier(cmd -> cmd.withUser("postgres"))
+                .withCommand("sh", "-c", script)
+                .waitingFor(Wait.forLogMessage(REPLICA_READY_LOG_MESSAGE, 1).withStartupTimeout(STARTUP_TIMEOUT));
+        if (fastTestMode) {
+            replica.withTmpFs(Collections.singletonMap(REPLICA_DATA_DIRECTORY_IN_CONTAINER.substring(0,
+                    REPLICA_DATA_DIRECTORY_IN_CONTAINER.lastIndexOf('/')), "rw"));
+        }
+        return replica;
+    }
+
+    private static String shellQuote(String value) {
+        return "'" + value.replace("'", "'\"'\"'") + "'";
+    }
+
+    private static List<String> shellQuote(List<String> values) {
+        List<String> quoted = new ArrayList<>();
+        for (String value : values) {
+            quoted.add(shellQuote(value));
+        }
+        return quoted;
+    }
+
+    private List<String> createPrimaryCommand() {
+        List<String> command = new ArrayList<>();
+        command.add("postgres");
+        command.addAll(createSettingsArguments());
+        return command;
+    }
+
+    private List<String> createSettingsArguments() {
+        Map<String, String> settings = new LinkedHashMap<>();
+        settings.put("wal_level", "replica");
+        // a few spare senders and slots for pg_basebackup and tests that add replicas of their own
+        settings.put("max_wal_senders", String.valueOf(replicaCount * 2 + 4));
+        settings.put("max_replication_slots", String.valueOf(replicaCount + 4));
+        settings.put("hot_standby", "on");
+        settings.putAll(serverSettings);
+        if (fastTestMode) {
+            settings.put("fsync", "off");
+            settings.put("synchronous_commit", "off");
+            settings.put("full_page_writes", "off");
+        }
+        List<String> arguments = new ArrayList<>();
+        for (Map.Entry<String, String> setting : settings.entrySet()) {
+            arguments.add("-c");
+            arguments.add(setting.getKey() + "=" + setting.getValue());
+        }
+        return arguments;
+    }
+
+    /**
+     * Waits until all replicas have replayed the WAL that the primary had written when this method was called.
+     * Call this after writes on the primary to read them on the replicas.
+     *
+     * @param timeout the maximum time to wait
+     */
+    public void waitForReplicas(Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        try (Connection connection = DatabaseAdministration.createConnection(this, getDatabaseName())) {
+            String currentLsn;
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT pg_current_wal_lsn()::text")) {
+                resultSet.next();
+                currentLsn = resultSet.getString(1);
+            }
+            try (PreparedStatement statement = connection.prepareStatement("SELECT count(*) FROM pg_stat_replication "
+                    + "WHERE state = 'streaming' AND replay_lsn >= ?::pg_lsn")) {
+                statement.setString(1, currentLsn);
+                while (true) {
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        resultSet.next();
+                        if (resultSet.getInt(1) >= replicaCount) {
+                            return;
+                        }
+                    }
+                    if (System.nanoTime() - deadline > 0) {
+                        throw new DatabaseContainerException("Replicas didn't catch up with the primary in " + timeout.toMillis()
+                                + " ms: " + getReplicationLag());
+                    }
+                    Thread.sleep(CATCH_UP_POLL_MILLIS);
+                }
+            }
+        } catch (SQLException e) {
+            throw new DatabaseContainerException("Checking the replication state failed", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseContainerException("Interrupted while waiting for the replicas", e);
+        }
+    }
+
+    /**
+     * @return the replication state of each connected replica, ordered by replica name
+     */
+    public List<ReplicationLag> getReplicationLag() {
+        List<ReplicationLag> lags = new ArrayList<>();
+        try (Connection connection = DatabaseAdministration.createConnection(this, getDatabaseName());
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT s.slot_name, r.state, "
+                     + "COALESCE(pg_wal_lsn_diff(pg_current_wal_lsn(), r.replay_lsn), 0)::bigint, "
+                     + "COALESCE((EXTRACT(EPOCH FROM r.replay_lag) * 1000)::bigint, 0) "
+                     + "FROM pg_stat_replication r JOIN pg_replication_slots s ON s.active_pid = r.pid "
+                     + "ORDER BY s.slot_name")) {
+            while (resultSet.next()) {
+                lags.add(new ReplicationLag(resultSet.getString(1), resultSet.getString(2), resultSet.getLong(3),
+                        Duration.ofMillis(resultSet.getLong(4))));
+            }
+        } catch (SQLException e) {
+            throw new DatabaseContainerException("Reading the replication lag failed", e);
+        }
+        return lags;
+    }
+
+    /**
+     * Creates a {@link ReadWriteRoutingDataSource} with a pool for the primary and a pool for each replica.
+     * Requires HikariCP on the classpath.
+     *
+     * @param settings the settings of each pool
+     * @return the routing DataSource, which closes the pools when it is closed
+     */
+    @Override
+    public DataSource createPooledDataSource(ConnectionPoolSettings settings) {
+        return createPooledDataSource(getDatabaseName(), settings);
+    }
+
+    private DataSource createPooledDataSource(String databaseName, ConnectionPoolSettings settings) {
+        if (!databaseName.equals(getDatabaseName())) {
+            // a database created after the start has to reach the replicas before their pools connect
+            waitForReplicas(CATCH_UP_TIMEOUT);
+        }
+        DataSource primaryDataSource = DataSourcePools.createPooledDataSource(new DatabaseContainerView(this, databaseName), settings);
+        List<DataSource> replicaDataSources = new ArrayList<>();
+        for (int i = 0; i < replicaCount; i++) {
+            ConnectionPoolSettings replicaSettings = ConnectionPoolSettings.create()
+                    .withMinimumIdle(settings.getMinimumIdle())
+                    .withMaximumSize(settings.getMaximumSize())
+                    .withPoolName(settings.getPoolName() + "-" + getReplicaName(i));
+            replicaDataSources.add(DataSourcePools.createPooledDataSource(getReplica(i, databaseName), replicaSettings));
+        }
+        return new ReadWriteRoutingDataSource(primaryDataSource, replicaDataSources);
+    }
+
+    /**
+     * Returns a view that points to another database of the primary. Pooled DataSources of the view route
+     * read-only transactions to the same database on the replicas.
+     *
+     * @param databaseName the name of the database
+     * @return a container view for the database
+     */
+    @Override
+    public DatabaseContainer forDatabase(String databaseName) {
+        return new ReplicationDatabaseView(databaseName);
+    }
+
+    /**
+     * @param index the index of the replica
+     * @return a container that points to the default database of the replica, starting and stopping it has no effect
+     */
+    public DatabaseContainer getReplica(int index) {
+        return getReplica(index, getDatabaseName());
+    }
+
+    /**
+     * @param index        the index of the replica
+     * @param databaseName the name of the database
+     * @return a container that points to the database on the replica, starting and stopping it has no effect
+     */
+    public DatabaseContainer getReplica(int index, String databaseName) {
+        return new ReplicaView(index, databaseName);
+    }
+
+    /**
+     * @return the number of replicas
+     */
+    public int getReplicaCount() {
+        return replicaCount;
+    }
+
+    @Override
+    public void stop() {
+        createPhaseTimer().time(DatabaseContainerPhase.STOP, null, this::stopContainers);
+    }
+
+    private void stopContainers() {
+        for (GenericContainer<?> replica : replicaContainers) {
+            replica.stop();
+        }
+        replicaContainers = Collections.emptyList();
+        primaryContainer.stop();
+        if (network != null) {
+            network.close();
+            network = null;
+        }
+    }
+
+    /**
+     * The configuration key consists of the class, the docker image, the number of replicas, the server settings,
+     * the fast test mode and a hash of the init scripts.
+     */
+    @Override
+    public String getConfigurationKey() {
+        return getClass().getName() + "|postgres:" + postgresVersion + "|replicas=" + replicaCount
+                + "|" + String.join(" ", createSettingsArguments()) + "|fastTestMode=" + fastTestMode
+                + "|initScripts=" + (initScripts.isEmpty() ? "none" : SchemaImageCache.hash("", initScripts));
+    }
+
+    @Override
+    public String getJdbcUrl() {
+        return getJdbcUrl(getDatabaseName());
+    }
+
+    @Override
+    public String getR2dbcUrl() {
+        return getR2dbcUrl(getDatabaseName());
+    }
+
+    /**
+     * @param databaseName the name of the database
+     * @return the JDBC URL of the database on the primary
+     */
+    @Override
+    public String getJdbcUrl(String databaseName) {
+        return "jdbc:postgresql://" + getEndpoint(primaryContainer) + "/" + databaseName;
+    }
+
+    /**
+     * @param databaseName the name of the database
+     * @return the R2DBC URL of the database on the primary
+     */
+    @Override
+    public String getR2dbcUrl(String databaseName) {
+        return "r2dbc:postgresql://" + getEndpoint(primaryContainer) + "/" + databaseName;
+    }
+
+    /**
+     * @param databaseName the name of the database
+     * @return a JDBC URL that lists all replicas, the driver balances new connections across them
+     */
+    public String getReadJdbcUrl(String databaseName) {
+        List<String> endpoints = new ArrayList<>();
+        for (GenericContainer<?> replica : replicaContainers) {
+            endpoints.add(getEndpoint(replica));
+        }
+        return "jdbc:postgresql://" + String.join(",", endpoints) + "/" + databaseName
+                + "?targetServerType=secondary&loadBalanceHosts=true";
+    }
+
+    /**
+     * @param databaseName the name of the database
+     * @return the R2DBC URL of the database on the first replica, the R2DBC driver doesn't support multiple hosts
+     */
+    public String getReadR2dbcUrl(String databaseName) {
+        return getReplicaR2dbcUrl(0, databaseName);
+    }
+
+    public String getReplicaJdbcUrl(int index, String databaseName) {
+        return "jdbc:postgresql://" + getEndpoint(replicaContainers.get(index)) + "/" + databaseName;
+    }
+
+    public String getReplicaR2dbcUrl(int index, String databaseName) {
+        return "r2dbc:postgresql://" + getEndpoint(replicaContainers.get(index)) + "/" + databaseName;
+    }
+
+    private static String getEndpoint(GenericContainer<?> container) {
+        return container.getContainerIpAddress() + ":" + container.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT);
+    }
+
+    @Override
+    public String getDatabaseName() {
+        return primaryContainer.getDatabaseName();
+    }
+
+    @Override
+    public String getDatabaseUser() {
+        return primaryContainer.getUsername();
+    }
+
+    @Override
+    public String getDatabasePassword() {
+        return primaryContainer.getPassword();
+    }
+
+    private DatabaseContainerPhaseTimer createPhaseTimer() {
+        return new DatabaseContainerPhaseTimer(this, "postgres:" + postgresVersion);
+    }
+
+    private String getReplicaAlias(int index) {
+        return REPLICA_NW_ALIAS + "-" + (index + 1);
+    }
+
+    private static String getReplicaName(int index) {
+        return "replica_" + (index + 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E extends Throwable> void sneakyThrow(Throwable e) throws E {
+        throw (E) e;
+    }
+
+    /**
+     * View of another database of the primary whose pooled DataSources route reads to the replicas
+     */
+    private class ReplicationDatabaseView extends DatabaseContainerView implements PooledDataSourceProvider {
+        ReplicationDatabaseView(String databaseName) {
+            super(PostgresReplicationDatabaseContainer.this, databaseName);
+        }
+
+        @Override
+        public DataSource createPooledDataSource(ConnectionPoolSettings settings) {
+            return PostgresReplicationDatabaseContainer.this.createPooledDataSource(getDatabaseName(), settings);
+        }
+    }
+
+    /**
+     * Read-only view of a database on a single replica
+     */
+    private class ReplicaView implements DatabaseContainer {
+        private final int index;
+        private final String databaseName;
+
+        ReplicaView(int index, String databaseName) {
+            this.index = index;
+            this.databaseName = databaseName;
+        }
+
+        @Override
+        public String getJdbcUrl() {
+            return getJdbcUrl(getDatabaseName());
+        }
+
+        @Override
+        public String getR2dbcUrl() {
+            return getR2dbcUrl(getDatabaseName());
+        }
+
+        @Override
+        public String getJdbcUrl(String databaseName) {
+            return getReplicaJdbcUrl(index, databaseName);
+        }
+
+        @Override
+        public String getR2dbcUrl(String databaseName) {
+            return getReplicaR2dbcUrl(index, databaseName);
+        }
+
+        @Override
+        public String getDatabaseName() {
+            return databaseName;
+        }
+
+        @Override
+        public String getDatabaseUser() {
+            return PostgresReplicationDatabaseContainer.this.getDatabaseUser();
+        }
+
+        @Override
+        public String getDatabasePassword() {
+            return PostgresReplicationDatabaseContainer.this.getDatabasePassword();
+        }
+
+        @Override
+        public void start() {
+
+        }
+
+        @Override
+        public void stop() {
+
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.lhotari.dbcontainer.postgres;
+
+import java.time.Duration;
+
+/**
+ * Replication state of a streaming replica as seen by the primary in pg_stat_replication
+ */
+public class ReplicationLag {
+    private final String replicaName;
+    private final String state;
+    private final long replayLagBytes;
+    private final Duration replayLag;
+
+    ReplicationLag(String replicaName, String state, long replayLagBytes, Duration replayLag) {
+        this.replicaName = replicaName;
+        this.state = state;
+        this.replayLagBytes = replayLagBytes;
+        this.replayLag = replayLag;
+    }
+
+    /**
+     * @return the name of the replica's replication slot, for example "replica_1"
+     */
+    public String getReplicaName() {
+        return replicaName;
+    }
+
+    /**
+     * @return the state of the WAL sender, "streaming" when the replica has caught up once
+     */
+    public String getState() {
+        return state;
+    }
+
+    /**
+     * @return the amount of WAL that the primary has written and the replica hasn't replayed yet
+     */
+    public long getReplayLagBytes() {
+        return replayLagBytes;
+    }
+
+    /**
+     * @return the time between a recent commit on the primary and its replay on the replica as measured by Postgres,
+     * zero when the replica hasn't reported any lag
+     */
+    public Duration getReplayLag() {
+        return replayLag;
+    }
+
+    @Override
+    public String toString() {
+        return replicaName + ": state=" + state + ", replayLagBytes=" + replayLagBytes + ", replayLagMillis=" + replayLag.toMillis();
+    }
+}
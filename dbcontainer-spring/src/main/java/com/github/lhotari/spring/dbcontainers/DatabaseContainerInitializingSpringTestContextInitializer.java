@@ -1,40 +1,568 @@
 package com.github.lhotari.spring.dbcontainers;
 
+import com.github.lhotari.dbcontainer.ConnectionFactoryPools;
+import com.github.lhotari.dbcontainer.ConnectionPoolSettings;
+import com.github.lhotari.dbcontainer.CrossJvmContainerRegistry;
+import com.github.lhotari.dbcontainer.DataSourcePools;
+import com.github.lhotari.dbcontainer.DatabaseAdministration;
 import com.github.lhotari.dbcontainer.DatabaseContainer;
+import com.github.lhotari.dbcontainer.DatabaseContainerExecutors;
+import com.github.lhotari.dbcontainer.DatabaseContainerPool;
+import com.github.lhotari.dbcontainer.DatabaseContainerRegistry;
+import com.github.lhotari.dbcontainer.DeferredDatabaseContainer;
+import com.github.lhotari.dbcontainer.NetworkShaping;
+import com.github.lhotari.dbcontainer.ResourceProfile;
+import com.github.lhotari.dbcontainer.SchemaImageCache;
+import io.r2dbc.spi.ConnectionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.support.DefaultSingletonBeanRegistry;
 import org.springframework.context.*;
 import org.springframework.context.event.ContextClosedEvent;
 import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.EnumerablePropertySource;
 import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.util.ClassUtils;
 
+import javax.sql.DataSource;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
+/**
+ * Base class for Spring ApplicationContextInitializers that start a database container and add the properties
+ * for connecting to the database to the environment.
+ * <p>
+ * By default, the started container is shared with other application contexts in the same JVM that use an
+ * equivalent container configuration. Sharing can be disabled by setting the "dbcontainers.shared" property to false.
+ * <p>
+ * When the "dbcontainers.cross-jvm.enabled" property is true, the container is shared with the other JVMs that
+ * coordinate through the "dbcontainers.cross-jvm.directory" directory, for example Gradle test workers that run
+ * in parallel. Each JVM gets its own database on the container and the database is dropped when the JVM exits.
+ * See {@link CrossJvmContainerRegistry}.
+ * <p>
+ * When the "dbcontainers.pool.size" property is greater than 0, each application context gets an exclusive container
+ * from a JVM-wide {@link DatabaseContainerPool} that keeps the given number of started containers ready. The container
+ * is discarded when the application context is closed and the pool starts a replacement in the background.
+ * The replacements are configured with the "dbcontainers." properties of the application context that created the pool.
+ * <p>
+ * By default, the container is started in the background and the application context continues initializing
+ * while the container starts. The database properties wait for the container when they are read for the first time.
+ * Setting the "dbcontainers.async-start" property to false makes the initializer wait for the container to start.
+ * <p>
+ * When the "dbcontainers.lazy-start" property is true, the container isn't started until the application context
+ * needs it: when the database properties are read, or when the "databaseContainer", connection pool or YCQL session
+ * beans are used. Application contexts that never need the database don't start a container or create the
+ * container pool. They are recorded in {@link LazyDatabaseContainerStarts}.
+ * <p>
+ * When the "dbcontainers.database-per-context" property is true, each application context gets its own database
+ * that is cloned from a template database. The template database is initialized with the SQL scripts listed in
+ * the "dbcontainers.template-scripts" property and the CSV fixtures listed in the "dbcontainers.template-fixtures"
+ * property. The fixtures are loaded with the COPY protocol. YugaByte YSQL only accepts template0 and template1 as
+ * templates, so on YugaByte each context's database is created from template0 and the template scripts and fixtures
+ * are run in it.
+ * <p>
+ * The SQL scripts listed in the "dbcontainers.init-scripts" property are run in the default database when the
+ * container starts. Setting the "dbcontainers.schema-image-cache.enabled" property to true commits the initialized
+ * container to the {@link SchemaImageCache} and later starts with the same scripts boot the cached image without
+ * running the scripts.
+ * <p>
+ * Setting the "dbcontainers.query-statistics.enabled" property to true starts the database with pg_stat_statements
+ * so that tests can read the query statistics or declare a {@link com.github.lhotari.dbcontainer.junit.QueryBudget}.
+ * The "dbcontainers.auto-explain.min-duration-millis" property enables auto_explain for slower statements.
+ * <p>
+ * Setting the "dbcontainers.network-shaping.enabled" property to true routes the connections through a proxy that
+ * adds the latency, jitter and bandwidth limit set with the "dbcontainers.network-shaping.latency-millis",
+ * "dbcontainers.network-shaping.jitter-millis" and "dbcontainers.network-shaping.bandwidth-bytes-per-second"
+ * properties and counts the bytes and round trips. See {@link com.github.lhotari.dbcontainer.ShapingProxy}.
+ * <p>
+ * The "dbcontainers.resources.cpus", "dbcontainers.resources.memory-mb" and "dbcontainers.resources.shm-mb"
+ * properties limit the resources of the database container and the database settings are derived from the limits.
+ * See {@link ResourceProfile}.
+ * <p>
+ * Setting the "dbcontainers.fast-test-mode" property to true enables the fast test mode of the database container
+ * which places data on tmpfs and disables durability settings.
+ * <p>
+ * The database container is registered as a bean with the name "databaseContainer" so that tests can use
+ * the container, for example for taking and restoring snapshots. The container and the context's database are
+ * released when the application context closes or when its refresh fails.
+ * <p>
+ * When the "dbcontainers.connection-pool.enabled" property is true, pooled "dataSource" (HikariCP) and
+ * "connectionFactory" (r2dbc-pool) beans are registered when the pool libraries are on the classpath. The pools
+ * open and validate "dbcontainers.connection-pool.minimum-idle" connections in the background as soon as the
+ * database is ready. The maximum size of the pools is set with "dbcontainers.connection-pool.maximum-size".
+ * <p>
+ * When Micrometer is on the classpath, a {@link DatabaseContainerMetrics} binder that records the startup phases of
+ * the containers that the application context uses as timers is registered as a bean with the name
+ * "databaseContainerMetrics". Setting the "dbcontainers.metrics.enabled" property to false disables the binder.
+ */
 abstract public class DatabaseContainerInitializingSpringTestContextInitializer implements ApplicationContextInitializer<ConfigurableApplicationContext> {
+    private static final Logger LOG = LoggerFactory.getLogger(DatabaseContainerInitializingSpringTestContextInitializer.class);
+    private static final ConcurrentMap<String, DatabaseContainerPool> POOLS = new ConcurrentHashMap<>();
+    private static final String PROPERTY_NAME_PREFIX = "dbcontainers.";
+    public static final String SHARED_PROPERTY_NAME = "dbcontainers.shared";
+    public static final String CROSS_JVM_ENABLED_PROPERTY_NAME = "dbcontainers.cross-jvm.enabled";
+    public static final String CROSS_JVM_DIRECTORY_PROPERTY_NAME = "dbcontainers.cross-jvm.directory";
+    public static final String DEFAULT_CROSS_JVM_DIRECTORY = "build/dbcontainers";
+    public static final String POOL_SIZE_PROPERTY_NAME = "dbcontainers.pool.size";
+    public static final String ASYNC_START_PROPERTY_NAME = "dbcontainers.async-start";
+    public static final String LAZY_START_PROPERTY_NAME = "dbcontainers.lazy-start";
+    public static final String FAST_TEST_MODE_PROPERTY_NAME = "dbcontainers.fast-test-mode";
+    public static final String DATABASE_PER_CONTEXT_PROPERTY_NAME = "dbcontainers.database-per-context";
+    public static final String TEMPLATE_DATABASE_PROPERTY_NAME = "dbcontainers.template-database";
+    public static final String TEMPLATE_SCRIPTS_PROPERTY_NAME = "dbcontainers.template-scripts";
+    public static final String TEMPLATE_FIXTURES_PROPERTY_NAME = "dbcontainers.template-fixtures";
+    public static final String CONNECTION_POOL_ENABLED_PROPERTY_NAME = "dbcontainers.connection-pool.enabled";
+    public static final String CONNECTION_POOL_MINIMUM_IDLE_PROPERTY_NAME = "dbcontainers.connection-pool.minimum-idle";
+    public static final String CONNECTION_POOL_MAXIMUM_SIZE_PROPERTY_NAME = "dbcontainers.connection-pool.maximum-size";
+    public static final String METRICS_ENABLED_PROPERTY_NAME = "dbcontainers.metrics.enabled";
+    public static final String INIT_SCRIPTS_PROPERTY_NAME = "dbcontainers.init-scripts";
+    public static final String SCHEMA_IMAGE_CACHE_ENABLED_PROPERTY_NAME = "dbcontainers.schema-image-cache.enabled";
+    public static final String QUERY_STATISTICS_ENABLED_PROPERTY_NAME = "dbcontainers.query-statistics.enabled";
+    public static final String AUTO_EXPLAIN_MIN_DURATION_PROPERTY_NAME = "dbcontainers.auto-explain.min-duration-millis";
+    public static final String NETWORK_SHAPING_ENABLED_PROPERTY_NAME = "dbcontainers.network-shaping.enabled";
+    public static final String NETWORK_SHAPING_LATENCY_PROPERTY_NAME = "dbcontainers.network-shaping.latency-millis";
+    public static final String NETWORK_SHAPING_JITTER_PROPERTY_NAME = "dbcontainers.network-shaping.jitter-millis";
+    public static final String NETWORK_SHAPING_BANDWIDTH_PROPERTY_NAME = "dbcontainers.network-shaping.bandwidth-bytes-per-second";
+    public static final String RESOURCES_CPUS_PROPERTY_NAME = "dbcontainers.resources.cpus";
+    public static final String RESOURCES_MEMORY_PROPERTY_NAME = "dbcontainers.resources.memory-mb";
+    public static final String RESOURCES_SHARED_MEMORY_PROPERTY_NAME = "dbcontainers.resources.shm-mb";
+    public static final String DATABASE_CONTAINER_BEAN_NAME = "databaseContainer";
+    public static final String DATABASE_CONTAINER_METRICS_BEAN_NAME = "databaseContainerMetrics";
+    public static final String DATA_SOURCE_BEAN_NAME = "dataSource";
+    public static final String CONNECTION_FACTORY_BEAN_NAME = "connectionFactory";
+    private static final String DATABASE_CONTAINER_RELEASE_BEAN_NAME = "databaseContainerRelease";
+    private static final String METER_BINDER_CLASS_NAME = "io.micrometer.core.instrument.binder.MeterBinder";
+    private static final String HIKARI_DATA_SOURCE_CLASS_NAME = "com.zaxxer.hikari.HikariDataSource";
+    private static final String R2DBC_CONNECTION_POOL_CLASS_NAME = "io.r2dbc.pool.ConnectionPool";
+
     @Override
     public void initialize(ConfigurableApplicationContext applicationContext) {
-        DatabaseContainer databaseContainer = createDatabaseContainer(applicationContext.getEnvironment());
-        databaseContainer.start();
+        ConfigurableEnvironment environment = applicationContext.getEnvironment();
+        int poolSize = getPoolSize(environment);
+        boolean pooled = poolSize > 0;
+        boolean crossJvm = usesCrossJvmContainer(environment);
+        boolean shared = !pooled && !crossJvm && isSharedContainer(environment);
+        boolean databasePerContext = isDatabasePerContext(environment);
+        String templateDatabaseProperty = environment.getProperty(TEMPLATE_DATABASE_PROPERTY_NAME);
+        String[] templateScriptLocations = environment.getProperty(TEMPLATE_SCRIPTS_PROPERTY_NAME, String[].class);
+        String[] templateFixtureLocations = environment.getProperty(TEMPLATE_FIXTURES_PROPERTY_NAME, String[].class);
+        DatabaseContainer candidate = createDatabaseContainer(environment);
+        // the binder buffers the events of the candidate and of the container that the context ends up using
+        Consumer<DatabaseContainer> containerUsed = isMetricsEnabled(environment)
+                && ClassUtils.isPresent(METER_BINDER_CLASS_NAME, applicationContext.getClassLoader())
+                ? MetricsRegistrar.registerMetrics(applicationContext) : databaseContainer -> { };
+        containerUsed.accept(candidate);
+        // the pool gets created on the first acquisition so that a lazily started context doesn't fill it
+        AtomicReference<DatabaseContainerPool> pool = new AtomicReference<>();
+        Supplier<CompletableFuture<DatabaseContainer>> acquisition = () -> {
+            if (pooled) {
+                pool.set(POOLS.computeIfAbsent(candidate.getConfigurationKey(), key -> {
+                    ConfigurableEnvironment poolEnvironment = copyDatabaseContainerProperties(environment);
+                    return new DatabaseContainerPool(() -> createDatabaseContainer(poolEnvironment), poolSize);
+                }));
+                return pool.get().acquireAsync();
+            } else if (crossJvm) {
+                return CrossJvmContainerRegistry.getInstance(Paths.get(getCrossJvmDirectory(environment))).acquireAsync(candidate);
+            } else if (shared) {
+                return DatabaseContainerRegistry.getInstance().acquireAsync(candidate);
+            } else {
+                return candidate.startAsync();
+            }
+        };
+        LazyContainerStart lazyStart = isLazyStart(environment)
+                ? new LazyContainerStart(applicationContext.getDisplayName(), acquisition) : null;
+        CompletableFuture<DatabaseContainer> containerStarted = lazyStart != null ? lazyStart.getContainerStarted() : acquisition.get();
+        // the deferred beans and property sources signal demand before they wait for the container
+        Runnable demand = lazyStart != null ? lazyStart::demand : () -> { };
+        AtomicReference<DatabaseContainer> startedDatabaseContainer = new AtomicReference<>();
+        AtomicReference<String> contextDatabaseName = new AtomicReference<>();
+        CompletableFuture<DatabaseContainer> databaseReady = containerStarted.thenApplyAsync(databaseContainer -> {
+            startedDatabaseContainer.set(databaseContainer);
+            containerUsed.accept(databaseContainer);
+            if (!databasePerContext) {
+                return databaseContainer;
+            }
+            // the started container can be attached from another JVM, the candidate knows the type of the database server
+            contextDatabaseName.set(TemplateDatabases.createContextDatabase(databaseContainer,
+                    DatabaseAdministration.supportsTemplateDatabases(candidate), templateDatabaseProperty,
+                    templateScriptLocations, templateFixtureLocations, applicationContext));
+            return databaseContainer.forDatabase(contextDatabaseName.get());
+        }, DatabaseContainerExecutors.startupExecutor());
+        List<CompletableFuture<?>> contextResources = new ArrayList<>();
+        if (isConnectionPoolEnabled(environment)) {
+            contextResources.addAll(registerConnectionPools(applicationContext, databaseReady, demand));
+        }
+        contextResources.addAll(registerContainerResources(applicationContext, containerStarted, demand));
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            if (lazyStart != null && !lazyStart.close()) {
+                // the container was never acquired
+                return;
+            }
+            // wait for a pending startup so that the container and the database get cleaned up
+            databaseReady.handle((result, throwable) -> null).join();
+            // close the connections before the context's database gets dropped
+            contextResources.forEach(contextResource -> closeContextResource(contextResource));
+            if (contextDatabaseName.get() != null) {
+                dropContextDatabase(startedDatabaseContainer.get(), contextDatabaseName.get());
+            }
+            if (pooled) {
+                if (startedDatabaseContainer.get() != null) {
+                    pool.get().discard(startedDatabaseContainer.get());
+                }
+            } else if (!crossJvm) {
+                // containers shared across JVMs are released when the JVM exits
+                releaseDatabaseContainer(shared ? startedDatabaseContainer.get() : candidate, shared);
+            }
+        };
         applicationContext.addApplicationListener(new ApplicationListener<ContextClosedEvent>() {
             @Override
             public void onApplicationEvent(ContextClosedEvent event) {
-                databaseContainer.stop();
+                // closing of a child context also gets published to the listeners of the parent context
+                if (event.getApplicationContext() == applicationContext) {
+                    release.run();
+                }
             }
         });
-        Map<String, Object> applicationPropertiesForDatabase = createApplicationPropertiesForDatabase(databaseContainer);
-        MapPropertySource propertySource = new MapPropertySource(getClass().getName(), applicationPropertiesForDatabase);
-        applicationContext.getEnvironment().getPropertySources().addFirst(propertySource);
+        // a context whose refresh fails doesn't publish ContextClosedEvent but destroys its singletons
+        ConfigurableListableBeanFactory beanFactory = applicationContext.getBeanFactory();
+        if (beanFactory instanceof DefaultSingletonBeanRegistry) {
+            DisposableBean releaseOnDestroy = release::run;
+            ((DefaultSingletonBeanRegistry) beanFactory).registerDisposableBean(DATABASE_CONTAINER_RELEASE_BEAN_NAME, releaseOnDestroy);
+        }
+        DeferredDatabaseContainer databaseContainer = new DeferredDatabaseContainer(databaseReady, demand);
+        if (lazyStart == null && !isAsyncStart(environment)) {
+            databaseContainer.start();
+        }
+        applicationContext.getBeanFactory().registerSingleton(DATABASE_CONTAINER_BEAN_NAME, databaseContainer);
+        environment.getPropertySources().addFirst(new DatabaseContainerPropertySource(getClass().getName(), databaseContainer, demand));
     }
 
     protected abstract DatabaseContainer createDatabaseContainer(ConfigurableEnvironment environment);
 
-    private Map<String, Object> createApplicationPropertiesForDatabase(DatabaseContainer databaseContainer) {
-        Map<String, Object> map = new HashMap<>();
-        map.put("spring.datasource.url", databaseContainer.getJdbcUrl());
-        map.put("spring.datasource.username", databaseContainer.getDatabaseUser());
-        map.put("spring.datasource.password", databaseContainer.getDatabasePassword());
-        map.put("spring.r2dbc.url", databaseContainer.getR2dbcUrl());
-        map.put("spring.r2dbc.username", databaseContainer.getDatabaseUser());
-        map.put("spring.r2dbc.password", databaseContainer.getDatabasePassword());
-        return map;
+    // the JVM-wide pool outlives the application context that creates it, so the replacement containers are
+    // configured from a copy of the "dbcontainers." properties instead of the context's environment
+    private static ConfigurableEnvironment copyDatabaseContainerProperties(ConfigurableEnvironment environment) {
+        Map<String, Object> properties = new HashMap<>();
+        for (PropertySource<?> propertySource : environment.getPropertySources()) {
+            if (propertySource instanceof EnumerablePropertySource) {
+                for (String name : ((EnumerablePropertySource<?>) propertySource).getPropertyNames()) {
+                    if (name.startsWith(PROPERTY_NAME_PREFIX) && !properties.containsKey(name)) {
+                        properties.put(name, environment.getProperty(name));
+                    }
+                }
+            }
+        }
+        StandardEnvironment copy = new StandardEnvironment();
+        copy.getPropertySources().addFirst(new MapPropertySource("dbcontainers.pool", properties));
+        return copy;
+    }
+
+    /**
+     * Registers beans or property sources that use the started database container in a subclass.
+     * The results of the returned futures are closed when they are AutoCloseable, after the application context
+     * has closed and before the database container is released.
+     *
+     * @param applicationContext the application context
+     * @param containerStarted   completes with the started database container
+     * @param demand             starts a lazily started container, has to be called before waiting for containerStarted
+     * @return the resources to close when the application context closes
+     */
+    protected List<CompletableFuture<?>> registerContainerResources(ConfigurableApplicationContext applicationContext,
+                                                                   CompletableFuture<DatabaseContainer> containerStarted,
+                                                                   Runnable demand) {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Decides whether the database container is shared with other application contexts in the same JVM
+     *
+     * @param environment the environment of the application context
+     * @return true if the container should be acquired from {@link DatabaseContainerRegistry}
+     */
+    protected boolean isSharedContainer(ConfigurableEnvironment environment) {
+        return environment.getProperty(SHARED_PROPERTY_NAME, Boolean.class, Boolean.TRUE);
+    }
+
+    /**
+     * Decides whether the database container is shared with other JVMs
+     *
+     * @param environment the environment of the application context
+     * @return true if the container should be acquired from {@link CrossJvmContainerRegistry}
+     */
+    protected boolean isCrossJvmContainer(ConfigurableEnvironment environment) {
+        return environment.getProperty(CROSS_JVM_ENABLED_PROPERTY_NAME, Boolean.class, Boolean.FALSE);
+    }
+
+    /**
+     * Decides whether the application context gets its database from a container shared across JVMs,
+     * which is the case when cross-JVM sharing is enabled and containers aren't pooled
+     *
+     * @param environment the environment of the application context
+     * @return true if the container is acquired from {@link CrossJvmContainerRegistry}
+     */
+    protected boolean usesCrossJvmContainer(ConfigurableEnvironment environment) {
+        return getPoolSize(environment) <= 0 && isCrossJvmContainer(environment);
+    }
+
+    /**
+     * Returns the directory through which the JVMs that share database containers coordinate
+     *
+     * @param environment the environment of the application context
+     * @return the directory, relative to the working directory unless absolute
+     */
+    protected String getCrossJvmDirectory(ConfigurableEnvironment environment) {
+        return environment.getProperty(CROSS_JVM_DIRECTORY_PROPERTY_NAME, DEFAULT_CROSS_JVM_DIRECTORY);
+    }
+
+    /**
+     * Returns the number of started containers to keep ready in a pool
+     *
+     * @param environment the environment of the application context
+     * @return the pool size, 0 when containers aren't pooled
+     */
+    protected int getPoolSize(ConfigurableEnvironment environment) {
+        return environment.getProperty(POOL_SIZE_PROPERTY_NAME, Integer.class, 0);
+    }
+
+    /**
+     * Decides whether the application context continues initializing while the container starts
+     *
+     * @param environment the environment of the application context
+     * @return true if the initializer shouldn't wait for the container to start
+     */
+    protected boolean isAsyncStart(ConfigurableEnvironment environment) {
+        return environment.getProperty(ASYNC_START_PROPERTY_NAME, Boolean.class, Boolean.TRUE);
+    }
+
+    /**
+     * Decides whether the container is started only when the application context needs the database
+     *
+     * @param environment the environment of the application context
+     * @return true if the container should be started on first use
+     */
+    protected boolean isLazyStart(ConfigurableEnvironment environment) {
+        return environment.getProperty(LAZY_START_PROPERTY_NAME, Boolean.class, Boolean.FALSE);
+    }
+
+    /**
+     * Decides whether the database container is started in fast test mode
+     *
+     * @param environment the environment of the application context
+     * @return true if the fast test mode should be enabled
+     */
+    protected boolean isFastTestMode(ConfigurableEnvironment environment) {
+        return environment.getProperty(FAST_TEST_MODE_PROPERTY_NAME, Boolean.class, Boolean.FALSE);
+    }
+
+    /**
+     * Returns the contents of the SQL scripts that are run when the database container starts
+     *
+     * @param environment the environment of the application context
+     * @return the scripts, empty when no init scripts are configured
+     */
+    protected List<String> getInitScripts(ConfigurableEnvironment environment) {
+        String[] initScriptLocations = environment.getProperty(INIT_SCRIPTS_PROPERTY_NAME, String[].class);
+        if (initScriptLocations == null || initScriptLocations.length == 0) {
+            return Collections.emptyList();
+        }
+        return TemplateDatabases.loadScripts(initScriptLocations, new DefaultResourceLoader());
+    }
+
+    /**
+     * Returns the cache for images initialized with the init scripts
+     *
+     * @param environment the environment of the application context
+     * @return the cache, null when caching is disabled
+     */
+    protected SchemaImageCache getSchemaImageCache(ConfigurableEnvironment environment) {
+        return environment.getProperty(SCHEMA_IMAGE_CACHE_ENABLED_PROPERTY_NAME, Boolean.class, Boolean.FALSE)
+                ? SchemaImageCache.getDefault() : null;
+    }
+
+    /**
+     * Decides whether the database is started with pg_stat_statements
+     *
+     * @param environment the environment of the application context
+     * @return true if query statistics should be enabled
+     */
+    protected boolean isQueryStatisticsEnabled(ConfigurableEnvironment environment) {
+        return environment.getProperty(QUERY_STATISTICS_ENABLED_PROPERTY_NAME, Boolean.class, Boolean.FALSE);
+    }
+
+    /**
+     * Returns the minimum duration of statements whose execution plans auto_explain logs
+     *
+     * @param environment the environment of the application context
+     * @return the duration, null when auto_explain is disabled
+     */
+    protected Duration getAutoExplainMinDuration(ConfigurableEnvironment environment) {
+        Long minDurationMillis = environment.getProperty(AUTO_EXPLAIN_MIN_DURATION_PROPERTY_NAME, Long.class);
+        return minDurationMillis != null ? Duration.ofMillis(minDurationMillis) : null;
+    }
+
+    /**
+     * Returns the resource limits of the database container
+     *
+     * @param environment the environment of the application context
+     * @return the limits, null when none of the limits are set
+     */
+    protected ResourceProfile getResourceProfile(ConfigurableEnvironment environment) {
+        Double cpus = environment.getProperty(RESOURCES_CPUS_PROPERTY_NAME, Double.class);
+        Long memoryMegabytes = environment.getProperty(RESOURCES_MEMORY_PROPERTY_NAME, Long.class);
+        Long sharedMemoryMegabytes = environment.getProperty(RESOURCES_SHARED_MEMORY_PROPERTY_NAME, Long.class);
+        if (cpus == null && memoryMegabytes == null && sharedMemoryMegabytes == null) {
+            return null;
+        }
+        return ResourceProfile.create()
+                .withCpus(cpus != null ? cpus : 0)
+                .withMemory(memoryMegabytes != null ? memoryMegabytes * ResourceProfile.MEGABYTE : 0)
+                .withSharedMemory(sharedMemoryMegabytes != null ? sharedMemoryMegabytes * ResourceProfile.MEGABYTE : 0);
+    }
+
+    /**
+     * Returns the settings of the proxy that shapes the connections to the database
+     *
+     * @param environment the environment of the application context
+     * @return the settings, null when the connections aren't proxied
+     */
+    protected NetworkShaping getNetworkShaping(ConfigurableEnvironment environment) {
+        if (!environment.getProperty(NETWORK_SHAPING_ENABLED_PROPERTY_NAME, Boolean.class, Boolean.FALSE)) {
+            return null;
+        }
+        return NetworkShaping.create()
+                .withLatency(Duration.ofMillis(environment.getProperty(NETWORK_SHAPING_LATENCY_PROPERTY_NAME, Long.class, 0L)))
+                .withJitter(Duration.ofMillis(environment.getProperty(NETWORK_SHAPING_JITTER_PROPERTY_NAME, Long.class, 0L)))
+                .withBandwidth(environment.getProperty(NETWORK_SHAPING_BANDWIDTH_PROPERTY_NAME, Long.class, 0L));
+    }
+
+    /**
+     * Decides whether the application context gets its own database cloned from a template database
+     *
+     * @param environment the environment of the application context
+     * @return true if a database should be created for the application context
+     */
+    protected boolean isDatabasePerContext(ConfigurableEnvironment environment) {
+        return environment.getProperty(DATABASE_PER_CONTEXT_PROPERTY_NAME, Boolean.class, Boolean.FALSE);
+    }
+
+    /**
+     * Decides whether the startup phases of the database container are recorded with Micrometer
+     * when Micrometer is on the classpath
+     *
+     * @param environment the environment of the application context
+     * @return true if the metrics binder should be registered
+     */
+    protected boolean isMetricsEnabled(ConfigurableEnvironment environment) {
+        return environment.getProperty(METRICS_ENABLED_PROPERTY_NAME, Boolean.class, Boolean.TRUE);
+    }
+
+    /**
+     * Decides whether pooled DataSource and ConnectionFactory beans are registered
+     *
+     * @param environment the environment of the application context
+     * @return true if the connection pool beans should be registered
+     */
+    protected boolean isConnectionPoolEnabled(ConfigurableEnvironment environment) {
+        return environment.getProperty(CONNECTION_POOL_ENABLED_PROPERTY_NAME, Boolean.class, Boolean.FALSE);
+    }
+
+    /**
+     * Returns the settings for the pooled DataSource and ConnectionFactory beans
+     *
+     * @param environment the environment of the application context
+     * @return the pool settings
+     */
+    protected ConnectionPoolSettings getConnectionPoolSettings(ConfigurableEnvironment environment) {
+        return ConnectionPoolSettings.create()
+                .withMinimumIdle(environment.getProperty(CONNECTION_POOL_MINIMUM_IDLE_PROPERTY_NAME, Integer.class, ConnectionPoolSettings.DEFAULT_MINIMUM_IDLE))
+                .withMaximumSize(environment.getProperty(CONNECTION_POOL_MAXIMUM_SIZE_PROPERTY_NAME, Integer.class, ConnectionPoolSettings.DEFAULT_MAXIMUM_SIZE));
+    }
+
+    private List<CompletableFuture<?>> registerConnectionPools(ConfigurableApplicationContext applicationContext,
+                                                               CompletableFuture<DatabaseContainer> databaseReady,
+                                                               Runnable demand) {
+        ConnectionPoolSettings settings = getConnectionPoolSettings(applicationContext.getEnvironment());
+        List<CompletableFuture<?>> connectionPools = new ArrayList<>();
+        if (ClassUtils.isPresent(HIKARI_DATA_SOURCE_CLASS_NAME, applicationContext.getClassLoader())) {
+            CompletableFuture<DataSource> dataSourceReady = databaseReady.thenApply(databaseContainer -> DataSourcePools.createDataSource(databaseContainer, settings));
+            applicationContext.getBeanFactory().registerSingleton(DATA_SOURCE_BEAN_NAME, new DeferredDataSource(dataSourceReady, demand));
+            connectionPools.add(dataSourceReady);
+        }
+        if (ClassUtils.isPresent(R2DBC_CONNECTION_POOL_CLASS_NAME, applicationContext.getClassLoader())) {
+            connectionPools.add(ConnectionFactoryRegistrar.registerConnectionFactory(applicationContext, databaseReady, settings, demand));
+        }
+        return connectionPools;
+    }
+
+    private void closeContextResource(CompletableFuture<?> contextResource) {
+        Object resource = contextResource.handle((result, throwable) -> result).join();
+        if (resource instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) resource).close();
+            } catch (Exception e) {
+                LOG.warn("Closing {} failed", resource, e);
+            }
+        }
+    }
+
+    private void releaseDatabaseContainer(DatabaseContainer databaseContainer, boolean shared) {
+        if (shared) {
+            if (databaseContainer != null) {
+                DatabaseContainerRegistry.getInstance().release(databaseContainer);
+            }
+        } else {
+            databaseContainer.stop();
+        }
+    }
+
+    private void dropContextDatabase(DatabaseContainer databaseContainer, String databaseName) {
+        try {
+            DatabaseAdministration.dropDatabase(databaseContainer, databaseName);
+        } catch (RuntimeException e) {
+            LOG.warn("Dropping database {} failed", databaseName, e);
+        }
+    }
+
+    // keeps R2DBC classes from being loaded when R2DBC isn't on the classpath
+    private static class ConnectionFactoryRegistrar {
+        static CompletableFuture<ConnectionFactory> registerConnectionFactory(ConfigurableApplicationContext applicationContext,
+                                                                             CompletableFuture<DatabaseContainer> databaseReady,
+                                                                             ConnectionPoolSettings settings,
+                                                                             Runnable demand) {
+            CompletableFuture<ConnectionFactory> connectionFactoryReady = databaseReady.thenApply(databaseContainer ->
+                    ConnectionFactoryPools.createPooledConnectionFactory(databaseContainer, settings));
+            applicationContext.getBeanFactory().registerSingleton(CONNECTION_FACTORY_BEAN_NAME, new DeferredConnectionFactory(connectionFactoryReady, demand));
+            return connectionFactoryReady;
+        }
+    }
+
+    // keeps Micrometer classes from being loaded when Micrometer isn't on the classpath
+    private static class MetricsRegistrar {
+        static Consumer<DatabaseContainer> registerMetrics(ConfigurableApplicationContext applicationContext) {
+            DatabaseContainerMetrics databaseContainerMetrics = new DatabaseContainerMetrics();
+            applicationContext.getBeanFactory().registerSingleton(DATABASE_CONTAINER_METRICS_BEAN_NAME, databaseContainerMetrics);
+            return databaseContainerMetrics::addDatabaseContainer;
+        }
     }
 }
@@ -0,0 +1,138 @@
+package com.github.lhotari.spring.dbcontainers;
+
+import com.github.lhotari.dbcontainer.DatabaseContainer;
+import com.github.lhotari.dbcontainer.DatabaseContainerListener;
+import com.github.lhotari.dbcontainer.DatabaseContainerListeners;
+import com.github.lhotari.dbcontainer.DatabaseContainerPhase;
+import com.github.lhotari.dbcontainer.DatabaseContainerPhaseEvent;
+import com.github.lhotari.dbcontainer.DatabaseContainerView;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Micrometer {@link MeterBinder} that records the phases of starting and stopping the database containers of
+ * an application context as timers named "dbcontainers.phase". The timers are tagged with the phase, the container
+ * class, the docker image, the node and the outcome.
+ * <p>
+ * Containers are usually started before the meter registries of the application context exist. Events are
+ * buffered for each container and the events of the containers added with
+ * {@link #addDatabaseContainer(DatabaseContainer)} are recorded in each meter registry when the binder gets bound
+ * to it. Events of containers that the application context doesn't use aren't recorded.
+ */
+public class DatabaseContainerMetrics implements MeterBinder {
+    public static final String TIMER_NAME = "dbcontainers.phase";
+    private final Set<DatabaseContainer> databaseContainers = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final List<MeterRegistry> meterRegistries = new ArrayList<>();
+
+    /**
+     * Creates a binder and registers the JVM-wide event buffer as a {@link DatabaseContainerListener} on first use
+     */
+    public DatabaseContainerMetrics() {
+        EventBuffer.INSTANCE.addMetrics(this);
+    }
+
+    /**
+     * Records the buffered and future events of a container. A view is resolved to the container it points to.
+     *
+     * @param databaseContainer the container used by the application context
+     */
+    public void addDatabaseContainer(DatabaseContainer databaseContainer) {
+        while (databaseContainer instanceof DatabaseContainerView) {
+            databaseContainer = ((DatabaseContainerView) databaseContainer).getDatabaseContainer();
+        }
+        // the buffer's lock keeps events from being recorded twice or getting lost while the container is added
+        synchronized (EventBuffer.INSTANCE) {
+            if (databaseContainers.add(databaseContainer)) {
+                meterRegistries.removeIf(MeterRegistry::isClosed);
+                for (MeterRegistry meterRegistry : meterRegistries) {
+                    EventBuffer.INSTANCE.getEvents(databaseContainer).forEach(event -> record(meterRegistry, event));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        synchronized (EventBuffer.INSTANCE) {
+            if (!meterRegistries.contains(registry)) {
+                meterRegistries.add(registry);
+                for (DatabaseContainer databaseContainer : databaseContainers) {
+                    EventBuffer.INSTANCE.getEvents(databaseContainer).forEach(event -> record(registry, event));
+                }
+            }
+        }
+    }
+
+    // called while holding the buffer's lock
+    void onPhaseCompleted(DatabaseContainerPhaseEvent event) {
+        if (!databaseContainers.contains(event.getDatabaseContainer())) {
+            return;
+        }
+        meterRegistries.removeIf(MeterRegistry::isClosed);
+        for (MeterRegistry meterRegistry : meterRegistries) {
+            record(meterRegistry, event);
+        }
+    }
+
+    private static void record(MeterRegistry registry, DatabaseContainerPhaseEvent event) {
+        Timer.builder(TIMER_NAME)
+                .description("Time taken by a phase of starting or stopping a database container")
+                .tag("phase", event.getPhase().getDisplayName())
+                .tag("container", event.getDatabaseContainer().getClass().getSimpleName())
+                .tag("image", event.getImageName())
+                .tag("node", event.getNodeName() != null ? event.getNodeName() : "none")
+                .tag("outcome", event.isSuccessful() ? "success" : "failure")
+                .register(registry)
+                .record(event.getDuration());
+    }
+
+    /**
+     * Buffers the events of each container until the container stops and forwards new events to the binders
+     */
+    private static class EventBuffer implements DatabaseContainerListener {
+        private static final int MAX_BUFFERED_EVENTS_PER_CONTAINER = 100;
+        private static final EventBuffer INSTANCE = new EventBuffer();
+        private final Map<DatabaseContainer, Deque<DatabaseContainerPhaseEvent>> bufferedEvents = new IdentityHashMap<>();
+        // binders of closed application contexts get garbage collected
+        private final Set<DatabaseContainerMetrics> metrics = Collections.newSetFromMap(new WeakHashMap<>());
+
+        EventBuffer() {
+            DatabaseContainerListeners.getInstance().addListener(this);
+        }
+
+        synchronized void addMetrics(DatabaseContainerMetrics databaseContainerMetrics) {
+            metrics.add(databaseContainerMetrics);
+        }
+
+        synchronized List<DatabaseContainerPhaseEvent> getEvents(DatabaseContainer databaseContainer) {
+            Deque<DatabaseContainerPhaseEvent> events = bufferedEvents.get(databaseContainer);
+            return events != null ? new ArrayList<>(events) : Collections.emptyList();
+        }
+
+        @Override
+        public synchronized void onPhaseCompleted(DatabaseContainerPhaseEvent event) {
+            Deque<DatabaseContainerPhaseEvent> events = bufferedEvents.computeIfAbsent(event.getDatabaseContainer(), key -> new ArrayDeque<>());
+            if (events.size() == MAX_BUFFERED_EVENTS_PER_CONTAINER) {
+                events.removeFirst();
+            }
+            events.addLast(event);
+            for (DatabaseContainerMetrics databaseContainerMetrics : metrics) {
+                databaseContainerMetrics.onPhaseCompleted(event);
+            }
+            if (event.getPhase() == DatabaseContainerPhase.STOP) {
+                bufferedEvents.remove(event.getDatabaseContainer());
+            }
+        }
+    }
+}
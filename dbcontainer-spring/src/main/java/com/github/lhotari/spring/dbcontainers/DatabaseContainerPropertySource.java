@@ -0,0 +1,89 @@
+package com.github.lhotari.spring.dbcontainers;
+
+import com.github.lhotari.dbcontainer.DatabaseContainer;
+import org.springframework.core.env.EnumerablePropertySource;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * PropertySource that contains the properties for connecting to the database of a {@link DatabaseContainer}.
+ * The property values are resolved from the container when a property gets read for the first time. When the
+ * container is still starting in the background, reading a property waits for the container to start.
+ * Listing the property names or checking whether a property exists doesn't wait.
+ */
+public class DatabaseContainerPropertySource extends EnumerablePropertySource<DatabaseContainer> {
+    private static final String[] PROPERTY_NAMES = {
+            "spring.datasource.url",
+            "spring.datasource.username",
+            "spring.datasource.password",
+            "spring.r2dbc.url",
+            "spring.r2dbc.username",
+            "spring.r2dbc.password"
+    };
+    private final Runnable demand;
+    private volatile Map<String, Object> properties;
+
+    public DatabaseContainerPropertySource(String name, DatabaseContainer databaseContainer) {
+        this(name, databaseContainer, () -> { });
+    }
+
+    /**
+     * @param name              the name of the property source
+     * @param databaseContainer the container, possibly still starting
+     * @param demand            starts a lazily started container, called before the property values are resolved
+     */
+    public DatabaseContainerPropertySource(String name, DatabaseContainer databaseContainer, Runnable demand) {
+        super(name, databaseContainer);
+        this.demand = demand;
+    }
+
+    @Override
+    public String[] getPropertyNames() {
+        return PROPERTY_NAMES.clone();
+    }
+
+    @Override
+    public boolean containsProperty(String name) {
+        for (String propertyName : PROPERTY_NAMES) {
+            if (propertyName.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Object getProperty(String name) {
+        if (!containsProperty(name)) {
+            return null;
+        }
+        return resolveProperties().get(name);
+    }
+
+    private Map<String, Object> resolveProperties() {
+        Map<String, Object> resolved = properties;
+        if (resolved == null) {
+            synchronized (this) {
+                resolved = properties;
+                if (resolved == null) {
+                    demand.run();
+                    resolved = createApplicationPropertiesForDatabase(getSource());
+                    properties = resolved;
+                }
+            }
+        }
+        return resolved;
+    }
+
+    private static Map<String, Object> createApplicationPropertiesForDatabase(DatabaseContainer databaseContainer) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("spring.datasource.url", databaseContainer.getJdbcUrl());
+        map.put("spring.datasource.username", databaseContainer.getDatabaseUser());
+        map.put("spring.datasource.password", databaseContainer.getDatabasePassword());
+        map.put("spring.r2dbc.url", databaseContainer.getR2dbcUrl());
+        map.put("spring.r2dbc.username", databaseContainer.getDatabaseUser());
+        map.put("spring.r2dbc.password", databaseContainer.getDatabasePassword());
+        return map;
+    }
+}
@@ -0,0 +1,42 @@
+package com.github.lhotari.spring.dbcontainers;
+
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryMetadata;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * R2DBC ConnectionFactory that delegates to a pooled ConnectionFactory that becomes available when the database
+ * container has started. Subscribing to a connection starts a lazily started container and waits for the pool
+ * without blocking.
+ */
+class DeferredConnectionFactory implements ConnectionFactory {
+    private final CompletableFuture<ConnectionFactory> connectionFactoryFuture;
+    private final Runnable demand;
+
+    /**
+     * @param connectionFactoryFuture completes with the pooled ConnectionFactory
+     * @param demand                  starts a lazily started database container, called before waiting for the pool
+     */
+    DeferredConnectionFactory(CompletableFuture<ConnectionFactory> connectionFactoryFuture, Runnable demand) {
+        this.connectionFactoryFuture = connectionFactoryFuture;
+        this.demand = demand;
+    }
+
+    @Override
+    public Publisher<? extends Connection> create() {
+        return Mono.defer(() -> {
+            demand.run();
+            return Mono.fromFuture(connectionFactoryFuture);
+        }).flatMap(connectionFactory -> Mono.from(connectionFactory.create()));
+    }
+
+    @Override
+    public ConnectionFactoryMetadata getMetadata() {
+        demand.run();
+        return connectionFactoryFuture.join().getMetadata();
+    }
+}
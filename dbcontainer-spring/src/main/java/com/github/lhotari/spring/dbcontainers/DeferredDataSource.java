@@ -0,0 +1,98 @@
+package com.github.lhotari.spring.dbcontainers;
+
+import com.github.lhotari.dbcontainer.DatabaseContainerException;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.logging.Logger;
+
+/**
+ * DataSource that delegates to a pooled DataSource that becomes available when the database container has started.
+ * Calling any method starts a lazily started container and blocks until the pool is available.
+ */
+class DeferredDataSource implements DataSource {
+    private final CompletableFuture<DataSource> dataSourceFuture;
+    private final Runnable demand;
+
+    /**
+     * @param dataSourceFuture completes with the pooled DataSource
+     * @param demand           starts a lazily started database container, called before waiting for the pool
+     */
+    DeferredDataSource(CompletableFuture<DataSource> dataSourceFuture, Runnable demand) {
+        this.dataSourceFuture = dataSourceFuture;
+        this.demand = demand;
+    }
+
+    private DataSource get() throws SQLException {
+        demand.run();
+        try {
+            return dataSourceFuture.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            throw new SQLException("Creating the pooled DataSource failed", cause);
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return get().getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return get().getConnection(username, password);
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return get().getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        get().setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        get().setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return get().getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        try {
+            return get().getParentLogger();
+        } catch (SQLFeatureNotSupportedException e) {
+            throw e;
+        } catch (SQLException e) {
+            throw new DatabaseContainerException("Creating the pooled DataSource failed", e);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return (T) this;
+        }
+        return get().unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || get().isWrapperFor(iface);
+    }
+}
@@ -0,0 +1,48 @@
+package com.github.lhotari.spring.dbcontainers;
+
+import org.springframework.beans.factory.FactoryBean;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * FactoryBean that provides an object that becomes available when a future completes. Getting the object blocks
+ * until the future has completed. The object isn't destroyed by the bean factory, its owner closes it.
+ *
+ * @param <T> the type of the object
+ */
+class DeferredFactoryBean<T> implements FactoryBean<T> {
+    private final CompletableFuture<T> objectFuture;
+    private final Class<T> objectType;
+    private final Runnable demand;
+
+    /**
+     * @param objectFuture completes with the object
+     * @param objectType   the type of the object
+     * @param demand       starts a lazily started database container, called before waiting for the object
+     */
+    DeferredFactoryBean(CompletableFuture<T> objectFuture, Class<T> objectType, Runnable demand) {
+        this.objectFuture = objectFuture;
+        this.objectType = objectType;
+        this.demand = demand;
+    }
+
+    @Override
+    public T getObject() throws Exception {
+        demand.run();
+        try {
+            return objectFuture.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public Class<?> getObjectType() {
+        return objectType;
+    }
+}
@@ -0,0 +1,32 @@
+package com.github.lhotari.spring.dbcontainers;
+
+import com.github.lhotari.dbcontainer.DatabaseContainer;
+import com.github.lhotari.dbcontainer.postgres.embedded.EmbeddedPostgresDatabaseContainer;
+import org.springframework.core.env.ConfigurableEnvironment;
+
+import java.nio.file.Paths;
+
+/**
+ * Spring ApplicationContextInitializer that starts Postgres from a local installation without docker.
+ * <p>
+ * The installation directory is set with the "dbcontainers.embedded-postgres.home" property, which defaults to the
+ * "postgresHome" system property and the POSTGRES_HOME environment variable. Init scripts are run once when the
+ * cluster template is created. The fast test mode and the schema image cache don't apply since the data directory
+ * is always on tmpfs when it's available and the initialized cluster template is always reused.
+ */
+public class EmbeddedPostgresSpringTestContextInitializer extends DatabaseContainerInitializingSpringTestContextInitializer {
+    public static final String POSTGRES_HOME_PROPERTY_NAME = "dbcontainers.embedded-postgres.home";
+
+    @Override
+    protected DatabaseContainer createDatabaseContainer(ConfigurableEnvironment environment) {
+        EmbeddedPostgresDatabaseContainer databaseContainer = new EmbeddedPostgresDatabaseContainer();
+        String postgresHome = environment.getProperty(POSTGRES_HOME_PROPERTY_NAME);
+        if (postgresHome != null) {
+            databaseContainer.withPostgresHome(Paths.get(postgresHome));
+        }
+        return databaseContainer
+                .withInitScripts(getInitScripts(environment))
+                .withQueryStatistics(isQueryStatisticsEnabled(environment))
+                .withAutoExplain(getAutoExplainMinDuration(environment));
+    }
+}
@@ -0,0 +1,85 @@
+package com.github.lhotari.spring.dbcontainers;
+
+import com.github.lhotari.dbcontainer.DatabaseContainer;
+import com.github.lhotari.dbcontainer.DatabaseContainerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Acquires the database container of an application context when the container is needed for the first time.
+ * The acquisition runs at most once. After the application context has closed, the container isn't acquired anymore.
+ */
+class LazyContainerStart {
+    private static final Logger LOG = LoggerFactory.getLogger(LazyContainerStart.class);
+    private static final int PENDING = 0;
+    private static final int STARTED = 1;
+    private static final int CLOSED = 2;
+    private final String contextName;
+    private final Supplier<CompletableFuture<DatabaseContainer>> acquisition;
+    private final CompletableFuture<DatabaseContainer> containerStarted = new CompletableFuture<>();
+    private final AtomicInteger state = new AtomicInteger(PENDING);
+
+    /**
+     * @param contextName the display name of the application context
+     * @param acquisition acquires or starts the container
+     */
+    LazyContainerStart(String contextName, Supplier<CompletableFuture<DatabaseContainer>> acquisition) {
+        this.contextName = contextName;
+        this.acquisition = acquisition;
+    }
+
+    /**
+     * @return a future that completes with the started container after {@link #demand()} has been called
+     */
+    CompletableFuture<DatabaseContainer> getContainerStarted() {
+        return containerStarted;
+    }
+
+    /**
+     * Starts the container unless it has already been started or the application context has closed.
+     * Has to be called before waiting for the container.
+     */
+    void demand() {
+        if (!state.compareAndSet(PENDING, STARTED)) {
+            return;
+        }
+        LOG.info("Starting the database container of {} on first use", contextName);
+        long startTime = System.nanoTime();
+        CompletableFuture<DatabaseContainer> acquired;
+        try {
+            acquired = acquisition.get();
+        } catch (RuntimeException e) {
+            containerStarted.completeExceptionally(e);
+            return;
+        }
+        acquired.whenComplete((databaseContainer, throwable) -> {
+            if (throwable != null) {
+                containerStarted.completeExceptionally(throwable);
+            } else {
+                LazyDatabaseContainerStarts.getInstance().recordStart(System.nanoTime() - startTime);
+                containerStarted.complete(databaseContainer);
+            }
+        });
+    }
+
+    /**
+     * Prevents later starts
+     *
+     * @return true if the container had been started
+     */
+    boolean close() {
+        if (state.compareAndSet(PENDING, CLOSED)) {
+            containerStarted.completeExceptionally(new DatabaseContainerException(
+                    "The application context " + contextName + " was closed before the database container was used"));
+            LazyDatabaseContainerStarts lazyStarts = LazyDatabaseContainerStarts.getInstance();
+            lazyStarts.recordUnused(contextName);
+            LOG.info("{} was closed without using the database container. {}", contextName, lazyStarts.getStatistics());
+            return false;
+        }
+        return true;
+    }
+}
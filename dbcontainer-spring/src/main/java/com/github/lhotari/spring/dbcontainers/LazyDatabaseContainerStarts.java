@@ -0,0 +1,108 @@
+package com.github.lhotari.spring.dbcontainers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the application contexts that start their database container lazily, see
+ * {@link DatabaseContainerInitializingSpringTestContextInitializer#LAZY_START_PROPERTY_NAME}. Contexts that are closed
+ * without reading the database properties never start a container. The time saved is estimated from the average
+ * time that the contexts that needed the database waited for their container.
+ */
+public class LazyDatabaseContainerStarts {
+    private static final LazyDatabaseContainerStarts INSTANCE = new LazyDatabaseContainerStarts();
+    private final List<String> unusedContexts = new ArrayList<>();
+    private final AtomicLong starts = new AtomicLong();
+    private final AtomicLong totalStartNanos = new AtomicLong();
+
+    LazyDatabaseContainerStarts() {
+
+    }
+
+    /**
+     * @return the JVM-wide instance
+     */
+    public static LazyDatabaseContainerStarts getInstance() {
+        return INSTANCE;
+    }
+
+    void recordStart(long startNanos) {
+        starts.incrementAndGet();
+        totalStartNanos.addAndGet(startNanos);
+    }
+
+    synchronized void recordUnused(String contextName) {
+        unusedContexts.add(contextName);
+    }
+
+    /**
+     * @return the display names of the application contexts that were closed without starting the container
+     */
+    public synchronized List<String> getUnusedContexts() {
+        return Collections.unmodifiableList(new ArrayList<>(unusedContexts));
+    }
+
+    /**
+     * @return statistics about the lazy starts in this JVM
+     */
+    public Statistics getStatistics() {
+        int unusedCount;
+        synchronized (this) {
+            unusedCount = unusedContexts.size();
+        }
+        long startCount = starts.get();
+        long averageStartMillis = startCount > 0 ? totalStartNanos.get() / startCount / 1000000L : 0L;
+        return new Statistics(startCount, unusedCount, averageStartMillis);
+    }
+
+    /**
+     * Statistics about lazy database container starts
+     */
+    public static class Statistics {
+        private final long starts;
+        private final int unusedContexts;
+        private final long averageStartMillis;
+
+        Statistics(long starts, int unusedContexts, long averageStartMillis) {
+            this.starts = starts;
+            this.unusedContexts = unusedContexts;
+            this.averageStartMillis = averageStartMillis;
+        }
+
+        /**
+         * @return the number of application contexts that started their container on first use
+         */
+        public long getStarts() {
+            return starts;
+        }
+
+        /**
+         * @return the number of application contexts that were closed without starting their container
+         */
+        public int getUnusedContexts() {
+            return unusedContexts;
+        }
+
+        /**
+         * @return the average time that the application contexts waited for their container after first use
+         */
+        public long getAverageStartMillis() {
+            return averageStartMillis;
+        }
+
+        /**
+         * @return the unused contexts multiplied by the average start time
+         */
+        public long getEstimatedSavedMillis() {
+            return unusedContexts * averageStartMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "starts=" + starts + ", unusedContexts=" + unusedContexts + ", averageStartMillis=" + averageStartMillis
+                    + ", estimatedSavedMillis=" + getEstimatedSavedMillis();
+        }
+    }
+}
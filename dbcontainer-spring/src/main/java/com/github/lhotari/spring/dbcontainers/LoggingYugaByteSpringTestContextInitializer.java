@@ -3,29 +3,78 @@ package com.github.lhotari.spring.dbcontainers;
 import com.github.lhotari.dbcontainer.DatabaseContainer;
 import com.github.lhotari.dbcontainer.yugabyte.LoggingYugaByteDatabaseContainer;
 import com.github.lhotari.dbcontainer.yugabyte.YugaByteDatabaseContainer;
+import com.github.lhotari.dbcontainer.yugabyte.YugaByteLogCapture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.core.env.ConfigurableEnvironment;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Spring ApplicationContextInitializer that starts a YugaByte container with a mounted logs and core dump directory
+ * <p>
+ * Setting the "dbcontainers.yugabyte.log-capture.enabled" property to true captures the logs into bounded in-memory
+ * buffers instead. The logs are written to the "dbcontainers.yugabyte.log-capture.directory" directory only when
+ * a test fails or a node exits abnormally. The buffer size per node and the size caps per run are configured with
+ * the "dbcontainers.yugabyte.log-capture.buffer-size", "dbcontainers.yugabyte.log-capture.max-log-bytes" and
+ * "dbcontainers.yugabyte.log-capture.max-core-dump-bytes" properties.
  */
 public class LoggingYugaByteSpringTestContextInitializer extends DatabaseContainerInitializingSpringTestContextInitializer {
     private static final Logger LOG = LoggerFactory.getLogger(LoggingYugaByteSpringTestContextInitializer.class);
+    public static final String LOG_CAPTURE_ENABLED_PROPERTY_NAME = "dbcontainers.yugabyte.log-capture.enabled";
+    public static final String LOG_CAPTURE_DIRECTORY_PROPERTY_NAME = "dbcontainers.yugabyte.log-capture.directory";
+    public static final String LOG_CAPTURE_BUFFER_SIZE_PROPERTY_NAME = "dbcontainers.yugabyte.log-capture.buffer-size";
+    public static final String LOG_CAPTURE_MAX_LOG_BYTES_PROPERTY_NAME = "dbcontainers.yugabyte.log-capture.max-log-bytes";
+    public static final String LOG_CAPTURE_MAX_CORE_DUMP_BYTES_PROPERTY_NAME = "dbcontainers.yugabyte.log-capture.max-core-dump-bytes";
+    private static final String DEFAULT_LOG_CAPTURE_DIRECTORY = "build/yugabyte-logs";
 
     @Override
     protected DatabaseContainer createDatabaseContainer(ConfigurableEnvironment environment) {
-        Path logsAndCoresDirectory = resolveLogsPath();
-        LOG.info("Logs and directories are in " + logsAndCoresDirectory.toAbsolutePath());
-        YugaByteDatabaseContainer yugaByteDatabaseContainer = new LoggingYugaByteDatabaseContainer(logsAndCoresDirectory);
+        LoggingYugaByteDatabaseContainer loggingContainer;
+        if (environment.getProperty(LOG_CAPTURE_ENABLED_PROPERTY_NAME, Boolean.class, Boolean.FALSE)) {
+            loggingContainer = new LoggingYugaByteDatabaseContainer(createLogCapture(environment));
+        } else {
+            // the directory is created only if this container gets started instead of a shared or pooled one
+            loggingContainer = new LoggingYugaByteDatabaseContainer(() -> {
+                Path logsAndCoresDirectory = resolveLogsPath();
+                LOG.info("Logs and directories are in " + logsAndCoresDirectory.toAbsolutePath());
+                return logsAndCoresDirectory;
+            });
+        }
+        YugaByteDatabaseContainer yugaByteDatabaseContainer = YugaByteSpringTestContextInitializer
+                .configureTopology(loggingContainer, environment)
+                .withFastTestMode(isFastTestMode(environment))
+                .withInitScripts(getInitScripts(environment))
+                .withSchemaImageCache(getSchemaImageCache(environment))
+                .withQueryStatistics(isQueryStatisticsEnabled(environment))
+                .withAutoExplain(getAutoExplainMinDuration(environment))
+                .withNetworkShaping(getNetworkShaping(environment))
+                .withResourceProfile(getResourceProfile(environment));
         return yugaByteDatabaseContainer;
     }
 
+    @Override
+    protected List<CompletableFuture<?>> registerContainerResources(ConfigurableApplicationContext applicationContext,
+                                                                   CompletableFuture<DatabaseContainer> containerStarted,
+                                                                   Runnable demand) {
+        return YugaByteSpringTestContextInitializer.registerYcqlSession(applicationContext, containerStarted, demand,
+                usesCrossJvmContainer(applicationContext.getEnvironment()));
+    }
+
+    protected YugaByteLogCapture createLogCapture(ConfigurableEnvironment environment) {
+        return new YugaByteLogCapture(Paths.get(environment.getProperty(LOG_CAPTURE_DIRECTORY_PROPERTY_NAME, DEFAULT_LOG_CAPTURE_DIRECTORY)))
+                .withBufferSize(environment.getProperty(LOG_CAPTURE_BUFFER_SIZE_PROPERTY_NAME, Integer.class, YugaByteLogCapture.DEFAULT_BUFFER_SIZE))
+                .withMaxLogBytes(environment.getProperty(LOG_CAPTURE_MAX_LOG_BYTES_PROPERTY_NAME, Long.class, YugaByteLogCapture.DEFAULT_MAX_LOG_BYTES))
+                .withMaxCoreDumpBytes(environment.getProperty(LOG_CAPTURE_MAX_CORE_DUMP_BYTES_PROPERTY_NAME, Long.class, YugaByteLogCapture.DEFAULT_MAX_CORE_DUMP_BYTES));
+    }
+
     protected Path resolveLogsPath() {
         Path logsAndCoresDirectory = null;
         try {
@@ -2,11 +2,67 @@ package com.github.lhotari.spring.dbcontainers;
 
 import com.github.lhotari.dbcontainer.DatabaseContainer;
 import com.github.lhotari.dbcontainer.postgres.PostgresDatabaseContainer;
+import com.github.lhotari.dbcontainer.postgres.PostgresReplicationDatabaseContainer;
 import org.springframework.core.env.ConfigurableEnvironment;
 
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Spring ApplicationContextInitializer that starts a Postgres container.
+ * <p>
+ * Setting the "dbcontainers.postgres.replicas" property to a positive number starts a primary with that many
+ * streaming replicas instead. The DataSource then routes read-only transactions to the replicas. The topology doesn't
+ * support query statistics, auto_explain, network shaping, resource limits or the schema image cache, setting one of
+ * their properties together with replicas fails.
+ */
 public class PostgresSpringTestContextInitializer extends DatabaseContainerInitializingSpringTestContextInitializer {
+    public static final String REPLICA_COUNT_PROPERTY_NAME = "dbcontainers.postgres.replicas";
+
     @Override
     protected DatabaseContainer createDatabaseContainer(ConfigurableEnvironment environment) {
-        return new PostgresDatabaseContainer();
+        int replicaCount = getReplicaCount(environment);
+        if (replicaCount > 0) {
+            rejectUnsupportedReplicationProperties(environment);
+            return new PostgresReplicationDatabaseContainer()
+                    .withReplicaCount(replicaCount)
+                    .withFastTestMode(isFastTestMode(environment))
+                    .withInitScripts(getInitScripts(environment));
+        }
+        return new PostgresDatabaseContainer()
+                .withFastTestMode(isFastTestMode(environment))
+                .withInitScripts(getInitScripts(environment))
+                .withSchemaImageCache(getSchemaImageCache(environment))
+                .withQueryStatistics(isQueryStatisticsEnabled(environment))
+                .withAutoExplain(getAutoExplainMinDuration(environment))
+                .withNetworkShaping(getNetworkShaping(environment))
+                .withResourceProfile(getResourceProfile(environment));
+    }
+
+    private void rejectUnsupportedReplicationProperties(ConfigurableEnvironment environment) {
+        List<String> unsupported = new ArrayList<>();
+        if (isQueryStatisticsEnabled(environment)) {
+            unsupported.add(QUERY_STATISTICS_ENABLED_PROPERTY_NAME);
+        }
+        if (getAutoExplainMinDuration(environment) != null) {
+            unsupported.add(AUTO_EXPLAIN_MIN_DURATION_PROPERTY_NAME);
+        }
+        if (getNetworkShaping(environment) != null) {
+            unsupported.add(NETWORK_SHAPING_ENABLED_PROPERTY_NAME);
+        }
+        if (getResourceProfile(environment) != null) {
+            unsupported.add("dbcontainers.resources.*");
+        }
+        if (getSchemaImageCache(environment) != null) {
+            unsupported.add(SCHEMA_IMAGE_CACHE_ENABLED_PROPERTY_NAME);
+        }
+        if (!unsupported.isEmpty()) {
+            throw new IllegalStateException("Postgres replicas (" + REPLICA_COUNT_PROPERTY_NAME
+                    + ") don't support " + String.join(", ", unsupported));
+        }
+    }
+
+    protected int getReplicaCount(ConfigurableEnvironment environment) {
+        return environment.getProperty(REPLICA_COUNT_PROPERTY_NAME, Integer.class, 0);
     }
 }
@@ -0,0 +1,205 @@
+package com.github.lhotari.spring.dbcontainers;
+
+import com.github.lhotari.dbcontainer.CsvFixture;
+import com.github.lhotari.dbcontainer.DatabaseAdministration;
+import com.github.lhotari.dbcontainer.DatabaseContainer;
+import com.github.lhotari.dbcontainer.FixtureLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Creates template databases initialized with SQL scripts and per-context databases cloned from the templates.
+ * Database servers that only accept template0 and template1 as templates get the scripts run in each per-context
+ * database.
+ */
+class TemplateDatabases {
+    private static final Logger LOG = LoggerFactory.getLogger(TemplateDatabases.class);
+    static final String DEFAULT_TEMPLATE_DATABASE_NAME = "template1";
+    static final String DEFAULT_TEMPLATE_DATABASE_PREFIX = "dbcontainers_template";
+    private static final String EMPTY_TEMPLATE_DATABASE_NAME = "template0";
+    private static final Object TEMPLATE_CREATION_LOCK = new Object();
+
+    private TemplateDatabases() {
+
+    }
+
+    /**
+     * Creates the database of an application context. The database is cloned from the template database resolved
+     * with {@link #resolveTemplateDatabase}. When the database server only accepts template0 and template1 as
+     * templates, like YugaByte YSQL does, the database is created from template0 and the template scripts and
+     * fixtures are run in it instead.
+     *
+     * @param databaseContainer          the started database container
+     * @param templateDatabasesSupported whether the database server can clone any database
+     * @param templateDatabaseName       the configured template database name or prefix, can be null
+     * @param templateScriptLocations    locations of the SQL scripts to initialize the template database with
+     * @param templateFixtureLocations   locations of the CSV fixtures to load into the template database
+     * @param resourceLoader             the resource loader for loading the scripts and fixtures
+     * @return the name of the created database
+     */
+    static String createContextDatabase(DatabaseContainer databaseContainer, boolean templateDatabasesSupported,
+                                        String templateDatabaseName, String[] templateScriptLocations,
+                                        String[] templateFixtureLocations, ResourceLoader resourceLoader) {
+        if (templateDatabasesSupported || (isEmpty(templateScriptLocations) && isEmpty(templateFixtureLocations))) {
+            String resolvedTemplateDatabaseName = resolveTemplateDatabase(databaseContainer, templateDatabaseName,
+                    templateScriptLocations, templateFixtureLocations, resourceLoader);
+            return createDatabaseFromTemplate(databaseContainer, resolvedTemplateDatabaseName);
+        }
+        TemplateContents templateContents = new TemplateContents(templateScriptLocations, templateFixtureLocations, resourceLoader);
+        String databaseName = generateDatabaseName();
+        long startTime = System.nanoTime();
+        DatabaseAdministration.createDatabase(databaseContainer, databaseName, EMPTY_TEMPLATE_DATABASE_NAME);
+        templateContents.initialize(databaseContainer, databaseName);
+        LOG.info("Created database {} and ran the template scripts in {} ms", databaseName, (System.nanoTime() - startTime) / 1000000L);
+        return databaseName;
+    }
+
+    /**
+     * Resolves the template database to use. When there are template scripts or fixtures, a template database is
+     * created and initialized unless it already exists. The name of the created template database contains a hash of
+     * the script and fixture contents so that changes in them result in a new template database.
+     * <p>
+     * The fixtures are CSV files, optionally gzip compressed, that are loaded with the COPY protocol after running
+     * the scripts. The table of a fixture is given as "table=location" or is derived from the file name, for example
+     * "classpath:fixtures/city.csv.gz" is loaded into the "city" table.
+     *
+     * @param databaseContainer        the started database container
+     * @param templateDatabaseName     the configured template database name or prefix, can be null
+     * @param templateScriptLocations  locations of the SQL scripts to initialize the template database with
+     * @param templateFixtureLocations locations of the CSV fixtures to load into the template database
+     * @param resourceLoader           the resource loader for loading the scripts and fixtures
+     * @return the name of the template database
+     */
+    static String resolveTemplateDatabase(DatabaseContainer databaseContainer, String templateDatabaseName,
+                                          String[] templateScriptLocations, String[] templateFixtureLocations,
+                                          ResourceLoader resourceLoader) {
+        if (isEmpty(templateScriptLocations) && isEmpty(templateFixtureLocations)) {
+            return templateDatabaseName != null ? templateDatabaseName : DEFAULT_TEMPLATE_DATABASE_NAME;
+        }
+        TemplateContents templateContents = new TemplateContents(templateScriptLocations, templateFixtureLocations, resourceLoader);
+        String templateName = (templateDatabaseName != null ? templateDatabaseName : DEFAULT_TEMPLATE_DATABASE_PREFIX)
+                + "_" + hashScripts(templateContents.hashedContents);
+        synchronized (TEMPLATE_CREATION_LOCK) {
+            if (!DatabaseAdministration.databaseExists(databaseContainer, templateName)) {
+                long startTime = System.nanoTime();
+                DatabaseAdministration.createDatabase(databaseContainer, templateName, EMPTY_TEMPLATE_DATABASE_NAME);
+                templateContents.initialize(databaseContainer, templateName);
+                LOG.info("Initialized template database {} in {} ms", templateName, (System.nanoTime() - startTime) / 1000000L);
+            }
+        }
+        return templateName;
+    }
+
+    /**
+     * Creates a new database with a generated name by cloning the template database
+     *
+     * @param databaseContainer    the started database container
+     * @param templateDatabaseName the name of the template database
+     * @return the name of the created database
+     */
+    static String createDatabaseFromTemplate(DatabaseContainer databaseContainer, String templateDatabaseName) {
+        String databaseName = generateDatabaseName();
+        long startTime = System.nanoTime();
+        DatabaseAdministration.createDatabase(databaseContainer, databaseName, templateDatabaseName);
+        LOG.info("Created database {} from template {} in {} ms", databaseName, templateDatabaseName, (System.nanoTime() - startTime) / 1000000L);
+        return databaseName;
+    }
+
+    private static String generateDatabaseName() {
+        return "ctx_" + UUID.randomUUID().toString().replace("-", "").substring(0, 16);
+    }
+
+    static List<String> loadScripts(String[] locations, ResourceLoader resourceLoader) {
+        List<String> scripts = new ArrayList<>(locations.length);
+        for (String location : locations) {
+            Resource resource = resourceLoader.getResource(location.trim());
+            try (InputStream inputStream = resource.getInputStream()) {
+                scripts.add(StreamUtils.copyToString(inputStream, StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read script " + location, e);
+            }
+        }
+        return scripts;
+    }
+
+    private static boolean isEmpty(String[] locations) {
+        return locations == null || locations.length == 0;
+    }
+
+    private static Resource resolveFixtureResource(String fixtureLocation, ResourceLoader resourceLoader) {
+        int separatorIndex = fixtureLocation.indexOf('=');
+        return resourceLoader.getResource(fixtureLocation.substring(separatorIndex + 1).trim());
+    }
+
+    private static String resolveFixtureTableName(String fixtureLocation, Resource resource) {
+        int separatorIndex = fixtureLocation.indexOf('=');
+        if (separatorIndex > 0) {
+            return fixtureLocation.substring(0, separatorIndex).trim();
+        }
+        String fileName = resource.getFilename();
+        if (fileName == null || fileName.indexOf('.') < 1) {
+            throw new IllegalArgumentException("Cannot derive the table name from fixture location " + fixtureLocation);
+        }
+        return fileName.substring(0, fileName.indexOf('.'));
+    }
+
+    private static String hashResource(Resource resource) {
+        try (InputStream inputStream = resource.getInputStream()) {
+            return DigestUtils.md5DigestAsHex(inputStream);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read template fixture " + resource, e);
+        }
+    }
+
+    private static String hashScripts(List<String> scripts) {
+        String joined = String.join("\u0000", scripts);
+        return DigestUtils.md5DigestAsHex(joined.getBytes(StandardCharsets.UTF_8)).substring(0, 12);
+    }
+
+    // the template scripts and fixtures and the contents that the name of the template database is derived from
+    private static class TemplateContents {
+        private final List<String> scripts;
+        private final List<CsvFixture> fixtures = new ArrayList<>();
+        private final List<String> hashedContents;
+
+        TemplateContents(String[] templateScriptLocations, String[] templateFixtureLocations, ResourceLoader resourceLoader) {
+            scripts = isEmpty(templateScriptLocations) ? new ArrayList<>() : loadScripts(templateScriptLocations, resourceLoader);
+            hashedContents = new ArrayList<>(scripts);
+            if (!isEmpty(templateFixtureLocations)) {
+                for (String fixtureLocation : templateFixtureLocations) {
+                    Resource resource = resolveFixtureResource(fixtureLocation, resourceLoader);
+                    String tableName = resolveFixtureTableName(fixtureLocation, resource);
+                    fixtures.add(new CsvFixture(tableName, resource::getInputStream, CsvFixture.isGzipped(resource.getFilename())));
+                    hashedContents.add(tableName + "=" + hashResource(resource));
+                }
+            }
+        }
+
+        // the database is dropped when running the scripts or loading the fixtures fails
+        void initialize(DatabaseContainer databaseContainer, String databaseName) {
+            try {
+                for (String script : scripts) {
+                    DatabaseAdministration.executeSql(databaseContainer, databaseName, script);
+                }
+                if (!fixtures.isEmpty()) {
+                    new FixtureLoader(databaseContainer).load(databaseName, fixtures);
+                }
+            } catch (RuntimeException e) {
+                DatabaseAdministration.dropDatabase(databaseContainer, databaseName);
+                throw e;
+            }
+        }
+    }
+}
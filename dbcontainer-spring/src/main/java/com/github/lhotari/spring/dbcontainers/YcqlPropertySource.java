@@ -0,0 +1,95 @@
+package com.github.lhotari.spring.dbcontainers;
+
+import com.github.lhotari.dbcontainer.DatabaseContainerException;
+import org.springframework.core.env.EnumerablePropertySource;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * PropertySource that contains the "spring.data.cassandra" properties for connecting to the keyspace of a
+ * {@link YcqlSessionLease}. Reading a property waits for the session to become available.
+ */
+public class YcqlPropertySource extends EnumerablePropertySource<CompletableFuture<YcqlSessionLease>> {
+    private static final String[] PROPERTY_NAMES = {
+            "spring.data.cassandra.contact-points",
+            "spring.data.cassandra.port",
+            "spring.data.cassandra.keyspace-name",
+            "spring.data.cassandra.local-datacenter"
+    };
+    // the default data center of YugaByte nodes
+    private static final String LOCAL_DATACENTER = "datacenter1";
+    private final Runnable demand;
+    private volatile Map<String, Object> properties;
+
+    public YcqlPropertySource(String name, CompletableFuture<YcqlSessionLease> leaseFuture) {
+        this(name, leaseFuture, () -> { });
+    }
+
+    /**
+     * @param name        the name of the property source
+     * @param leaseFuture completes with the leased session
+     * @param demand      starts a lazily started database container, called before waiting for the session
+     */
+    public YcqlPropertySource(String name, CompletableFuture<YcqlSessionLease> leaseFuture, Runnable demand) {
+        super(name, leaseFuture);
+        this.demand = demand;
+    }
+
+    @Override
+    public String[] getPropertyNames() {
+        return PROPERTY_NAMES.clone();
+    }
+
+    @Override
+    public boolean containsProperty(String name) {
+        return Arrays.asList(PROPERTY_NAMES).contains(name);
+    }
+
+    @Override
+    public Object getProperty(String name) {
+        if (!containsProperty(name)) {
+            return null;
+        }
+        return resolveProperties().get(name);
+    }
+
+    private Map<String, Object> resolveProperties() {
+        Map<String, Object> resolved = properties;
+        if (resolved == null) {
+            synchronized (this) {
+                resolved = properties;
+                if (resolved == null) {
+                    resolved = createProperties(getLease());
+                    properties = resolved;
+                }
+            }
+        }
+        return resolved;
+    }
+
+    private YcqlSessionLease getLease() {
+        demand.run();
+        try {
+            return getSource().join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new DatabaseContainerException("Creating the YCQL session failed", cause);
+        }
+    }
+
+    private static Map<String, Object> createProperties(YcqlSessionLease lease) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("spring.data.cassandra.contact-points", lease.getContactPointHost());
+        map.put("spring.data.cassandra.port", lease.getContactPointPort());
+        map.put("spring.data.cassandra.keyspace-name", lease.getKeyspace());
+        map.put("spring.data.cassandra.local-datacenter", LOCAL_DATACENTER);
+        return map;
+    }
+}
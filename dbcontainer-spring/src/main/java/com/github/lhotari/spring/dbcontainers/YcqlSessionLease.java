@@ -0,0 +1,80 @@
+package com.github.lhotari.spring.dbcontainers;
+
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.Session;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A YCQL session acquired from a {@link YcqlSessionPool}. The session uses a keyspace of its own and caches
+ * the statements prepared with {@link #prepare(String)} for the lifetime of the session, also across leases.
+ */
+public class YcqlSessionLease implements AutoCloseable {
+    private final YcqlSessionPool pool;
+    private final Session session;
+    private final String keyspace;
+    private final ConcurrentMap<String, PreparedStatement> preparedStatements = new ConcurrentHashMap<>();
+    private final AtomicBoolean leased = new AtomicBoolean(true);
+
+    YcqlSessionLease(YcqlSessionPool pool, Session session, String keyspace) {
+        this.pool = pool;
+        this.session = session;
+        this.keyspace = keyspace;
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    public String getKeyspace() {
+        return keyspace;
+    }
+
+    /**
+     * @return the host of the YCQL endpoint of the first tserver
+     */
+    public String getContactPointHost() {
+        return pool.getContactPointHost();
+    }
+
+    /**
+     * @return the port of the YCQL endpoint of the first tserver
+     */
+    public int getContactPointPort() {
+        return pool.getContactPointPort();
+    }
+
+    /**
+     * Prepares a statement or returns the statement that has been prepared earlier with the same query
+     *
+     * @param query the CQL query
+     * @return the prepared statement
+     */
+    public PreparedStatement prepare(String query) {
+        PreparedStatement preparedStatement = preparedStatements.get(query);
+        if (preparedStatement == null) {
+            preparedStatement = session.prepare(query);
+            PreparedStatement previous = preparedStatements.putIfAbsent(query, preparedStatement);
+            if (previous != null) {
+                preparedStatement = previous;
+            }
+        }
+        return preparedStatement;
+    }
+
+    /**
+     * Releases the session back to the pool
+     */
+    @Override
+    public void close() {
+        if (leased.compareAndSet(true, false)) {
+            pool.release(this);
+        }
+    }
+
+    void markLeased() {
+        leased.set(true);
+    }
+}
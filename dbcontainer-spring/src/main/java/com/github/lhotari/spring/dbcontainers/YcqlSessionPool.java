@@ -0,0 +1,195 @@
+package com.github.lhotari.spring.dbcontainers;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.github.lhotari.dbcontainer.DatabaseContainer;
+import com.github.lhotari.dbcontainer.DatabaseContainerListeners;
+import com.github.lhotari.dbcontainer.DatabaseContainerPhase;
+import com.github.lhotari.dbcontainer.yugabyte.YugaByteDatabaseContainer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of YCQL sessions that are connected to a {@link YugaByteDatabaseContainer}.
+ * <p>
+ * There is a single pool for each container and the pool shares a single driver Cluster between all sessions.
+ * Each lease from the pool is a session that uses its own generated keyspace. A released lease keeps its session
+ * and keyspace: the tables of the keyspace are truncated and the lease is handed to the next user. The schema and
+ * the prepared statements of the lease are reused so that the next user doesn't have to connect or prepare the
+ * statements again. The pool is closed when the container stops.
+ */
+public class YcqlSessionPool {
+    private static final Logger LOG = LoggerFactory.getLogger(YcqlSessionPool.class);
+    private static final Map<DatabaseContainer, YcqlSessionPool> POOLS = new IdentityHashMap<>();
+    private static final AtomicInteger KEYSPACE_SEQUENCE = new AtomicInteger();
+    private final DatabaseContainer databaseContainer;
+    private final Cluster cluster;
+    private final String contactPointHost;
+    private final int contactPointPort;
+    private final Deque<YcqlSessionLease> idleLeases = new ArrayDeque<>();
+    private int activeLeaseCount;
+    private boolean closed;
+
+    static {
+        DatabaseContainerListeners.getInstance().addListener(event -> {
+            if (event.getPhase() == DatabaseContainerPhase.STOP) {
+                closePool(event.getDatabaseContainer());
+            }
+        });
+    }
+
+    private YcqlSessionPool(YugaByteDatabaseContainer databaseContainer) {
+        this.databaseContainer = databaseContainer;
+        Cluster.Builder builder = Cluster.builder()
+                .withoutJMXReporting()
+                .withoutMetrics();
+        for (int i = 0; i < databaseContainer.getTserverCount(); i++) {
+            builder.addContactPointsWithPorts(new InetSocketAddress(databaseContainer.getYCQLHost(i), databaseContainer.getYCQLPort(i)));
+        }
+        this.cluster = builder.build();
+        this.contactPointHost = databaseContainer.getYCQLHost();
+        this.contactPointPort = databaseContainer.getYCQLPort();
+    }
+
+    /**
+     * Returns the pool for a started container, creating it when it doesn't exist
+     *
+     * @param databaseContainer the started container
+     * @return the pool
+     */
+    public static synchronized YcqlSessionPool forContainer(YugaByteDatabaseContainer databaseContainer) {
+        return POOLS.computeIfAbsent(databaseContainer, key -> new YcqlSessionPool(databaseContainer));
+    }
+
+    private static void closePool(DatabaseContainer databaseContainer) {
+        YcqlSessionPool pool;
+        synchronized (YcqlSessionPool.class) {
+            pool = POOLS.remove(databaseContainer);
+        }
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    /**
+     * Acquires a session that uses its own keyspace. An idle session is reused when one is available, otherwise
+     * a new session and keyspace are created.
+     *
+     * @return the lease, closing it releases the session back to the pool
+     */
+    public YcqlSessionLease acquire() {
+        YcqlSessionLease lease;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("The pool has been closed");
+            }
+            lease = idleLeases.pollFirst();
+            activeLeaseCount++;
+        }
+        if (lease != null) {
+            lease.markLeased();
+            return lease;
+        }
+        try {
+            return createLease();
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                activeLeaseCount--;
+            }
+            throw e;
+        }
+    }
+
+    private YcqlSessionLease createLease() {
+        String keyspace = "dbcontainers_" + KEYSPACE_SEQUENCE.incrementAndGet();
+        long startTime = System.nanoTime();
+        Session session = cluster.connect();
+        try {
+            session.execute("CREATE KEYSPACE IF NOT EXISTS " + keyspace);
+            session.execute("USE " + keyspace);
+        } catch (RuntimeException e) {
+            session.close();
+            throw e;
+        }
+        LOG.info("Created YCQL keyspace {} in {} ms", keyspace, (System.nanoTime() - startTime) / 1000000L);
+        return new YcqlSessionLease(this, session, keyspace);
+    }
+
+    void release(YcqlSessionLease lease) {
+        boolean reusable;
+        synchronized (this) {
+            activeLeaseCount--;
+            reusable = !closed;
+        }
+        if (reusable) {
+            try {
+                truncateTables(lease);
+            } catch (RuntimeException e) {
+                LOG.warn("Truncating the tables of keyspace {} failed, the session won't be reused", lease.getKeyspace(), e);
+                reusable = false;
+            }
+        }
+        synchronized (this) {
+            if (reusable && !closed) {
+                idleLeases.addFirst(lease);
+                return;
+            }
+        }
+        lease.getSession().close();
+    }
+
+    private static void truncateTables(YcqlSessionLease lease) {
+        List<String> tableNames = new ArrayList<>();
+        for (Row row : lease.getSession().execute("SELECT table_name FROM system_schema.tables WHERE keyspace_name = ?", lease.getKeyspace())) {
+            tableNames.add(row.getString("table_name"));
+        }
+        for (String tableName : tableNames) {
+            lease.getSession().execute("TRUNCATE " + tableName);
+        }
+    }
+
+    String getContactPointHost() {
+        return contactPointHost;
+    }
+
+    int getContactPointPort() {
+        return contactPointPort;
+    }
+
+    /**
+     * @return the number of leases that haven't been released
+     */
+    public synchronized int getActiveLeaseCount() {
+        return activeLeaseCount;
+    }
+
+    /**
+     * @return the number of released leases that are ready for reuse
+     */
+    public synchronized int getIdleLeaseCount() {
+        return idleLeases.size();
+    }
+
+    private void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            idleLeases.clear();
+        }
+        LOG.debug("Closing YCQL session pool of {}", databaseContainer);
+        // closing the cluster closes all sessions
+        cluster.closeAsync();
+    }
+}
@@ -0,0 +1,18 @@
+package com.github.lhotari.spring.dbcontainers;
+
+import com.github.lhotari.dbcontainer.yugabyte.YugaByteLogCapture;
+import org.springframework.test.context.TestContext;
+import org.springframework.test.context.TestExecutionListener;
+
+/**
+ * TestExecutionListener that persists the logs captured by {@link YugaByteLogCapture} instances when a test fails.
+ * The listener is registered in META-INF/spring.factories.
+ */
+public class YugaByteLogCaptureTestExecutionListener implements TestExecutionListener {
+    @Override
+    public void afterTestMethod(TestContext testContext) {
+        if (testContext.getTestException() != null) {
+            YugaByteLogCapture.persistAll(testContext.getTestClass().getSimpleName() + "." + testContext.getTestMethod().getName());
+        }
+    }
+}
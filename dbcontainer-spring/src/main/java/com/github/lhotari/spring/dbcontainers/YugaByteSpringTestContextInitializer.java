@@ -1,12 +1,192 @@
 package com.github.lhotari.spring.dbcontainers;
 
+import com.datastax.driver.core.Session;
 import com.github.lhotari.dbcontainer.DatabaseContainer;
+import com.github.lhotari.dbcontainer.DatabaseContainerException;
+import com.github.lhotari.dbcontainer.DatabaseContainerExecutors;
+import com.github.lhotari.dbcontainer.ResourceProfile;
 import com.github.lhotari.dbcontainer.yugabyte.YugaByteDatabaseContainer;
+import com.github.lhotari.dbcontainer.yugabyte.YugaByteFlags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.util.ClassUtils;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Spring ApplicationContextInitializer that starts a YugaByte container.
+ * <p>
+ * The topology is configured with the "dbcontainers.yugabyte.masters", "dbcontainers.yugabyte.tservers" and
+ * "dbcontainers.yugabyte.replication-factor" properties. A single master and tserver are started by default.
+ * <p>
+ * The gflags of the nodes are configured with the "dbcontainers.yugabyte.flags.*" properties, see {@link YugaByteFlags}.
+ * The "dbcontainers.yugabyte.flags.preset" property selects a preset, "small-footprint" or "throughput", and the
+ * typed properties such as "dbcontainers.yugabyte.flags.shards-per-tserver" override its values. The
+ * "dbcontainers.yugabyte.flags.master" and "dbcontainers.yugabyte.flags.tserver" properties take comma separated
+ * name=value pairs of other flags.
+ * <p>
+ * When the "dbcontainers.yugabyte.ycql.enabled" property is true and the DataStax Java driver 3.x is on the classpath,
+ * the application context gets a YCQL session from a {@link YcqlSessionPool}. The session uses a keyspace of its own
+ * and is registered as a bean with the name "cassandraSession", and its {@link YcqlSessionLease} with the name
+ * "ycqlSessionLease". The "spring.data.cassandra" properties point to the keyspace. The lease is released when the
+ * application context closes. The session isn't registered when the container is shared across JVMs.
+ */
 public class YugaByteSpringTestContextInitializer extends DatabaseContainerInitializingSpringTestContextInitializer {
+    private static final Logger LOG = LoggerFactory.getLogger(YugaByteSpringTestContextInitializer.class);
+    public static final String MASTER_COUNT_PROPERTY_NAME = "dbcontainers.yugabyte.masters";
+    public static final String TSERVER_COUNT_PROPERTY_NAME = "dbcontainers.yugabyte.tservers";
+    public static final String REPLICATION_FACTOR_PROPERTY_NAME = "dbcontainers.yugabyte.replication-factor";
+    public static final String FLAGS_PRESET_PROPERTY_NAME = "dbcontainers.yugabyte.flags.preset";
+    public static final String FLAGS_SHARDS_PER_TSERVER_PROPERTY_NAME = "dbcontainers.yugabyte.flags.shards-per-tserver";
+    public static final String FLAGS_MEMORY_LIMIT_PROPERTY_NAME = "dbcontainers.yugabyte.flags.memory-limit-mb";
+    public static final String FLAGS_BLOCK_CACHE_SIZE_PROPERTY_NAME = "dbcontainers.yugabyte.flags.block-cache-mb";
+    public static final String FLAGS_SERVICE_THREADS_PROPERTY_NAME = "dbcontainers.yugabyte.flags.service-threads";
+    public static final String FLAGS_RPC_WORKERS_LIMIT_PROPERTY_NAME = "dbcontainers.yugabyte.flags.rpc-workers-limit";
+    public static final String FLAGS_YSQL_MAX_CONNECTIONS_PROPERTY_NAME = "dbcontainers.yugabyte.flags.ysql-max-connections";
+    public static final String FLAGS_AUTOMATIC_TABLET_SPLITTING_PROPERTY_NAME = "dbcontainers.yugabyte.flags.automatic-tablet-splitting";
+    public static final String FLAGS_TABLET_SPLIT_THRESHOLD_PROPERTY_NAME = "dbcontainers.yugabyte.flags.tablet-split-threshold-mb";
+    public static final String FLAGS_MASTER_PROPERTY_NAME = "dbcontainers.yugabyte.flags.master";
+    public static final String FLAGS_TSERVER_PROPERTY_NAME = "dbcontainers.yugabyte.flags.tserver";
+    public static final String YCQL_ENABLED_PROPERTY_NAME = "dbcontainers.yugabyte.ycql.enabled";
+    public static final String CASSANDRA_SESSION_BEAN_NAME = "cassandraSession";
+    public static final String YCQL_SESSION_LEASE_BEAN_NAME = "ycqlSessionLease";
+    private static final String CASSANDRA_SESSION_CLASS_NAME = "com.datastax.driver.core.Session";
+
     @Override
     protected DatabaseContainer createDatabaseContainer(ConfigurableEnvironment environment) {
-        return new YugaByteDatabaseContainer();
+        return configureTopology(new YugaByteDatabaseContainer(), environment)
+                .withFastTestMode(isFastTestMode(environment))
+                .withInitScripts(getInitScripts(environment))
+                .withSchemaImageCache(getSchemaImageCache(environment))
+                .withQueryStatistics(isQueryStatisticsEnabled(environment))
+                .withAutoExplain(getAutoExplainMinDuration(environment))
+                .withNetworkShaping(getNetworkShaping(environment))
+                .withResourceProfile(getResourceProfile(environment));
+    }
+
+    @Override
+    protected List<CompletableFuture<?>> registerContainerResources(ConfigurableApplicationContext applicationContext,
+                                                                   CompletableFuture<DatabaseContainer> containerStarted,
+                                                                   Runnable demand) {
+        return registerYcqlSession(applicationContext, containerStarted, demand, usesCrossJvmContainer(applicationContext.getEnvironment()));
+    }
+
+    static YugaByteDatabaseContainer configureTopology(YugaByteDatabaseContainer databaseContainer, ConfigurableEnvironment environment) {
+        return databaseContainer
+                .withMasterCount(environment.getProperty(MASTER_COUNT_PROPERTY_NAME, Integer.class, 1))
+                .withTserverCount(environment.getProperty(TSERVER_COUNT_PROPERTY_NAME, Integer.class, 1))
+                .withReplicationFactor(environment.getProperty(REPLICATION_FACTOR_PROPERTY_NAME, Integer.class, 1))
+                .withFlags(getFlags(environment));
+    }
+
+    /**
+     * @return the flags configured with the "dbcontainers.yugabyte.flags.*" properties, null when none are set
+     */
+    static YugaByteFlags getFlags(ConfigurableEnvironment environment) {
+        String preset = environment.getProperty(FLAGS_PRESET_PROPERTY_NAME);
+        YugaByteFlags flags = preset != null ? YugaByteFlags.preset(preset) : YugaByteFlags.create();
+        boolean configured = preset != null;
+        Integer shardsPerTserver = environment.getProperty(FLAGS_SHARDS_PER_TSERVER_PROPERTY_NAME, Integer.class);
+        if (shardsPerTserver != null) {
+            flags.withShardsPerTserver(shardsPerTserver);
+            configured = true;
+        }
+        Long memoryLimitMegabytes = environment.getProperty(FLAGS_MEMORY_LIMIT_PROPERTY_NAME, Long.class);
+        if (memoryLimitMegabytes != null) {
+            flags.withMemoryLimit(memoryLimitMegabytes * ResourceProfile.MEGABYTE);
+            configured = true;
+        }
+        Long blockCacheMegabytes = environment.getProperty(FLAGS_BLOCK_CACHE_SIZE_PROPERTY_NAME, Long.class);
+        if (blockCacheMegabytes != null) {
+            flags.withBlockCacheSize(blockCacheMegabytes * ResourceProfile.MEGABYTE);
+            configured = true;
+        }
+        Integer serviceThreads = environment.getProperty(FLAGS_SERVICE_THREADS_PROPERTY_NAME, Integer.class);
+        if (serviceThreads != null) {
+            flags.withServiceThreads(serviceThreads);
+            configured = true;
+        }
+        Integer rpcWorkersLimit = environment.getProperty(FLAGS_RPC_WORKERS_LIMIT_PROPERTY_NAME, Integer.class);
+        if (rpcWorkersLimit != null) {
+            flags.withRpcWorkersLimit(rpcWorkersLimit);
+            configured = true;
+        }
+        Integer ysqlMaxConnections = environment.getProperty(FLAGS_YSQL_MAX_CONNECTIONS_PROPERTY_NAME, Integer.class);
+        if (ysqlMaxConnections != null) {
+            flags.withYsqlMaxConnections(ysqlMaxConnections);
+            configured = true;
+        }
+        Boolean automaticTabletSplitting = environment.getProperty(FLAGS_AUTOMATIC_TABLET_SPLITTING_PROPERTY_NAME, Boolean.class);
+        if (automaticTabletSplitting != null) {
+            flags.withAutomaticTabletSplitting(automaticTabletSplitting);
+            configured = true;
+        }
+        Long tabletSplitThresholdMegabytes = environment.getProperty(FLAGS_TABLET_SPLIT_THRESHOLD_PROPERTY_NAME, Long.class);
+        if (tabletSplitThresholdMegabytes != null) {
+            flags.withTabletSplitThreshold(tabletSplitThresholdMegabytes * ResourceProfile.MEGABYTE);
+            configured = true;
+        }
+        for (String flag : environment.getProperty(FLAGS_MASTER_PROPERTY_NAME, String[].class, new String[0])) {
+            String[] nameAndValue = parseFlag(flag, FLAGS_MASTER_PROPERTY_NAME);
+            flags.withMasterFlag(nameAndValue[0], nameAndValue[1]);
+            configured = true;
+        }
+        for (String flag : environment.getProperty(FLAGS_TSERVER_PROPERTY_NAME, String[].class, new String[0])) {
+            String[] nameAndValue = parseFlag(flag, FLAGS_TSERVER_PROPERTY_NAME);
+            flags.withTserverFlag(nameAndValue[0], nameAndValue[1]);
+            configured = true;
+        }
+        return configured ? flags : null;
+    }
+
+    private static String[] parseFlag(String flag, String propertyName) {
+        String[] nameAndValue = flag.trim().split("=", 2);
+        if (nameAndValue.length != 2 || nameAndValue[0].isEmpty()) {
+            throw new IllegalArgumentException("Invalid flag '" + flag + "' in " + propertyName + ", expected name=value");
+        }
+        return nameAndValue;
+    }
+
+    static List<CompletableFuture<?>> registerYcqlSession(ConfigurableApplicationContext applicationContext,
+                                                          CompletableFuture<DatabaseContainer> containerStarted,
+                                                          Runnable demand, boolean crossJvm) {
+        if (!applicationContext.getEnvironment().getProperty(YCQL_ENABLED_PROPERTY_NAME, Boolean.class, Boolean.FALSE)
+                || !ClassUtils.isPresent(CASSANDRA_SESSION_CLASS_NAME, applicationContext.getClassLoader())) {
+            return Collections.emptyList();
+        }
+        if (crossJvm) {
+            // the nodes of a container attached from another JVM aren't known, so a session can't be created
+            LOG.info("YCQL sessions aren't supported for containers shared across JVMs, not registering the {} bean",
+                    CASSANDRA_SESSION_BEAN_NAME);
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(YcqlSessionRegistrar.registerSession(applicationContext, containerStarted, demand));
+    }
+
+    // keeps the Cassandra driver classes from being loaded when the driver isn't on the classpath
+    private static class YcqlSessionRegistrar {
+        static CompletableFuture<YcqlSessionLease> registerSession(ConfigurableApplicationContext applicationContext,
+                                                                   CompletableFuture<DatabaseContainer> containerStarted,
+                                                                   Runnable demand) {
+            CompletableFuture<YcqlSessionLease> leaseReady = containerStarted.thenApplyAsync(databaseContainer -> {
+                if (!(databaseContainer instanceof YugaByteDatabaseContainer)) {
+                    throw new DatabaseContainerException("YCQL sessions aren't supported for "
+                            + databaseContainer.getClass().getName());
+                }
+                return YcqlSessionPool.forContainer((YugaByteDatabaseContainer) databaseContainer).acquire();
+            }, DatabaseContainerExecutors.startupExecutor());
+            // manually registered singletons don't get destroy callbacks, the lease is released when the context closes
+            applicationContext.getBeanFactory().registerSingleton(CASSANDRA_SESSION_BEAN_NAME,
+                    new DeferredFactoryBean<>(leaseReady.thenApply(YcqlSessionLease::getSession), Session.class, demand));
+            applicationContext.getBeanFactory().registerSingleton(YCQL_SESSION_LEASE_BEAN_NAME,
+                    new DeferredFactoryBean<>(leaseReady, YcqlSessionLease.class, demand));
+            applicationContext.getEnvironment().getPropertySources().addFirst(
+                    new YcqlPropertySource(YcqlPropertySource.class.getName(), leaseReady, demand));
+            return leaseReady;
+        }
     }
 }
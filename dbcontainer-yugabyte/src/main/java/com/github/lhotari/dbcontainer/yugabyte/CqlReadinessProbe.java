@@ -0,0 +1,99 @@
+package com.github.lhotari.dbcontainer.yugabyte;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Checks whether the YCQL API accepts queries by using the CQL native protocol (v4) directly over a socket.
+ * This avoids a dependency to a Cassandra driver and forking cqlsh processes within the container.
+ */
+class CqlReadinessProbe {
+    private static final byte PROTOCOL_VERSION = 0x04;
+    private static final byte OPCODE_STARTUP = 0x01;
+    private static final byte OPCODE_READY = 0x02;
+    private static final byte OPCODE_QUERY = 0x07;
+    private static final byte OPCODE_RESULT = 0x08;
+    private static final short CONSISTENCY_ONE = 0x0001;
+    private static final String PROBE_QUERY = "SELECT now() FROM system.local";
+    private final int timeoutMillis;
+
+    CqlReadinessProbe(int timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * @param host the host of the YCQL service
+     * @param port the port of the YCQL service
+     * @return true if the YCQL service executed a query successfully
+     */
+    boolean isReady(String host, int port) {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(host, port), timeoutMillis);
+            socket.setSoTimeout(timeoutMillis);
+            socket.setTcpNoDelay(true);
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            writeFrame(out, (short) 0, OPCODE_STARTUP, startupBody());
+            if (readResponseOpcode(in) != OPCODE_READY) {
+                return false;
+            }
+            writeFrame(out, (short) 1, OPCODE_QUERY, queryBody(PROBE_QUERY));
+            return readResponseOpcode(in) == OPCODE_RESULT;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static byte[] startupBody() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream body = new DataOutputStream(bytes);
+        body.writeShort(1);
+        writeString(body, "CQL_VERSION");
+        writeString(body, "3.0.0");
+        return bytes.toByteArray();
+    }
+
+    private static byte[] queryBody(String query) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream body = new DataOutputStream(bytes);
+        byte[] queryBytes = query.getBytes(StandardCharsets.UTF_8);
+        body.writeInt(queryBytes.length);
+        body.write(queryBytes);
+        body.writeShort(CONSISTENCY_ONE);
+        body.writeByte(0);
+        return bytes.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeFrame(DataOutputStream out, short streamId, byte opcode, byte[] body) throws IOException {
+        out.writeByte(PROTOCOL_VERSION);
+        out.writeByte(0);
+        out.writeShort(streamId);
+        out.writeByte(opcode);
+        out.writeInt(body.length);
+        out.write(body);
+        out.flush();
+    }
+
+    private static byte readResponseOpcode(DataInputStream in) throws IOException {
+        // header: version, flags, stream id (2 bytes), opcode, body length (4 bytes)
+        in.readByte();
+        in.readByte();
+        in.readShort();
+        byte opcode = in.readByte();
+        int length = in.readInt();
+        byte[] body = new byte[length];
+        in.readFully(body);
+        return opcode;
+    }
+}
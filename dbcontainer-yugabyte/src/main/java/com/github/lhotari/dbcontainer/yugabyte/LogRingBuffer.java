@@ -0,0 +1,63 @@
+package com.github.lhotari.dbcontainer.yugabyte;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Bounded in-memory buffer that keeps the most recent bytes of a log. The oldest bytes are overwritten when
+ * the buffer is full.
+ */
+class LogRingBuffer {
+    private final byte[] buffer;
+    private int position;
+    private boolean wrapped;
+    private long droppedBytes;
+
+    LogRingBuffer(int capacity) {
+        this.buffer = new byte[capacity];
+    }
+
+    synchronized void append(byte[] bytes) {
+        int offset = 0;
+        int length = bytes.length;
+        if (length > buffer.length) {
+            // only the tail of a chunk that is larger than the buffer fits
+            droppedBytes += length - buffer.length;
+            offset = length - buffer.length;
+            length = buffer.length;
+        }
+        if (wrapped) {
+            droppedBytes += length;
+        } else if (position + length > buffer.length) {
+            droppedBytes += position + length - buffer.length;
+        }
+        int firstPart = Math.min(length, buffer.length - position);
+        System.arraycopy(bytes, offset, buffer, position, firstPart);
+        System.arraycopy(bytes, offset + firstPart, buffer, 0, length - firstPart);
+        if (position + length >= buffer.length) {
+            wrapped = true;
+        }
+        position = (position + length) % buffer.length;
+    }
+
+    synchronized void writeTo(OutputStream outputStream) throws IOException {
+        if (wrapped) {
+            outputStream.write(buffer, position, buffer.length - position);
+        }
+        outputStream.write(buffer, 0, position);
+    }
+
+    synchronized int size() {
+        return wrapped ? buffer.length : position;
+    }
+
+    synchronized long getDroppedBytes() {
+        return droppedBytes;
+    }
+
+    synchronized void clear() {
+        position = 0;
+        wrapped = false;
+        droppedBytes = 0;
+    }
+}
@@ -7,10 +7,19 @@ import java.io.File;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Supplier;
 
 /**
  * YugaByte {@link com.github.lhotari.dbcontainer.DatabaseContainer} implementation that logs to a mounted directory.
  * Besides logs, the /cores directory within the container is mounted.
+ * <p>
+ * When created with a {@link YugaByteLogCapture}, the logs are captured from the container output into bounded
+ * in-memory buffers instead and are written to disk only when a node exits abnormally, the start fails or
+ * {@link YugaByteLogCapture#persist(String)} gets called.
+ * <p>
+ * A directory given when the container is created is part of the configuration key, so that shared containers
+ * keep logging to the directory that was asked for. A directory created by a supplier is created when the container
+ * gets started and isn't part of the key.
  *
  * This assumes "echo '/cores/core.%e.%p' | sudo tee /proc/sys/kernel/core_pattern" configuration on the Linux host
  * to capture core dumps in the mounted directory.
@@ -20,29 +29,115 @@ public class LoggingYugaByteDatabaseContainer extends YugaByteDatabaseContainer
     // assumes "echo '/cores/core.%e.%p' | sudo tee /proc/sys/kernel/core_pattern" on host
     static final String CORE_DUMP_DIRECTORY_IN_CONTAINER = "/cores";
     static final String LOGS_DIRECTORY_IN_CONTAINER = "/yblogs";
-    private final Path logsAndCoresDirectory;
+    private final Supplier<Path> logsAndCoresDirectorySupplier;
+    private volatile Path logsAndCoresDirectory;
+    private final YugaByteLogCapture logCapture;
 
     public LoggingYugaByteDatabaseContainer(Path logsAndCoresRootDirectory) {
+        this.logsAndCoresDirectorySupplier = null;
         this.logsAndCoresDirectory = logsAndCoresRootDirectory;
+        this.logCapture = null;
     }
 
+    /**
+     * Creates a container that resolves the logs and core dump directory when it gets started. Equivalent containers
+     * that are never started, because a shared or pooled container gets used instead, don't create a directory.
+     *
+     * @param logsAndCoresDirectorySupplier creates the directory, called at most once
+     */
+    public LoggingYugaByteDatabaseContainer(Supplier<Path> logsAndCoresDirectorySupplier) {
+        this.logsAndCoresDirectorySupplier = logsAndCoresDirectorySupplier;
+        this.logCapture = null;
+    }
+
+    /**
+     * Creates a container that captures the logs in memory
+     *
+     * @param logCapture the log capture
+     */
+    public LoggingYugaByteDatabaseContainer(YugaByteLogCapture logCapture) {
+        this.logsAndCoresDirectorySupplier = null;
+        this.logsAndCoresDirectory = logCapture.getOutputDirectory();
+        this.logCapture = logCapture;
+    }
+
+    /**
+     * @return the logs and core dump directory, null when it's created by a supplier and the container hasn't been
+     * started
+     */
     public Path getLogsAndCoresDirectory() {
         return logsAndCoresDirectory;
     }
 
     @Override
-    protected void customizeContainers(GenericContainer<?> ymasterContainer, GenericContainer<?> tserverContainer) {
-        bindDirectories(ymasterContainer, tserverContainer);
+    public String getConfigurationKey() {
+        return super.getConfigurationKey()
+                + (logsAndCoresDirectorySupplier == null ? "|logsAndCoresDirectory=" + logsAndCoresDirectory.toAbsolutePath() : "");
+    }
+
+    /**
+     * @return the log capture, null when the logs are written to the mounted directory
+     */
+    public YugaByteLogCapture getLogCapture() {
+        return logCapture;
+    }
+
+    @Override
+    protected void customizeContainers(List<GenericContainer<?>> masterContainers, List<GenericContainer<?>> tserverContainers) {
+        if (logCapture != null) {
+            captureLogs(masterContainers, "master");
+            captureLogs(tserverContainers, "tserver");
+            logCapture.activate();
+        } else {
+            bindDirectories(masterContainers, "master");
+            bindDirectories(tserverContainers, "tserver");
+        }
+    }
+
+    @Override
+    protected void beforeContainersStopped(List<GenericContainer<?>> masterContainers, List<GenericContainer<?>> tserverContainers,
+                                           Throwable startFailure) {
+        if (logCapture == null) {
+            return;
+        }
+        if (startFailure != null) {
+            logCapture.persist("start-failed");
+        } else {
+            List<GenericContainer<?>> containers = new ArrayList<>(masterContainers);
+            containers.addAll(tserverContainers);
+            for (GenericContainer<?> container : containers) {
+                if (!container.isRunning()) {
+                    logCapture.persist("node-exited");
+                    break;
+                }
+            }
+        }
+        logCapture.deactivate();
     }
 
     @Override
     protected List<String> customizeMasterCommand(List<String> command) {
-        return logToYblogs(command);
+        return logCapture != null ? command : logToYblogs(command);
     }
 
     @Override
     protected List<String> customizeTserverCommand(List<String> command) {
-        return logToYblogs(command);
+        return logCapture != null ? command : logToYblogs(command);
+    }
+
+    private void captureLogs(List<GenericContainer<?>> containers, String nodeType) {
+        for (int i = 0; i < containers.size(); i++) {
+            String nodeName = getNodeName(containers, nodeType, i);
+            // the command logs to stderr, the output is streamed to the buffer by the thread following the output
+            containers.get(i).withLogConsumer(logCapture.createLogConsumer(nodeName));
+            File coreDir = logCapture.getCoreDumpDirectory(nodeName).toFile();
+            containers.get(i).addFileSystemBind(coreDir.getAbsolutePath(), CORE_DUMP_DIRECTORY_IN_CONTAINER, BindMode.READ_WRITE);
+        }
+    }
+
+    private static String getNodeName(List<GenericContainer<?>> containers, String nodeType, int index) {
+        // a single node keeps the plain "master" and "tserver" names
+        return containers.size() == 1 ? nodeType : nodeType + "-" + (index + 1);
     }
 
     private List<String> logToYblogs(List<String> command) {
@@ -52,13 +147,22 @@ public class LoggingYugaByteDatabaseContainer extends YugaByteDatabaseContainer
         return command;
     }
 
-    private void bindDirectories(GenericContainer<?> ymasterContainer, GenericContainer<?> tserverContainer) {
-        Path yblogsDir = logsAndCoresDirectory.resolve("logs");
-        bindLogsDir(ymasterContainer, yblogsDir, "master");
-        bindLogsDir(tserverContainer, yblogsDir, "tserver");
-        Path ybcoresDir = logsAndCoresDirectory.resolve("cores");
-        bindCoresDir(ymasterContainer, ybcoresDir, "master");
-        bindCoresDir(tserverContainer, ybcoresDir, "tserver");
+    private synchronized Path resolveLogsAndCoresDirectory() {
+        if (logsAndCoresDirectory == null) {
+            logsAndCoresDirectory = logsAndCoresDirectorySupplier.get();
+        }
+        return logsAndCoresDirectory;
+    }
+
+    private void bindDirectories(List<GenericContainer<?>> containers, String nodeType) {
+        Path directory = resolveLogsAndCoresDirectory();
+        Path yblogsDir = directory.resolve("logs");
+        Path ybcoresDir = directory.resolve("cores");
+        for (int i = 0; i < containers.size(); i++) {
+            String subdirName = getNodeName(containers, nodeType, i);
+            bindLogsDir(containers.get(i), yblogsDir, subdirName);
+            bindCoresDir(containers.get(i), ybcoresDir, subdirName);
+        }
     }
 
     private void bindCoresDir(GenericContainer<?> container, Path ybcoresDir, String subdirName) {
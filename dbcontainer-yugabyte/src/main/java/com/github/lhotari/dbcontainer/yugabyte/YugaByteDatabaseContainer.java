@@ -1,84 +1,634 @@
 package com.github.lhotari.dbcontainer.yugabyte;
 
-import com.github.dockerjava.api.model.HealthCheck;
 import com.github.lhotari.dbcontainer.DatabaseContainer;
+import com.github.lhotari.dbcontainer.CrossJvmShareableContainer;
+import com.github.lhotari.dbcontainer.CustomDatabaseOperations;
+import com.github.lhotari.dbcontainer.DatabaseAdministration;
+import com.github.lhotari.dbcontainer.DatabaseContainerExecutors;
+import com.github.lhotari.dbcontainer.DatabaseContainerPhase;
+import com.github.lhotari.dbcontainer.DatabaseContainerException;
+import com.github.lhotari.dbcontainer.DatabaseContainerPhaseTimer;
+import com.github.lhotari.dbcontainer.ImageManager;
+import com.github.lhotari.dbcontainer.NetworkShaping;
+import com.github.lhotari.dbcontainer.ResourceProfile;
+import com.github.lhotari.dbcontainer.QueryStatistics;
+import com.github.lhotari.dbcontainer.SchemaImageCache;
+import com.github.lhotari.dbcontainer.ShapingProxies;
+import com.github.lhotari.dbcontainer.ShapingProxy;
+import com.github.lhotari.dbcontainer.StatementStatistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.containers.Container;
 import org.testcontainers.containers.GenericContainer;
 import org.testcontainers.containers.Network;
+import org.testcontainers.containers.wait.strategy.AbstractWaitStrategy;
+import org.testcontainers.utility.ResourceReaper;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
-public class YugaByteDatabaseContainer implements DatabaseContainer {
+public class YugaByteDatabaseContainer implements CrossJvmShareableContainer, CustomDatabaseOperations {
+    private static final Logger LOG = LoggerFactory.getLogger(YugaByteDatabaseContainer.class);
     private static final String DEFAULT_YUGABYTE_VERSION = "latest";
     private static final int YCQL_SERVICE_PORT = 9042;
     private static final int YSQL_SERVICE_PORT = 5433;
     private static final String YSQL_DATABASE_NAME = "postgres";
     private static final String YSQL_DATABASE_USER = "postgres";
     private static final String YSQL_DATABASE_PASSWORD = "";
-    private static final List<String> DEFAULT_MASTER_COMMAND = Collections.unmodifiableList(Arrays.asList("/home/yugabyte/bin/yb-master",
-            "--fs_data_dirs=/mnt/disk0,/mnt/disk1",
-            "--master_addresses=yb-master-test:7100",
-            "--replication_factor=1",
-            "--enable_ysql=true",
-            "--callhome_enabled=false",
-            "--logtostderr"));
-    private static final List<String> DEFAULT_TSERVER_COMMAND = Collections.unmodifiableList(Arrays.asList("/home/yugabyte/bin/yb-tserver",
-            "--fs_data_dirs=/mnt/disk0,/mnt/disk1",
-            "--start_pgsql_proxy",
-            "--pgsql_proxy_bind_address=yb-tserver-test:5433",
-            "--tserver_master_addrs=yb-master-test:7100",
-            "--callhome_enabled=false",
-            "--logtostderr"));
+    // YSQL doesn't support cloning other databases
+    private static final List<String> YSQL_TEMPLATE_DATABASE_NAMES = Collections.unmodifiableList(Arrays.asList("template0", "template1"));
+    private static final String MASTER_EXECUTABLE = "/home/yugabyte/bin/yb-master";
+    private static final String TSERVER_EXECUTABLE = "/home/yugabyte/bin/yb-tserver";
+    private static final String TS_CLI_EXECUTABLE = "/home/yugabyte/bin/yb-ts-cli";
+    private static final int MASTER_RPC_PORT = 7100;
+    private static final int TSERVER_RPC_PORT = 9100;
+    private static final List<String> DATA_DIRECTORIES_IN_CONTAINER = Collections.unmodifiableList(Arrays.asList("/mnt/disk0", "/mnt/disk1"));
+    // the default data directories are docker volumes which wouldn't be included in committed images
+    private static final List<String> CACHEABLE_DATA_DIRECTORIES_IN_CONTAINER = Collections.unmodifiableList(Arrays.asList("/mnt/cached-disk0", "/mnt/cached-disk1"));
+    // non-durable settings for fast test mode: WAL writes aren't synced and fsync calls are skipped completely,
+    // they aren't used for nodes that are committed to the schema image cache
+    private static final List<String> FAST_TEST_MODE_FLAGS = Collections.unmodifiableList(Arrays.asList(
+            "--durable_wal_write=false",
+            "--never_fsync=true"));
     private static final String MASTER_NW_ALIAS = "yb-master-test";
     private static final String TSERVER_NW_ALIAS = "yb-tserver-test";
-    private GenericContainer<?> ymasterContainer;
-    private GenericContainer<?> tserverContainer;
+    private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(3);
+    private List<GenericContainer<?>> masterContainers = Collections.emptyList();
+    private List<GenericContainer<?>> tserverContainers = Collections.emptyList();
     private Network network;
     private final AtomicBoolean initialized = new AtomicBoolean();
     private String dockerImageName;
+    private boolean fastTestMode;
+    private int masterCount = 1;
+    private int tserverCount = 1;
+    private int replicationFactor = 1;
+    private final List<String> initScripts = new ArrayList<>();
+    private SchemaImageCache schemaImageCache;
+    private boolean queryStatistics;
+    private Duration autoExplainMinDuration;
+    private NetworkShaping networkShaping;
+    private ResourceProfile resourceProfile;
+    private YugaByteFlags flags;
+    private volatile ShapingProxies shapingProxies;
+    private ImageManager imageManager = ImageManager.getDefault();
+    private final YugaByteSnapshots snapshots = new YugaByteSnapshots(() -> masterContainers.get(0), this::getMasterAddresses);
+
+    static {
+        if (ImageManager.isPrePullEnabled()) {
+            ImageManager.getDefault().prePull("yugabytedb/yugabyte:" + System.getProperty("yugabyteVersion", DEFAULT_YUGABYTE_VERSION));
+        }
+    }
 
     public YugaByteDatabaseContainer() {
         withYugaByteVersion(System.getProperty("yugabyteVersion", DEFAULT_YUGABYTE_VERSION));
     }
 
+    /**
+     * Sets the tag of the yugabytedb/yugabyte image. Only the default image is pulled when the class is loaded,
+     * the image of another version starts pulling when the container is started.
+     *
+     * @param dockerImageVersion the image tag, for example "2.1.2.0-b10"
+     * @return this instance
+     */
     public YugaByteDatabaseContainer withYugaByteVersion(String dockerImageVersion) {
         this.dockerImageName = "yugabytedb/yugabyte:" + dockerImageVersion;
         return this;
     }
 
+    /**
+     * Sets the image manager that resolves the image tag to a pinned digest and pulls the image.
+     * The default image manager starts pulling the default image when the class is loaded.
+     *
+     * @param imageManager the image manager, null for letting Testcontainers pull the image by its tag
+     * @return this instance
+     */
+    public YugaByteDatabaseContainer withImageManager(ImageManager imageManager) {
+        this.imageManager = imageManager;
+        return this;
+    }
+
+    /**
+     * Enables or disables the fast test mode. In fast test mode, the data directories of the master and the tserver
+     * are on tmpfs mounts and durable WAL writes and fsync calls are disabled with gflags.
+     * Data is lost when the containers stop, which doesn't matter in tests.
+     * <p>
+     * When the nodes are committed to the schema image cache, the data directories aren't on tmpfs since tmpfs
+     * mounts aren't included in committed images, and the WAL is written durably so that the committed images
+     * contain the initialized database.
+     *
+     * @param fastTestMode true to enable the fast test mode
+     * @return this instance
+     */
+    public YugaByteDatabaseContainer withFastTestMode(boolean fastTestMode) {
+        this.fastTestMode = fastTestMode;
+        return this;
+    }
+
+    /**
+     * Sets the number of YB master containers. Use an odd number of masters, usually equal to the replication factor.
+     *
+     * @param masterCount the number of masters, 1 by default
+     * @return this instance
+     */
+    public YugaByteDatabaseContainer withMasterCount(int masterCount) {
+        if (masterCount < 1) {
+            throw new IllegalArgumentException("masterCount must be at least 1");
+        }
+        this.masterCount = masterCount;
+        return this;
+    }
+
+    /**
+     * Sets the number of YB tserver containers. The tablets get spread across the tservers.
+     *
+     * @param tserverCount the number of tservers, 1 by default
+     * @return this instance
+     */
+    public YugaByteDatabaseContainer withTserverCount(int tserverCount) {
+        if (tserverCount < 1) {
+            throw new IllegalArgumentException("tserverCount must be at least 1");
+        }
+        this.tserverCount = tserverCount;
+        return this;
+    }
+
+    /**
+     * Sets the replication factor of the cluster. The replication factor can't be greater than the number of tservers.
+     *
+     * @param replicationFactor the replication factor, 1 by default
+     * @return this instance
+     */
+    public YugaByteDatabaseContainer withReplicationFactor(int replicationFactor) {
+        if (replicationFactor < 1) {
+            throw new IllegalArgumentException("replicationFactor must be at least 1");
+        }
+        this.replicationFactor = replicationFactor;
+        return this;
+    }
+
+    /**
+     * Enables or disables query statistics so that {@link QueryStatistics} can be used. YSQL always loads
+     * pg_stat_statements, enabling the statistics turns off the tracking of utility statements such as transaction
+     * control. The statistics are collected separately by each tserver and are combined when they are read.
+     *
+     * @param queryStatistics true to enable query statistics
+     * @return this instance
+     */
+    public YugaByteDatabaseContainer withQueryStatistics(boolean queryStatistics) {
+        this.queryStatistics = queryStatistics;
+        return this;
+    }
+
+    /**
+     * Enables the auto_explain library in YSQL which logs the execution plans of statements that take longer than
+     * the given duration to the tserver log. Requires a YugaByte version that supports the ysql_pg_conf_csv flag.
+     *
+     * @param minDuration the minimum duration of logged statements, null disables auto_explain
+     * @return this instance
+     */
+    public YugaByteDatabaseContainer withAutoExplain(Duration minDuration) {
+        this.autoExplainMinDuration = minDuration;
+        return this;
+    }
+
+    /**
+     * Adds YSQL scripts that are run in the default database after the cluster has started.
+     * When the schema image cache is enabled, each initialized node is committed as an image and later starts
+     * with the same configuration and scripts boot those images without running the scripts.
+     *
+     * @param initScripts the contents of the SQL scripts
+     * @return this instance
+     */
+    public YugaByteDatabaseContainer withInitScripts(String... initScripts) {
+        return withInitScripts(Arrays.asList(initScripts));
+    }
+
+    /**
+     * Adds YSQL scripts that are run in the default database after the cluster has started.
+     *
+     * @param initScripts the contents of the SQL scripts
+     * @return this instance
+     * @see #withInitScripts(String...)
+     */
+    public YugaByteDatabaseContainer withInitScripts(List<String> initScripts) {
+        this.initScripts.addAll(initScripts);
+        return this;
+    }
+
+    /**
+     * Adds YSQL script files that are run in the default database after the cluster has started.
+     *
+     * @param initScriptFiles the SQL script files
+     * @return this instance
+     * @see #withInitScripts(String...)
+     */
+    public YugaByteDatabaseContainer withInitScriptFiles(Path... initScriptFiles) {
+        for (Path initScriptFile : initScriptFiles) {
+            try {
+                initScripts.add(new String(Files.readAllBytes(initScriptFile), StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Sets the cache for images that contain nodes initialized with the init scripts, for example
+     * {@link SchemaImageCache#getDefault()}. Caching is disabled by default.
+     *
+     * @param schemaImageCache the cache, null disables caching
+     * @return this instance
+     */
+    public YugaByteDatabaseContainer withSchemaImageCache(SchemaImageCache schemaImageCache) {
+        this.schemaImageCache = schemaImageCache;
+        return this;
+    }
+
+    /**
+     * Routes the YSQL and YCQL connections of clients through a {@link ShapingProxy} for each tserver that adds
+     * latency, jitter and bandwidth limits. The URLs and the YSQL and YCQL ports point to the proxies after the
+     * container has started. The init scripts and administrative operations such as creating databases and reading
+     * query statistics connect without the proxies.
+     *
+     * @param networkShaping the shaping settings, null connects directly to the tservers
+     * @return this instance
+     */
+    public YugaByteDatabaseContainer withNetworkShaping(NetworkShaping networkShaping) {
+        this.networkShaping = networkShaping;
+        return this;
+    }
+
+    /**
+     * Limits the CPUs, memory and shared memory of each master and tserver container. The memory limit is passed to
+     * the nodes with the memory_limit_hard_bytes gflag and the CPU count with the num_cpus gflag, since YugaByte
+     * otherwise sizes its memory and its number of shards from the resources of the whole host.
+     *
+     * @param resourceProfile the limits of each node, null for no limits
+     * @return this instance
+     */
+    public YugaByteDatabaseContainer withResourceProfile(ResourceProfile resourceProfile) {
+        this.resourceProfile = resourceProfile;
+        return this;
+    }
+
+    /**
+     * Sets gflags of the masters and tservers, for example a {@link YugaByteFlags#preset(String) preset}.
+     * The typed flags are validated against the YugaByte version when the container starts.
+     *
+     * @param flags the flags, null for YugaByte's defaults
+     * @return this instance
+     */
+    public YugaByteDatabaseContainer withFlags(YugaByteFlags flags) {
+        this.flags = flags;
+        return this;
+    }
+
     @Override
     public synchronized void start() {
         if (initialized.compareAndSet(false, true)) {
-            network = Network.newNetwork();
-            ymasterContainer = new GenericContainer<>(dockerImageName)
-                    .withCommand(customizeMasterCommand(new ArrayList<>(DEFAULT_MASTER_COMMAND)).toArray(new String[0]))
-                    .withExposedPorts(7100)
+            if (replicationFactor > tserverCount) {
+                initialized.set(false);
+                throw new IllegalStateException("replicationFactor " + replicationFactor + " is greater than the number of tservers " + tserverCount);
+            }
+            if (flags != null) {
+                try {
+                    flags.validate(dockerImageName.substring(dockerImageName.lastIndexOf(':') + 1));
+                } catch (IllegalStateException e) {
+                    initialized.set(false);
+                    throw e;
+                }
+            }
+            if (imageManager != null && ImageManager.isPrePullEnabled()) {
+                // pulls an explicitly selected version while the network and the containers are created,
+                // the pull of the default image has been started when the class was loaded and is shared
+                imageManager.prePull(dockerImageName);
+            }
+            createPhaseTimer().time(DatabaseContainerPhase.START, null, this::startNodes);
+        }
+    }
+
+    private void startNodes() {
+        long startTime = System.nanoTime();
+        DatabaseContainerPhaseTimer phaseTimer = createPhaseTimer();
+        network = Network.newNetwork();
+        boolean cacheable = isSchemaImageCacheable();
+        if (cacheable && fastTestMode) {
+            LOG.warn("The data directories aren't on tmpfs and the WAL is written durably in fast test mode since the nodes are committed to the schema image cache");
+        }
+        String schemaHash = cacheable ? SchemaImageCache.hash(createNodeConfiguration(), initScripts) : null;
+        List<String> cachedMasterImageNames = new ArrayList<>();
+        List<String> cachedTserverImageNames = new ArrayList<>();
+        if (cacheable) {
+            for (int i = 0; i < masterCount; i++) {
+                cachedMasterImageNames.add(schemaImageCache.getImageName(getMasterAlias(i), schemaHash));
+            }
+            for (int i = 0; i < tserverCount; i++) {
+                cachedTserverImageNames.add(schemaImageCache.getImageName(getTserverAlias(i), schemaHash));
+            }
+        }
+        List<String> cachedImageNames = new ArrayList<>(cachedMasterImageNames);
+        cachedImageNames.addAll(cachedTserverImageNames);
+        // a hit requires the images of all nodes since the nodes' data depends on each other
+        boolean cacheHit = cacheable && schemaImageCache.lookup(cachedImageNames);
+        List<GenericContainer<?>> masters = new ArrayList<>();
+        for (int i = 0; i < masterCount; i++) {
+            masters.add(new GenericContainer<>(cacheHit ? cachedMasterImageNames.get(i) : dockerImageName)
+                    .withCommand(createMasterCommand(i).toArray(new String[0]))
+                    .withExposedPorts(MASTER_RPC_PORT)
                     .withNetwork(network)
-                    .withNetworkAliases(MASTER_NW_ALIAS);
-            tserverContainer = new GenericContainer<>(dockerImageName)
-                    .withCommand(customizeTserverCommand(new ArrayList<>(DEFAULT_TSERVER_COMMAND)).toArray(new String[0]))
+                    .withNetworkAliases(getMasterAlias(i))
+                    // the tservers' readiness checks cover the masters since YSQL requires running masters
+                    .waitingFor(new NoWaitStrategy()));
+        }
+        List<GenericContainer<?>> tservers = new ArrayList<>();
+        for (int i = 0; i < tserverCount; i++) {
+            tservers.add(new TserverContainer(cacheHit ? cachedTserverImageNames.get(i) : dockerImageName, getTserverAlias(i))
+                    .withCommand(createTserverCommand(i).toArray(new String[0]))
                     .withExposedPorts(YSQL_SERVICE_PORT, YCQL_SERVICE_PORT, 9000)
                     .withNetwork(network)
-                    .withNetworkAliases(TSERVER_NW_ALIAS)
-                    .dependsOn(ymasterContainer)
-                    .withCreateContainerCmdModifier(createContainerCmd -> {
-                        createContainerCmd.withHealthcheck(new HealthCheck()
-                                .withTest(Arrays.asList("CMD-SHELL", String.format("/home/yugabyte/postgres/bin/pg_isready -h %s -U postgres -p 5433 -t 30 && /home/yugabyte/bin/cqlsh -e 'SELECT now() FROM system.local' --no-color --connect-timeout=30", TSERVER_NW_ALIAS)))
-                                .withInterval(Duration.ofSeconds(10).toNanos())
-                                .withTimeout(Duration.ofSeconds(60).toNanos())
-                                .withRetries(5));
-                    });
-            customizeContainers(ymasterContainer, tserverContainer);
-            try {
-                ymasterContainer.start();
-                tserverContainer.start();
-            } catch (Throwable t) {
-                ymasterContainer.stop();
-                tserverContainer.stop();
-                network.close();
-                sneakyThrow(t);
+                    .withNetworkAliases(getTserverAlias(i))
+                    .waitingFor(new YugaByteReadinessWaitStrategy(YSQL_SERVICE_PORT, YCQL_SERVICE_PORT,
+                            YSQL_DATABASE_NAME, YSQL_DATABASE_USER, YSQL_DATABASE_PASSWORD)
+                            .withStartupTimeout(STARTUP_TIMEOUT)));
+        }
+        masterContainers = Collections.unmodifiableList(masters);
+        tserverContainers = Collections.unmodifiableList(tservers);
+        if (isFastTestModeStorage()) {
+            Map<String, String> tmpFsMapping = new HashMap<>();
+            for (String dataDirectory : DATA_DIRECTORIES_IN_CONTAINER) {
+                tmpFsMapping.put(dataDirectory, "rw");
+            }
+            masterContainers.forEach(container -> container.withTmpFs(tmpFsMapping));
+            tserverContainers.forEach(container -> container.withTmpFs(tmpFsMapping));
+        }
+        if (resourceProfile != null) {
+            masterContainers.forEach(container -> container.withCreateContainerCmdModifier(cmd -> resourceProfile.applyTo(cmd.getHostConfig())));
+            tserverContainers.forEach(container -> container.withCreateContainerCmdModifier(cmd -> resourceProfile.applyTo(cmd.getHostConfig())));
+        }
+        customizeContainers(masterContainers, tserverContainers);
+        List<CompletableFuture<Void>> nodesStarted = new ArrayList<>();
+        try {
+            // the network is created lazily, create it here to measure it separately
+            phaseTimer.time(DatabaseContainerPhase.NETWORK_CREATION, null, network::getId);
+            // all nodes use the same image, resolve it once before starting the nodes
+            phaseTimer.time(DatabaseContainerPhase.IMAGE_RESOLUTION, null, () -> {
+                if (!cacheHit && imageManager != null) {
+                    String pinnedImageName = imageManager.resolve(dockerImageName);
+                    masterContainers.forEach(container -> container.setDockerImageName(pinnedImageName));
+                    tserverContainers.forEach(container -> container.setDockerImageName(pinnedImageName));
+                }
+                masterContainers.get(0).getDockerImageName();
+            });
+            // masters and tservers retry connecting to each other so all nodes can be started at the same time
+            for (int i = 0; i < masterContainers.size(); i++) {
+                nodesStarted.add(startNode(phaseTimer, masterContainers.get(i), getMasterAlias(i), startTime));
+            }
+            for (int i = 0; i < tserverContainers.size(); i++) {
+                nodesStarted.add(startNode(phaseTimer, tserverContainers.get(i), getTserverAlias(i), startTime));
+            }
+            CompletableFuture.allOf(nodesStarted.toArray(new CompletableFuture<?>[0])).join();
+            if (!initScripts.isEmpty() && !cacheHit) {
+                phaseTimer.time(DatabaseContainerPhase.SCHEMA_INITIALIZATION, null, () -> {
+                    for (String initScript : initScripts) {
+                        DatabaseAdministration.executeSql(this, getDatabaseName(), initScript);
+                    }
+                });
+                if (cacheable) {
+                    commitNodes(phaseTimer, cachedMasterImageNames, cachedTserverImageNames);
+                }
+            }
+        } catch (Throwable t) {
+            // wait for the starts of the other nodes to finish before stopping
+            for (CompletableFuture<Void> nodeStarted : nodesStarted) {
+                nodeStarted.handle((result, throwable) -> null).join();
             }
+            Throwable failure = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+            stopContainers(failure);
+            initialized.set(false);
+            sneakyThrow(failure);
+        }
+        if (networkShaping != null) {
+            shapingProxies = new ShapingProxies(networkShaping);
+        }
+        LOG.info("YugaByte with {} masters and {} tservers started in {} ms", masterCount, tserverCount,
+                (System.nanoTime() - startTime) / 1000000L);
+    }
+
+    private void commitNodes(DatabaseContainerPhaseTimer phaseTimer, List<String> cachedMasterImageNames, List<String> cachedTserverImageNames) {
+        // the tablets' memtables are flushed to data files before the running nodes are committed, the masters'
+        // sys catalog is recovered from its WAL, which is written durably when the nodes are cacheable
+        for (int i = 0; i < tserverContainers.size(); i++) {
+            if (!flushTablets(tserverContainers.get(i), getTserverAlias(i))) {
+                return;
+            }
+        }
+        for (int i = 0; i < masterContainers.size(); i++) {
+            String cachedImageName = cachedMasterImageNames.get(i);
+            String containerId = masterContainers.get(i).getContainerId();
+            phaseTimer.time(DatabaseContainerPhase.IMAGE_COMMIT, getMasterAlias(i), () -> schemaImageCache.commit(containerId, cachedImageName));
+        }
+        for (int i = 0; i < tserverContainers.size(); i++) {
+            String cachedImageName = cachedTserverImageNames.get(i);
+            String containerId = tserverContainers.get(i).getContainerId();
+            phaseTimer.time(DatabaseContainerPhase.IMAGE_COMMIT, getTserverAlias(i), () -> schemaImageCache.commit(containerId, cachedImageName));
+        }
+    }
+
+    private static boolean flushTablets(GenericContainer<?> tserverContainer, String tserverAlias) {
+        try {
+            Container.ExecResult result = tserverContainer.execInContainer(TS_CLI_EXECUTABLE,
+                    "--server_address=" + tserverAlias + ":" + TSERVER_RPC_PORT, "flush_all_tablets");
+            if (result.getExitCode() == 0) {
+                return true;
+            }
+            // the container is usable without the cached images, later starts run the init scripts again
+            LOG.warn("Flushing the tablets of {} failed, the nodes aren't committed to the schema image cache: {}{}",
+                    tserverAlias, result.getStderr(), result.getStdout());
+        } catch (IOException e) {
+            LOG.warn("Flushing the tablets of {} failed, the nodes aren't committed to the schema image cache", tserverAlias, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseContainerException("Interrupted while flushing the tablets of " + tserverAlias, e);
+        }
+        return false;
+    }
+
+    private boolean isSchemaImageCacheable() {
+        return !initScripts.isEmpty() && schemaImageCache != null;
+    }
+
+    // tmpfs and non-durable WAL writes would leave the committed images without the initialized database
+    private boolean isFastTestModeStorage() {
+        return fastTestMode && !isSchemaImageCacheable();
+    }
+
+    private String getDataDirectories() {
+        return String.join(",", isSchemaImageCacheable() ? CACHEABLE_DATA_DIRECTORIES_IN_CONTAINER : DATA_DIRECTORIES_IN_CONTAINER);
+    }
+
+    private static CompletableFuture<Void> startNode(DatabaseContainerPhaseTimer phaseTimer, GenericContainer<?> container,
+                                                     String nodeName, long startTime) {
+        return CompletableFuture.runAsync(() -> {
+            phaseTimer.time(DatabaseContainerPhase.CONTAINER_START, nodeName, container::start);
+            LOG.info("YB {} container started in {} ms", nodeName, (System.nanoTime() - startTime) / 1000000L);
+        }, DatabaseContainerExecutors.startupExecutor());
+    }
+
+    private DatabaseContainerPhaseTimer createPhaseTimer() {
+        return new DatabaseContainerPhaseTimer(this, dockerImageName);
+    }
+
+    private String getMasterAlias(int index) {
+        return masterCount == 1 ? MASTER_NW_ALIAS : MASTER_NW_ALIAS + "-" + (index + 1);
+    }
+
+    private String getTserverAlias(int index) {
+        return tserverCount == 1 ? TSERVER_NW_ALIAS : TSERVER_NW_ALIAS + "-" + (index + 1);
+    }
+
+    private String getMasterAddresses() {
+        List<String> masterAddresses = new ArrayList<>();
+        for (int i = 0; i < masterCount; i++) {
+            masterAddresses.add(getMasterAlias(i) + ":" + MASTER_RPC_PORT);
+        }
+        return String.join(",", masterAddresses);
+    }
+
+    private boolean isMultiNode() {
+        return masterCount > 1 || tserverCount > 1;
+    }
+
+    private List<String> createMasterCommand(int index) {
+        List<String> command = new ArrayList<>();
+        command.add(MASTER_EXECUTABLE);
+        command.add("--fs_data_dirs=" + getDataDirectories());
+        command.add("--master_addresses=" + getMasterAddresses());
+        if (isMultiNode() || isSchemaImageCacheable()) {
+            // each master finds itself in the master addresses by its bind address,
+            // a node booted from a cached image must keep the address that was used at initialization
+            command.add("--rpc_bind_addresses=" + getMasterAlias(index) + ":" + MASTER_RPC_PORT);
+        }
+        command.add("--replication_factor=" + replicationFactor);
+        command.add("--enable_ysql=true");
+        addResourceFlags(command);
+        command.add("--callhome_enabled=false");
+        command.add("--logtostderr");
+        if (isFastTestModeStorage()) {
+            command.addAll(FAST_TEST_MODE_FLAGS);
+        }
+        if (flags != null) {
+            command.addAll(flags.getMasterFlags());
+        }
+        return customizeMasterCommand(command);
+    }
+
+    private List<String> createTserverCommand(int index) {
+        List<String> command = new ArrayList<>();
+        command.add(TSERVER_EXECUTABLE);
+        command.add("--fs_data_dirs=" + getDataDirectories());
+        command.add("--start_pgsql_proxy");
+        command.add("--pgsql_proxy_bind_address=" + getTserverAlias(index) + ":" + YSQL_SERVICE_PORT);
+        if (isMultiNode() || isSchemaImageCacheable()) {
+            command.add("--rpc_bind_addresses=" + getTserverAlias(index) + ":" + TSERVER_RPC_PORT);
+        }
+        command.add("--tserver_master_addrs=" + getMasterAddresses());
+        List<String> ysqlSettings = createYsqlSettings();
+        if (!ysqlSettings.isEmpty()) {
+            command.add("--ysql_pg_conf_csv=" + String.join(",", ysqlSettings));
+        }
+        addResourceFlags(command);
+        command.add("--callhome_enabled=false");
+        command.add("--logtostderr");
+        if (isFastTestModeStorage()) {
+            command.addAll(FAST_TEST_MODE_FLAGS);
+        }
+        if (flags != null) {
+            command.addAll(flags.getTserverFlags());
+        }
+        return customizeTserverCommand(command);
+    }
+
+    private void addResourceFlags(List<String> command) {
+        if (resourceProfile == null) {
+            return;
+        }
+        long memory = resourceProfile.getMemoryBytes();
+        if (memory > 0) {
+            // leave headroom for memory that isn't tracked by YugaByte and for data on tmpfs in fast test mode
+            command.add("--memory_limit_hard_bytes=" + (isFastTestModeStorage() ? memory / 2 : memory * 85 / 100));
+        }
+        if (resourceProfile.getWholeCpus() > 0) {
+            command.add("--num_cpus=" + resourceProfile.getWholeCpus());
+        }
+    }
+
+    private List<String> createYsqlSettings() {
+        List<String> settings = new ArrayList<>();
+        if (queryStatistics) {
+            settings.add("pg_stat_statements.track_utility=off");
+        }
+        if (autoExplainMinDuration != null) {
+            // the value contains commas so the whole entry is quoted as a CSV field
+            settings.add("\"shared_preload_libraries='pg_stat_statements,yb_pg_metrics,auto_explain'\"");
+            settings.add("auto_explain.log_min_duration=" + autoExplainMinDuration.toMillis() + "ms");
+        }
+        return settings;
+    }
+
+    /**
+     * The configuration key consists of the class, the docker image, the commands of all masters and tservers
+     * and a hash of the init scripts.
+     */
+    @Override
+    public String getConfigurationKey() {
+        return getClass().getName() + "|" + createNodeConfiguration()
+                + "|initScripts=" + (initScripts.isEmpty() ? "none" : SchemaImageCache.hash("", initScripts))
+                + (networkShaping != null ? "|networkShaping=" + networkShaping : "")
+                + (resourceProfile != null ? "|resourceProfile=" + resourceProfile : "");
+    }
+
+    private String createNodeConfiguration() {
+        StringBuilder configuration = new StringBuilder(dockerImageName);
+        for (int i = 0; i < masterCount; i++) {
+            configuration.append('|').append(String.join(" ", createMasterCommand(i)));
+        }
+        for (int i = 0; i < tserverCount; i++) {
+            configuration.append('|').append(String.join(" ", createTserverCommand(i)));
+        }
+        return configuration.toString();
+    }
+
+    // times the readiness wait of a tserver separately from starting the container
+    private class TserverContainer extends GenericContainer<TserverContainer> {
+        private final String nodeName;
+
+        TserverContainer(String dockerImageName, String nodeName) {
+            super(dockerImageName);
+            this.nodeName = nodeName;
+        }
+
+        @Override
+        protected void waitUntilContainerStarted() {
+            createPhaseTimer().time(DatabaseContainerPhase.READINESS_WAIT, nodeName, super::waitUntilContainerStarted);
+        }
+    }
+
+    private static class NoWaitStrategy extends AbstractWaitStrategy {
+        @Override
+        protected void waitUntilReady() {
+
         }
     }
 
@@ -118,40 +668,305 @@ public class YugaByteDatabaseContainer implements DatabaseContainer {
 
     }
 
+    /**
+     * Customizes all YB master and tserver containers before starting the containers.
+     * By default, calls {@link #customizeContainers(GenericContainer, GenericContainer)} with the first master
+     * and the first tserver.
+     *
+     * @param masterContainers  the YB master containers
+     * @param tserverContainers the YB tserver containers
+     */
+    protected void customizeContainers(List<GenericContainer<?>> masterContainers, List<GenericContainer<?>> tserverContainers) {
+        customizeContainers(masterContainers.get(0), tserverContainers.get(0));
+    }
+
     @Override
     public synchronized void stop() {
         if (initialized.compareAndSet(true, false)) {
-            tserverContainer.stop();
-            tserverContainer = null;
-            ymasterContainer.stop();
-            ymasterContainer = null;
+            createPhaseTimer().time(DatabaseContainerPhase.STOP, null, () -> stopContainers(null));
+        }
+    }
+
+    /**
+     * Called before the YB master and tserver containers are stopped, in a subclass
+     *
+     * @param masterContainers  the YB master containers
+     * @param tserverContainers the YB tserver containers
+     * @param startFailure      the failure when the containers are stopped because the start failed, otherwise null
+     */
+    protected void beforeContainersStopped(List<GenericContainer<?>> masterContainers, List<GenericContainer<?>> tserverContainers,
+                                           Throwable startFailure) {
+
+    }
+
+    @Override
+    public synchronized void retainOnJvmShutdown() {
+        ResourceReaper resourceReaper = ResourceReaper.instance();
+        masterContainers.forEach(container -> resourceReaper.unregisterContainer(container.getContainerId()));
+        tserverContainers.forEach(container -> resourceReaper.unregisterContainer(container.getContainerId()));
+        if (network != null) {
+            resourceReaper.unregisterNetwork(network.getId());
+        }
+    }
+
+    private void stopContainers(Throwable startFailure) {
+        if (shapingProxies != null) {
+            shapingProxies.close();
+            shapingProxies = null;
+        }
+        beforeContainersStopped(masterContainers, tserverContainers, startFailure);
+        tserverContainers.forEach(GenericContainer::stop);
+        tserverContainers = Collections.emptyList();
+        masterContainers.forEach(GenericContainer::stop);
+        masterContainers = Collections.emptyList();
+        if (network != null) {
             network.close();
             network = null;
         }
     }
 
     public String getYCQLHost() {
-        return tserverContainer.getContainerIpAddress();
+        return getYCQLHost(0);
     }
 
     public int getYCQLPort() {
-        return tserverContainer.getMappedPort(YCQL_SERVICE_PORT);
+        return getYCQLPort(0);
     }
 
     public String getYSQLHost() {
-        return tserverContainer.getContainerIpAddress();
+        return getYSQLHost(0);
     }
 
     public int getYSQLPort() {
-        return tserverContainer.getMappedPort(YSQL_SERVICE_PORT);
+        return getYSQLPort(0);
+    }
+
+    public String getYCQLHost(int tserverIndex) {
+        ShapingProxy proxy = getShapingProxy(tserverIndex, YCQL_SERVICE_PORT);
+        return proxy != null ? proxy.getHost() : tserverContainers.get(tserverIndex).getContainerIpAddress();
+    }
+
+    public int getYCQLPort(int tserverIndex) {
+        ShapingProxy proxy = getShapingProxy(tserverIndex, YCQL_SERVICE_PORT);
+        return proxy != null ? proxy.getPort() : tserverContainers.get(tserverIndex).getMappedPort(YCQL_SERVICE_PORT);
+    }
+
+    public String getYSQLHost(int tserverIndex) {
+        ShapingProxy proxy = getShapingProxy(tserverIndex, YSQL_SERVICE_PORT);
+        return proxy != null ? proxy.getHost() : tserverContainers.get(tserverIndex).getContainerIpAddress();
+    }
+
+    public int getYSQLPort(int tserverIndex) {
+        ShapingProxy proxy = getShapingProxy(tserverIndex, YSQL_SERVICE_PORT);
+        return proxy != null ? proxy.getPort() : tserverContainers.get(tserverIndex).getMappedPort(YSQL_SERVICE_PORT);
+    }
+
+    private ShapingProxy getShapingProxy(int tserverIndex, int servicePort) {
+        ShapingProxies proxies = shapingProxies;
+        if (proxies == null) {
+            return null;
+        }
+        GenericContainer<?> tserverContainer = tserverContainers.get(tserverIndex);
+        return proxies.forEndpoint(tserverContainer.getContainerIpAddress(), tserverContainer.getMappedPort(servicePort));
+    }
+
+    @Override
+    public ShapingProxy.Statistics getNetworkStatistics() {
+        ShapingProxies proxies = shapingProxies;
+        return proxies != null ? proxies.getStatistics() : null;
+    }
+
+    @Override
+    public void resetNetworkStatistics() {
+        ShapingProxies proxies = shapingProxies;
+        if (proxies != null) {
+            proxies.resetStatistics();
+        }
+    }
+
+    public int getMasterCount() {
+        return masterCount;
+    }
+
+    public int getTserverCount() {
+        return tserverCount;
+    }
+
+    public int getReplicationFactor() {
+        return replicationFactor;
     }
 
     public String getJdbcUrl() {
-        return "jdbc:postgresql://" + getYSQLHost() + ":" + getYSQLPort() + "/" + getDatabaseName();
+        return getJdbcUrl(getDatabaseName());
     }
 
     public String getR2dbcUrl() {
-        return "r2dbc:postgresql://" + getYSQLHost() + ":" + getYSQLPort() + "/" + getDatabaseName();
+        return getR2dbcUrl(getDatabaseName());
+    }
+
+    /**
+     * Returns the JDBC URL for a database. With multiple tservers, the URL lists the YSQL endpoints of all tservers
+     * and the driver balances the connections across them.
+     *
+     * @param databaseName the database name
+     * @return the JDBC URL
+     */
+    public String getJdbcUrl(String databaseName) {
+        List<String> endpoints = new ArrayList<>();
+        for (int i = 0; i < tserverCount; i++) {
+            endpoints.add(getYSQLHost(i) + ":" + getYSQLPort(i));
+        }
+        return createJdbcUrl(endpoints, databaseName);
+    }
+
+    @Override
+    public String getDirectJdbcUrl(String databaseName) {
+        List<String> endpoints = new ArrayList<>();
+        for (int i = 0; i < tserverCount; i++) {
+            endpoints.add(getDirectYsqlEndpoint(i));
+        }
+        return createJdbcUrl(endpoints, databaseName);
+    }
+
+    private static String createJdbcUrl(List<String> endpoints, String databaseName) {
+        if (endpoints.size() == 1) {
+            return "jdbc:postgresql://" + endpoints.get(0) + "/" + databaseName;
+        }
+        return "jdbc:postgresql://" + String.join(",", endpoints) + "/" + databaseName + "?loadBalanceHosts=true";
+    }
+
+    private String getDirectYsqlEndpoint(int tserverIndex) {
+        GenericContainer<?> tserverContainer = tserverContainers.get(tserverIndex);
+        return tserverContainer.getContainerIpAddress() + ":" + tserverContainer.getMappedPort(YSQL_SERVICE_PORT);
+    }
+
+    /**
+     * Returns the R2DBC URL of the first tserver. R2DBC URLs don't support multiple hosts,
+     * {@link #getR2dbcUrls(String)} returns the URLs of all tservers for client-side load balancing.
+     *
+     * @param databaseName the database name
+     * @return the R2DBC URL
+     */
+    public String getR2dbcUrl(String databaseName) {
+        return getR2dbcUrl(0, databaseName);
+    }
+
+    /**
+     * @param databaseName the database name
+     * @return the R2DBC URLs of all tservers
+     */
+    public List<String> getR2dbcUrls(String databaseName) {
+        List<String> r2dbcUrls = new ArrayList<>();
+        for (int i = 0; i < tserverCount; i++) {
+            r2dbcUrls.add(getR2dbcUrl(i, databaseName));
+        }
+        return r2dbcUrls;
+    }
+
+    private String getR2dbcUrl(int tserverIndex, String databaseName) {
+        return "r2dbc:postgresql://" + getYSQLHost(tserverIndex) + ":" + getYSQLPort(tserverIndex) + "/" + databaseName;
+    }
+
+    @Override
+    public String getDirectR2dbcUrl(String databaseName) {
+        return "r2dbc:postgresql://" + getDirectYsqlEndpoint(0) + "/" + databaseName;
+    }
+
+    @Override
+    public NetworkShaping getNetworkShaping() {
+        return networkShaping;
+    }
+
+    /**
+     * Resets the query statistics of all tservers
+     */
+    @Override
+    public void resetQueryStatistics() {
+        for (int i = 0; i < tserverCount; i++) {
+            try (Connection connection = createTserverConnection(i, getDatabaseName())) {
+                QueryStatistics.reset(connection);
+            } catch (SQLException e) {
+                throw new DatabaseContainerException("Resetting query statistics of tserver " + getTserverAlias(i) + " failed", e);
+            }
+        }
+    }
+
+    /**
+     * Returns the query statistics of a database combined from all tservers
+     */
+    @Override
+    public List<StatementStatistics> getQueryStatistics(String databaseName) {
+        List<List<StatementStatistics>> statisticsOfTservers = new ArrayList<>();
+        for (int i = 0; i < tserverCount; i++) {
+            try (Connection connection = createTserverConnection(i, databaseName)) {
+                statisticsOfTservers.add(QueryStatistics.fetch(connection));
+            } catch (SQLException e) {
+                throw new DatabaseContainerException("Reading query statistics of tserver " + getTserverAlias(i) + " failed", e);
+            }
+        }
+        return QueryStatistics.merge(statisticsOfTservers);
+    }
+
+    // query statistics are read without the network shaping proxy
+    private Connection createTserverConnection(int tserverIndex, String databaseName) throws SQLException {
+        return DriverManager.getConnection("jdbc:postgresql://" + getDirectYsqlEndpoint(tserverIndex) + "/" + databaseName,
+                getDatabaseUser(), getDatabasePassword());
+    }
+
+    /**
+     * YSQL only accepts template0 and template1 as templates. A database with the container's default database as
+     * the template is created from template0 and the init scripts are run in it. Other templates are rejected.
+     */
+    @Override
+    public void createDatabase(String databaseName, String templateDatabaseName) {
+        if (YSQL_TEMPLATE_DATABASE_NAMES.contains(templateDatabaseName)) {
+            DatabaseAdministration.cloneDatabase(this, databaseName, templateDatabaseName);
+        } else if (templateDatabaseName.equals(getDatabaseName())) {
+            createInitializedDatabase(this, databaseName);
+        } else {
+            throw new DatabaseContainerException("Cannot create database '" + databaseName + "' from template '"
+                    + templateDatabaseName + "', YugaByte YSQL only accepts template0 and template1 as templates");
+        }
+    }
+
+    /**
+     * YSQL can't clone the default database, the JVM's database is created from template0 and the init scripts are
+     * run in it.
+     */
+    @Override
+    public void createJvmDatabase(DatabaseContainer databaseServer, String databaseName) {
+        createInitializedDatabase(databaseServer, databaseName);
+    }
+
+    // the database is dropped when running the init scripts fails
+    private void createInitializedDatabase(DatabaseContainer databaseServer, String databaseName) {
+        DatabaseAdministration.cloneDatabase(databaseServer, databaseName, YSQL_TEMPLATE_DATABASE_NAMES.get(0));
+        try {
+            for (String initScript : initScripts) {
+                DatabaseAdministration.executeSql(databaseServer, databaseName, initScript);
+            }
+        } catch (RuntimeException e) {
+            DatabaseAdministration.dropDatabase(databaseServer, databaseName);
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean supportsTemplateDatabases() {
+        return false;
+    }
+
+    /**
+     * Takes a snapshot with YugaByte's distributed snapshot support by using the yb-admin tool.
+     */
+    @Override
+    public Duration snapshotDatabase(String databaseName, String snapshotName) {
+        return snapshots.snapshot(databaseName, snapshotName);
+    }
+
+    @Override
+    public Duration restoreDatabase(String databaseName, String snapshotName) {
+        return snapshots.restore(databaseName, snapshotName);
     }
 
     public String getDatabaseName() {
@@ -0,0 +1,323 @@
+package com.github.lhotari.dbcontainer.yugabyte;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Performance related gflags of the YugaByte master and tserver nodes.
+ * <p>
+ * The typed settings know which nodes accept the flag and the YugaByte version that introduced it. Setting a flag
+ * that the selected image doesn't support fails the start of the container instead of the yb-master or yb-tserver
+ * process exiting with an unknown flag. Images tagged with something else than a version number, such as "latest",
+ * aren't validated. Flags that don't have a typed setting can be passed with {@link #withMasterFlag(String, String)}
+ * and {@link #withTserverFlag(String, String)} without validation.
+ * <p>
+ * The flags are added after the flags that the container derives from the fast test mode and the resource profile,
+ * so they take precedence.
+ */
+public class YugaByteFlags {
+    /**
+     * Preset for running many containers on a developer machine: a single shard per table on each tserver,
+     * a small block cache and few service threads and connections
+     */
+    public static final String SMALL_FOOTPRINT_PRESET = "small-footprint";
+    /**
+     * Preset for benchmarks: more shards per tserver, more service threads and more YSQL connections
+     */
+    public static final String THROUGHPUT_PRESET = "throughput";
+    private final Map<Flag, String> values = new EnumMap<>(Flag.class);
+    private final Map<String, String> masterFlags = new LinkedHashMap<>();
+    private final Map<String, String> tserverFlags = new LinkedHashMap<>();
+
+    public static YugaByteFlags create() {
+        return new YugaByteFlags();
+    }
+
+    /**
+     * @param name the name of the preset, {@link #SMALL_FOOTPRINT_PRESET} or {@link #THROUGHPUT_PRESET}
+     * @return new flags initialized from the preset
+     */
+    public static YugaByteFlags preset(String name) {
+        switch (name) {
+            case SMALL_FOOTPRINT_PRESET:
+                return smallFootprint();
+            case THROUGHPUT_PRESET:
+                return throughput();
+            default:
+                throw new IllegalArgumentException("Unknown preset '" + name + "', the presets are "
+                        + SMALL_FOOTPRINT_PRESET + " and " + THROUGHPUT_PRESET);
+        }
+    }
+
+    /**
+     * @return new flags initialized from the {@link #SMALL_FOOTPRINT_PRESET} preset
+     */
+    public static YugaByteFlags smallFootprint() {
+        return create()
+                .withShardsPerTserver(1)
+                .withBlockCacheSize(64L * 1024L * 1024L)
+                .withServiceThreads(8)
+                .withRpcWorkersLimit(32)
+                .withYsqlMaxConnections(50);
+    }
+
+    /**
+     * @return new flags initialized from the {@link #THROUGHPUT_PRESET} preset
+     */
+    public static YugaByteFlags throughput() {
+        return create()
+                .withShardsPerTserver(4)
+                .withServiceThreads(64)
+                .withRpcWorkersLimit(512)
+                .withYsqlMaxConnections(300);
+    }
+
+    /**
+     * Sets the number of tablets that a new YCQL or YSQL table gets per tserver.
+     * A single shard keeps the memory use and the table creation time of test databases low.
+     *
+     * @param shardsPerTserver the number of shards per tserver
+     * @return this instance
+     */
+    public YugaByteFlags withShardsPerTserver(int shardsPerTserver) {
+        requirePositive(shardsPerTserver, "shardsPerTserver");
+        values.put(Flag.YB_NUM_SHARDS_PER_TSERVER, String.valueOf(shardsPerTserver));
+        values.put(Flag.YSQL_NUM_SHARDS_PER_TSERVER, String.valueOf(shardsPerTserver));
+        return this;
+    }
+
+    /**
+     * Sets the memory limit of each node. This overrides the limit derived from the resource profile.
+     *
+     * @param memoryLimitBytes the hard memory limit in bytes
+     * @return this instance
+     */
+    public YugaByteFlags withMemoryLimit(long memoryLimitBytes) {
+        requirePositive(memoryLimitBytes, "memoryLimitBytes");
+        values.put(Flag.MEMORY_LIMIT_HARD_BYTES, String.valueOf(memoryLimitBytes));
+        return this;
+    }
+
+    /**
+     * @param blockCacheSizeBytes the size of the tserver's RocksDB block cache in bytes
+     * @return this instance
+     */
+    public YugaByteFlags withBlockCacheSize(long blockCacheSizeBytes) {
+        requirePositive(blockCacheSizeBytes, "blockCacheSizeBytes");
+        values.put(Flag.DB_BLOCK_CACHE_SIZE_BYTES, String.valueOf(blockCacheSizeBytes));
+        return this;
+    }
+
+    /**
+     * Sets the number of threads that serve the master and tablet server RPC services
+     *
+     * @param serviceThreads the number of service threads
+     * @return this instance
+     */
+    public YugaByteFlags withServiceThreads(int serviceThreads) {
+        requirePositive(serviceThreads, "serviceThreads");
+        values.put(Flag.MASTER_SVC_NUM_THREADS, String.valueOf(serviceThreads));
+        values.put(Flag.TABLET_SERVER_SVC_NUM_THREADS, String.valueOf(serviceThreads));
+        return this;
+    }
+
+    /**
+     * @param rpcWorkersLimit the maximum number of RPC worker threads of each node
+     * @return this instance
+     */
+    public YugaByteFlags withRpcWorkersLimit(int rpcWorkersLimit) {
+        requirePositive(rpcWorkersLimit, "rpcWorkersLimit");
+        values.put(Flag.RPC_WORKERS_LIMIT, String.valueOf(rpcWorkersLimit));
+        return this;
+    }
+
+    /**
+     * @param ysqlMaxConnections the maximum number of concurrent YSQL connections to each tserver
+     * @return this instance
+     */
+    public YugaByteFlags withYsqlMaxConnections(int ysqlMaxConnections) {
+        requirePositive(ysqlMaxConnections, "ysqlMaxConnections");
+        values.put(Flag.YSQL_MAX_CONNECTIONS, String.valueOf(ysqlMaxConnections));
+        return this;
+    }
+
+    /**
+     * Enables or disables splitting tablets when they grow. Disabling splitting keeps the number of tablets
+     * stable during benchmarks.
+     *
+     * @param automaticTabletSplitting true to enable automatic tablet splitting
+     * @return this instance
+     */
+    public YugaByteFlags withAutomaticTabletSplitting(boolean automaticTabletSplitting) {
+        values.put(Flag.ENABLE_AUTOMATIC_TABLET_SPLITTING, String.valueOf(automaticTabletSplitting));
+        return this;
+    }
+
+    /**
+     * @param tabletSplitThresholdBytes the size at which the master splits a tablet regardless of the number
+     *                                  of tablets
+     * @return this instance
+     */
+    public YugaByteFlags withTabletSplitThreshold(long tabletSplitThresholdBytes) {
+        requirePositive(tabletSplitThresholdBytes, "tabletSplitThresholdBytes");
+        values.put(Flag.TABLET_FORCE_SPLIT_THRESHOLD_BYTES, String.valueOf(tabletSplitThresholdBytes));
+        return this;
+    }
+
+    /**
+     * Sets a master gflag that doesn't have a typed setting. The flag isn't validated.
+     *
+     * @param name  the name of the flag without the leading dashes
+     * @param value the value
+     * @return this instance
+     */
+    public YugaByteFlags withMasterFlag(String name, String value) {
+        masterFlags.put(name, value);
+        return this;
+    }
+
+    /**
+     * Sets a tserver gflag that doesn't have a typed setting. The flag isn't validated.
+     *
+     * @param name  the name of the flag without the leading dashes
+     * @param value the value
+     * @return this instance
+     */
+    public YugaByteFlags withTserverFlag(String name, String value) {
+        tserverFlags.put(name, value);
+        return this;
+    }
+
+    /**
+     * Checks that the YugaByte version supports the typed flags that have been set
+     *
+     * @param yugaByteVersion the tag of the yugabytedb/yugabyte image, for example "2.1.2.0-b10"
+     * @throws IllegalStateException when a flag requires a later version
+     */
+    public void validate(String yugaByteVersion) {
+        int[] version = parseVersion(yugaByteVersion);
+        if (version == null) {
+            return;
+        }
+        List<String> unsupported = new ArrayList<>();
+        for (Flag flag : values.keySet()) {
+            if (compareVersions(version, flag.minimumVersion) < 0) {
+                unsupported.add(flag.getFlagName() + " requires " + formatVersion(flag.minimumVersion));
+            }
+        }
+        if (!unsupported.isEmpty()) {
+            throw new IllegalStateException("YugaByte " + yugaByteVersion + " doesn't support the flags: "
+                    + String.join(", ", unsupported));
+        }
+    }
+
+    /**
+     * @return the master flags in the "--name=value" form
+     */
+    public List<String> getMasterFlags() {
+        return toArguments(true, masterFlags);
+    }
+
+    /**
+     * @return the tserver flags in the "--name=value" form
+     */
+    public List<String> getTserverFlags() {
+        return toArguments(false, tserverFlags);
+    }
+
+    private List<String> toArguments(boolean master, Map<String, String> untypedFlags) {
+        List<String> arguments = new ArrayList<>();
+        for (Map.Entry<Flag, String> entry : values.entrySet()) {
+            Flag flag = entry.getKey();
+            if (master ? flag.master : flag.tserver) {
+                arguments.add("--" + flag.getFlagName() + "=" + entry.getValue());
+            }
+        }
+        for (Map.Entry<String, String> entry : untypedFlags.entrySet()) {
+            arguments.add("--" + entry.getKey() + "=" + entry.getValue());
+        }
+        return Collections.unmodifiableList(arguments);
+    }
+
+    /**
+     * @return null for tags that don't start with a version number
+     */
+    static int[] parseVersion(String yugaByteVersion) {
+        // tags are of the form 2.1.2.0-b10
+        String versionPart = yugaByteVersion.split("-", 2)[0];
+        String[] parts = versionPart.split("\\.");
+        int[] version = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            if (parts[i].isEmpty() || !parts[i].chars().allMatch(Character::isDigit)) {
+                return null;
+            }
+            version[i] = Integer.parseInt(parts[i]);
+        }
+        return version;
+    }
+
+    static int compareVersions(int[] version, int[] otherVersion) {
+        for (int i = 0; i < Math.max(version.length, otherVersion.length); i++) {
+            int part = i < version.length ? version[i] : 0;
+            int otherPart = i < otherVersion.length ? otherVersion[i] : 0;
+            if (part != otherPart) {
+                return Integer.compare(part, otherPart);
+            }
+        }
+        return 0;
+    }
+
+    private static String formatVersion(int[] version) {
+        StringBuilder formatted = new StringBuilder();
+        for (int part : version) {
+            if (formatted.length() > 0) {
+                formatted.append('.');
+            }
+            formatted.append(part);
+        }
+        return formatted.toString();
+    }
+
+    private static void requirePositive(long value, String name) {
+        if (value < 1) {
+            throw new IllegalArgumentException(name + " must be positive");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "master=" + getMasterFlags() + ", tserver=" + getTserverFlags();
+    }
+
+    private enum Flag {
+        YB_NUM_SHARDS_PER_TSERVER(true, true, 1, 0),
+        YSQL_NUM_SHARDS_PER_TSERVER(true, true, 2, 0),
+        MEMORY_LIMIT_HARD_BYTES(true, true, 1, 0),
+        DB_BLOCK_CACHE_SIZE_BYTES(false, true, 1, 0),
+        MASTER_SVC_NUM_THREADS(true, false, 1, 0),
+        TABLET_SERVER_SVC_NUM_THREADS(false, true, 1, 0),
+        RPC_WORKERS_LIMIT(true, true, 1, 0),
+        YSQL_MAX_CONNECTIONS(false, true, 2, 0),
+        ENABLE_AUTOMATIC_TABLET_SPLITTING(true, false, 2, 6),
+        TABLET_FORCE_SPLIT_THRESHOLD_BYTES(true, false, 2, 6);
+
+        private final boolean master;
+        private final boolean tserver;
+        private final int[] minimumVersion;
+
+        Flag(boolean master, boolean tserver, int... minimumVersion) {
+            this.master = master;
+            this.tserver = tserver;
+            this.minimumVersion = minimumVersion;
+        }
+
+        String getFlagName() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.github.lhotari.dbcontainer.yugabyte;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.containers.output.OutputFrame;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Captures the logs of YB master and tserver containers into bounded in-memory ring buffers.
+ * <p>
+ * The container output is streamed into the buffers on the threads that follow the container output, not on the
+ * test thread. Nothing is written to disk until {@link #persist(String)} gets called, for example when a test fails
+ * or a container exits abnormally. Then the buffered logs are written as gzip files to a directory of their own for
+ * each persist. Core dumps are written by the kernel to a temporary directory and are copied next to the logs when
+ * persisting. The total size of the written logs and core dumps per run is capped. The temporary core dump directory
+ * is deleted when the containers stop.
+ */
+public class YugaByteLogCapture {
+    private static final Logger LOG = LoggerFactory.getLogger(YugaByteLogCapture.class);
+    public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+    public static final long DEFAULT_MAX_LOG_BYTES = 16L * 1024 * 1024;
+    public static final long DEFAULT_MAX_CORE_DUMP_BYTES = 512L * 1024 * 1024;
+    private static final Set<YugaByteLogCapture> ACTIVE_CAPTURES = ConcurrentHashMap.newKeySet();
+    private final Path outputDirectory;
+    private final Map<String, LogRingBuffer> buffers = new LinkedHashMap<>();
+    private final AtomicInteger persistCount = new AtomicInteger();
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+    private long maxLogBytes = DEFAULT_MAX_LOG_BYTES;
+    private long maxCoreDumpBytes = DEFAULT_MAX_CORE_DUMP_BYTES;
+    private long writtenLogBytes;
+    private long writtenCoreDumpBytes;
+    private Path coreDumpDirectory;
+
+    /**
+     * @param outputDirectory the directory for persisted logs and core dumps, it's created when logs get persisted
+     */
+    public YugaByteLogCapture(Path outputDirectory) {
+        this.outputDirectory = outputDirectory;
+    }
+
+    /**
+     * @param bufferSize the number of most recent log bytes to keep in memory for each node
+     * @return this instance
+     */
+    public YugaByteLogCapture withBufferSize(int bufferSize) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("bufferSize must be at least 1");
+        }
+        this.bufferSize = bufferSize;
+        return this;
+    }
+
+    /**
+     * @param maxLogBytes the maximum number of compressed log bytes to write per run
+     * @return this instance
+     */
+    public YugaByteLogCapture withMaxLogBytes(long maxLogBytes) {
+        this.maxLogBytes = maxLogBytes;
+        return this;
+    }
+
+    /**
+     * @param maxCoreDumpBytes the maximum number of core dump bytes to copy per run
+     * @return this instance
+     */
+    public YugaByteLogCapture withMaxCoreDumpBytes(long maxCoreDumpBytes) {
+        this.maxCoreDumpBytes = maxCoreDumpBytes;
+        return this;
+    }
+
+    public Path getOutputDirectory() {
+        return outputDirectory;
+    }
+
+    /**
+     * Persists the logs of all captures whose containers are running, for example when a test fails
+     *
+     * @param reason the reason that is logged and included in the name of the directory
+     */
+    public static void persistAll(String reason) {
+        for (YugaByteLogCapture capture : ACTIVE_CAPTURES) {
+            capture.persist(reason);
+        }
+    }
+
+    synchronized Consumer<OutputFrame> createLogConsumer(String nodeName) {
+        LogRingBuffer buffer = buffers.computeIfAbsent(nodeName, key -> new LogRingBuffer(bufferSize));
+        return outputFrame -> {
+            byte[] bytes = outputFrame.getBytes();
+            if (bytes != null) {
+                buffer.append(bytes);
+            }
+        };
+    }
+
+    synchronized Path getCoreDumpDirectory(String nodeName) {
+        try {
+            if (coreDumpDirectory == null) {
+                coreDumpDirectory = Files.createTempDirectory("yugabyte-cores");
+            }
+            Path nodeCoreDumpDirectory = coreDumpDirectory.resolve(nodeName);
+            Files.createDirectories(nodeCoreDumpDirectory);
+            return nodeCoreDumpDirectory;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void activate() {
+        ACTIVE_CAPTURES.add(this);
+    }
+
+    /**
+     * Clears the buffers and deletes the temporary core dump directory
+     */
+    synchronized void deactivate() {
+        ACTIVE_CAPTURES.remove(this);
+        buffers.values().forEach(LogRingBuffer::clear);
+        if (coreDumpDirectory != null) {
+            deleteRecursively(coreDumpDirectory);
+            coreDumpDirectory = null;
+        }
+    }
+
+    /**
+     * Writes the buffered logs as gzip files and copies the core dumps to a new subdirectory of the output directory.
+     * Writing stops when the size caps of the run have been reached.
+     *
+     * @param reason the reason that is logged and included in the name of the directory
+     * @return the directory, null when there wasn't anything to write
+     */
+    public synchronized Path persist(String reason) {
+        if (writtenLogBytes >= maxLogBytes && writtenCoreDumpBytes >= maxCoreDumpBytes) {
+            LOG.warn("Not persisting YugaByte logs ({}), the size caps have been reached", reason);
+            return null;
+        }
+        String directoryName = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"))
+                + "-" + persistCount.incrementAndGet() + "-" + sanitize(reason);
+        Path directory = outputDirectory.resolve(directoryName);
+        try {
+            Files.createDirectories(directory);
+            for (Map.Entry<String, LogRingBuffer> entry : buffers.entrySet()) {
+                persistLog(directory, entry.getKey(), entry.getValue());
+            }
+            persistCoreDumps(directory);
+        } catch (IOException e) {
+            LOG.warn("Persisting YugaByte logs to {} failed", directory, e);
+        }
+        LOG.info("Persisted YugaByte logs to {} ({})", directory.toAbsolutePath(), reason);
+        return directory;
+    }
+
+    private void persistLog(Path directory, String nodeName, LogRingBuffer buffer) throws IOException {
+        if (writtenLogBytes >= maxLogBytes) {
+            LOG.warn("Not persisting the log of {}, the log size cap of {} bytes has been reached", nodeName, maxLogBytes);
+            return;
+        }
+        Path logFile = directory.resolve(nodeName + ".log.gz");
+        try (OutputStream outputStream = new GZIPOutputStream(Files.newOutputStream(logFile))) {
+            long droppedBytes = buffer.getDroppedBytes();
+            if (droppedBytes > 0) {
+                outputStream.write(("[" + droppedBytes + " earlier bytes were dropped]\n").getBytes(StandardCharsets.UTF_8));
+            }
+            buffer.writeTo(outputStream);
+        }
+        writtenLogBytes += Files.size(logFile);
+    }
+
+    private void persistCoreDumps(Path directory) throws IOException {
+        if (coreDumpDirectory == null) {
+            return;
+        }
+        List<Path> coreDumps = new ArrayList<>();
+        try (DirectoryStream<Path> nodeDirectories = Files.newDirectoryStream(coreDumpDirectory)) {
+            for (Path nodeDirectory : nodeDirectories) {
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(nodeDirectory)) {
+                    files.forEach(coreDumps::add);
+                }
+            }
+        }
+        // the smallest core dumps first so that the cap lets through as many as possible
+        coreDumps.sort(Comparator.comparingLong(YugaByteLogCapture::sizeOf));
+        for (Path coreDump : coreDumps) {
+            long size = sizeOf(coreDump);
+            if (writtenCoreDumpBytes + size > maxCoreDumpBytes) {
+                LOG.warn("Not copying core dump {} of {} bytes, the core dump size cap of {} bytes would be exceeded", coreDump, size, maxCoreDumpBytes);
+                continue;
+            }
+            Path target = directory.resolve(coreDump.getParent().getFileName().toString() + "-" + coreDump.getFileName());
+            Files.copy(coreDump, target, StandardCopyOption.REPLACE_EXISTING);
+            writtenCoreDumpBytes += size;
+        }
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static String sanitize(String reason) {
+        String sanitized = reason.replaceAll("[^A-Za-z0-9._-]+", "_");
+        return sanitized.length() > 64 ? sanitized.substring(0, 64) : sanitized;
+    }
+
+    private static void deleteRecursively(Path directory) {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder())
+                    .forEach(path -> {
+                        try {
+                            Files.delete(path);
+                        } catch (IOException e) {
+                            // core dumps written by the container may be owned by another user
+                            LOG.debug("Cannot delete {}", path, e);
+                        }
+                    });
+        } catch (IOException e) {
+            LOG.debug("Cannot delete {}", directory, e);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.github.lhotari.dbcontainer.yugabyte;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.containers.ContainerLaunchException;
+import org.testcontainers.containers.wait.strategy.AbstractWaitStrategy;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+/**
+ * Waits until the YB tserver accepts YSQL and YCQL queries by probing the mapped ports from the JVM.
+ * The probing interval starts short and grows gradually so that the wait ends soon after the APIs
+ * become available without busy polling during a slow startup.
+ */
+class YugaByteReadinessWaitStrategy extends AbstractWaitStrategy {
+    private static final Logger LOG = LoggerFactory.getLogger(YugaByteReadinessWaitStrategy.class);
+    private static final long INITIAL_POLL_INTERVAL_MILLIS = 25L;
+    private static final long MAX_POLL_INTERVAL_MILLIS = 500L;
+    private static final int PROBE_TIMEOUT_SECONDS = 2;
+    private final int ysqlPort;
+    private final int ycqlPort;
+    private final String databaseName;
+    private final String databaseUser;
+    private final String databasePassword;
+    private final CqlReadinessProbe cqlReadinessProbe = new CqlReadinessProbe(PROBE_TIMEOUT_SECONDS * 1000);
+
+    YugaByteReadinessWaitStrategy(int ysqlPort, int ycqlPort, String databaseName, String databaseUser, String databasePassword) {
+        this.ysqlPort = ysqlPort;
+        this.ycqlPort = ycqlPort;
+        this.databaseName = databaseName;
+        this.databaseUser = databaseUser;
+        this.databasePassword = databasePassword;
+    }
+
+    @Override
+    protected void waitUntilReady() {
+        String host = waitStrategyTarget.getContainerIpAddress();
+        int mappedYsqlPort = waitStrategyTarget.getMappedPort(ysqlPort);
+        int mappedYcqlPort = waitStrategyTarget.getMappedPort(ycqlPort);
+        long startTime = System.nanoTime();
+        long deadline = startTime + startupTimeout.toNanos();
+        boolean ysqlReady = false;
+        boolean ycqlReady = false;
+        long pollIntervalMillis = INITIAL_POLL_INTERVAL_MILLIS;
+        while (true) {
+            if (!ysqlReady && isYsqlReady(host, mappedYsqlPort)) {
+                ysqlReady = true;
+                LOG.info("YSQL ready in {} ms", (System.nanoTime() - startTime) / 1000000L);
+            }
+            if (!ycqlReady && cqlReadinessProbe.isReady(host, mappedYcqlPort)) {
+                ycqlReady = true;
+                LOG.info("YCQL ready in {} ms", (System.nanoTime() - startTime) / 1000000L);
+            }
+            if (ysqlReady && ycqlReady) {
+                return;
+            }
+            if (System.nanoTime() > deadline) {
+                throw new ContainerLaunchException("Timed out waiting for YugaByte to accept queries (YSQL ready: "
+                        + ysqlReady + ", YCQL ready: " + ycqlReady + ")");
+            }
+            try {
+                Thread.sleep(pollIntervalMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ContainerLaunchException("Interrupted while waiting for YugaByte to start", e);
+            }
+            pollIntervalMillis = Math.min(pollIntervalMillis * 3 / 2, MAX_POLL_INTERVAL_MILLIS);
+        }
+    }
+
+    private boolean isYsqlReady(String host, int port) {
+        Properties properties = new Properties();
+        properties.setProperty("user", databaseUser);
+        properties.setProperty("password", databasePassword);
+        properties.setProperty("connectTimeout", String.valueOf(PROBE_TIMEOUT_SECONDS));
+        properties.setProperty("socketTimeout", String.valueOf(PROBE_TIMEOUT_SECONDS));
+        try (Connection connection = DriverManager.getConnection("jdbc:postgresql://" + host + ":" + port + "/" + databaseName, properties);
+             Statement statement = connection.createStatement()) {
+            statement.execute("SELECT 1");
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+}
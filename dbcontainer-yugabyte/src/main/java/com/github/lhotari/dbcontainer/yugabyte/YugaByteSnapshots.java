@@ -0,0 +1,142 @@
+package com.github.lhotari.dbcontainer.yugabyte;
+
+import com.github.lhotari.dbcontainer.DatabaseContainerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.containers.Container;
+import org.testcontainers.containers.GenericContainer;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Takes and restores YSQL database snapshots with the yb-admin tool that is run in the YB master container.
+ * YugaByte snapshots are taken at the storage layer by creating hard linked checkpoints of the tablets' data
+ * files in the tserver's data directories, so their cost doesn't depend much on the amount of data.
+ */
+class YugaByteSnapshots {
+    private static final Logger LOG = LoggerFactory.getLogger(YugaByteSnapshots.class);
+    private static final String YB_ADMIN = "/home/yugabyte/bin/yb-admin";
+    private static final Pattern UUID_PATTERN = Pattern.compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+    private static final Pattern RESTORATION_ID_PATTERN = Pattern.compile("Restoration id: (" + UUID_PATTERN.pattern() + ")");
+    private static final Duration OPERATION_TIMEOUT = Duration.ofSeconds(60);
+    private static final long MAX_POLL_INTERVAL_MILLIS = 500L;
+    private final Supplier<GenericContainer<?>> masterContainerSupplier;
+    private final Supplier<String> masterAddressesSupplier;
+    private final Map<String, String> snapshotIds = new ConcurrentHashMap<>();
+
+    YugaByteSnapshots(Supplier<GenericContainer<?>> masterContainerSupplier, Supplier<String> masterAddressesSupplier) {
+        this.masterContainerSupplier = masterContainerSupplier;
+        this.masterAddressesSupplier = masterAddressesSupplier;
+    }
+
+    Duration snapshot(String databaseName, String snapshotName) {
+        long startTime = System.nanoTime();
+        String previousSnapshotId = snapshotIds.get(snapshotKey(databaseName, snapshotName));
+        String output = ybAdmin("create_database_snapshot", "ysql." + databaseName);
+        Matcher matcher = UUID_PATTERN.matcher(output);
+        if (!matcher.find()) {
+            throw new DatabaseContainerException("Cannot parse snapshot id from yb-admin output: " + output);
+        }
+        String snapshotId = matcher.group();
+        waitUntil("snapshot " + snapshotId + " creation", () -> snapshotState(snapshotId), "COMPLETE");
+        snapshotIds.put(snapshotKey(databaseName, snapshotName), snapshotId);
+        if (previousSnapshotId != null) {
+            ybAdmin("delete_snapshot", previousSnapshotId);
+        }
+        Duration duration = Duration.ofNanos(System.nanoTime() - startTime);
+        LOG.info("Took snapshot '{}' of database '{}' in {} ms", snapshotName, databaseName, duration.toMillis());
+        return duration;
+    }
+
+    Duration restore(String databaseName, String snapshotName) {
+        long startTime = System.nanoTime();
+        String snapshotId = snapshotIds.get(snapshotKey(databaseName, snapshotName));
+        if (snapshotId == null) {
+            throw new DatabaseContainerException("Snapshot '" + snapshotName + "' of database '" + databaseName + "' doesn't exist");
+        }
+        String output = ybAdmin("restore_snapshot", snapshotId);
+        Matcher matcher = RESTORATION_ID_PATTERN.matcher(output);
+        if (matcher.find()) {
+            String restorationId = matcher.group(1);
+            waitUntil("restoration " + restorationId, () -> restorationState(restorationId), "RESTORED");
+        } else {
+            // older yb-admin versions don't report a restoration id, the snapshot's state goes from RESTORING to COMPLETE
+            waitUntil("snapshot " + snapshotId + " restoration", () -> snapshotState(snapshotId), "COMPLETE");
+        }
+        Duration duration = Duration.ofNanos(System.nanoTime() - startTime);
+        LOG.info("Restored snapshot '{}' of database '{}' in {} ms", snapshotName, databaseName, duration.toMillis());
+        return duration;
+    }
+
+    private static String snapshotKey(String databaseName, String snapshotName) {
+        return databaseName + "/" + snapshotName;
+    }
+
+    private String snapshotState(String snapshotId) {
+        return parseState(ybAdmin("list_snapshots"), snapshotId);
+    }
+
+    private String restorationState(String restorationId) {
+        return parseState(ybAdmin("list_snapshot_restorations", restorationId), restorationId);
+    }
+
+    private static String parseState(String output, String id) {
+        for (String line : output.split("\n")) {
+            String[] parts = line.trim().split("\\s+");
+            if (parts.length >= 2 && parts[0].equals(id)) {
+                return parts[1];
+            }
+        }
+        return null;
+    }
+
+    private void waitUntil(String description, Supplier<String> stateSupplier, String expectedState) {
+        long deadline = System.nanoTime() + OPERATION_TIMEOUT.toNanos();
+        long pollIntervalMillis = 10L;
+        while (true) {
+            String state = stateSupplier.get();
+            if (expectedState.equals(state)) {
+                return;
+            }
+            if ("FAILED".equals(state) || "DELETED".equals(state)) {
+                throw new DatabaseContainerException(description + " ended in state " + state);
+            }
+            if (System.nanoTime() > deadline) {
+                throw new DatabaseContainerException(description + " didn't reach state " + expectedState + " in " + OPERATION_TIMEOUT + ", last state was " + state);
+            }
+            try {
+                Thread.sleep(pollIntervalMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DatabaseContainerException("Interrupted while waiting for " + description, e);
+            }
+            pollIntervalMillis = Math.min(pollIntervalMillis * 2, MAX_POLL_INTERVAL_MILLIS);
+        }
+    }
+
+    private String ybAdmin(String... arguments) {
+        String[] command = new String[arguments.length + 3];
+        command[0] = YB_ADMIN;
+        command[1] = "--master_addresses";
+        command[2] = masterAddressesSupplier.get();
+        System.arraycopy(arguments, 0, command, 3, arguments.length);
+        try {
+            Container.ExecResult result = masterContainerSupplier.get().execInContainer(command);
+            if (result.getExitCode() != 0) {
+                throw new DatabaseContainerException("yb-admin " + String.join(" ", arguments) + " failed: " + result.getStderr() + result.getStdout());
+            }
+            return result.getStdout();
+        } catch (IOException e) {
+            throw new DatabaseContainerException("Running yb-admin failed", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseContainerException("Interrupted while running yb-admin", e);
+        }
+    }
+}
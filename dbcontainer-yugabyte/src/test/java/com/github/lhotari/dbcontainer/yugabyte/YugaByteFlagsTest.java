@@ -0,0 +1,47 @@
+package com.github.lhotari.dbcontainer.yugabyte;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class YugaByteFlagsTest {
+    @Test
+    void shouldParseVersionTags() {
+        assertArrayEquals(new int[]{2, 1, 2, 0}, YugaByteFlags.parseVersion("2.1.2.0-b10"));
+        assertArrayEquals(new int[]{2, 6}, YugaByteFlags.parseVersion("2.6"));
+    }
+
+    @Test
+    void shouldNotParseOtherTags() {
+        assertNull(YugaByteFlags.parseVersion("latest"));
+        assertNull(YugaByteFlags.parseVersion("2.x.1"));
+        assertNull(YugaByteFlags.parseVersion("2..1"));
+    }
+
+    @Test
+    void shouldCompareVersionsWithMissingPartsAsZero() {
+        assertEquals(0, YugaByteFlags.compareVersions(new int[]{2, 6}, new int[]{2, 6, 0, 0}));
+        assertTrue(YugaByteFlags.compareVersions(new int[]{2, 5, 9}, new int[]{2, 6}) < 0);
+        assertTrue(YugaByteFlags.compareVersions(new int[]{2, 10}, new int[]{2, 6}) > 0);
+    }
+
+    @Test
+    void shouldAcceptFlagsSupportedByVersion() {
+        YugaByteFlags flags = YugaByteFlags.smallFootprint().withAutomaticTabletSplitting(false);
+        flags.validate("2.6.0.0-b69");
+        flags.validate("latest");
+    }
+
+    @Test
+    void shouldRejectFlagsThatRequireLaterVersion() {
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> YugaByteFlags.create().withAutomaticTabletSplitting(false).withShardsPerTserver(1).validate("2.1.2.0-b10"));
+        assertTrue(e.getMessage().contains("enable_automatic_tablet_splitting requires 2.6"), e.getMessage());
+        assertFalse(e.getMessage().contains("shards_per_tserver"), e.getMessage());
+    }
+}
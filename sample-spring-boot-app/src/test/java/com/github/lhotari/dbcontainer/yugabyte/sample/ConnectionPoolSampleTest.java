@@ -0,0 +1,50 @@
+package com.github.lhotari.dbcontainer.yugabyte.sample;
+
+import com.github.lhotari.spring.dbcontainers.PostgresSpringTestContextInitializer;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import reactor.test.StepVerifier;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(classes = ConnectionPoolSampleTest.TestApplication.class)
+@ContextConfiguration(initializers = PostgresSpringTestContextInitializer.class)
+@TestPropertySource(properties = {"dbcontainers.connection-pool.enabled=true",
+        "dbcontainers.connection-pool.minimum-idle=3"})
+class ConnectionPoolSampleTest {
+    @SpringBootApplication
+    static class TestApplication {
+
+    }
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    JdbcOperations jdbcOperations;
+
+    @Autowired
+    DatabaseClient databaseClient;
+
+    @Test
+    void shouldUsePooledDataSourceAndConnectionFactory() throws SQLException {
+        assertThat(dataSource.unwrap(HikariDataSource.class).getMinimumIdle()).isEqualTo(3);
+        assertThat(jdbcOperations.queryForObject("select 1", Integer.class)).isEqualTo(1);
+        databaseClient.execute("select 1")
+                .map(row -> row.get(0, Integer.class))
+                .first()
+                .as(StepVerifier::create)
+                .expectNext(1)
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,32 @@
+package com.github.lhotari.dbcontainer.yugabyte.sample;
+
+import com.example.demo.DemoApplication;
+import com.github.lhotari.spring.dbcontainers.YugaByteSpringTestContextInitializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(classes = DemoApplication.class)
+@ContextConfiguration(initializers = YugaByteSpringTestContextInitializer.class)
+@TestPropertySource(properties = {"dbcontainers.database-per-context=true",
+        "dbcontainers.template-scripts=classpath:schema.sql,classpath:data.sql"})
+class DatabasePerContextYugaByteSampleTest {
+    @Autowired
+    JdbcOperations jdbcOperations;
+
+    @Value("${spring.datasource.url}")
+    String jdbcUrl;
+
+    @Test
+    void shouldRunTemplateScriptsInContextDatabase() {
+        assertThat(jdbcUrl).contains("/ctx_");
+        assertThat(jdbcOperations.queryForObject("select name from city where id = 2000", String.class))
+                .isEqualTo("Washington");
+    }
+}
@@ -0,0 +1,29 @@
+package com.github.lhotari.dbcontainer.yugabyte.sample;
+
+import com.example.demo.DemoApplication;
+import com.github.lhotari.spring.dbcontainers.PostgresSpringTestContextInitializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(classes = DemoApplication.class)
+@ContextConfiguration(initializers = PostgresSpringTestContextInitializer.class)
+@TestPropertySource(properties = {"dbcontainers.database-per-context=true",
+        "dbcontainers.template-scripts=classpath:schema.sql",
+        "dbcontainers.template-fixtures=classpath:fixtures/city.csv"})
+class FixtureLoadingSampleTest {
+    @Autowired
+    JdbcOperations jdbcOperations;
+
+    @Test
+    void shouldLoadFixturesIntoTemplateDatabase() {
+        assertThat(jdbcOperations.queryForObject("select count(*) from city", Integer.class)).isEqualTo(3);
+        assertThat(jdbcOperations.queryForObject("select name from city where id = 2002", String.class))
+                .isEqualTo("Helsinki");
+    }
+}
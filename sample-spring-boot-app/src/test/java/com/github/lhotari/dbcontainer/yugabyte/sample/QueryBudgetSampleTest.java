@@ -0,0 +1,55 @@
+package com.github.lhotari.dbcontainer.yugabyte.sample;
+
+import com.github.lhotari.dbcontainer.DatabaseContainer;
+import com.github.lhotari.dbcontainer.QueryStatistics;
+import com.github.lhotari.dbcontainer.StatementStatistics;
+import com.github.lhotari.dbcontainer.junit.QueryBudget;
+import com.github.lhotari.spring.dbcontainers.PostgresSpringTestContextInitializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(classes = QueryBudgetSampleTest.TestApplication.class)
+@ContextConfiguration(initializers = PostgresSpringTestContextInitializer.class)
+@TestPropertySource(properties = "dbcontainers.query-statistics.enabled=true")
+class QueryBudgetSampleTest {
+    @SpringBootApplication
+    static class TestApplication {
+
+    }
+
+    @Autowired
+    DatabaseContainer databaseContainer;
+
+    @Autowired
+    JdbcOperations jdbcOperations;
+
+    @Test
+    @QueryBudget(maxQueries = 3)
+    void shouldStayWithinQueryBudget() {
+        for (int i = 0; i < 3; i++) {
+            jdbcOperations.queryForObject("select ?", Integer.class, i);
+        }
+    }
+
+    @Test
+    void shouldCountStatementCalls() {
+        QueryStatistics.reset(databaseContainer);
+        for (int i = 0; i < 5; i++) {
+            jdbcOperations.queryForObject("select ? + 1", Integer.class, i);
+        }
+        List<StatementStatistics> statistics = QueryStatistics.fetch(databaseContainer);
+        assertThat(statistics)
+                .filteredOn(statementStatistics -> statementStatistics.getQuery().startsWith("select $1 +"))
+                .extracting(StatementStatistics::getCalls)
+                .containsExactly(5L);
+    }
+}